@@ -1,11 +1,17 @@
 package categories;
 
 import categories.CategoryAnalyzer;
+import main.LogField;
 import main.ParsedLog;
 import ua_parser.Client;
 
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
 * BrowsersAnalyzer counts occurrences of Browsers from log entries.
@@ -14,8 +20,12 @@ import java.util.Map;
 */
 public class BrowsersAnalyzer implements CategoryAnalyzer {
 
-    /* A map to store the count of each browser family. */
-    private final Map<String, Integer> browsersCounter = new HashMap<>();
+    private static final String MERGE_ERR = "Cannot merge a BrowsersAnalyzer with ";
+    private static final Set<LogField> REQUIRED_FIELDS =
+            Collections.unmodifiableSet(EnumSet.of(LogField.USER_AGENT_CLIENT));
+
+    /* A counter to store the count of each browser family. */
+    private final CategoryCounter browsersCounter = new CategoryCounter();
 
     /**
      * The name of the category for this analyzer (in this case, "Browsers").
@@ -33,21 +43,49 @@ public class BrowsersAnalyzer implements CategoryAnalyzer {
 
     /**
      * Adds a log entry to the browser counter by extracting the browser family from the user agent.
-     * If the browser family is already present in the map, its count is incremented;
+     * If the browser family is already present in the counter, its count is incremented;
      * otherwise, it is added with a count of 1.
      *
      * @param log the {@link ParsedLog} object containing the user agent information to be processed
      */
     @Override
     public void addLogToCounter(ParsedLog log) {
-        Client client = log.getUserAgentClient();
-        String browser = client.userAgent.family;
+        String browser = getCategoryValue(log);
         if (browser != null) {
-            int updatedVal = browsersCounter.getOrDefault(browser, 0) + 1;
-            browsersCounter.put(browser, updatedVal);
+            browsersCounter.increment(browser);
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            addLogToCounter(batch[i]);
+        }
+    }
+
+    /**
+     * Returns the browser family of the log's User-Agent.
+     *
+     * @param log the {@link ParsedLog} object containing the user agent information
+     * @return the browser family, or {@code null} if the log has no User-Agent
+     */
+    @Override
+    public String getCategoryValue(ParsedLog log) {
+        Client client = log.getUserAgentClient();
+        return client == null ? null : client.userAgent.family;
+    }
+
+    /**
+     * Returns {@code true}, since every log entry is counted under at most its browser family.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean supportsCategoryValue() {
+        return true;
+    }
+
     /**
      * Retrieves the counter map containing the count of each browser family.
      * The map's keys are browser family names, and the values are the respective counts.
@@ -56,7 +94,7 @@ public class BrowsersAnalyzer implements CategoryAnalyzer {
      */
     @Override
     public Map<String, Integer> getCounter() {
-        return browsersCounter;
+        return browsersCounter.asMap();
     }
 
     /**
@@ -68,4 +106,59 @@ public class BrowsersAnalyzer implements CategoryAnalyzer {
     public String getCategoryName() {
         return name;
     }
+
+    /**
+     * Returns the fields this analyzer reads: only the parsed User-Agent.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return REQUIRED_FIELDS;
+    }
+
+    /**
+     * Creates a new {@code BrowsersAnalyzer} with the same name and an empty counter.
+     *
+     * @return a new, empty {@code BrowsersAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        return new BrowsersAnalyzer(name);
+    }
+
+    /**
+     * Adds the browser counts of another {@code BrowsersAnalyzer} into this one.
+     *
+     * @param other the {@code BrowsersAnalyzer} to merge into this one
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof BrowsersAnalyzer otherBrowsers)) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        browsersCounter.addAll(otherBrowsers.browsersCounter);
+    }
+
+    /**
+     * Writes the counts of this analyzer to a snapshot.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        browsersCounter.write(out);
+    }
+
+    /**
+     * Adds the counts of a snapshot to this analyzer.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        browsersCounter.readAndAdd(in);
+    }
 }
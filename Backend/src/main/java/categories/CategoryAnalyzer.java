@@ -1,7 +1,14 @@
 package categories;
 
+import main.LogField;
 import main.ParsedLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The {@code CategoryAnalyzer} interface defines the contract for analyzing log data
@@ -18,6 +25,64 @@ public interface CategoryAnalyzer {
      */
     void addLogToCounter(ParsedLog log);
 
+    /**
+     * Processes a batch of parsed log entries, as {@link #addLogToCounter(ParsedLog)} does for each of them.
+     * Callers hand every analyzer a whole batch in turn, so the per-log calls of an analyzer's own loop stay
+     * monomorphic and can be inlined, instead of one interface call per analyzer per log. That only holds for a loop
+     * compiled for one class: this default loop is shared by every implementation, so its call sees them all and
+     * is not inlined. Analyzers on the hot path therefore override it with the very same loop, which the JIT then
+     * compiles separately in each class.
+     * The log entries may be views of a reused {@link main.ParsedLogBatch}, so they must not be kept after the call.
+     *
+     * @param batch the parsed log entries.
+     * @param from  the index of the first log entry to process, inclusive.
+     * @param to    the index of the last log entry to process, exclusive.
+     */
+    default void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            addLogToCounter(batch[i]);
+        }
+    }
+
+    /**
+     * Returns the category value a log entry is counted under, e.g. its browser family, without counting it.
+     * Analyzers that count every log entry under at most one value implement this, and report it with
+     * {@link #supportsCategoryValue()}, so wrappers such as {@link TimeWindowedAnalyzer} can count the same values
+     * along another dimension. It may be called from several threads at once, e.g. by
+     * {@link ConcurrentCategoryAnalyzer}, so it must only read the log entry and state that is thread-safe.
+     *
+     * @param log the {@link ParsedLog} object representing a single log entry.
+     * @return the category value, or {@code null} if the log entry is not counted.
+     * @throws UnsupportedOperationException if the analyzer does not count single values.
+     */
+    default String getCategoryValue(ParsedLog log) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not count single values");
+    }
+
+    /**
+     * Returns whether the analyzer implements {@link #getCategoryValue(ParsedLog)}. Defaults to {@code false}.
+     *
+     * @return {@code true} if the analyzer counts every log entry under at most one value.
+     */
+    default boolean supportsCategoryValue() {
+        return false;
+    }
+
+    /**
+     * Checks that an analyzer implements {@link #getCategoryValue(ParsedLog)}, so a wrapper that reads the values
+     * of another analyzer fails when it is constructed instead of on the first log entry.
+     *
+     * @param analyzer the wrapped analyzer.
+     * @return the analyzer.
+     * @throws IllegalArgumentException if the analyzer does not count single values.
+     */
+    static CategoryAnalyzer requireCategoryValue(CategoryAnalyzer analyzer) {
+        if (!analyzer.supportsCategoryValue()) {
+            throw new IllegalArgumentException(analyzer.getClass().getSimpleName() + " does not count single values");
+        }
+        return analyzer;
+    }
+
     /**
      * Returns the counter that maps category values to their occurrence counts.
      *
@@ -32,4 +97,69 @@ public interface CategoryAnalyzer {
      * @return the category name as a {@link String} (e.g., "Countries", "Operating Systems").
      */
     String getCategoryName();
+
+    /**
+     * Creates a new analyzer of the same kind and name with an empty counter.
+     * Parallel processing gives every worker its own copy as a partial counter,
+     * and merges the copies back with {@link #merge(CategoryAnalyzer)} at the end.
+     *
+     * @return a new, empty analyzer of the same category.
+     */
+    CategoryAnalyzer createEmptyCopy();
+
+    /**
+     * Adds the counts of another analyzer of the same kind into this analyzer.
+     *
+     * @param other the analyzer whose counts are added, usually a copy created by {@link #createEmptyCopy()}.
+     * @throws IllegalArgumentException if {@code other} is not of the same kind as this analyzer.
+     */
+    void merge(CategoryAnalyzer other);
+
+    /**
+     * Returns the fields of a log entry that {@link #addLogToCounter(ParsedLog)} reads, so the other fields
+     * are never extracted or parsed. Defaults to all the fields.
+     *
+     * @return the required fields.
+     */
+    default Set<LogField> getRequiredFields() {
+        return EnumSet.allOf(LogField.class);
+    }
+
+    /**
+     * Returns whether {@link #addLogToCounter(ParsedLog)} may be called from several threads at once, and
+     * concurrently with {@link #getCounter()}. Analyzers are single-threaded by default;
+     * {@link ConcurrentCategoryAnalyzer} makes any analyzer that counts single values thread-safe.
+     *
+     * @return {@code true} if the analyzer can be shared between threads.
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Writes the analyzer's counts in a compact binary form, so they survive a restart.
+     *
+     * @param out the output to write to.
+     * @throws IOException if writing fails.
+     */
+    void writeSnapshot(DataOutput out) throws IOException;
+
+    /**
+     * Reads counts written by {@link #writeSnapshot(DataOutput)} and adds them to this analyzer.
+     *
+     * @param in the input to read from.
+     * @throws IOException if reading fails.
+     */
+    void readSnapshot(DataInput in) throws IOException;
+
+    /**
+     * Returns a tag naming the format of {@link #writeSnapshot(DataOutput)}: the analyzer's class, and the
+     * settings and wrapped analyzers its snapshot depends on. A snapshot is only read back by an analyzer with
+     * the same tag, since wrappers report the category name of the analyzer they wrap. Defaults to the class name.
+     *
+     * @return the snapshot format tag.
+     */
+    default String getSnapshotFormat() {
+        return getClass().getName();
+    }
 }
@@ -0,0 +1,223 @@
+package categories;
+
+import main.BinaryIO;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The {@code CategoryCounter} class counts occurrences of category values with primitive counters.
+ * Every distinct value is interned once to a small int id, and its count is kept in a {@code long[]}
+ * slot of that id. Incrementing an already known value costs a single hash lookup and no allocation,
+ * unlike a {@code Map<String, Integer>} that boxes a new {@link Integer} on every update.
+ * A read-only {@code Map<String, Integer>} view is available through {@link #asMap()}.
+ */
+public class CategoryCounter {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* Maps every known value to its id, the index of its slot in the arrays below. */
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] values = new String[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int size = 0;
+    private final Map<String, Integer> mapView = new MapView();
+
+    /**
+     * Increments the count of the given value by one.
+     *
+     * @param value the category value
+     * @return the id of the value
+     */
+    public int increment(String value) {
+        return add(value, 1);
+    }
+
+    /**
+     * Adds to the count of the given value.
+     *
+     * @param value the category value
+     * @param count the amount to add
+     * @return the id of the value
+     */
+    public int add(String value, long count) {
+        int id = idOf(value);
+        counts[id] += count;
+        return id;
+    }
+
+    /**
+     * Returns the id of the given value, assigning a new one if the value was not seen before.
+     *
+     * @param value the category value
+     * @return the id of the value
+     */
+    public int idOf(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        values[size] = value;
+        ids.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Adds all the counts of another counter into this counter.
+     *
+     * @param other the counter to add
+     */
+    public void addAll(CategoryCounter other) {
+        for (int id = 0; id < other.size; id++) {
+            add(other.values[id], other.counts[id]);
+        }
+    }
+
+    /**
+     * Writes all values and their counts, e.g. to a snapshot.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int id = 0; id < size; id++) {
+            BinaryIO.writeString(out, values[id]);
+            out.writeLong(counts[id]);
+        }
+    }
+
+    /**
+     * Reads values and counts written by {@link #write(DataOutput)} and adds them to this counter.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails
+     */
+    public void readAndAdd(DataInput in) throws IOException {
+        int entries = in.readInt();
+        for (int i = 0; i < entries; i++) {
+            String value = BinaryIO.readString(in);
+            add(value, in.readLong());
+        }
+    }
+
+    /**
+     * Returns the count of the given value.
+     *
+     * @param value the category value
+     * @return the count, {@code 0} for an unknown value
+     */
+    public long getCount(String value) {
+        Integer id = ids.get(value);
+        return id == null ? 0 : counts[id];
+    }
+
+    /**
+     * Returns the number of distinct values.
+     *
+     * @return the number of distinct values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of the given id.
+     *
+     * @param id the id, between {@code 0} and {@link #size()} (exclusive)
+     * @return the category value
+     */
+    public String getValue(int id) {
+        return values[id];
+    }
+
+    /**
+     * Returns the count of the given id.
+     *
+     * @param id the id, between {@code 0} and {@link #size()} (exclusive)
+     * @return the count
+     */
+    public long getCountById(int id) {
+        return counts[id];
+    }
+
+    /**
+     * Returns a read-only, live {@code Map<String, Integer>} view of the counts.
+     * Counts beyond {@link Integer#MAX_VALUE} are reported as {@link Integer#MAX_VALUE}.
+     *
+     * @return the map view
+     */
+    public Map<String, Integer> asMap() {
+        return mapView;
+    }
+
+    private static Integer toInteger(long count) {
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The read-only map view of the counter.
+     */
+    private final class MapView extends AbstractMap<String, Integer> {
+
+        @Override
+        public Integer get(Object key) {
+            Integer id = ids.get(key);
+            return id == null ? null : toInteger(counts[id]);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return ids.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    return new Iterator<>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Entry<String, Integer> next() {
+                            if (next >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = next++;
+                            return new SimpleImmutableEntry<>(values[id], toInteger(counts[id]));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package categories;
+
+import main.LogField;
+import main.ParsedLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code ConcurrentCategoryAnalyzer} class counts the values of another analyzer so that many threads can
+ * count logs at once, e.g. the senders of the ingestion server.
+ * The counts are striped: every stripe is a {@link CategoryCounter} behind its own lock, and a thread always
+ * counts into the stripe of its thread id, so threads rarely wait for each other. Reading the counts locks
+ * every stripe at once and adds them up, so {@link #getCounter()} is a consistent snapshot at a single point
+ * in time, never a mix of counts from before and after a log.
+ * The wrapped analyzer must implement {@link CategoryAnalyzer#getCategoryValue(ParsedLog)}; it only extracts
+ * the values and never counts anything itself, so side counts of its own, such as the IPs missing from the
+ * GeoIP database, are not kept. A single value source is shared by every thread, so its
+ * {@link CategoryAnalyzer#getCategoryValue(ParsedLog)} must be stateless, as it is for the analyzers of this package.
+ * A batch is extracted into a buffer of the counting thread, reused for its next batches.
+ */
+public class ConcurrentCategoryAnalyzer implements CategoryAnalyzer {
+
+    // === Constants ===
+    /* At least twice as many stripes as processors, so two running threads rarely share a stripe. */
+    public static final int DEFAULT_STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 4;
+    private static final String INVALID_STRIPES_ERR = "Stripes must be a positive power of two: ";
+    private static final String MERGE_ERR = "Cannot merge a ConcurrentCategoryAnalyzer with ";
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    // === Fields ===
+    private final CategoryAnalyzer valueSource;
+    /* Every thread's buffer of the values of a batch, grown to the largest batch of the thread. */
+    private final ThreadLocal<String[]> valueBuffers =
+            ThreadLocal.withInitial(() -> new String[INITIAL_BUFFER_SIZE]);
+    private final CategoryCounter[] stripes;
+    private final ReentrantLock[] locks;
+
+    /**
+     * Constructs a {@code ConcurrentCategoryAnalyzer} with {@link #DEFAULT_STRIPES} stripes.
+     *
+     * @param valueSource the analyzer that extracts the category value of a log
+     * @throws IllegalArgumentException if the value source does not count single values
+     */
+    public ConcurrentCategoryAnalyzer(CategoryAnalyzer valueSource) {
+        this(valueSource, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructs a {@code ConcurrentCategoryAnalyzer}.
+     *
+     * @param valueSource the analyzer that extracts the category value of a log
+     * @param stripes     the number of stripes, a power of two
+     * @throws IllegalArgumentException if the number of stripes is not a positive power of two, or the value source
+     *                                  does not count single values
+     */
+    public ConcurrentCategoryAnalyzer(CategoryAnalyzer valueSource, int stripes) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException(INVALID_STRIPES_ERR + stripes);
+        }
+        this.valueSource = CategoryAnalyzer.requireCategoryValue(valueSource);
+        this.stripes = new CategoryCounter[stripes];
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new CategoryCounter();
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Counts the category value of a parsed log entry in the stripe of the current thread.
+     * Safe to call from several threads at once.
+     *
+     * @param log the parsed log entry
+     */
+    @Override
+    public void addLogToCounter(ParsedLog log) {
+        String value = valueSource.getCategoryValue(log);
+        if (value == null) {
+            return;
+        }
+        int stripe = stripeOfCurrentThread();
+        locks[stripe].lock();
+        try {
+            stripes[stripe].increment(value);
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Counts a batch of log entries in the stripe of the current thread. The values are extracted into the
+     * thread's buffer before the stripe is locked, and the stripe is locked once for the whole batch.
+     * Safe to call from several threads at once.
+     *
+     * @param batch the parsed log entries
+     * @param from  the index of the first log entry to process, inclusive
+     * @param to    the index of the last log entry to process, exclusive
+     */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        int size = to - from;
+        String[] values = valueBuffers.get();
+        if (values.length < size) {
+            values = new String[size];
+            valueBuffers.set(values);
+        }
+        for (int i = 0; i < size; i++) {
+            values[i] = valueSource.getCategoryValue(batch[from + i]);
+        }
+        int stripe = stripeOfCurrentThread();
+        locks[stripe].lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                if (values[i] != null) {
+                    stripes[stripe].increment(values[i]);
+                }
+            }
+        } finally {
+            locks[stripe].unlock();
+        }
+        // the buffer outlives the batch, so it must not keep its values
+        Arrays.fill(values, 0, size, null);
+    }
+
+    /**
+     * Returns the stripe of the current thread, spreading consecutive thread ids over the stripes.
+     */
+    private int stripeOfCurrentThread() {
+        long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return (int) (id >>> 32) & (stripes.length - 1);
+    }
+
+    /**
+     * Adds up the stripes while they are all locked.
+     *
+     * @return a new counter with the counts of all stripes
+     */
+    private CategoryCounter snapshot() {
+        CategoryCounter total = new CategoryCounter();
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            for (CategoryCounter stripe : stripes) {
+                total.addAll(stripe);
+            }
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Adds counts to the first stripe.
+     */
+    private void addToFirstStripe(CategoryCounter counts) {
+        locks[0].lock();
+        try {
+            stripes[0].addAll(counts);
+        } finally {
+            locks[0].unlock();
+        }
+    }
+
+    /**
+     * Returns a consistent snapshot of the counts of all stripes; later logs do not change it.
+     *
+     * @return a map where keys are category values and values are their counts
+     */
+    @Override
+    public Map<String, Integer> getCounter() {
+        return snapshot().asMap();
+    }
+
+    /**
+     * Returns the category value of the wrapped analyzer.
+     *
+     * @param log the parsed log entry
+     * @return the category value, or {@code null}
+     */
+    @Override
+    public String getCategoryValue(ParsedLog log) {
+        return valueSource.getCategoryValue(log);
+    }
+
+    /**
+     * Returns {@code true}, since the value source counts single values.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean supportsCategoryValue() {
+        return true;
+    }
+
+    /**
+     * Returns the category name of the wrapped analyzer.
+     *
+     * @return the category name
+     */
+    @Override
+    public String getCategoryName() {
+        return valueSource.getCategoryName();
+    }
+
+    /**
+     * Returns the fields the wrapped analyzer reads.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return valueSource.getRequiredFields();
+    }
+
+    /**
+     * Returns {@code true}: logs can be counted from several threads at once.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Returns the number of stripes.
+     *
+     * @return the stripe count
+     */
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * Creates an empty {@code ConcurrentCategoryAnalyzer} with the same stripes over an empty copy of the value source.
+     *
+     * @return a new, empty {@code ConcurrentCategoryAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        return new ConcurrentCategoryAnalyzer(valueSource.createEmptyCopy(), stripes.length);
+    }
+
+    /**
+     * Adds a snapshot of the counts of another {@code ConcurrentCategoryAnalyzer} into this one.
+     *
+     * @param other the analyzer to merge
+     * @throws IllegalArgumentException if the other analyzer is not a {@code ConcurrentCategoryAnalyzer}
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof ConcurrentCategoryAnalyzer otherConcurrent)) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        addToFirstStripe(otherConcurrent.snapshot());
+    }
+
+    /**
+     * Writes a snapshot of the counts to a snapshot file.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        snapshot().write(out);
+    }
+
+    /**
+     * Adds the counts of a snapshot file to this analyzer.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        CategoryCounter counts = new CategoryCounter();
+        counts.readAndAdd(in);
+        addToFirstStripe(counts);
+    }
+
+    /**
+     * Returns a tag of the value source's format.
+     *
+     * @return the snapshot format tag
+     */
+    @Override
+    public String getSnapshotFormat() {
+        return getClass().getName() + "(" + valueSource.getSnapshotFormat() + ")";
+    }
+}
@@ -0,0 +1,177 @@
+package categories;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The {@code CountMinSketch} class estimates the counts of string values in fixed memory.
+ * It keeps {@code depth} rows of {@code width} counters; a value increments one counter per row, and its
+ * estimate is the smallest of its counters. An estimate never undercounts, and with probability
+ * {@code 1 - delta} it overcounts by at most {@code epsilon} times the total count, for a width of
+ * {@code e / epsilon} and a depth of {@code ln(1 / delta)}.
+ * The two halves of the {@link StringHash} of a value derive its counter in every row.
+ * Hashing is deterministic, so sketches of the same dimensions can be merged by adding their counters.
+ */
+public class CountMinSketch {
+
+    // === Constants ===
+    private static final String INVALID_EPSILON_ERR = "Epsilon must be between 0 and 1: ";
+    private static final String INVALID_DELTA_ERR = "Delta must be between 0 and 1: ";
+    private static final String MERGE_ERR = "Cannot merge sketches of different dimensions";
+
+    // === Fields ===
+    private final int width;
+    private final int depth;
+    private final long[][] counters;
+    private long total = 0;
+
+    /**
+     * Constructs a {@code CountMinSketch} sized for the given error bounds.
+     *
+     * @param epsilon the maximal overcount, relative to the total count
+     * @param delta   the probability that an estimate exceeds the maximal overcount
+     * @throws IllegalArgumentException if epsilon or delta is not between 0 and 1 (exclusive)
+     */
+    public CountMinSketch(double epsilon, double delta) {
+        if (!(epsilon > 0 && epsilon < 1)) {
+            throw new IllegalArgumentException(INVALID_EPSILON_ERR + epsilon);
+        }
+        if (!(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException(INVALID_DELTA_ERR + delta);
+        }
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counters = new long[depth][width];
+    }
+
+    /**
+     * Adds to the count of a value.
+     *
+     * @param value the value
+     * @param count the amount to add
+     * @return the new estimate of the value's count
+     */
+    public long add(String value, long count) {
+        long hash = StringHash.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> Integer.SIZE) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = Math.floorMod(h1 + row * h2, width);
+            long counter = counters[row][column] += count;
+            estimate = Math.min(estimate, counter);
+        }
+        total += count;
+        return estimate;
+    }
+
+    /**
+     * Returns the estimated count of a value.
+     *
+     * @param value the value
+     * @return the estimate, never below the exact count
+     */
+    public long estimate(String value) {
+        long hash = StringHash.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> Integer.SIZE) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row][Math.floorMod(h1 + row * h2, width)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns whether another sketch has the same dimensions, so it can be merged into this one.
+     *
+     * @param other the other sketch
+     * @return {@code true} if the sketches have the same width and depth
+     */
+    public boolean isCompatible(CountMinSketch other) {
+        return width == other.width && depth == other.depth;
+    }
+
+    /**
+     * Adds the counters of another sketch of the same dimensions.
+     *
+     * @param other the sketch to add
+     * @throws IllegalArgumentException if the sketches have different dimensions
+     */
+    public void merge(CountMinSketch other) {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException(MERGE_ERR);
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int column = 0; column < width; column++) {
+                counters[row][column] += other.counters[row][column];
+            }
+        }
+        total += other.total;
+    }
+
+    /**
+     * Returns the sum of all added counts.
+     *
+     * @return the total count
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the number of counters per row.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Writes the dimensions and the counters of the sketch.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeLong(total);
+        for (long[] row : counters) {
+            for (long counter : row) {
+                out.writeLong(counter);
+            }
+        }
+    }
+
+    /**
+     * Reads a sketch written by {@link #write(DataOutput)} and adds its counters to this sketch.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails, or the sketch has other dimensions
+     */
+    public void readAndAdd(DataInput in) throws IOException {
+        int otherWidth = in.readInt();
+        int otherDepth = in.readInt();
+        if (otherWidth != width || otherDepth != depth) {
+            throw new IOException(MERGE_ERR);
+        }
+        total += in.readLong();
+        for (long[] row : counters) {
+            for (int column = 0; column < width; column++) {
+                row[column] += in.readLong();
+            }
+        }
+    }
+}
@@ -2,14 +2,16 @@ package categories;
 
 import com.maxmind.geoip2.DatabaseReader;
 import com.maxmind.geoip2.exception.GeoIp2Exception;
-import com.maxmind.geoip2.model.CountryResponse;
+import main.BinaryIO;
+import main.CountryResolved;
+import main.Ipv4;
+import main.LogField;
 import main.ParsedLog;
 
-import java.io.File;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.net.InetAddress;
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * The {@code CountriesAnalyzer} class analyzes log entries to determine the countries
@@ -18,74 +20,136 @@ import java.util.regex.Pattern;
  *   - Counting occurrences of countries from log entries</li>
  *   - Tracking IPs that cannot be geolocated</li>
  *
- * The country information is resolved via the GeoLite2 Country database.
+ * The country information is resolved via the GeoLite2 Country database, through a {@link CountryLookup}
+ * that caches the answers per network, so repeated IPs don't reach the database. The lookup is shared by all the
+ * copies of an analyzer, so parallel workers and every request of the server reuse the networks cached so far.
  */
 public class CountriesAnalyzer implements CategoryAnalyzer {
 
-    /* Path to the GeoLite2 Country database file.*/
-    private static final String PATH_TO_DATABASE = "src/main/resources/GeoLite2-Country.mmdb";
-
     private static final String INVALID_LOG_MSG = "Invalid log: ";
+    private static final String INVALID_IP_MSG = "Invalid IP address: ";
+    private static final String GEOIP_ERR_MSG = "GeoIP lookup failed: ";
+    private static final String MERGE_ERR = "Cannot merge a CountriesAnalyzer with ";
+    private static final Set<LogField> REQUIRED_FIELDS =
+            Collections.unmodifiableSet(EnumSet.of(LogField.IP));
 
-    /* A map to store the count of each country found in the logs. */
-    private final Map<String, Integer> countryCounter = new HashMap<>();
+    /* A counter to store the count of each country found in the logs. */
+    private final CategoryCounter countryCounter = new CategoryCounter();
 
     /* A set to store IPs that could not be geolocated (e.g., invalid IPs). */
     private final Set<String> notFoundIps = new HashSet<>();
     private final DatabaseReader reader;
+    private final CountryLookup lookup;
     private String name;
 
     /**
-     * Creates a new CountriesAnalyzer with the given name and loads the GeoIP2 database.
+     * Creates a new CountriesAnalyzer with the given name, using the shared reader of the
+     * default GeoIP2 database configuration (see {@link GeoIpDatabase}).
      *
      * @param name the name of the category
      * @throws IOException if the database file can't be loaded
      */
     public CountriesAnalyzer(String name) throws IOException {
+        this(name, GeoIpDatabase.getShared());
+    }
+
+    /**
+     * Creates a new CountriesAnalyzer that uses an already opened GeoIP2 database.
+     * The {@link DatabaseReader} is thread-safe, so several analyzers and parallel workers can share it.
+     *
+     * @param name   the name of the category
+     * @param reader the opened GeoIP2 database reader, e.g. from {@link GeoIpDatabase}
+     */
+    public CountriesAnalyzer(String name, DatabaseReader reader) {
+        this(name, reader, new CountryLookup(reader));
+    }
+
+    private CountriesAnalyzer(String name, DatabaseReader reader, CountryLookup lookup) {
         this.name = name;
-        File database = new File(PATH_TO_DATABASE);
-        reader = new DatabaseReader.Builder(database).build();
+        this.reader = reader;
+        this.lookup = lookup;
     }
 
     /**
      * Adds a log to the country counter by looking up the country of its IP address.
-     * If the IP is invalid or can't be found, it's ignored or stored in notFoundIps.
+     * If the IP is invalid it's ignored, and if it can't be found in the database it's stored in notFoundIps.
+     * A country resolved in advance, by a log entry that is {@link CountryResolved} such as a row of a compiled
+     * log store, is counted without a lookup.
      *
      * @param log the log to process
      */
     public void addLogToCounter(ParsedLog log) {
-        try {
+        if (log instanceof CountryResolved resolved && resolved.isCountryResolved()) {
+            String country = resolved.getResolvedCountry();
+            if (country != null) {
+                countryCounter.increment(country);
+            } else {
+                notFoundIps.add(log.getIp());
+            }
+            return;
+        }
+        long address = log.getIpAddress();
+        if (address == Ipv4.INVALID) {
             String ip = log.getIp();
-            if (ip == null) {
-                return;
+            if (ip != null) {
+                System.err.println(INVALID_LOG_MSG + INVALID_IP_MSG + ip);
             }
-            String country = getCountryFromIP(ip, reader);
-            if (country != null) {
-                int newVal = countryCounter.getOrDefault(country, 0) + 1;
-                countryCounter.put(country, newVal);
+            return;
+        }
+        try {
+            int countryId = lookup.lookup((int) address);
+            if (countryId >= 0) {
+                countryCounter.increment(lookup.getCountryName(countryId));
+            } else if (countryId == CountryLookup.NOT_FOUND) {
+                notFoundIps.add(log.getIp());
             }
         } catch (IOException ioE) {
             System.err.println(INVALID_LOG_MSG + ioE.getMessage());
         } catch (GeoIp2Exception g) {
-            notFoundIps.add(g.getMessage());
+            System.err.println(GEOIP_ERR_MSG + g.getMessage());
         }
+    }
 
+    /** {@inheritDoc} */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            addLogToCounter(batch[i]);
+        }
     }
 
     /**
-     * Looks up the country name for a given IP address.
+     * Returns the country of the log's IP address, without counting it or reporting failures.
      *
-     * @param ip the IP address
-     * @return the country name, or null if not found
-     * @throws IOException if the lookup fails
-     * @throws GeoIp2Exception if the lookup fails
+     * @param log the log to look up
+     * @return the country name, or {@code null} if the IP is missing, invalid or has no known country
      */
-    private String getCountryFromIP(String ip, DatabaseReader reader) throws IOException, GeoIp2Exception {
-        InetAddress ipAddress = InetAddress.getByName(ip);
-        CountryResponse response = reader.country(ipAddress);
-        return response.getCountry().getName();
+    @Override
+    public String getCategoryValue(ParsedLog log) {
+        if (log instanceof CountryResolved resolved && resolved.isCountryResolved()) {
+            return resolved.getResolvedCountry();
+        }
+        long address = log.getIpAddress();
+        if (address == Ipv4.INVALID) {
+            return null;
+        }
+        try {
+            int countryId = lookup.lookup((int) address);
+            return countryId >= 0 ? lookup.getCountryName(countryId) : null;
+        } catch (IOException | GeoIp2Exception e) {
+            return null;
+        }
     }
 
+    /**
+     * Returns {@code true}, since every log entry is counted under at most its country.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean supportsCategoryValue() {
+        return true;
+    }
 
     /**
      * Returns the map of countries and their respective counts.
@@ -94,7 +158,7 @@ public class CountriesAnalyzer implements CategoryAnalyzer {
      */
     @Override
     public Map<String, Integer> getCounter() {
-        return countryCounter;
+        return countryCounter.asMap();
     }
 
     /**
@@ -107,6 +171,41 @@ public class CountriesAnalyzer implements CategoryAnalyzer {
         return name;
     }
 
+    /**
+     * Returns the fields this analyzer reads: only the IP.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return REQUIRED_FIELDS;
+    }
+
+    /**
+     * Creates a new {@code CountriesAnalyzer} with the same name and an empty counter,
+     * sharing this analyzer's GeoIP2 database reader and its thread-safe {@link CountryLookup}.
+     *
+     * @return a new, empty {@code CountriesAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        return new CountriesAnalyzer(name, reader, lookup);
+    }
+
+    /**
+     * Adds the country counts and the not found IPs of another {@code CountriesAnalyzer} into this one.
+     *
+     * @param other the {@code CountriesAnalyzer} to merge into this one
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof CountriesAnalyzer otherCountries)) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        countryCounter.addAll(otherCountries.countryCounter);
+        notFoundIps.addAll(otherCountries.notFoundIps);
+    }
+
     /**
      * Returns the set of IP addresses that could not be geolocated.
      *
@@ -115,4 +214,34 @@ public class CountriesAnalyzer implements CategoryAnalyzer {
     public Set<String> getNotFoundIps() {
         return notFoundIps;
     }
+
+    /**
+     * Writes the counts of this analyzer and the IPs that were not found to a snapshot.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        countryCounter.write(out);
+        out.writeInt(notFoundIps.size());
+        for (String ip : notFoundIps) {
+            BinaryIO.writeString(out, ip);
+        }
+    }
+
+    /**
+     * Adds the counts and the IPs that were not found of a snapshot to this analyzer.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        countryCounter.readAndAdd(in);
+        int notFound = in.readInt();
+        for (int i = 0; i < notFound; i++) {
+            notFoundIps.add(BinaryIO.readString(in));
+        }
+    }
 }
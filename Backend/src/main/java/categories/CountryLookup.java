@@ -0,0 +1,172 @@
+package categories;
+
+import com.maxmind.db.Network;
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.maxmind.geoip2.model.CountryResponse;
+import main.Ipv4;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code CountryLookup} class resolves IPv4 addresses to countries in front of a GeoIP2 {@link DatabaseReader}.
+ * Every database answer reports the network it matched, so the answer is cached for the whole network prefix:
+ * any later address of the same network is resolved without touching the database. A small direct-mapped
+ * cache of recent addresses sits in front of the prefix cache, so a repeated address costs about one array probe.
+ * Countries are returned as small int ids; {@link #getCountryName(int)} maps them to interned country names.
+ * An instance is thread-safe, so parallel workers and concurrent requests share one lookup and its cached networks.
+ * Lookups never block: a cache entry is a single {@code long}, and the rare additions of networks and countries
+ * are serialized on the lookup. Two threads that miss the same network both query the database, and cache the same
+ * answer.
+ */
+public class CountryLookup {
+
+    /** The id returned for an address that is not in the database. */
+    public static final int NOT_FOUND = -1;
+
+    /** The id returned for an address that is in the database but has no country (e.g. a satellite provider). */
+    public static final int NO_COUNTRY = -2;
+
+    // === Constants ===
+    private static final int RECENT_CACHE_BITS = 14;
+    private static final int RECENT_CACHE_SIZE = 1 << RECENT_CACHE_BITS;
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+    /* The address 0 with an id that no lookup returns. */
+    private static final long EMPTY_SLOT = Integer.MIN_VALUE & 0xFFFFFFFFL;
+    private static final long UNSIGNED_MASK = 0xFFFFFFFFL;
+    private static final int MAX_PREFIX_LENGTH = 32;
+
+    /* Canonical country names shared by all lookups, so every country name exists once on the heap. */
+    private static final Map<String, String> internedNames = new ConcurrentHashMap<>();
+
+    // === Fields ===
+    private final DatabaseReader reader;
+
+    /* Direct-mapped cache of recent addresses: the address in the high half of a slot and its country id in the
+       low half, so a reader never sees the id of another address. */
+    private final AtomicLongArray recentAddresses = new AtomicLongArray(RECENT_CACHE_SIZE);
+
+    /* Country ids of matched networks, one map per prefix length, keyed by the network address.
+       A map is published by the volatile write of knownPrefixLengths that follows its creation. */
+    private final IntIntMap[] networksByPrefix = new IntIntMap[MAX_PREFIX_LENGTH + 1];
+
+    /* The prefix lengths that have cached networks, longest first, replaced on every addition. */
+    private volatile int[] knownPrefixLengths = new int[0];
+
+    /* The country dictionary: the names by id, replaced on every addition, and the ids by name under the lock. */
+    private volatile String[] countryNames = new String[0];
+    private final Map<String, Integer> countryIds = new HashMap<>();
+
+    /**
+     * Constructs a {@code CountryLookup} on top of the given database reader.
+     *
+     * @param reader the GeoIP2 country database reader
+     */
+    public CountryLookup(DatabaseReader reader) {
+        this.reader = reader;
+        for (int slot = 0; slot < RECENT_CACHE_SIZE; slot++) {
+            recentAddresses.set(slot, EMPTY_SLOT);
+        }
+    }
+
+    /**
+     * Returns the country id of an IPv4 address.
+     *
+     * @param address the IPv4 address, as returned by {@link Ipv4#parse(CharSequence)}
+     * @return the country id, {@link #NOT_FOUND} or {@link #NO_COUNTRY}
+     * @throws IOException     if reading the database fails
+     * @throws GeoIp2Exception if the database can't answer country queries
+     */
+    public int lookup(int address) throws IOException, GeoIp2Exception {
+        int slot = (address * HASH_MULTIPLIER) >>> (Integer.SIZE - RECENT_CACHE_BITS);
+        long recent = recentAddresses.get(slot);
+        if ((int) (recent >>> Integer.SIZE) == address && recent != EMPTY_SLOT) {
+            return (int) recent;
+        }
+        int countryId = lookupNetwork(address);
+        recentAddresses.set(slot, (long) address << Integer.SIZE | (countryId & UNSIGNED_MASK));
+        return countryId;
+    }
+
+    /**
+     * Returns the country id of an address from the network cache, querying the database on a miss.
+     */
+    private int lookupNetwork(int address) throws IOException, GeoIp2Exception {
+        for (int prefixLength : knownPrefixLengths) {
+            int countryId = networksByPrefix[prefixLength].get(Ipv4.mask(address, prefixLength));
+            if (countryId != IntIntMap.NO_VALUE) {
+                return countryId;
+            }
+        }
+        Optional<CountryResponse> response = reader.tryCountry(Ipv4.toInetAddress(address));
+        if (response.isEmpty()) {
+            // the reader does not report the network of a missing address, so only the address itself is cached
+            return NOT_FOUND;
+        }
+        String name = response.get().getCountry().getName();
+        int countryId = name == null ? NO_COUNTRY : countryIdOf(name);
+        cacheNetwork(response.get().getTraits().getNetwork(), countryId);
+        return countryId;
+    }
+
+    /**
+     * Caches the country id of a matched IPv4 network.
+     */
+    private synchronized void cacheNetwork(Network network, int countryId) {
+        if (network == null || !(network.getNetworkAddress() instanceof Inet4Address)) {
+            return;
+        }
+        int prefixLength = network.getPrefixLength();
+        if (prefixLength < 0 || prefixLength > MAX_PREFIX_LENGTH) {
+            return;
+        }
+        int networkAddress = (int) Ipv4.fromInetAddress(network.getNetworkAddress());
+        if (networksByPrefix[prefixLength] == null) {
+            networksByPrefix[prefixLength] = new IntIntMap();
+            addKnownPrefixLength(prefixLength);
+        }
+        networksByPrefix[prefixLength].put(Ipv4.mask(networkAddress, prefixLength), countryId);
+    }
+
+    private void addKnownPrefixLength(int prefixLength) {
+        int[] lengths = Arrays.copyOf(knownPrefixLengths, knownPrefixLengths.length + 1);
+        lengths[lengths.length - 1] = prefixLength;
+        Arrays.sort(lengths);
+        // longest prefixes first, they are the most specific networks
+        for (int i = 0, j = lengths.length - 1; i < j; i++, j--) {
+            int tmp = lengths[i];
+            lengths[i] = lengths[j];
+            lengths[j] = tmp;
+        }
+        knownPrefixLengths = lengths;
+    }
+
+    private synchronized int countryIdOf(String name) {
+        Integer id = countryIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        String[] names = Arrays.copyOf(countryNames, countryNames.length + 1);
+        names[names.length - 1] = internedNames.computeIfAbsent(name, key -> key);
+        countryIds.put(names[names.length - 1], names.length - 1);
+        countryNames = names;
+        return names.length - 1;
+    }
+
+    /**
+     * Returns the interned name of a country id.
+     *
+     * @param countryId a country id returned by {@link #lookup(int)}
+     * @return the country name
+     */
+    public String getCountryName(int countryId) {
+        return countryNames[countryId];
+    }
+}
@@ -0,0 +1,467 @@
+package categories;
+
+import main.BinaryIO;
+import main.LogField;
+import main.ParsedLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * The {@code CubeAnalyzer} class counts the log entries of every combination of the values of several categories,
+ * e.g. country x operating system x browser, so the counts can be sliced on some categories and rolled up over
+ * the others after the logs were read, instead of reading the logs again for every breakdown.
+ * Every category is a dimension with its own dictionary of values, so a value becomes a small id; the ids of a log
+ * entry are packed into one {@code long} key and counted in a primitive hash map. Only the combinations that occur
+ * take memory, about 16 to 32 bytes each, and a log entry is counted without allocating.
+ * A dimension has {@code 63 / dimensions} bits, up to 30; the id {@code 0} stands for a missing value, and once a
+ * dimension runs out of ids its new values share the last id, counted as {@value #OTHER_VALUES}.
+ * The values come from {@link CategoryAnalyzer#getCategoryValue(ParsedLog)} of other analyzers, which never count
+ * anything themselves.
+ */
+public class CubeAnalyzer implements CategoryAnalyzer {
+
+    // === Constants ===
+    /** The largest number of dimensions of a cube. */
+    public static final int MAX_DIMENSIONS = 4;
+    /** The value counted for the new values of a dimension that ran out of ids. */
+    public static final String OTHER_VALUES = "(other values)";
+    /** The separator of the dimension values in the keys of {@link #getCounter()}. */
+    public static final String VALUE_SEPARATOR = " / ";
+    private static final int MAX_BITS_PER_DIMENSION = 30;
+    private static final int MISSING = 0;
+    private static final String INVALID_DIMENSIONS_ERR = "A cube needs between 1 and " + MAX_DIMENSIONS
+            + " dimensions: ";
+    private static final String DUPLICATE_DIMENSION_ERR = "Duplicate cube dimension: ";
+    private static final String UNKNOWN_DIMENSION_ERR = "Unknown cube dimension: ";
+    private static final String MERGE_ERR = "Cannot merge a CubeAnalyzer with ";
+    private static final String INVALID_SNAPSHOT_ERR = "Cube snapshot has another number of dimensions: ";
+
+    // === Fields ===
+    private final String name;
+    private final CategoryAnalyzer[] dimensions;
+    private final List<String> dimensionNames;
+    private final int bitsPerDimension;
+    private final long idMask;
+    private final int maxId;
+    private final Set<LogField> requiredFields;
+
+    /* The ids of the values of every dimension, and the values by id; the value of the id 0 is null. */
+    private final List<Map<String, Integer>> ids = new ArrayList<>();
+    private final List<List<String>> values = new ArrayList<>();
+
+    /* The count of every packed combination of ids; the first dimension has the highest bits. */
+    private final LongCountMap cells = new LongCountMap();
+
+    /**
+     * Constructs an empty {@code CubeAnalyzer} over the values of other analyzers.
+     *
+     * @param name       the category name of the cube
+     * @param dimensions the analyzers that extract the value of every dimension, named by their category names
+     * @throws IllegalArgumentException if there are no or more than {@link #MAX_DIMENSIONS} dimensions, two
+     *                                  dimensions have the same name, or a dimension does not count single values
+     */
+    public CubeAnalyzer(String name, List<CategoryAnalyzer> dimensions) {
+        if (dimensions.isEmpty() || dimensions.size() > MAX_DIMENSIONS) {
+            throw new IllegalArgumentException(INVALID_DIMENSIONS_ERR + dimensions.size());
+        }
+        this.name = name;
+        this.dimensions = dimensions.toArray(new CategoryAnalyzer[0]);
+        List<String> names = new ArrayList<>();
+        Set<LogField> fields = EnumSet.noneOf(LogField.class);
+        for (CategoryAnalyzer dimension : dimensions) {
+            CategoryAnalyzer.requireCategoryValue(dimension);
+            if (names.contains(dimension.getCategoryName())) {
+                throw new IllegalArgumentException(DUPLICATE_DIMENSION_ERR + dimension.getCategoryName());
+            }
+            names.add(dimension.getCategoryName());
+            Set<LogField> dimensionFields = dimension.getRequiredFields();
+            fields.addAll(dimensionFields == null ? EnumSet.allOf(LogField.class) : dimensionFields);
+            ids.add(new HashMap<>());
+            List<String> dimensionValues = new ArrayList<>();
+            dimensionValues.add(null);
+            values.add(dimensionValues);
+        }
+        this.dimensionNames = Collections.unmodifiableList(names);
+        this.requiredFields = fields;
+        this.bitsPerDimension = Math.min(MAX_BITS_PER_DIMENSION, (Long.SIZE - 1) / dimensions.size());
+        this.idMask = (1L << bitsPerDimension) - 1;
+        this.maxId = (int) idMask;
+    }
+
+    /**
+     * Counts the combination of the dimension values of a parsed log entry.
+     *
+     * @param log the parsed log entry
+     */
+    @Override
+    public void addLogToCounter(ParsedLog log) {
+        long key = 0;
+        for (int dimension = 0; dimension < dimensions.length; dimension++) {
+            key = key << bitsPerDimension | idOf(dimension, dimensions[dimension].getCategoryValue(log));
+        }
+        cells.add(key, 1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            addLogToCounter(batch[i]);
+        }
+    }
+
+    /**
+     * Returns the id of a value of a dimension, adding the value to the dictionary if it is new.
+     *
+     * @param dimension the index of the dimension
+     * @param value     the value, or {@code null} if it is missing
+     * @return the id of the value
+     */
+    private int idOf(int dimension, String value) {
+        if (value == null) {
+            return MISSING;
+        }
+        Integer id = ids.get(dimension).get(value);
+        if (id != null) {
+            return id;
+        }
+        List<String> dimensionValues = values.get(dimension);
+        if (dimensionValues.size() >= maxId) {
+            return overflowId(dimension);
+        }
+        int newId = dimensionValues.size();
+        dimensionValues.add(value);
+        ids.get(dimension).put(value, newId);
+        return newId;
+    }
+
+    /**
+     * Returns the id shared by the values of a dimension that ran out of ids, adding it to the dictionary as
+     * {@value #OTHER_VALUES} the first time.
+     *
+     * @param dimension the index of the dimension
+     * @return the last id
+     */
+    private int overflowId(int dimension) {
+        List<String> dimensionValues = values.get(dimension);
+        if (dimensionValues.size() == maxId) {
+            dimensionValues.add(OTHER_VALUES);
+        }
+        return maxId;
+    }
+
+    /**
+     * Returns the shift of the id of a dimension in a packed key.
+     */
+    private int shiftOf(int dimension) {
+        return (dimensions.length - 1 - dimension) * bitsPerDimension;
+    }
+
+    /**
+     * Returns the index of a dimension.
+     *
+     * @param dimensionName the category name of the dimension
+     * @return the index of the dimension
+     * @throws IllegalArgumentException if no dimension has that name
+     */
+    private int dimensionOf(String dimensionName) {
+        int dimension = dimensionNames.indexOf(dimensionName);
+        if (dimension < 0) {
+            throw new IllegalArgumentException(UNKNOWN_DIMENSION_ERR + dimensionName);
+        }
+        return dimension;
+    }
+
+    /**
+     * Counts the log entries of every combination of values of some dimensions, among the log entries with the
+     * given values of other dimensions; the dimensions that are neither sliced nor grouped are rolled up.
+     * Log entries missing the value of a grouped dimension are left out, while missing values of rolled up
+     * dimensions are counted.
+     *
+     * @param slice   the value of every sliced dimension, by dimension name
+     * @param groupBy the names of the grouped dimensions
+     * @return the counts by the values of the grouped dimensions, in the order of {@code groupBy}; a single count
+     * under the empty list if {@code groupBy} is empty and any log entry matches the slice
+     * @throws IllegalArgumentException if a dimension is unknown, or grouped twice
+     */
+    public Map<List<String>, Long> query(Map<String, String> slice, List<String> groupBy) {
+        int[] grouped = new int[groupBy.size()];
+        long groupMask = 0;
+        for (int i = 0; i < grouped.length; i++) {
+            grouped[i] = dimensionOf(groupBy.get(i));
+            long mask = idMask << shiftOf(grouped[i]);
+            if ((groupMask & mask) != 0) {
+                throw new IllegalArgumentException(DUPLICATE_DIMENSION_ERR + groupBy.get(i));
+            }
+            groupMask |= mask;
+        }
+        long sliceMask = 0;
+        long sliceKey = 0;
+        for (Map.Entry<String, String> entry : slice.entrySet()) {
+            int dimension = dimensionOf(entry.getKey());
+            Integer id = ids.get(dimension).get(entry.getValue());
+            if (id == null) {
+                return Map.of();
+            }
+            sliceMask |= idMask << shiftOf(dimension);
+            sliceKey |= (long) id << shiftOf(dimension);
+        }
+
+        LongCountMap groups = new LongCountMap();
+        long finalGroupMask = groupMask;
+        long finalSliceMask = sliceMask;
+        long finalSliceKey = sliceKey;
+        cells.forEach((key, count) -> {
+            if ((key & finalSliceMask) != finalSliceKey) {
+                return;
+            }
+            for (int dimension : grouped) {
+                if ((key >>> shiftOf(dimension) & idMask) == MISSING) {
+                    return;
+                }
+            }
+            groups.add(key & finalGroupMask, count);
+        });
+        Map<List<String>, Long> result = new HashMap<>();
+        groups.forEach((key, count) -> {
+            String[] groupValues = new String[grouped.length];
+            for (int i = 0; i < grouped.length; i++) {
+                groupValues[i] = values.get(grouped[i]).get((int) (key >>> shiftOf(grouped[i]) & idMask));
+            }
+            result.put(List.of(groupValues), count);
+        });
+        return result;
+    }
+
+    /**
+     * Counts the log entries of every combination of values of some dimensions, rolling up the others.
+     *
+     * @param groupBy the names of the grouped dimensions
+     * @return the counts by the values of the grouped dimensions, in the order of {@code groupBy}
+     * @throws IllegalArgumentException if a dimension is unknown, or grouped twice
+     * @see #query(Map, List)
+     */
+    public Map<List<String>, Long> rollUp(List<String> groupBy) {
+        return query(Map.of(), groupBy);
+    }
+
+    /**
+     * Counts the log entries with the given values of some dimensions.
+     *
+     * @param slice the value of every sliced dimension, by dimension name
+     * @return the number of matching log entries
+     * @throws IllegalArgumentException if a dimension is unknown
+     */
+    public long count(Map<String, String> slice) {
+        return query(slice, List.of()).getOrDefault(List.of(), 0L);
+    }
+
+    /**
+     * Returns the names of the dimensions, in the order of the packed keys.
+     *
+     * @return the category names of the dimensions
+     */
+    public List<String> getDimensionNames() {
+        return dimensionNames;
+    }
+
+    /**
+     * Returns the number of combinations of ids that were counted, including those with missing values.
+     *
+     * @return the number of populated cells
+     */
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    /**
+     * Returns the count of every combination of values of all the dimensions, the values joined with
+     * {@link #VALUE_SEPARATOR}; combinations with a missing value are left out.
+     *
+     * @return the counts by combination, from the most to the least frequent
+     */
+    @Override
+    public Map<String, Integer> getCounter() {
+        List<Map.Entry<List<String>, Long>> entries = new ArrayList<>(rollUp(dimensionNames).entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Map<String, Integer> counter = new LinkedHashMap<>();
+        for (Map.Entry<List<String>, Long> entry : entries) {
+            counter.put(String.join(VALUE_SEPARATOR, entry.getKey()),
+                    (int) Math.min(entry.getValue(), Integer.MAX_VALUE));
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the category name of the cube.
+     *
+     * @return the category name
+     */
+    @Override
+    public String getCategoryName() {
+        return name;
+    }
+
+    /**
+     * Returns the fields the dimensions read.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return requiredFields;
+    }
+
+    /**
+     * Creates a new, empty {@code CubeAnalyzer} with the same name and empty copies of its dimensions, so
+     * partial cubes counted by other threads never share a dimension that keeps state, such as a country lookup.
+     *
+     * @return a new, empty {@code CubeAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        List<CategoryAnalyzer> dimensionCopies = new ArrayList<>(dimensions.length);
+        for (CategoryAnalyzer dimension : dimensions) {
+            dimensionCopies.add(dimension.createEmptyCopy());
+        }
+        return new CubeAnalyzer(name, dimensionCopies);
+    }
+
+    /**
+     * Adds the counts of another {@code CubeAnalyzer} with the same dimensions into this one; the ids of the other
+     * cube are translated through their values, since both dictionaries grew in their own order.
+     *
+     * @param other the analyzer to merge
+     * @throws IllegalArgumentException if the other analyzer is not a {@code CubeAnalyzer} with the same dimensions
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof CubeAnalyzer otherCube) || !otherCube.dimensionNames.equals(dimensionNames)) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        int[][] translations = new int[dimensions.length][];
+        for (int dimension = 0; dimension < dimensions.length; dimension++) {
+            translations[dimension] = translate(dimension, otherCube.values.get(dimension));
+        }
+        otherCube.cells.forEach((key, count) -> cells.add(translate(key, translations), count));
+    }
+
+    /**
+     * Returns the ids in this cube of the values of another dictionary of a dimension, adding the new values.
+     *
+     * @param dimension   the index of the dimension
+     * @param otherValues the values of the other dictionary by id, the first one being the missing value
+     * @return the ids in this cube by id in the other dictionary
+     */
+    private int[] translate(int dimension, List<String> otherValues) {
+        int[] translation = new int[otherValues.size()];
+        // the other values are distinct, so if the last id of the other dictionary is the overflow id, this
+        // dictionary is full by the time it is translated
+        for (int id = 1; id < translation.length; id++) {
+            translation[id] = id == maxId ? overflowId(dimension) : idOf(dimension, otherValues.get(id));
+        }
+        return translation;
+    }
+
+    /**
+     * Translates the ids of a packed key of another cube.
+     *
+     * @param key          the packed key of the other cube
+     * @param translations the ids in this cube by id in the other cube, for every dimension
+     * @return the packed key in this cube
+     */
+    private long translate(long key, int[][] translations) {
+        long translated = 0;
+        for (int dimension = 0; dimension < dimensions.length; dimension++) {
+            int id = (int) (key >>> shiftOf(dimension) & idMask);
+            translated = translated << bitsPerDimension | translations[dimension][id];
+        }
+        return translated;
+    }
+
+    /**
+     * Writes the dictionaries of the dimensions and the count of every populated cell to a snapshot.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        out.writeInt(dimensions.length);
+        for (List<String> dimensionValues : values) {
+            out.writeInt(dimensionValues.size() - 1);
+            for (int id = 1; id < dimensionValues.size(); id++) {
+                BinaryIO.writeString(out, dimensionValues.get(id));
+            }
+        }
+        out.writeInt(cells.size());
+        IOException[] failure = new IOException[1];
+        cells.forEach((key, count) -> {
+            if (failure[0] == null) {
+                try {
+                    out.writeLong(key);
+                    out.writeLong(count);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Adds the counts of a snapshot to this analyzer, translating its ids through its dictionaries.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails, or the snapshot has another number of dimensions
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        int dimensionCount = in.readInt();
+        if (dimensionCount != dimensions.length) {
+            throw new IOException(INVALID_SNAPSHOT_ERR + dimensionCount);
+        }
+        int[][] translations = new int[dimensions.length][];
+        for (int dimension = 0; dimension < dimensions.length; dimension++) {
+            int size = in.readInt();
+            List<String> snapshotValues = new ArrayList<>(size + 1);
+            snapshotValues.add(null);
+            for (int i = 0; i < size; i++) {
+                snapshotValues.add(BinaryIO.readString(in));
+            }
+            translations[dimension] = translate(dimension, snapshotValues);
+        }
+        int cellCount = in.readInt();
+        for (int i = 0; i < cellCount; i++) {
+            long key = in.readLong();
+            cells.add(translate(key, translations), in.readLong());
+        }
+    }
+
+    /**
+     * Returns a tag of the formats of the dimensions, in order.
+     *
+     * @return the snapshot format tag
+     */
+    @Override
+    public String getSnapshotFormat() {
+        StringJoiner format = new StringJoiner(", ", getClass().getName() + "(", ")");
+        for (CategoryAnalyzer dimension : dimensions) {
+            format.add(dimension.getSnapshotFormat());
+        }
+        return format.toString();
+    }
+}
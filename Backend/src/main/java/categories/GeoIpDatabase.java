@@ -0,0 +1,108 @@
+package categories;
+
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.NoCache;
+import com.maxmind.db.NodeCache;
+import com.maxmind.db.Reader;
+import com.maxmind.geoip2.DatabaseReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@code GeoIpDatabase} class opens GeoIP2 {@link DatabaseReader}s with a configurable database path,
+ * file mode and node cache, and keeps one shared reader per configuration.
+ * A {@link DatabaseReader} is thread-safe, so a single shared reader can serve every
+ * {@link CountriesAnalyzer} and every worker thread of a run.
+ */
+public final class GeoIpDatabase {
+
+    /** Path to the GeoLite2 Country database file used when no other path is configured. */
+    public static final String DEFAULT_PATH = "src/main/resources/GeoLite2-Country.mmdb";
+
+    /** The file mode used when no other mode is configured: the database file is memory-mapped. */
+    public static final Reader.FileMode DEFAULT_FILE_MODE = Reader.FileMode.MEMORY_MAPPED;
+
+    /** The node cache size used when no other size is configured: {@code 0} disables the cache. */
+    public static final int DEFAULT_CACHE_SIZE = 0;
+
+    private static final String MMAP_MODE_NAME = "mmap";
+    private static final String MEMORY_MODE_NAME = "memory";
+    private static final String UNKNOWN_MODE_ERR = "Unknown GeoIP file mode (expected mmap or memory): ";
+    private static final String INVALID_CACHE_SIZE_ERR = "GeoIP cache size must not be negative: ";
+
+    /* The shared readers, by configuration. */
+    private static final Map<String, DatabaseReader> sharedReaders = new HashMap<>();
+
+    private GeoIpDatabase() {
+    }
+
+    /**
+     * Opens a new database reader.
+     *
+     * @param path      the path to the GeoIP2 database file
+     * @param fileMode  {@link Reader.FileMode#MEMORY_MAPPED} to map the file, or {@link Reader.FileMode#MEMORY}
+     *                  to load it fully into the heap
+     * @param cacheSize the number of decoded database nodes to cache, {@code 0} to disable the cache
+     * @return the new reader
+     * @throws IOException if the database file can't be loaded
+     */
+    public static DatabaseReader open(String path, Reader.FileMode fileMode, int cacheSize) throws IOException {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException(INVALID_CACHE_SIZE_ERR + cacheSize);
+        }
+        NodeCache cache = cacheSize == 0 ? NoCache.getInstance() : new CHMCache(cacheSize);
+        return new DatabaseReader.Builder(new File(path))
+                .fileMode(fileMode)
+                .withCache(cache)
+                .build();
+    }
+
+    /**
+     * Returns the shared reader of the given configuration, opening it on first use.
+     *
+     * @param path      the path to the GeoIP2 database file
+     * @param fileMode  the file mode of the reader
+     * @param cacheSize the number of decoded database nodes to cache, {@code 0} to disable the cache
+     * @return the shared reader
+     * @throws IOException if the database file can't be loaded
+     */
+    public static synchronized DatabaseReader getShared(String path, Reader.FileMode fileMode, int cacheSize)
+            throws IOException {
+        String key = new File(path).getAbsolutePath() + '|' + fileMode + '|' + cacheSize;
+        DatabaseReader reader = sharedReaders.get(key);
+        if (reader == null) {
+            reader = open(path, fileMode, cacheSize);
+            sharedReaders.put(key, reader);
+        }
+        return reader;
+    }
+
+    /**
+     * Returns the shared reader of the default configuration.
+     *
+     * @return the shared reader
+     * @throws IOException if the database file can't be loaded
+     */
+    public static DatabaseReader getShared() throws IOException {
+        return getShared(DEFAULT_PATH, DEFAULT_FILE_MODE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Parses a file mode name, {@code mmap} or {@code memory}.
+     *
+     * @param name the file mode name
+     * @return the file mode
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static Reader.FileMode parseFileMode(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case MMAP_MODE_NAME -> Reader.FileMode.MEMORY_MAPPED;
+            case MEMORY_MODE_NAME -> Reader.FileMode.MEMORY;
+            default -> throw new IllegalArgumentException(UNKNOWN_MODE_ERR + name);
+        };
+    }
+}
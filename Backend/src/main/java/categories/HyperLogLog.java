@@ -0,0 +1,146 @@
+package categories;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The {@code HyperLogLog} class estimates the number of distinct strings added to it in fixed memory.
+ * The first {@code precision} bits of a string's hash pick one of {@code 2^precision} one-byte registers,
+ * which keeps the highest position of the first set bit among the remaining hash bits. The standard error
+ * of the estimate is about {@code 1.04 / sqrt(2^precision)}: 1.6% for the default 4 KB of registers.
+ * Sketches of the same precision merge by keeping the larger register, which gives exactly the sketch
+ * of the union of their strings.
+ */
+public class HyperLogLog {
+
+    // === Constants ===
+    public static final int DEFAULT_PRECISION = 12;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+    private static final String INVALID_PRECISION_ERR = "Precision must be between " + MIN_PRECISION + " and "
+            + MAX_PRECISION + ": ";
+    private static final String MERGE_ERR = "Cannot merge sketches of different precisions";
+
+    // === Fields ===
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Constructs an empty {@code HyperLogLog} with {@link #DEFAULT_PRECISION}.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructs an empty {@code HyperLogLog}.
+     *
+     * @param precision the number of hash bits that pick a register, so the sketch has {@code 2^precision} registers
+     * @throws IllegalArgumentException if the precision is not between {@link #MIN_PRECISION} and
+     *                                  {@link #MAX_PRECISION}
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(INVALID_PRECISION_ERR + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a string to the sketch.
+     *
+     * @param value the string
+     */
+    public void add(String value) {
+        long hash = StringHash.hash64(value);
+        int register = (int) (hash >>> (Long.SIZE - precision));
+        // a sentinel bit below the remaining bits caps the rank when they are all zero
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct strings added.
+     * Small cardinalities, where many registers are still empty, are estimated by linear counting instead.
+     *
+     * @return the estimate
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int emptyRegisters = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                emptyRegisters++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && emptyRegisters > 0) {
+            estimate = m * Math.log((double) m / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Adds the strings of another sketch of the same precision to this sketch.
+     *
+     * @param other the sketch to add
+     * @throws IllegalArgumentException if the sketches have different precisions
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(MERGE_ERR);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of hash bits that pick a register.
+     *
+     * @return the precision
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Writes the precision and the registers of the sketch.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(precision);
+        out.write(registers);
+    }
+
+    /**
+     * Reads a sketch written by {@link #write(DataOutput)} and merges it into this sketch.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails, or the sketch has another precision
+     */
+    public void readAndMerge(DataInput in) throws IOException {
+        int otherPrecision = in.readByte();
+        if (otherPrecision != precision) {
+            throw new IOException(MERGE_ERR);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            byte register = in.readByte();
+            if (register > registers[i]) {
+                registers[i] = register;
+            }
+        }
+    }
+}
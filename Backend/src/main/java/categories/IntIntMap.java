@@ -0,0 +1,126 @@
+package categories;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code IntIntMap} class maps {@code int} keys to {@code int} values with open addressing and linear probing.
+ * Every entry is packed into a single {@code long} slot, the key in the high half and the value in the low half,
+ * so a lookup allocates nothing and reads one array element per probe, instead of the entry and the boxed key and
+ * value of a {@link java.util.HashMap}. Empty slots hold the value {@link #NO_VALUE}, which is why it can't be
+ * stored. The table doubles once it is half full.
+ * Reads may run concurrently with each other and with one writer: a slot is written at once, entries are never
+ * removed, and a grown table is only published once it holds every entry. Writers must be serialized by the caller.
+ */
+final class IntIntMap {
+
+    /** The value returned for a missing key, which can't be stored. */
+    static final int NO_VALUE = Integer.MIN_VALUE;
+
+    // === Constants ===
+    private static final long EMPTY = NO_VALUE & 0xFFFFFFFFL;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final String RESERVED_VALUE_ERR = "The value is reserved for missing keys: ";
+
+    // === Fields ===
+    private volatile AtomicLongArray slots;
+    private int size = 0;
+
+    /**
+     * Constructs an empty {@code IntIntMap}.
+     */
+    IntIntMap() {
+        slots = emptyTable(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Maps a key to a value, replacing its previous value.
+     *
+     * @param key   the key
+     * @param value the value
+     * @throws IllegalArgumentException if the value is {@link #NO_VALUE}
+     */
+    void put(int key, int value) {
+        if (value == NO_VALUE) {
+            throw new IllegalArgumentException(RESERVED_VALUE_ERR + value);
+        }
+        AtomicLongArray table = slots;
+        int slot = slotOf(table, key);
+        boolean added = (int) table.get(slot) == NO_VALUE;
+        table.set(slot, pack(key, value));
+        if (added && ++size * 2 > table.length()) {
+            grow(table);
+        }
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or {@link #NO_VALUE} if the key is missing
+     */
+    int get(int key) {
+        AtomicLongArray table = slots;
+        return (int) table.get(slotOf(table, key));
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot of a key in a table: the slot holding it, or the empty slot it would be added to.
+     */
+    private static int slotOf(AtomicLongArray table, int key) {
+        int mask = table.length() - 1;
+        int slot = mix(key) & mask;
+        long entry = table.get(slot);
+        while ((int) entry != NO_VALUE && (int) (entry >>> Integer.SIZE) != key) {
+            slot = (slot + 1) & mask;
+            entry = table.get(slot);
+        }
+        return slot;
+    }
+
+    private static long pack(int key, int value) {
+        return (long) key << Integer.SIZE | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Spreads the bits of a key with the finalizer of MurmurHash3, since network addresses end with zero bits.
+     */
+    private static int mix(int key) {
+        key ^= key >>> 16;
+        key *= 0x85ebca6b;
+        key ^= key >>> 13;
+        key *= 0xc2b2ae35;
+        key ^= key >>> 16;
+        return key;
+    }
+
+    private static AtomicLongArray emptyTable(int capacity) {
+        AtomicLongArray table = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            table.setPlain(slot, EMPTY);
+        }
+        return table;
+    }
+
+    /**
+     * Adds the entries of a table to a table twice as large, and publishes it.
+     */
+    private void grow(AtomicLongArray oldTable) {
+        AtomicLongArray table = emptyTable(oldTable.length() * 2);
+        for (int slot = 0; slot < oldTable.length(); slot++) {
+            long entry = oldTable.get(slot);
+            if ((int) entry != NO_VALUE) {
+                table.setPlain(slotOf(table, (int) (entry >>> Integer.SIZE)), entry);
+            }
+        }
+        slots = table;
+    }
+}
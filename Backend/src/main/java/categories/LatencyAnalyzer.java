@@ -0,0 +1,289 @@
+package categories;
+
+import main.BinaryIO;
+import main.LogField;
+import main.ParsedLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code LatencyAnalyzer} class records the response times of the log entries behind every value of another
+ * analyzer, e.g. the response times per browser, next to the hit counts of the wrapped analyzer; it also records
+ * the response times of all the log entries, whatever their value.
+ * Every value keeps a {@link LatencyHistogram} instead of the response times, so a value uses a few kilobytes
+ * however many requests it has, its percentiles are within the relative error of the histogram, and partial
+ * analyzers merge exactly. Log entries without a response time are counted, but not recorded.
+ * The wrapped analyzer must implement {@link CategoryAnalyzer#getCategoryValue(ParsedLog)}.
+ */
+public class LatencyAnalyzer implements CategoryAnalyzer {
+
+    // === Constants ===
+    private static final String INVALID_PRECISION_ERR = "Unsupported latency histogram precision: ";
+    private static final String MERGE_ERR = "Cannot merge a LatencyAnalyzer with ";
+
+    // === Fields ===
+    private final CategoryAnalyzer delegate;
+    private final int precision;
+    private final Set<LogField> requiredFields;
+    private final LatencyHistogram allLatencies;
+    private final Map<String, LatencyHistogram> latencies = new HashMap<>();
+
+    /**
+     * Constructs a {@code LatencyAnalyzer} on top of another analyzer, with histograms of
+     * {@link LatencyHistogram#DEFAULT_PRECISION}.
+     *
+     * @param delegate the analyzer whose values the response times are recorded for; it keeps the hit counts
+     * @throws IllegalArgumentException if the wrapped analyzer does not count single values
+     */
+    public LatencyAnalyzer(CategoryAnalyzer delegate) {
+        this(delegate, LatencyHistogram.DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructs a {@code LatencyAnalyzer} on top of another analyzer.
+     *
+     * @param delegate  the analyzer whose values the response times are recorded for; it keeps the hit counts
+     * @param precision the precision of the histogram of every value
+     * @throws IllegalArgumentException if the precision is not supported by {@link LatencyHistogram}, or the
+     *                                  wrapped analyzer does not count single values
+     */
+    public LatencyAnalyzer(CategoryAnalyzer delegate, int precision) {
+        if (precision < LatencyHistogram.MIN_PRECISION || precision > LatencyHistogram.MAX_PRECISION) {
+            throw new IllegalArgumentException(INVALID_PRECISION_ERR + precision);
+        }
+        this.delegate = CategoryAnalyzer.requireCategoryValue(delegate);
+        this.precision = precision;
+        this.allLatencies = new LatencyHistogram(precision);
+        Set<LogField> fields = EnumSet.of(LogField.RESPONSE_TIME);
+        Set<LogField> delegateFields = delegate.getRequiredFields();
+        fields.addAll(delegateFields == null ? EnumSet.allOf(LogField.class) : delegateFields);
+        this.requiredFields = fields;
+    }
+
+    /**
+     * Counts a log entry in the wrapped analyzer, and records its response time.
+     *
+     * @param log the parsed log entry
+     */
+    @Override
+    public void addLogToCounter(ParsedLog log) {
+        delegate.addLogToCounter(log);
+        recordLatency(log);
+    }
+
+    /**
+     * Counts a batch of log entries in the wrapped analyzer as a batch, and then records their response times.
+     *
+     * @param batch the parsed log entries
+     * @param from  the index of the first log entry to process, inclusive
+     * @param to    the index of the last log entry to process, exclusive
+     */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        delegate.addLogsToCounter(batch, from, to);
+        for (int i = from; i < to; i++) {
+            recordLatency(batch[i]);
+        }
+    }
+
+    /**
+     * Records the response time of a log entry in the histogram of all the log entries and of its category value.
+     *
+     * @param log the parsed log entry
+     */
+    private void recordLatency(ParsedLog log) {
+        long responseTime = log.getResponseTime();
+        if (responseTime < 0) {
+            return;
+        }
+        allLatencies.record(responseTime);
+        String value = delegate.getCategoryValue(log);
+        if (value != null) {
+            histogramOf(value).record(responseTime);
+        }
+    }
+
+    /**
+     * Returns the histogram of a category value, adding an empty one if the value is new.
+     *
+     * @param value the category value
+     * @return the histogram
+     */
+    private LatencyHistogram histogramOf(String value) {
+        LatencyHistogram histogram = latencies.get(value);
+        if (histogram == null) {
+            histogram = new LatencyHistogram(precision);
+            latencies.put(value, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the response times of all the log entries with one, whatever their category value.
+     *
+     * @return the histogram of all the response times
+     */
+    public LatencyHistogram getAllLatencies() {
+        return allLatencies;
+    }
+
+    /**
+     * Returns the response times of every category value.
+     *
+     * @return the histograms by value
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return Collections.unmodifiableMap(latencies);
+    }
+
+    /**
+     * Returns the response times of a category value.
+     *
+     * @param value the category value
+     * @return the histogram, or {@code null} if no response time was recorded for the value
+     */
+    public LatencyHistogram getLatencies(String value) {
+        return latencies.get(value);
+    }
+
+    /**
+     * Returns the wrapped analyzer.
+     *
+     * @return the wrapped analyzer
+     */
+    public CategoryAnalyzer getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the hit counts of the wrapped analyzer.
+     *
+     * @return the counts by value
+     */
+    @Override
+    public Map<String, Integer> getCounter() {
+        return delegate.getCounter();
+    }
+
+    /**
+     * Returns the category name of the wrapped analyzer.
+     *
+     * @return the category name
+     */
+    @Override
+    public String getCategoryName() {
+        return delegate.getCategoryName();
+    }
+
+    /**
+     * Returns the category value of the wrapped analyzer.
+     *
+     * @param log the parsed log entry
+     * @return the category value, or {@code null}
+     */
+    @Override
+    public String getCategoryValue(ParsedLog log) {
+        return delegate.getCategoryValue(log);
+    }
+
+    /**
+     * Returns {@code true}, since the wrapped analyzer counts single values.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean supportsCategoryValue() {
+        return true;
+    }
+
+    /**
+     * Returns the fields of the wrapped analyzer and the response time.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return requiredFields;
+    }
+
+    /**
+     * Creates an empty {@code LatencyAnalyzer} of the same precision over an empty copy of the wrapped analyzer.
+     *
+     * @return a new, empty {@code LatencyAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        return new LatencyAnalyzer(delegate.createEmptyCopy(), precision);
+    }
+
+    /**
+     * Merges the wrapped analyzers and the histograms of another {@code LatencyAnalyzer} of the same precision.
+     *
+     * @param other the analyzer to merge
+     * @throws IllegalArgumentException if the other analyzer is not a {@code LatencyAnalyzer} of the same precision
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof LatencyAnalyzer otherLatencies) || otherLatencies.precision != precision) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        delegate.merge(otherLatencies.delegate);
+        allLatencies.merge(otherLatencies.allLatencies);
+        for (Map.Entry<String, LatencyHistogram> entry : otherLatencies.latencies.entrySet()) {
+            histogramOf(entry.getKey()).merge(entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the wrapped analyzer's snapshot, followed by the histogram of all the response times and the
+     * histogram of every value.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        delegate.writeSnapshot(out);
+        allLatencies.write(out);
+        out.writeInt(latencies.size());
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            BinaryIO.writeString(out, entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    /**
+     * Adds the wrapped analyzer's snapshot, and merges the histograms of the snapshot.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails, or the histograms have another precision
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        delegate.readSnapshot(in);
+        allLatencies.readAndMerge(in);
+        int values = in.readInt();
+        for (int i = 0; i < values; i++) {
+            String value = BinaryIO.readString(in);
+            histogramOf(value).readAndMerge(in);
+        }
+    }
+
+    /**
+     * Returns a tag of the histogram precision and the wrapped analyzer's format, since histograms of another
+     * precision can't be merged.
+     *
+     * @return the snapshot format tag
+     */
+    @Override
+    public String getSnapshotFormat() {
+        return getClass().getName() + "(precision=" + precision + ", " + delegate.getSnapshotFormat() + ")";
+    }
+}
@@ -0,0 +1,258 @@
+package categories;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The {@code LatencyHistogram} class records non-negative values, such as response times in microseconds, in
+ * log-linear buckets, and reports their percentiles with a bounded relative error, in the style of HdrHistogram.
+ * Values below {@code 2^precision} have a bucket each; above, every power of two is split into
+ * {@code 2^(precision - 1)} buckets of equal width, so a bucket is at most {@code 2^(1 - precision)} of its
+ * values wide: 1.6% for the default precision. A percentile is reported as the highest value of its bucket,
+ * so it is never below the exact percentile.
+ * Recording a value only increments a {@code long} count. The counts grow up to the bucket of the largest value
+ * recorded, which is at most 3712 buckets (29 KB) at the default precision, whatever the number of values.
+ * Histograms of the same precision merge by adding their counts, which gives exactly the histogram of all their
+ * values.
+ */
+public class LatencyHistogram {
+
+    // === Constants ===
+    public static final int DEFAULT_PRECISION = 7;
+    public static final int MIN_PRECISION = 2;
+    public static final int MAX_PRECISION = 14;
+    private static final double MAX_PERCENTILE = 100.0;
+    private static final String INVALID_PRECISION_ERR = "Precision must be between " + MIN_PRECISION + " and "
+            + MAX_PRECISION + ": ";
+    private static final String NEGATIVE_VALUE_ERR = "Cannot record a negative value: ";
+    private static final String INVALID_PERCENTILE_ERR = "Percentile must be between 0 and 100: ";
+    private static final String MERGE_ERR = "Cannot merge histograms of different precisions";
+    private static final String INVALID_BUCKET_ERR = "Invalid histogram bucket: ";
+
+    // === Fields ===
+    private final int precision;
+    private final int subBucketCount;
+    private final int halfSubBucketCount;
+    /* The number of buckets up to Long.MAX_VALUE, which the counts never exceed. */
+    private final int maxBuckets;
+    private long[] counts;
+    private long totalCount = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /**
+     * Constructs an empty {@code LatencyHistogram} with {@link #DEFAULT_PRECISION}.
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructs an empty {@code LatencyHistogram}.
+     *
+     * @param precision the number of significant bits of a value that pick its bucket
+     * @throws IllegalArgumentException if the precision is not between {@link #MIN_PRECISION} and
+     *                                  {@link #MAX_PRECISION}
+     */
+    public LatencyHistogram(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(INVALID_PRECISION_ERR + precision);
+        }
+        this.precision = precision;
+        this.subBucketCount = 1 << precision;
+        this.halfSubBucketCount = subBucketCount >> 1;
+        this.maxBuckets = bucketOf(Long.MAX_VALUE) + 1;
+        this.counts = new long[subBucketCount];
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value, e.g. a response time in microseconds
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(NEGATIVE_VALUE_ERR + value);
+        }
+        int bucket = bucketOf(value);
+        if (bucket >= counts.length) {
+            int length = Math.max(bucket + 1, counts.length + halfSubBucketCount);
+            counts = Arrays.copyOf(counts, Math.min(maxBuckets, length));
+        }
+        counts[bucket]++;
+        totalCount++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Returns the bucket of a value: the value itself below {@code 2^precision}, and otherwise the bucket of its
+     * {@code precision} most significant bits within its power of two.
+     */
+    private int bucketOf(long value) {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - precision;
+        int top = (int) (value >>> shift);
+        return subBucketCount + (shift - 1) * halfSubBucketCount + (top - halfSubBucketCount);
+    }
+
+    /**
+     * Returns the highest value that falls into a bucket.
+     */
+    private long highestValueOf(int bucket) {
+        if (bucket < subBucketCount) {
+            return bucket;
+        }
+        int offset = bucket - subBucketCount;
+        int shift = offset / halfSubBucketCount + 1;
+        long top = halfSubBucketCount + offset % halfSubBucketCount;
+        return (top << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall, e.g. the median for 50.
+     *
+     * @param percentile the percentage, between 0 and 100
+     * @return the highest value of the bucket of the percentile, at most the maximal value recorded;
+     * {@code 0} if no value was recorded
+     * @throws IllegalArgumentException if the percentile is not between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= MAX_PERCENTILE)) {
+            throw new IllegalArgumentException(INVALID_PERCENTILE_ERR + percentile);
+        }
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / MAX_PERCENTILE * totalCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the smallest value recorded.
+     *
+     * @return the minimum, {@code 0} if no value was recorded
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return the maximum, {@code 0} if no value was recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the number of significant bits of a value that pick its bucket.
+     *
+     * @return the precision
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds the values of another histogram of the same precision to this histogram.
+     *
+     * @param other the histogram to add
+     * @throws IllegalArgumentException if the histograms have different precisions
+     */
+    public void merge(LatencyHistogram other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(MERGE_ERR);
+        }
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int bucket = 0; bucket < other.counts.length; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        totalCount += other.totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Writes the precision, the minimum and maximum, and the non-empty buckets of the histogram.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(precision);
+        out.writeLong(min);
+        out.writeLong(max);
+        int buckets = 0;
+        for (long count : counts) {
+            if (count != 0) {
+                buckets++;
+            }
+        }
+        out.writeInt(buckets);
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            if (counts[bucket] != 0) {
+                out.writeInt(bucket);
+                out.writeLong(counts[bucket]);
+            }
+        }
+    }
+
+    /**
+     * Reads a histogram written by {@link #write(DataOutput)} and merges it into this histogram.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails, or the histogram has another precision or an invalid bucket
+     */
+    public void readAndMerge(DataInput in) throws IOException {
+        int otherPrecision = in.readByte();
+        if (otherPrecision != precision) {
+            throw new IOException(MERGE_ERR);
+        }
+        long otherMin = in.readLong();
+        long otherMax = in.readLong();
+        int buckets = in.readInt();
+        for (int i = 0; i < buckets; i++) {
+            int bucket = in.readInt();
+            long count = in.readLong();
+            if (bucket < 0 || bucket >= maxBuckets) {
+                throw new IOException(INVALID_BUCKET_ERR + bucket);
+            }
+            if (bucket >= counts.length) {
+                counts = Arrays.copyOf(counts, bucket + 1);
+            }
+            counts[bucket] += count;
+            totalCount += count;
+        }
+        min = Math.min(min, otherMin);
+        max = Math.max(max, otherMax);
+    }
+}
@@ -0,0 +1,182 @@
+package categories;
+
+import main.LogField;
+import main.ParsedLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code LogFieldAnalyzer} class counts the raw values of a text field of the logs, such as the URL,
+ * the referrer or the User-Agent string. These fields have a very high number of distinct values,
+ * so the exact counts are best kept for small logs; {@link TopKAnalyzer} counts the most frequent values
+ * of the same field in fixed memory.
+ */
+public class LogFieldAnalyzer implements CategoryAnalyzer {
+
+    private static final Set<LogField> TEXT_FIELDS = Collections.unmodifiableSet(
+            EnumSet.of(LogField.IP, LogField.URL, LogField.REFERRER, LogField.USER_AGENT));
+    private static final String UNSUPPORTED_FIELD_ERR = "Not a text field: ";
+    private static final String MERGE_ERR = "Cannot merge a LogFieldAnalyzer with ";
+
+    /* A counter of every distinct value of the field. */
+    private final CategoryCounter fieldCounter = new CategoryCounter();
+    private final String name;
+    private final LogField field;
+    private final Set<LogField> requiredFields;
+
+    /**
+     * Creates a {@code LogFieldAnalyzer} of a text field.
+     *
+     * @param name  the name of the category
+     * @param field the counted field: {@link LogField#IP}, {@link LogField#URL}, {@link LogField#REFERRER}
+     *              or {@link LogField#USER_AGENT}
+     * @throws IllegalArgumentException if the field is not a text field
+     */
+    public LogFieldAnalyzer(String name, LogField field) {
+        if (!TEXT_FIELDS.contains(field)) {
+            throw new IllegalArgumentException(UNSUPPORTED_FIELD_ERR + field);
+        }
+        this.name = name;
+        this.field = field;
+        this.requiredFields = Collections.unmodifiableSet(EnumSet.of(field));
+    }
+
+    /**
+     * Counts the field value of a parsed log entry.
+     *
+     * @param log the parsed log entry
+     */
+    @Override
+    public void addLogToCounter(ParsedLog log) {
+        String value = getCategoryValue(log);
+        if (value != null) {
+            fieldCounter.increment(value);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            addLogToCounter(batch[i]);
+        }
+    }
+
+    /**
+     * Returns the field value of a parsed log entry.
+     *
+     * @param log the parsed log entry
+     * @return the field value, or {@code null} if the log has none
+     */
+    @Override
+    public String getCategoryValue(ParsedLog log) {
+        return switch (field) {
+            case IP -> log.getIp();
+            case URL -> log.getUrl();
+            case REFERRER -> log.getReferrer();
+            case USER_AGENT -> log.getUserAgent();
+            default -> throw new IllegalStateException(UNSUPPORTED_FIELD_ERR + field);
+        };
+    }
+
+    /**
+     * Returns {@code true}, since every log entry is counted under at most its field value.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean supportsCategoryValue() {
+        return true;
+    }
+
+    /**
+     * Returns the map of field values and their respective counts.
+     *
+     * @return a map where keys are field values and values are their counts
+     */
+    @Override
+    public Map<String, Integer> getCounter() {
+        return fieldCounter.asMap();
+    }
+
+    /**
+     * Returns the name of this category.
+     *
+     * @return the category name
+     */
+    @Override
+    public String getCategoryName() {
+        return name;
+    }
+
+    /**
+     * Returns the counted field.
+     *
+     * @return the field
+     */
+    public LogField getField() {
+        return field;
+    }
+
+    /**
+     * Returns the fields this analyzer reads: only the counted field.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return requiredFields;
+    }
+
+    /**
+     * Creates a new {@code LogFieldAnalyzer} of the same field with an empty counter.
+     *
+     * @return a new, empty {@code LogFieldAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        return new LogFieldAnalyzer(name, field);
+    }
+
+    /**
+     * Adds the counts of another {@code LogFieldAnalyzer} into this one.
+     *
+     * @param other the analyzer to merge
+     * @throws IllegalArgumentException if the other analyzer is not a {@code LogFieldAnalyzer} of the same field
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof LogFieldAnalyzer otherField) || otherField.field != field) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        fieldCounter.addAll(otherField.fieldCounter);
+    }
+
+    /**
+     * Writes the counts of this analyzer to a snapshot.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        fieldCounter.write(out);
+    }
+
+    /**
+     * Adds the counts of a snapshot to this analyzer.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        fieldCounter.readAndAdd(in);
+    }
+}
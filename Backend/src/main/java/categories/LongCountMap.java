@@ -0,0 +1,151 @@
+package categories;
+
+import java.util.Arrays;
+
+/**
+ * The {@code LongCountMap} class maps non-negative {@code long} keys to {@code long} counts with open addressing
+ * and linear probing in two parallel arrays, so counting a key allocates nothing and a key costs 16 bytes
+ * (32 bytes at the lowest load factor) instead of the entry, key and value objects of a {@link java.util.HashMap}.
+ * Empty slots hold a negative key, which is why keys must be non-negative. The table doubles once it is half full.
+ * Not thread-safe.
+ */
+final class LongCountMap {
+
+    // === Constants ===
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final String NEGATIVE_KEY_ERR = "Keys must be non-negative: ";
+
+    /**
+     * Receives the entries of a {@link LongCountMap}.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        /**
+         * Receives an entry.
+         *
+         * @param key   the key
+         * @param count the count of the key
+         */
+        void accept(long key, long count);
+    }
+
+    // === Fields ===
+    private long[] keys;
+    private long[] counts;
+    private int mask;
+    private int size = 0;
+
+    /**
+     * Constructs an empty {@code LongCountMap}.
+     */
+    LongCountMap() {
+        keys = new long[INITIAL_CAPACITY];
+        counts = new long[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Adds to the count of a key, adding the key with that count if it is new.
+     *
+     * @param key   the key
+     * @param count the count to add
+     * @throws IllegalArgumentException if the key is negative
+     */
+    void add(long key, long count) {
+        if (key < 0) {
+            throw new IllegalArgumentException(NEGATIVE_KEY_ERR + key);
+        }
+        int slot = slotOf(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+            if (size * 2 > keys.length) {
+                counts[slot] = count;
+                grow();
+                return;
+            }
+        }
+        counts[slot] += count;
+    }
+
+    /**
+     * Returns the count of a key.
+     *
+     * @param key the key
+     * @return the count, {@code 0} if the key was never added
+     */
+    long get(long key) {
+        if (key < 0) {
+            return 0;
+        }
+        int slot = slotOf(key);
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes every key and its count to a consumer, in no particular order.
+     *
+     * @param consumer the consumer of the entries
+     */
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of a key: the slot holding it, or the empty slot it would be added to.
+     */
+    private int slotOf(long key) {
+        int slot = (int) mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Spreads the bits of a key with the finalizer of MurmurHash3, since packed keys differ in few bits.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Doubles the table and adds the entries again.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldKeys.length * 2];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                int newSlot = slotOf(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                counts[newSlot] = oldCounts[slot];
+            }
+        }
+    }
+}
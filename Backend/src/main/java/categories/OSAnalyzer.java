@@ -1,10 +1,16 @@
 package categories;
 
+import main.LogField;
 import main.ParsedLog;
 import ua_parser.Client;
 
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * OSAnalyzer counts occurrences of operating systems (OS) from log entries.
@@ -13,8 +19,12 @@ import java.util.Map;
  */
 public class OSAnalyzer implements CategoryAnalyzer {
 
-    /** A map to store the count of each OS family. */
-    private final HashMap<String, Integer> osCounter = new HashMap<>();
+    private static final String MERGE_ERR = "Cannot merge an OSAnalyzer with ";
+    private static final Set<LogField> REQUIRED_FIELDS =
+            Collections.unmodifiableSet(EnumSet.of(LogField.USER_AGENT_CLIENT));
+
+    /** A counter to store the count of each OS family. */
+    private final CategoryCounter osCounter = new CategoryCounter();
     private final String name;
 
     /**
@@ -34,16 +44,42 @@ public class OSAnalyzer implements CategoryAnalyzer {
      */
     @Override
     public void addLogToCounter(ParsedLog log) {
-        Client client = log.getUserAgentClient();
-        if (client != null) {
-            String os = client.os.family;
-            if (os != null) {
-                int newVal = osCounter.getOrDefault(os, 0) + 1;
-                osCounter.put(os, newVal);
-            }
+        String os = getCategoryValue(log);
+        if (os != null) {
+            osCounter.increment(os);
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            addLogToCounter(batch[i]);
+        }
+    }
+
+    /**
+     * Returns the OS family of the log's User-Agent.
+     *
+     * @param log the parsed log entry
+     * @return the OS family, or {@code null} if the log has no User-Agent
+     */
+    @Override
+    public String getCategoryValue(ParsedLog log) {
+        Client client = log.getUserAgentClient();
+        return client == null ? null : client.os.family;
+    }
+
+    /**
+     * Returns {@code true}, since every log entry is counted under at most its OS family.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean supportsCategoryValue() {
+        return true;
+    }
+
     /**
      * Returns the map of OS families and their respective counts.
      *
@@ -51,7 +87,7 @@ public class OSAnalyzer implements CategoryAnalyzer {
      */
     @Override
     public Map<String, Integer> getCounter() {
-        return osCounter;
+        return osCounter.asMap();
     }
 
     /**
@@ -63,4 +99,59 @@ public class OSAnalyzer implements CategoryAnalyzer {
     public String getCategoryName() {
         return name;
     }
+
+    /**
+     * Returns the fields this analyzer reads: only the parsed User-Agent.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return REQUIRED_FIELDS;
+    }
+
+    /**
+     * Creates a new {@code OSAnalyzer} with the same name and an empty counter.
+     *
+     * @return a new, empty {@code OSAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        return new OSAnalyzer(name);
+    }
+
+    /**
+     * Adds the OS counts of another {@code OSAnalyzer} into this one.
+     *
+     * @param other the {@code OSAnalyzer} to merge into this one
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof OSAnalyzer otherOS)) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        osCounter.addAll(otherOS.osCounter);
+    }
+
+    /**
+     * Writes the counts of this analyzer to a snapshot.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        osCounter.write(out);
+    }
+
+    /**
+     * Adds the counts of a snapshot to this analyzer.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        osCounter.readAndAdd(in);
+    }
 }
@@ -0,0 +1,36 @@
+package categories;
+
+/**
+ * The {@code StringHash} class hashes strings to 64 bits for the sketches, with FNV-1a followed by the
+ * finalizer of MurmurHash3, which spreads the FNV bits over the whole word.
+ * The hash is deterministic across runs and JVMs, so sketches can be saved and merged.
+ */
+final class StringHash {
+
+    // === Constants ===
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private StringHash() {
+    }
+
+    /**
+     * Hashes a string to 64 bits.
+     *
+     * @param value the string
+     * @return the hash
+     */
+    static long hash64(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,61 @@
+package categories;
+
+import java.util.Locale;
+
+/**
+ * The {@code TimeWindow} enum lists the fixed window lengths a {@link TimeWindowedAnalyzer} can count in.
+ * Windows are aligned to the epoch, so a minute window starts at second 0 of its minute (in UTC).
+ */
+public enum TimeWindow {
+
+    /** One-minute windows. */
+    MINUTE(60),
+
+    /** One-hour windows. */
+    HOUR(3600),
+
+    /** One-day windows. */
+    DAY(86400);
+
+    private static final String UNKNOWN_WINDOW_ERR = "Unknown time window (expected minute, hour or day): ";
+
+    private final long seconds;
+
+    TimeWindow(long seconds) {
+        this.seconds = seconds;
+    }
+
+    /**
+     * Returns the length of a window.
+     *
+     * @return the window length in seconds
+     */
+    public long getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * Returns the index of the window that holds the given time, counted from the epoch.
+     *
+     * @param epochSecond the time in seconds since the epoch
+     * @return the window index
+     */
+    public long indexOf(long epochSecond) {
+        return Math.floorDiv(epochSecond, seconds);
+    }
+
+    /**
+     * Parses a window name, {@code minute}, {@code hour} or {@code day}.
+     *
+     * @param name the window name
+     * @return the time window
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static TimeWindow parse(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(UNKNOWN_WINDOW_ERR + name);
+        }
+    }
+}
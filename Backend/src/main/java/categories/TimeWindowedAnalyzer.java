@@ -0,0 +1,516 @@
+package categories;
+
+import main.BinaryIO;
+import main.LogField;
+import main.LogLineScanner;
+import main.ParsedLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code TimeWindowedAnalyzer} class counts the values of another analyzer in fixed time windows
+ * (a minute, an hour or a day), next to the all-time counts of the wrapped analyzer.
+ * The windows live in a ring buffer of count arrays: a window has one {@code long} count per category value,
+ * and a new window reuses the slot of the oldest one, so memory is bounded by the number of kept windows
+ * times the number of distinct values. Queries over any range of kept windows only add up count arrays,
+ * e.g. the browser share of the last hour, without scanning the logs again.
+ * The wrapped analyzer must implement {@link CategoryAnalyzer#getCategoryValue(ParsedLog)}.
+ * Logs without a timestamp are only counted by the wrapped analyzer. Logs older than the kept windows, and the
+ * logs of a window once newer windows push it out, are counted as dropped, so the dropped count only depends on
+ * the newest window and not on the order in which the logs were counted or merged.
+ */
+public class TimeWindowedAnalyzer implements CategoryAnalyzer {
+
+    // === Constants ===
+    private static final long EMPTY_SLOT = Long.MIN_VALUE;
+    private static final int NO_VALUE = -1;
+    private static final int INITIAL_VALUES_CAPACITY = 16;
+    private static final String INVALID_WINDOW_COUNT_ERR = "Window count must be positive: ";
+    private static final String MERGE_ERR = "Cannot merge a TimeWindowedAnalyzer with ";
+
+    // === Fields ===
+    private final CategoryAnalyzer delegate;
+    private final TimeWindow window;
+    private final int windowCount;
+    private final Set<LogField> requiredFields;
+
+    /* The dictionary of category values: the ids by value, and the values by id. */
+    private final Map<String, Integer> valueIds = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /* The ring buffer: the window index held by every slot (or EMPTY_SLOT), its number of logs,
+       and its counts by value id. */
+    private final long[] slotWindows;
+    private final long[] slotTotals;
+    private final long[][] slotCounts;
+
+    private long latestWindow = EMPTY_SLOT;
+    private long droppedLogs = 0;
+
+    /**
+     * Constructs a {@code TimeWindowedAnalyzer} on top of another analyzer.
+     *
+     * @param delegate    the analyzer whose values are counted per window; it keeps the all-time counts
+     * @param window      the length of a window
+     * @param windowCount the number of most recent windows kept
+     * @throws IllegalArgumentException if the window count is not positive, or the wrapped analyzer does not count
+     *                                  single values
+     */
+    public TimeWindowedAnalyzer(CategoryAnalyzer delegate, TimeWindow window, int windowCount) {
+        if (windowCount < 1) {
+            throw new IllegalArgumentException(INVALID_WINDOW_COUNT_ERR + windowCount);
+        }
+        this.delegate = CategoryAnalyzer.requireCategoryValue(delegate);
+        this.window = window;
+        this.windowCount = windowCount;
+        Set<LogField> fields = EnumSet.of(LogField.TIMESTAMP);
+        Set<LogField> delegateFields = delegate.getRequiredFields();
+        fields.addAll(delegateFields == null ? EnumSet.allOf(LogField.class) : delegateFields);
+        this.requiredFields = fields;
+        slotWindows = new long[windowCount];
+        Arrays.fill(slotWindows, EMPTY_SLOT);
+        slotTotals = new long[windowCount];
+        slotCounts = new long[windowCount][INITIAL_VALUES_CAPACITY];
+    }
+
+    /**
+     * Counts a log entry in the wrapped analyzer, and in the window of its timestamp.
+     *
+     * @param log the parsed log entry
+     */
+    @Override
+    public void addLogToCounter(ParsedLog log) {
+        delegate.addLogToCounter(log);
+        addLogToWindow(log);
+    }
+
+    /**
+     * Counts a batch of log entries in the wrapped analyzer as a batch, and then in the windows of their timestamps.
+     *
+     * @param batch the parsed log entries
+     * @param from  the index of the first log entry to process, inclusive
+     * @param to    the index of the last log entry to process, exclusive
+     */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        delegate.addLogsToCounter(batch, from, to);
+        for (int i = from; i < to; i++) {
+            addLogToWindow(batch[i]);
+        }
+    }
+
+    /**
+     * Counts a log entry in the window of its timestamp.
+     *
+     * @param log the parsed log entry
+     */
+    private void addLogToWindow(ParsedLog log) {
+        long epochSecond = log.getEpochSecond();
+        if (epochSecond == LogLineScanner.NO_TIMESTAMP) {
+            return;
+        }
+        int slot = slotFor(window.indexOf(epochSecond));
+        if (slot == NO_VALUE) {
+            droppedLogs++;
+            return;
+        }
+        slotTotals[slot]++;
+        String value = delegate.getCategoryValue(log);
+        if (value != null) {
+            addCount(slot, idOf(value), 1);
+        }
+    }
+
+    /**
+     * Returns the slot of a window. A newer window first expires the windows it pushes out of the kept windows.
+     *
+     * @param windowIndex the window index
+     * @return the slot, or {@code -1} if the window is older than the kept windows
+     */
+    private int slotFor(long windowIndex) {
+        if (latestWindow != EMPTY_SLOT && windowIndex <= latestWindow - windowCount) {
+            return NO_VALUE;
+        }
+        if (windowIndex > latestWindow) {
+            latestWindow = windowIndex;
+            expireWindowsBefore(windowIndex - windowCount + 1);
+        }
+        int slot = (int) Math.floorMod(windowIndex, (long) windowCount);
+        slotWindows[slot] = windowIndex;
+        return slot;
+    }
+
+    /**
+     * Empties the slots of the windows before a window index, counting their logs as dropped.
+     */
+    private void expireWindowsBefore(long firstKeptWindow) {
+        for (int slot = 0; slot < windowCount; slot++) {
+            if (slotWindows[slot] != EMPTY_SLOT && slotWindows[slot] < firstKeptWindow) {
+                droppedLogs += slotTotals[slot];
+                slotWindows[slot] = EMPTY_SLOT;
+                slotTotals[slot] = 0;
+                Arrays.fill(slotCounts[slot], 0);
+            }
+        }
+    }
+
+    /**
+     * Adds to the count of a value in a slot, growing the slot's count array if needed.
+     */
+    private void addCount(int slot, int valueId, long count) {
+        long[] counts = slotCounts[slot];
+        if (valueId >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(valueId + 1, counts.length * 2));
+            slotCounts[slot] = counts;
+        }
+        counts[valueId] += count;
+    }
+
+    private int idOf(String value) {
+        Integer id = valueIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        values.add(value);
+        valueIds.put(value, values.size() - 1);
+        return values.size() - 1;
+    }
+
+    /**
+     * Returns whether a slot holds one of the kept windows between two window indexes (inclusive).
+     */
+    private boolean isKept(int slot, long firstWindow, long lastWindow) {
+        long slotWindow = slotWindows[slot];
+        return slotWindow != EMPTY_SLOT && slotWindow >= firstWindow && slotWindow <= lastWindow;
+    }
+
+    /**
+     * Returns the counts of every value in the kept windows between two window indexes (inclusive).
+     */
+    private Map<String, Long> countsBetween(long firstWindow, long lastWindow) {
+        long[] sums = new long[values.size()];
+        for (int slot = 0; slot < windowCount; slot++) {
+            if (isKept(slot, firstWindow, lastWindow)) {
+                long[] counts = slotCounts[slot];
+                for (int id = 0; id < Math.min(counts.length, sums.length); id++) {
+                    sums[id] += counts[id];
+                }
+            }
+        }
+        Map<String, Long> result = new HashMap<>();
+        for (int id = 0; id < sums.length; id++) {
+            if (sums[id] > 0) {
+                result.put(values.get(id), sums[id]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of logs in the kept windows between two window indexes (inclusive).
+     */
+    private long totalBetween(long firstWindow, long lastWindow) {
+        long total = 0;
+        for (int slot = 0; slot < windowCount; slot++) {
+            if (isKept(slot, firstWindow, lastWindow)) {
+                total += slotTotals[slot];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the counts of every value in the kept windows that overlap a time range.
+     *
+     * @param fromEpochSecond the start of the range, inclusive
+     * @param toEpochSecond   the end of the range, exclusive
+     * @return the counts by value, without the values that were not seen in the range
+     */
+    public Map<String, Long> getCounts(long fromEpochSecond, long toEpochSecond) {
+        return countsBetween(window.indexOf(fromEpochSecond), window.indexOf(toEpochSecond - 1));
+    }
+
+    /**
+     * Returns the number of logs in the kept windows that overlap a time range, including the logs
+     * without a category value, so it is the base of the value shares.
+     *
+     * @param fromEpochSecond the start of the range, inclusive
+     * @param toEpochSecond   the end of the range, exclusive
+     * @return the number of logs
+     */
+    public long getTotal(long fromEpochSecond, long toEpochSecond) {
+        return totalBetween(window.indexOf(fromEpochSecond), window.indexOf(toEpochSecond - 1));
+    }
+
+    /**
+     * Returns the counts of every value in the most recent windows, up to the window of the newest log.
+     *
+     * @param windows the number of windows
+     * @return the counts by value, without the values that were not seen in these windows
+     */
+    public Map<String, Long> getRecentCounts(int windows) {
+        return latestWindow == EMPTY_SLOT ? Map.of() : countsBetween(latestWindow - windows + 1, latestWindow);
+    }
+
+    /**
+     * Returns the number of logs in the most recent windows, up to the window of the newest log.
+     *
+     * @param windows the number of windows
+     * @return the number of logs
+     */
+    public long getRecentTotal(int windows) {
+        return latestWindow == EMPTY_SLOT ? 0 : totalBetween(latestWindow - windows + 1, latestWindow);
+    }
+
+    /**
+     * Returns the start of the window of the newest log.
+     *
+     * @return the start of the newest window in seconds since the epoch, or
+     *         {@link LogLineScanner#NO_TIMESTAMP} if no log had a timestamp
+     */
+    public long getLatestWindowStart() {
+        return latestWindow == EMPTY_SLOT ? LogLineScanner.NO_TIMESTAMP : latestWindow * window.getSeconds();
+    }
+
+    /**
+     * Returns the number of logs that are not in the kept windows and are only counted all-time: the logs older than
+     * the kept windows when they were counted, and the logs of the windows that expired since.
+     *
+     * @return the number of dropped logs
+     */
+    public long getDroppedLogs() {
+        return droppedLogs;
+    }
+
+    /**
+     * Returns the length of a window.
+     *
+     * @return the time window
+     */
+    public TimeWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Returns the number of most recent windows kept.
+     *
+     * @return the window count
+     */
+    public int getWindowCount() {
+        return windowCount;
+    }
+
+    /**
+     * Returns the wrapped analyzer.
+     *
+     * @return the wrapped analyzer
+     */
+    public CategoryAnalyzer getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the all-time counts of the wrapped analyzer.
+     *
+     * @return the all-time counts by value
+     */
+    @Override
+    public Map<String, Integer> getCounter() {
+        return delegate.getCounter();
+    }
+
+    /**
+     * Returns the category name of the wrapped analyzer.
+     *
+     * @return the category name
+     */
+    @Override
+    public String getCategoryName() {
+        return delegate.getCategoryName();
+    }
+
+    /**
+     * Returns the category value of the wrapped analyzer.
+     *
+     * @param log the parsed log entry
+     * @return the category value, or {@code null}
+     */
+    @Override
+    public String getCategoryValue(ParsedLog log) {
+        return delegate.getCategoryValue(log);
+    }
+
+    /**
+     * Returns {@code true}, since the wrapped analyzer counts single values.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean supportsCategoryValue() {
+        return true;
+    }
+
+    /**
+     * Returns the fields of the wrapped analyzer and the timestamp.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return requiredFields;
+    }
+
+    /**
+     * Creates an empty {@code TimeWindowedAnalyzer} with the same windows over an empty copy of the wrapped analyzer.
+     *
+     * @return a new, empty {@code TimeWindowedAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        return new TimeWindowedAnalyzer(delegate.createEmptyCopy(), window, windowCount);
+    }
+
+    /**
+     * Merges the wrapped analyzers and the windows of another {@code TimeWindowedAnalyzer} with the same windows.
+     * Windows of the other analyzer that are older than the windows kept here are counted as dropped, and so are the
+     * windows kept here that the other analyzer's newer windows push out, as if the logs were counted in one pass.
+     *
+     * @param other the analyzer to merge
+     * @throws IllegalArgumentException if the other analyzer is not a {@code TimeWindowedAnalyzer}
+     *                                  with the same windows
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof TimeWindowedAnalyzer otherWindowed) || otherWindowed.window != window
+                || otherWindowed.windowCount != windowCount) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        delegate.merge(otherWindowed.delegate);
+        droppedLogs += otherWindowed.droppedLogs;
+        long otherLatest = otherWindowed.latestWindow;
+        for (int otherSlot = 0; otherSlot < windowCount; otherSlot++) {
+            if (!otherWindowed.isKept(otherSlot, Long.MIN_VALUE, otherLatest)) {
+                continue;
+            }
+            long[] counts = otherWindowed.slotCounts[otherSlot];
+            int[] ids = new int[otherWindowed.values.size()];
+            for (int id = 0; id < ids.length; id++) {
+                ids[id] = id < counts.length && counts[id] != 0 ? idOf(otherWindowed.values.get(id)) : NO_VALUE;
+            }
+            addWindow(otherWindowed.slotWindows[otherSlot], otherWindowed.slotTotals[otherSlot], counts, ids);
+        }
+    }
+
+    /**
+     * Adds a whole window of counts, whose value ids are mapped to the ids of this analyzer.
+     */
+    private void addWindow(long windowIndex, long total, long[] counts, int[] ids) {
+        int slot = slotFor(windowIndex);
+        if (slot == NO_VALUE) {
+            droppedLogs += total;
+            return;
+        }
+        slotTotals[slot] += total;
+        for (int id = 0; id < ids.length; id++) {
+            if (ids[id] != NO_VALUE) {
+                addCount(slot, ids[id], counts[id]);
+            }
+        }
+    }
+
+    /**
+     * Writes the wrapped analyzer's snapshot, followed by the kept windows.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        delegate.writeSnapshot(out);
+        BinaryIO.writeString(out, window.name());
+        out.writeInt(windowCount);
+        out.writeLong(droppedLogs);
+        int kept = 0;
+        for (int slot = 0; slot < windowCount; slot++) {
+            if (isKept(slot, Long.MIN_VALUE, latestWindow)) {
+                kept++;
+            }
+        }
+        out.writeInt(kept);
+        for (int slot = 0; slot < windowCount; slot++) {
+            if (!isKept(slot, Long.MIN_VALUE, latestWindow)) {
+                continue;
+            }
+            long[] counts = slotCounts[slot];
+            int entries = 0;
+            for (int id = 0; id < Math.min(counts.length, values.size()); id++) {
+                if (counts[id] != 0) {
+                    entries++;
+                }
+            }
+            out.writeLong(slotWindows[slot]);
+            out.writeLong(slotTotals[slot]);
+            out.writeInt(entries);
+            for (int id = 0; id < Math.min(counts.length, values.size()); id++) {
+                if (counts[id] != 0) {
+                    BinaryIO.writeString(out, values.get(id));
+                    out.writeLong(counts[id]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeSnapshot(DataOutput)} and adds it to this analyzer.
+     * Windows of a snapshot taken with another window length are skipped; the all-time counts are still restored.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        delegate.readSnapshot(in);
+        boolean sameWindows = window.name().equals(BinaryIO.readString(in));
+        in.readInt();
+        long snapshotDroppedLogs = in.readLong();
+        if (sameWindows) {
+            droppedLogs += snapshotDroppedLogs;
+        }
+        int kept = in.readInt();
+        for (int i = 0; i < kept; i++) {
+            long windowIndex = in.readLong();
+            long total = in.readLong();
+            int entries = in.readInt();
+            long[] counts = new long[entries];
+            int[] ids = new int[entries];
+            for (int entry = 0; entry < entries; entry++) {
+                String value = BinaryIO.readString(in);
+                counts[entry] = in.readLong();
+                ids[entry] = sameWindows ? idOf(value) : NO_VALUE;
+            }
+            if (sameWindows) {
+                addWindow(windowIndex, total, counts, ids);
+            }
+        }
+    }
+
+    /**
+     * Returns a tag of the wrapped analyzer's format. The window length is left out, since
+     * {@link #readSnapshot(DataInput)} already skips the windows of another length.
+     *
+     * @return the snapshot format tag
+     */
+    @Override
+    public String getSnapshotFormat() {
+        return getClass().getName() + "(" + delegate.getSnapshotFormat() + ")";
+    }
+}
@@ -0,0 +1,355 @@
+package categories;
+
+import main.BinaryIO;
+import main.LogField;
+import main.ParsedLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code TopKAnalyzer} class counts the most frequent values of a high-cardinality category,
+ * such as raw User-Agent strings, URLs or referrers, in fixed memory.
+ * Every value is counted in a {@link CountMinSketch}, and the {@code CANDIDATE_FACTOR * k} values with the
+ * highest estimates are kept as candidates; a value replaces the smallest candidate once its estimate exceeds it,
+ * and the {@code k} highest candidates are the heavy hitters.
+ * The candidates are kept in a binary min-heap by estimate, so counting a value costs {@code O(log k)}
+ * even when most values are new and compete with the smallest candidate.
+ * Estimates never undercount, and overcount by at most {@link #getErrorBound()} with probability
+ * {@code 1 - delta}. The sketches of two analyzers with the same bounds merge exactly, but the heavy hitters of a
+ * merge are only picked among the candidates of both analyzers: the merged top k of parallel workers or snapshots
+ * is approximate, and misses a value that was not a candidate of any of them. The extra candidates make that
+ * unlikely, since such a value must rank below {@code CANDIDATE_FACTOR * k} others in every part.
+ * The values come from {@link CategoryAnalyzer#getCategoryValue(ParsedLog)} of another analyzer, which never
+ * counts anything itself.
+ */
+public class TopKAnalyzer implements CategoryAnalyzer {
+
+    /** The number of candidates kept per heavy hitter, so merged analyzers pick their heavy hitters among more. */
+    public static final int CANDIDATE_FACTOR = 4;
+
+    // === Constants ===
+    private static final String INVALID_SIZE_ERR = "Top size must be positive: ";
+    private static final String MERGE_ERR = "Cannot merge a TopKAnalyzer with ";
+
+    // === Fields ===
+    private final CategoryAnalyzer valueSource;
+    private final int k;
+    private final int candidateCount;
+    private final double epsilon;
+    private final double delta;
+    private final CountMinSketch sketch;
+
+    /* The candidates by value, and the same candidates in a min-heap by estimate. */
+    private final Map<String, HeavyHitter> topValues = new HashMap<>();
+    private final List<HeavyHitter> heap = new ArrayList<>();
+
+    /**
+     * Constructs a {@code TopKAnalyzer} of the values of another analyzer.
+     *
+     * @param valueSource the analyzer that extracts the category value of a log
+     * @param k           the number of heavy hitters kept
+     * @param epsilon     the maximal overcount of an estimate, relative to the number of counted logs
+     * @param delta       the probability that an estimate exceeds the maximal overcount
+     * @throws IllegalArgumentException if k is not positive, epsilon or delta is not between 0 and 1, or the value
+     *                                  source does not count single values
+     */
+    public TopKAnalyzer(CategoryAnalyzer valueSource, int k, double epsilon, double delta) {
+        if (k < 1) {
+            throw new IllegalArgumentException(INVALID_SIZE_ERR + k);
+        }
+        this.valueSource = CategoryAnalyzer.requireCategoryValue(valueSource);
+        this.k = k;
+        this.candidateCount = (int) Math.min(Integer.MAX_VALUE, (long) k * CANDIDATE_FACTOR);
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.sketch = new CountMinSketch(epsilon, delta);
+    }
+
+    /**
+     * Counts the category value of a parsed log entry, and updates the candidates.
+     *
+     * @param log the parsed log entry
+     */
+    @Override
+    public void addLogToCounter(ParsedLog log) {
+        String value = valueSource.getCategoryValue(log);
+        if (value != null) {
+            offer(value, sketch.add(value, 1));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            addLogToCounter(batch[i]);
+        }
+    }
+
+    /**
+     * Updates the candidates with the new estimate of a value.
+     *
+     * @param value    the value
+     * @param estimate the estimate of the value's count
+     */
+    private void offer(String value, long estimate) {
+        HeavyHitter hitter = topValues.get(value);
+        if (hitter != null) {
+            // the estimates of a value only grow, so it can only move down the heap
+            hitter.estimate = estimate;
+            siftDown(hitter.position);
+            return;
+        }
+        if (heap.size() < candidateCount) {
+            hitter = new HeavyHitter(value, estimate, heap.size());
+            heap.add(hitter);
+            topValues.put(value, hitter);
+            siftUp(hitter.position);
+            return;
+        }
+        HeavyHitter min = heap.get(0);
+        if (estimate > min.estimate) {
+            // the smallest candidate is evicted, and its entry reused for the new value
+            topValues.remove(min.value);
+            min.value = value;
+            min.estimate = estimate;
+            topValues.put(value, min);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Moves a candidate up the heap until its parent's estimate is not larger.
+     */
+    private void siftUp(int position) {
+        HeavyHitter hitter = heap.get(position);
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (heap.get(parent).estimate <= hitter.estimate) {
+                break;
+            }
+            place(heap.get(parent), position);
+            position = parent;
+        }
+        place(hitter, position);
+    }
+
+    /**
+     * Moves a candidate down the heap until its children's estimates are not smaller.
+     */
+    private void siftDown(int position) {
+        HeavyHitter hitter = heap.get(position);
+        int size = heap.size();
+        while (2 * position + 1 < size) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && heap.get(child + 1).estimate < heap.get(child).estimate) {
+                child++;
+            }
+            if (heap.get(child).estimate >= hitter.estimate) {
+                break;
+            }
+            place(heap.get(child), position);
+            position = child;
+        }
+        place(hitter, position);
+    }
+
+    private void place(HeavyHitter hitter, int position) {
+        heap.set(position, hitter);
+        hitter.position = position;
+    }
+
+    /**
+     * Returns the category value a log entry is counted under.
+     *
+     * @param log the parsed log entry
+     * @return the value of the wrapped analyzer
+     */
+    @Override
+    public String getCategoryValue(ParsedLog log) {
+        return valueSource.getCategoryValue(log);
+    }
+
+    /**
+     * Returns {@code true}, since the value source counts single values.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean supportsCategoryValue() {
+        return true;
+    }
+
+    /**
+     * Returns the heavy hitters and their estimated counts, from the most to the least frequent.
+     *
+     * @return a map of at most k values and their estimates
+     */
+    @Override
+    public Map<String, Integer> getCounter() {
+        List<HeavyHitter> hitters = new ArrayList<>(heap);
+        hitters.sort((a, b) -> Long.compare(b.estimate, a.estimate));
+        Map<String, Integer> counter = new LinkedHashMap<>();
+        for (HeavyHitter hitter : hitters.subList(0, Math.min(k, hitters.size()))) {
+            counter.put(hitter.value, (int) Math.min(hitter.estimate, Integer.MAX_VALUE));
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the estimated count of any value, heavy hitter or not.
+     *
+     * @param value the value
+     * @return the estimate, never below the exact count
+     */
+    public long estimate(String value) {
+        return sketch.estimate(value);
+    }
+
+    /**
+     * Returns the maximal overcount of an estimate, which holds with probability {@code 1 - delta}.
+     *
+     * @return epsilon times the number of counted logs
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(epsilon * sketch.getTotal());
+    }
+
+    /**
+     * Returns the number of heavy hitters kept.
+     *
+     * @return k
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Returns the name of the wrapped category.
+     *
+     * @return the category name
+     */
+    @Override
+    public String getCategoryName() {
+        return valueSource.getCategoryName();
+    }
+
+    /**
+     * Returns the fields the wrapped analyzer reads.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return valueSource.getRequiredFields();
+    }
+
+    /**
+     * Creates a new {@code TopKAnalyzer} with the same value source and bounds, and an empty sketch.
+     *
+     * @return a new, empty {@code TopKAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        return new TopKAnalyzer(valueSource, k, epsilon, delta);
+    }
+
+    /**
+     * Adds the sketch of another {@code TopKAnalyzer} with the same bounds into this one, and keeps the candidates
+     * of both analyzers with the highest merged estimates.
+     *
+     * @param other the analyzer to merge
+     * @throws IllegalArgumentException if the other analyzer is not a {@code TopKAnalyzer} with the same bounds
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof TopKAnalyzer otherTopK) || otherTopK.k != k || !sketch.isCompatible(otherTopK.sketch)) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        sketch.merge(otherTopK.sketch);
+        Set<String> candidates = new HashSet<>(topValues.keySet());
+        candidates.addAll(otherTopK.topValues.keySet());
+        reselect(candidates);
+    }
+
+    /**
+     * Re-estimates candidate values against the sketch and keeps the highest as candidates.
+     *
+     * @param candidates the candidate values
+     */
+    private void reselect(Set<String> candidates) {
+        topValues.clear();
+        heap.clear();
+        for (String candidate : candidates) {
+            offer(candidate, sketch.estimate(candidate));
+        }
+    }
+
+    /**
+     * Writes the sketch and the candidates of this analyzer to a snapshot.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        sketch.write(out);
+        out.writeInt(topValues.size());
+        for (String value : topValues.keySet()) {
+            BinaryIO.writeString(out, value);
+        }
+    }
+
+    /**
+     * Adds the sketch of a snapshot to this analyzer, and merges its candidates.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails, or the snapshot was written with other bounds
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        sketch.readAndAdd(in);
+        Set<String> candidates = new HashSet<>(topValues.keySet());
+        int values = in.readInt();
+        for (int i = 0; i < values; i++) {
+            candidates.add(BinaryIO.readString(in));
+        }
+        reselect(candidates);
+    }
+
+    /**
+     * Returns a tag of the sketch dimensions and the value source's format, since sketches of other
+     * dimensions can't be added.
+     *
+     * @return the snapshot format tag
+     */
+    @Override
+    public String getSnapshotFormat() {
+        return getClass().getName() + "(sketch=" + sketch.getWidth() + "x" + sketch.getDepth() + ", "
+                + valueSource.getSnapshotFormat() + ")";
+    }
+
+    /**
+     * A candidate heavy hitter: a value, its estimate, and its position in the heap.
+     */
+    private static final class HeavyHitter {
+        private String value;
+        private long estimate;
+        private int position;
+
+        private HeavyHitter(String value, long estimate, int position) {
+            this.value = value;
+            this.estimate = estimate;
+            this.position = position;
+        }
+    }
+}
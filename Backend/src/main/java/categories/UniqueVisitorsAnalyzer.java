@@ -0,0 +1,263 @@
+package categories;
+
+import main.BinaryIO;
+import main.LogField;
+import main.ParsedLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code UniqueVisitorsAnalyzer} class estimates the number of distinct IP addresses behind every value of
+ * another analyzer, e.g. the unique visitors per country, next to the hit counts of the wrapped analyzer.
+ * Every value keeps a {@link HyperLogLog} of the IPs instead of a set, so a value uses a few kilobytes
+ * however many visitors it has, and partial analyzers merge without counting a visitor twice.
+ * The wrapped analyzer must implement {@link CategoryAnalyzer#getCategoryValue(ParsedLog)}.
+ */
+public class UniqueVisitorsAnalyzer implements CategoryAnalyzer {
+
+    // === Constants ===
+    private static final String INVALID_PRECISION_ERR = "Unsupported HyperLogLog precision: ";
+    private static final String MERGE_ERR = "Cannot merge a UniqueVisitorsAnalyzer with ";
+
+    // === Fields ===
+    private final CategoryAnalyzer delegate;
+    private final int precision;
+    private final Set<LogField> requiredFields;
+    private final Map<String, HyperLogLog> visitors = new HashMap<>();
+
+    /**
+     * Constructs a {@code UniqueVisitorsAnalyzer} on top of another analyzer, with sketches of
+     * {@link HyperLogLog#DEFAULT_PRECISION}.
+     *
+     * @param delegate the analyzer whose values the visitors are counted for; it keeps the hit counts
+     * @throws IllegalArgumentException if the wrapped analyzer does not count single values
+     */
+    public UniqueVisitorsAnalyzer(CategoryAnalyzer delegate) {
+        this(delegate, HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructs a {@code UniqueVisitorsAnalyzer} on top of another analyzer.
+     *
+     * @param delegate  the analyzer whose values the visitors are counted for; it keeps the hit counts
+     * @param precision the precision of the sketch of every value
+     * @throws IllegalArgumentException if the precision is not supported by {@link HyperLogLog}, or the wrapped
+     *                                  analyzer does not count single values
+     */
+    public UniqueVisitorsAnalyzer(CategoryAnalyzer delegate, int precision) {
+        if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException(INVALID_PRECISION_ERR + precision);
+        }
+        this.delegate = CategoryAnalyzer.requireCategoryValue(delegate);
+        this.precision = precision;
+        Set<LogField> fields = EnumSet.of(LogField.IP);
+        Set<LogField> delegateFields = delegate.getRequiredFields();
+        fields.addAll(delegateFields == null ? EnumSet.allOf(LogField.class) : delegateFields);
+        this.requiredFields = fields;
+    }
+
+    /**
+     * Counts a log entry in the wrapped analyzer, and adds its IP to the visitors of its category value.
+     *
+     * @param log the parsed log entry
+     */
+    @Override
+    public void addLogToCounter(ParsedLog log) {
+        delegate.addLogToCounter(log);
+        addVisitor(log);
+    }
+
+    /**
+     * Counts a batch of log entries in the wrapped analyzer as a batch, and then adds their IPs to the visitors.
+     *
+     * @param batch the parsed log entries
+     * @param from  the index of the first log entry to process, inclusive
+     * @param to    the index of the last log entry to process, exclusive
+     */
+    @Override
+    public void addLogsToCounter(ParsedLog[] batch, int from, int to) {
+        delegate.addLogsToCounter(batch, from, to);
+        for (int i = from; i < to; i++) {
+            addVisitor(batch[i]);
+        }
+    }
+
+    /**
+     * Adds the IP of a log entry to the visitors of its category value.
+     *
+     * @param log the parsed log entry
+     */
+    private void addVisitor(ParsedLog log) {
+        String ip = log.getIp();
+        if (ip == null) {
+            return;
+        }
+        String value = delegate.getCategoryValue(log);
+        if (value != null) {
+            visitors.computeIfAbsent(value, v -> new HyperLogLog(precision)).add(ip);
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct IPs of every category value.
+     *
+     * @return the estimates by value
+     */
+    public Map<String, Long> getUniqueVisitors() {
+        Map<String, Long> estimates = new HashMap<>();
+        for (Map.Entry<String, HyperLogLog> entry : visitors.entrySet()) {
+            estimates.put(entry.getKey(), entry.getValue().estimate());
+        }
+        return estimates;
+    }
+
+    /**
+     * Returns the estimated number of distinct IPs of a category value.
+     *
+     * @param value the category value
+     * @return the estimate, {@code 0} if the value was never seen
+     */
+    public long getUniqueVisitors(String value) {
+        HyperLogLog sketch = visitors.get(value);
+        return sketch == null ? 0 : sketch.estimate();
+    }
+
+    /**
+     * Returns the wrapped analyzer.
+     *
+     * @return the wrapped analyzer
+     */
+    public CategoryAnalyzer getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the hit counts of the wrapped analyzer.
+     *
+     * @return the counts by value
+     */
+    @Override
+    public Map<String, Integer> getCounter() {
+        return delegate.getCounter();
+    }
+
+    /**
+     * Returns the category name of the wrapped analyzer.
+     *
+     * @return the category name
+     */
+    @Override
+    public String getCategoryName() {
+        return delegate.getCategoryName();
+    }
+
+    /**
+     * Returns the category value of the wrapped analyzer.
+     *
+     * @param log the parsed log entry
+     * @return the category value, or {@code null}
+     */
+    @Override
+    public String getCategoryValue(ParsedLog log) {
+        return delegate.getCategoryValue(log);
+    }
+
+    /**
+     * Returns {@code true}, since the wrapped analyzer counts single values.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean supportsCategoryValue() {
+        return true;
+    }
+
+    /**
+     * Returns the fields of the wrapped analyzer and the IP.
+     *
+     * @return the required fields
+     */
+    @Override
+    public Set<LogField> getRequiredFields() {
+        return requiredFields;
+    }
+
+    /**
+     * Creates an empty {@code UniqueVisitorsAnalyzer} of the same precision over an empty copy of the wrapped
+     * analyzer.
+     *
+     * @return a new, empty {@code UniqueVisitorsAnalyzer}
+     */
+    @Override
+    public CategoryAnalyzer createEmptyCopy() {
+        return new UniqueVisitorsAnalyzer(delegate.createEmptyCopy(), precision);
+    }
+
+    /**
+     * Merges the wrapped analyzers and the visitor sketches of another {@code UniqueVisitorsAnalyzer}
+     * of the same precision.
+     *
+     * @param other the analyzer to merge
+     * @throws IllegalArgumentException if the other analyzer is not a {@code UniqueVisitorsAnalyzer}
+     *                                  of the same precision
+     */
+    @Override
+    public void merge(CategoryAnalyzer other) {
+        if (!(other instanceof UniqueVisitorsAnalyzer otherVisitors) || otherVisitors.precision != precision) {
+            throw new IllegalArgumentException(MERGE_ERR + other.getClass().getSimpleName());
+        }
+        delegate.merge(otherVisitors.delegate);
+        for (Map.Entry<String, HyperLogLog> entry : otherVisitors.visitors.entrySet()) {
+            visitors.computeIfAbsent(entry.getKey(), v -> new HyperLogLog(precision)).merge(entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the wrapped analyzer's snapshot, followed by the visitor sketch of every value.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        delegate.writeSnapshot(out);
+        out.writeInt(visitors.size());
+        for (Map.Entry<String, HyperLogLog> entry : visitors.entrySet()) {
+            BinaryIO.writeString(out, entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    /**
+     * Adds the wrapped analyzer's snapshot, and merges the visitor sketches of the snapshot.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails, or the sketches have another precision
+     */
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        delegate.readSnapshot(in);
+        int values = in.readInt();
+        for (int i = 0; i < values; i++) {
+            String value = BinaryIO.readString(in);
+            visitors.computeIfAbsent(value, v -> new HyperLogLog(precision)).readAndMerge(in);
+        }
+    }
+
+    /**
+     * Returns a tag of the sketch precision and the wrapped analyzer's format, since sketches of another
+     * precision can't be merged.
+     *
+     * @return the snapshot format tag
+     */
+    @Override
+    public String getSnapshotFormat() {
+        return getClass().getName() + "(precision=" + precision + ", " + delegate.getSnapshotFormat() + ")";
+    }
+}
@@ -0,0 +1,147 @@
+package input;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The {@code LogFiles} class resolves the log inputs given on the command line and opens them for reading.
+ * An input is a file, a directory (all its regular, non-hidden files) or a glob such as
+ * {@code logs/access.log.*.gz}. Files whose name ends with {@code .gz} are decompressed while they are read,
+ * so rotated logs are analyzed without unpacking them first.
+ */
+public final class LogFiles {
+
+    // === Constants ===
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String GLOB_SYNTAX = "glob:";
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String NO_MATCH_ERR = "No log files match: ";
+
+    private LogFiles() {
+    }
+
+    /**
+     * Resolves inputs to the log files they stand for, keeping the order of the inputs and dropping duplicates.
+     * The files of a directory or a glob are sorted by path.
+     *
+     * @param inputs the files, directories and globs.
+     * @return the log files.
+     * @throws IOException if a directory can't be listed, or a glob matches no file.
+     */
+    public static List<Path> expand(List<String> inputs) throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String input : inputs) {
+            if (isGlob(input)) {
+                List<Path> matches = matchGlob(input);
+                if (matches.isEmpty()) {
+                    throw new IOException(NO_MATCH_ERR + input);
+                }
+                files.addAll(matches);
+            } else if (Files.isDirectory(Paths.get(input))) {
+                try (Stream<Path> children = Files.list(Paths.get(input))) {
+                    children.filter(LogFiles::isLogFile).sorted().forEach(files::add);
+                }
+            } else {
+                files.add(Paths.get(input));
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Returns whether an input contains glob characters.
+     */
+    private static boolean isGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(input.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the files matching a glob, walking down from the longest directory prefix without glob characters,
+     * and no deeper than the glob reaches unless it contains {@code **}.
+     */
+    private static List<Path> matchGlob(String glob) throws IOException {
+        Path pattern = Paths.get(glob);
+        Path base = pattern.isAbsolute() ? pattern.getRoot() : Paths.get("");
+        int depth = 0;
+        for (Path segment : pattern) {
+            if (isGlob(segment.toString())) {
+                break;
+            }
+            base = base.resolve(segment);
+            depth++;
+        }
+        int maxDepth = pattern.getNameCount() - depth;
+        if (glob.contains("**")) {
+            maxDepth = Integer.MAX_VALUE;
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher(GLOB_SYNTAX + glob);
+        if (!Files.isDirectory(base)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.walk(base, maxDepth)) {
+            return paths.filter(path -> matcher.matches(path) && isLogFile(path)).sorted().toList();
+        }
+    }
+
+    /**
+     * Returns whether a path is a regular, non-hidden file.
+     */
+    private static boolean isLogFile(Path path) {
+        try {
+            return Files.isRegularFile(path) && !Files.isHidden(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether a log file is gzip-compressed, judging by its name.
+     *
+     * @param file the log file.
+     * @return {@code true} if the file name ends with {@code .gz}.
+     */
+    public static boolean isCompressed(Path file) {
+        return file.getFileName().toString().endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Opens a log file for reading line by line, decompressing it on the fly if it is gzip-compressed.
+     *
+     * @param file the log file.
+     * @return a reader of the decompressed lines.
+     * @throws IOException if the file can't be opened, or is not in gzip format despite its name.
+     */
+    public static BufferedReader openReader(Path file) throws IOException {
+        if (!isCompressed(file)) {
+            return Files.newBufferedReader(file);
+        }
+        InputStream fileIn = Files.newInputStream(file);
+        try {
+            GZIPInputStream in = new GZIPInputStream(fileIn, BUFFER_SIZE);
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        } catch (IOException e) {
+            fileIn.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
+
+/**
+ * The {@code LogFollower} class follows a growing log file, like {@code tail -F}.
+ * It remembers the offset it has read up to, and every {@link #poll()} reads only the bytes appended since,
+ * passing every complete line to a consumer. An incomplete last line is kept until its newline arrives.
+ * Log rotation is detected by a change of the file's identity (its inode): the rest of the old file is read
+ * and the new file is followed from its start. A file that shrinks below the offset was truncated,
+ * and is read again from its start.
+ * A single poll reads at most {@value #MAX_BYTES_PER_POLL} bytes, so a caller catching up with a large file
+ * regains control regularly, e.g. to print a report or write a snapshot.
+ */
+public class LogFollower implements Closeable {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_BYTES_PER_POLL = 64L * 1024 * 1024;
+    private static final byte NEWLINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final Path path;
+    private final Consumer<String> lineConsumer;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long offset;
+
+    /**
+     * Constructs a {@code LogFollower} that starts reading the file from the given offset.
+     *
+     * @param path         the path of the followed log file
+     * @param lineConsumer the consumer of every complete line
+     * @param offset       the offset to start from, {@code 0} to read the whole existing file
+     */
+    public LogFollower(Path path, Consumer<String> lineConsumer, long offset) {
+        this.path = path;
+        this.lineConsumer = lineConsumer;
+        this.offset = offset;
+    }
+
+    /**
+     * Constructs a {@code LogFollower} that reads the whole existing file before following it.
+     *
+     * @param path         the path of the followed log file
+     * @param lineConsumer the consumer of every complete line
+     */
+    public LogFollower(Path path, Consumer<String> lineConsumer) {
+        this(path, lineConsumer, 0);
+    }
+
+    /**
+     * Reads the bytes appended since the last poll and passes every complete line to the consumer.
+     * A missing file is not an error; it is opened once it appears.
+     * When more than {@value #MAX_BYTES_PER_POLL} bytes are pending, the rest is left for the next poll.
+     *
+     * @return the number of lines passed to the consumer
+     * @throws IOException if reading the file fails
+     */
+    public long poll() throws IOException {
+        long lines = 0;
+        if (channel == null && !open()) {
+            return 0;
+        }
+        long start = offset;
+        lines += readAppended();
+        if (offset - start >= MAX_BYTES_PER_POLL) {
+            // the end of the file was not reached yet, rotation and truncation are checked once it is
+            return lines;
+        }
+
+        Object currentKey = currentFileKey();
+        if (currentKey != null && fileKey != null && !currentKey.equals(fileKey)) {
+            // rotated: the old file was fully read above, so its last line is complete
+            if (partialLine.size() > 0) {
+                lines += emitPartialLine();
+            }
+            closeChannel();
+            offset = 0;
+            if (open()) {
+                lines += readAppended();
+            }
+        } else if (channel.size() < offset) {
+            // truncated in place: start over from the beginning of the file
+            partialLine.reset();
+            offset = 0;
+            lines += readAppended();
+        }
+        return lines;
+    }
+
+    /**
+     * Opens the followed file, if it exists.
+     *
+     * @return {@code true} if the file was opened
+     */
+    private boolean open() throws IOException {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        fileKey = currentFileKey();
+        if (channel.size() < offset) {
+            offset = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the identity of the file currently at the followed path, or {@code null} if unknown.
+     */
+    private Object currentFileKey() throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the open channel from the offset to its end, or up to the per-poll limit,
+     * splitting the bytes into lines.
+     */
+    private long readAppended() throws IOException {
+        long lines = 0;
+        long limit = offset + MAX_BYTES_PER_POLL;
+        int read;
+        while (offset < limit && (read = channel.read(readBuffer.clear(), offset)) > 0) {
+            offset += read;
+            byte[] bytes = readBuffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == NEWLINE) {
+                    partialLine.write(bytes, lineStart, i - lineStart);
+                    lines += emitPartialLine();
+                    lineStart = i + 1;
+                }
+            }
+            partialLine.write(bytes, lineStart, read - lineStart);
+        }
+        return lines;
+    }
+
+    /**
+     * Passes an incomplete last line to the consumer, as if its newline had arrived.
+     * Useful once a file is known to be complete, since its last line may lack a trailing newline.
+     *
+     * @return the number of lines passed to the consumer, {@code 0} if no bytes were pending
+     */
+    public long flush() {
+        return partialLine.size() > 0 ? emitPartialLine() : 0;
+    }
+
+    /**
+     * Passes the pending bytes to the consumer as a line.
+     *
+     * @return the number of lines passed to the consumer, always {@code 1}
+     */
+    private long emitPartialLine() {
+        byte[] bytes = partialLine.toByteArray();
+        partialLine.reset();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == CARRIAGE_RETURN) {
+            length--;
+        }
+        lineConsumer.accept(new String(bytes, 0, length, StandardCharsets.UTF_8));
+        return 1;
+    }
+
+    /**
+     * Returns the offset in the current file up to which the lines were read.
+     * Bytes of an incomplete last line are read but not yet passed to the consumer.
+     *
+     * @return the read offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the offset of the first byte that was not yet passed to the consumer as part of a line.
+     * Restarting a follower from this offset neither skips nor repeats lines.
+     *
+     * @return the offset of the first unconsumed byte
+     */
+    public long getConsumedOffset() {
+        return offset - partialLine.size();
+    }
+
+    /**
+     * Returns the path of the followed file.
+     *
+     * @return the followed path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Closes the followed file.
+     *
+     * @throws IOException if closing the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        closeChannel();
+    }
+}
@@ -0,0 +1,221 @@
+package input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The {@code MappedLogFile} class maps a log file into memory with {@link FileChannel#map} and splits it
+ * into byte ranges that start and end on line boundaries. The ranges are slices of the mapped buffers,
+ * so handing them to parallel workers does not copy the file contents.
+ * A single mapping is limited to 2 GB, so bigger files are mapped as several segments, each of them
+ * ending right after a newline.
+ */
+public class MappedLogFile implements Closeable {
+
+    /** The maximal size of a single mapped segment. */
+    public static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private static final byte NEWLINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int INITIAL_LINE_BUFFER_SIZE = 1024;
+    private static final String LINE_TOO_LONG_ERR = "A line is longer than the mapped segment size at offset ";
+    private static final String INVALID_PARTS_ERR = "Number of parts must be positive: ";
+
+    private final FileChannel channel;
+    private final List<ByteBuffer> segments;
+    private final long size;
+
+    /**
+     * Maps the given file into memory.
+     *
+     * @param path           the path of the log file.
+     * @param maxSegmentSize the maximal size of a single mapped segment.
+     * @throws IOException if the file can't be opened or mapped, or a line is longer than a segment.
+     */
+    private MappedLogFile(Path path, int maxSegmentSize) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            segments = mapSegments(maxSegmentSize);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the given log file into memory.
+     *
+     * @param path the path of the log file.
+     * @return the mapped log file.
+     * @throws IOException if the file can't be opened or mapped.
+     */
+    public static MappedLogFile open(Path path) throws IOException {
+        return new MappedLogFile(path, MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps the given log file into memory using segments of at most {@code maxSegmentSize} bytes.
+     *
+     * @param path           the path of the log file.
+     * @param maxSegmentSize the maximal size of a single mapped segment.
+     * @return the mapped log file.
+     * @throws IOException if the file can't be opened or mapped, or a line is longer than a segment.
+     */
+    public static MappedLogFile open(Path path, int maxSegmentSize) throws IOException {
+        return new MappedLogFile(path, maxSegmentSize);
+    }
+
+    /**
+     * Maps the file as consecutive segments, each of them ending right after a newline
+     * (except for the last one, which ends at the end of the file).
+     *
+     * @param maxSegmentSize the maximal size of a single mapped segment.
+     * @return the mapped segments.
+     * @throws IOException if mapping fails or a line is longer than a segment.
+     */
+    private List<ByteBuffer> mapSegments(int maxSegmentSize) throws IOException {
+        List<ByteBuffer> mapped = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            int length = (int) Math.min(maxSegmentSize, size - start);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            if (start + length < size) {
+                int lastNewline = lastIndexOf(buffer, NEWLINE, length);
+                if (lastNewline < 0) {
+                    throw new IOException(LINE_TOO_LONG_ERR + start);
+                }
+                length = lastNewline + 1;
+            }
+            mapped.add(buffer.slice(0, length));
+            start += length;
+        }
+        return mapped;
+    }
+
+    /**
+     * Splits the file into about {@code parts} byte ranges. Every range starts at the beginning of a line
+     * and ends right after a newline or at the end of the file. Ranges never cross a segment, so a file
+     * bigger than a single segment may be split into more ranges than requested.
+     *
+     * @param parts the requested number of ranges.
+     * @return the byte ranges, as independent slices of the mapped segments.
+     * @throws IllegalArgumentException if {@code parts} is not positive.
+     */
+    public List<ByteBuffer> split(int parts) {
+        if (parts < 1) {
+            throw new IllegalArgumentException(INVALID_PARTS_ERR + parts);
+        }
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        long targetSize = Math.max(1, (size + parts - 1) / parts);
+        List<ByteBuffer> ranges = new ArrayList<>();
+        for (ByteBuffer segment : segments) {
+            int limit = segment.limit();
+            int start = 0;
+            while (start < limit) {
+                int end = (int) Math.min(limit, start + targetSize);
+                if (end < limit) {
+                    int newline = indexOf(segment, NEWLINE, end - 1, limit);
+                    end = newline < 0 ? limit : newline + 1;
+                }
+                ranges.add(segment.slice(start, end - start));
+                start = end;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Decodes every line of the given range and passes it to the action.
+     * Line terminators ({@code \n} or {@code \r\n}) are not part of the lines, and a final newline
+     * does not produce an empty last line, as with {@link java.io.BufferedReader#readLine()}.
+     * The range's position is not modified.
+     *
+     * @param range  the byte range, as returned by {@link #split(int)}.
+     * @param action the action to apply to every line.
+     */
+    public static void forEachLine(ByteBuffer range, Consumer<String> action) {
+        byte[] line = new byte[INITIAL_LINE_BUFFER_SIZE];
+        int limit = range.limit();
+        int start = range.position();
+        while (start < limit) {
+            int newline = indexOf(range, NEWLINE, start, limit);
+            int end = newline < 0 ? limit : newline;
+            int next = newline < 0 ? limit : newline + 1;
+            if (end > start && range.get(end - 1) == CARRIAGE_RETURN) {
+                end--;
+            }
+            int length = end - start;
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            range.get(start, line, 0, length);
+            action.accept(new String(line, 0, length, StandardCharsets.UTF_8));
+            start = next;
+        }
+    }
+
+    /**
+     * Returns the index of the first occurrence of a byte in {@code [from, to)}, or {@code -1}.
+     */
+    private static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last occurrence of a byte in {@code [0, to)}, or {@code -1}.
+     */
+    private static int lastIndexOf(ByteBuffer buffer, byte value, int to) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the size of the mapped file in bytes.
+     *
+     * @return the file size.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of mapped segments.
+     *
+     * @return the number of segments, {@code 0} for an empty file.
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Closes the underlying file channel. The mapped buffers stay readable until they are garbage collected.
+     *
+     * @throws IOException if closing the channel fails.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
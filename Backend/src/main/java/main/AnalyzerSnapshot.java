@@ -0,0 +1,217 @@
+package main;
+
+import categories.CategoryAnalyzer;
+import ua_parser.Client;
+import ua_parser.Device;
+import ua_parser.OS;
+import ua_parser.UserAgent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code AnalyzerSnapshot} class saves the state of a {@link LogAnalyzer} to a compact binary file,
+ * so a restarted analyzer resumes where it stopped instead of parsing the whole logs again.
+ * A snapshot holds the number of analyzed logs, the offset processed so far in every input file,
+ * the counts of every analyzer (by category name and snapshot format) and the parsed User-Agents of the cache.
+ * Snapshots are written to a temporary file that atomically replaces the previous snapshot,
+ * so a crash while saving never leaves a corrupted snapshot behind.
+ */
+public final class AnalyzerSnapshot {
+
+    // === Constants ===
+    private static final int MAGIC = 0x4C415353;
+    private static final int VERSION = 2;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String NOT_A_SNAPSHOT_ERR = "Not a log analyzer snapshot: ";
+    private static final String UNSUPPORTED_VERSION_ERR = "Unsupported snapshot version: ";
+    private static final String MISSING_ANALYZER_ERR = "The snapshot holds no counts of %s; "
+            + "resume with the options it was saved with, or delete it";
+    private static final String FORMAT_MISMATCH_ERR = "The snapshot of %s was saved as %s, expected %s; "
+            + "resume with the options it was saved with, or delete it";
+
+    private AnalyzerSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the analyzer, replacing any previous snapshot at the same path.
+     *
+     * @param snapshotPath   the path of the snapshot file
+     * @param logAnalyzer    the analyzer to save
+     * @param offsets        the processed offset of every input file, by path
+     * @param userAgentCache the parsed User-Agents to save, or {@code null} to save none
+     * @throws IOException if writing the snapshot fails
+     */
+    public static void write(Path snapshotPath, LogAnalyzer logAnalyzer, Map<String, Long> offsets,
+                             LruCache<String, Client> userAgentCache) throws IOException {
+        Path directory = snapshotPath.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, snapshotPath.getFileName().toString(), TEMP_SUFFIX);
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tempFile.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                writeTo(out, logAnalyzer, offsets, userAgentCache);
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            try {
+                Files.move(tempFile, snapshotPath, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void writeTo(DataOutputStream out, LogAnalyzer logAnalyzer, Map<String, Long> offsets,
+                                LruCache<String, Client> userAgentCache) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(logAnalyzer.getTotalLogs());
+
+        out.writeInt(offsets.size());
+        for (Map.Entry<String, Long> offset : offsets.entrySet()) {
+            BinaryIO.writeString(out, offset.getKey());
+            out.writeLong(offset.getValue());
+        }
+
+        List<CategoryAnalyzer> analyzers = logAnalyzer.getAnalyzers();
+        out.writeInt(analyzers.size());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (CategoryAnalyzer analyzer : analyzers) {
+            // every analyzer is length-prefixed, so a reader without that analyzer can skip it
+            buffer.reset();
+            DataOutputStream analyzerOut = new DataOutputStream(buffer);
+            analyzer.writeSnapshot(analyzerOut);
+            analyzerOut.flush();
+            BinaryIO.writeString(out, analyzer.getCategoryName());
+            BinaryIO.writeString(out, analyzer.getSnapshotFormat());
+            out.writeInt(buffer.size());
+            buffer.writeTo(out);
+        }
+
+        List<Map.Entry<String, Client>> clients = userAgentCache == null ? List.of() : userAgentCache.entries();
+        out.writeInt(clients.size());
+        for (Map.Entry<String, Client> entry : clients) {
+            BinaryIO.writeString(out, entry.getKey());
+            writeClient(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a snapshot into a fresh analyzer: the saved counts are added to the analyzers of the same
+     * category name, and the saved User-Agents are put in the cache. Saved analyzers without a matching
+     * analyzer are skipped. Every analyzer must be restored, since the restored logs count for all of them: if one
+     * is missing from the snapshot or was saved in another format, e.g. with other wrappers, the snapshot is
+     * rejected before anything is restored.
+     *
+     * @param snapshotPath   the path of the snapshot file
+     * @param logAnalyzer    the streaming analyzer to restore
+     * @param userAgentCache the cache to restore the parsed User-Agents into, or {@code null} to skip them
+     * @return the processed offset of every input file, by path
+     * @throws IOException if reading the snapshot fails, the file is not a snapshot, or an analyzer can't be
+     *                     restored from it
+     */
+    public static Map<String, Long> read(Path snapshotPath, LogAnalyzer logAnalyzer,
+                                         LruCache<String, Client> userAgentCache) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(NOT_A_SNAPSHOT_ERR + snapshotPath);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(UNSUPPORTED_VERSION_ERR + version);
+            }
+            long restoredLogs = in.readLong();
+
+            int files = in.readInt();
+            Map<String, Long> offsets = new LinkedHashMap<>();
+            for (int i = 0; i < files; i++) {
+                String path = BinaryIO.readString(in);
+                offsets.put(path, in.readLong());
+            }
+
+            Map<String, CategoryAnalyzer> analyzersByName = new HashMap<>();
+            for (CategoryAnalyzer analyzer : logAnalyzer.getAnalyzers()) {
+                analyzersByName.put(analyzer.getCategoryName(), analyzer);
+            }
+            // the counts are only restored once every analyzer was found in the right format
+            Map<CategoryAnalyzer, byte[]> analyzerBytes = new LinkedHashMap<>();
+            int analyzers = in.readInt();
+            for (int i = 0; i < analyzers; i++) {
+                String name = BinaryIO.readString(in);
+                String format = BinaryIO.readString(in);
+                int length = in.readInt();
+                CategoryAnalyzer analyzer = analyzersByName.get(name);
+                if (analyzer == null) {
+                    in.skipNBytes(length);
+                } else if (!format.equals(analyzer.getSnapshotFormat())) {
+                    throw new IOException(String.format(FORMAT_MISMATCH_ERR, name, format,
+                            analyzer.getSnapshotFormat()));
+                } else {
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    analyzerBytes.put(analyzer, bytes);
+                }
+            }
+            for (CategoryAnalyzer analyzer : logAnalyzer.getAnalyzers()) {
+                if (!analyzerBytes.containsKey(analyzer)) {
+                    throw new IOException(String.format(MISSING_ANALYZER_ERR, analyzer.getCategoryName()));
+                }
+            }
+
+            int clients = in.readInt();
+            for (int i = 0; i < clients; i++) {
+                String userAgent = BinaryIO.readString(in);
+                Client client = readClient(in);
+                if (userAgentCache != null) {
+                    userAgentCache.put(userAgent, client);
+                }
+            }
+
+            for (Map.Entry<CategoryAnalyzer, byte[]> entry : analyzerBytes.entrySet()) {
+                // the analyzer reads from its own bytes, so it can't overrun into the next analyzer
+                entry.getKey().readSnapshot(new DataInputStream(new ByteArrayInputStream(entry.getValue())));
+            }
+            logAnalyzer.addRestoredLogs(restoredLogs);
+            return offsets;
+        }
+    }
+
+    private static void writeClient(DataOutputStream out, Client client) throws IOException {
+        BinaryIO.writeString(out, client.userAgent.family);
+        BinaryIO.writeString(out, client.userAgent.major);
+        BinaryIO.writeString(out, client.userAgent.minor);
+        BinaryIO.writeString(out, client.userAgent.patch);
+        BinaryIO.writeString(out, client.os.family);
+        BinaryIO.writeString(out, client.os.major);
+        BinaryIO.writeString(out, client.os.minor);
+        BinaryIO.writeString(out, client.os.patch);
+        BinaryIO.writeString(out, client.os.patchMinor);
+        BinaryIO.writeString(out, client.device.family);
+    }
+
+    private static Client readClient(DataInputStream in) throws IOException {
+        UserAgent userAgent = new UserAgent(BinaryIO.readString(in), BinaryIO.readString(in),
+                BinaryIO.readString(in), BinaryIO.readString(in));
+        OS os = new OS(BinaryIO.readString(in), BinaryIO.readString(in), BinaryIO.readString(in),
+                BinaryIO.readString(in), BinaryIO.readString(in));
+        Device device = new Device(BinaryIO.readString(in));
+        return new Client(userAgent, os, device);
+    }
+}
@@ -0,0 +1,57 @@
+package main;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code BinaryIO} class holds helpers shared by the binary file formats of the analyzer.
+ * Strings are written as their UTF-8 length followed by the UTF-8 bytes, so unlike
+ * {@link DataOutput#writeUTF(String)} they are not limited to 64 KB, and {@code null} is supported.
+ */
+public final class BinaryIO {
+
+    private static final int NULL_LENGTH = -1;
+    private static final String INVALID_LENGTH_ERR = "Invalid string length: ";
+
+    private BinaryIO() {
+    }
+
+    /**
+     * Writes a string, which may be {@code null}.
+     *
+     * @param out   the output to write to
+     * @param value the string to write
+     * @throws IOException if writing fails
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in the input to read from
+     * @return the string, or {@code null}
+     * @throws IOException if reading fails or the data is corrupted
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException(INVALID_LENGTH_ERR + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,518 @@
+package main;
+
+import categories.GeoIpDatabase;
+import categories.TimeWindow;
+import com.maxmind.db.Reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@code CommandLineOptions} class holds the options given to {@link LogAnalyzer#main(String[])}.
+ * Every argument that is not an option is a log input, required unless the analyzer serves pushed logs: a log
+ * file, a directory of log files, or a glob such as {@code logs/access.log.*.gz}; files ending with {@code .gz}
+ * are decompressed while they are read, and a log store written by --compile is scanned without parsing the logs
+ * again. Supported options:
+ *   --threads N         the number of worker threads used to parse and count the logs (default 1)
+ *   --ua-cache-size N   the maximal number of parsed User-Agents kept in memory (default 10000)
+ *   --geoip-db PATH     the GeoIP2 country database file
+ *   --geoip-mode MODE   mmap to memory-map the database file, memory to load it into the heap (default mmap)
+ *   --geoip-cache N     the number of decoded GeoIP2 database nodes to cache, 0 to disable (default 0)
+ *   --follow            keep following the logs file as it grows, like tail -F
+ *   --interval SECONDS  how often the report is printed in follow mode (default 10)
+ *   --snapshot PATH     resume from the snapshot file at PATH, if any, and keep it up to date
+ *   --snapshot-interval SECONDS  how often the snapshot is written (default 60)
+ *   --filter EXPRESSION only count the logs matching the expression, e.g. "status=2xx path=/api/ ip=10.0.0.0/8
+ *                       since=2013-01-20"; see {@link LogFilter} for the syntax. Repeated filters must all hold
+ *   --unique-visitors   also estimate the unique IPs of every category value
+ *   --latency           also report the response time percentiles of all the logs and of every category value,
+ *                       read from the last field of the extended log format in microseconds
+ *   --window UNIT       also count every category in minute, hour or day windows, reporting the recent windows
+ *   --windows N         the number of most recent windows kept and reported (default 60)
+ *   --top FIELDS        also report the most frequent values of the comma-separated fields, out of
+ *                       ip, url, referrer and user-agent, counted approximately in fixed memory
+ *   --top-size K        the number of most frequent values reported per field (default 20)
+ *   --top-epsilon E     the maximal overcount of a top value, relative to the number of logs (default 0.0001)
+ *   --top-delta D       the probability that a top value exceeds the maximal overcount (default 0.001)
+ *   --cube DIMENSIONS   also count every combination of the comma-separated dimensions, out of country, os
+ *                       and browser, and report the counts of the combinations
+ *   --compile PATH      parse the log inputs once into a compiled log store at PATH instead of reporting, with
+ *                       the countries resolved and the filter applied; passing PATH as a log input analyzes the
+ *                       store without parsing the logs again, see {@link LogStore}
+ *   --concurrent-counters  count with thread-safe striped counters, so pushed logs are counted without merging
+ *   --serve PORT        after the log inputs, if any, count the logs posted to http://host:PORT/logs and serve
+ *                       the report on http://host:PORT/stats until the process is stopped
+ */
+public class CommandLineOptions {
+
+    // === Constants ===
+    private static final String THREADS_OPTION = "--threads";
+    private static final String UA_CACHE_SIZE_OPTION = "--ua-cache-size";
+    private static final String GEOIP_DB_OPTION = "--geoip-db";
+    private static final String GEOIP_MODE_OPTION = "--geoip-mode";
+    private static final String GEOIP_CACHE_OPTION = "--geoip-cache";
+    private static final String FOLLOW_OPTION = "--follow";
+    private static final String INTERVAL_OPTION = "--interval";
+    private static final String SNAPSHOT_OPTION = "--snapshot";
+    private static final String SNAPSHOT_INTERVAL_OPTION = "--snapshot-interval";
+    private static final String FILTER_OPTION = "--filter";
+    private static final String UNIQUE_VISITORS_OPTION = "--unique-visitors";
+    private static final String LATENCY_OPTION = "--latency";
+    private static final String WINDOW_OPTION = "--window";
+    private static final String WINDOWS_OPTION = "--windows";
+    private static final String TOP_OPTION = "--top";
+    private static final String TOP_SIZE_OPTION = "--top-size";
+    private static final String TOP_EPSILON_OPTION = "--top-epsilon";
+    private static final String TOP_DELTA_OPTION = "--top-delta";
+    private static final String CUBE_OPTION = "--cube";
+    private static final String COMPILE_OPTION = "--compile";
+    private static final String SERVE_OPTION = "--serve";
+    private static final String CONCURRENT_COUNTERS_OPTION = "--concurrent-counters";
+    private static final Map<String, LogField> TOP_FIELDS = Map.of("ip", LogField.IP, "url", LogField.URL,
+            "referrer", LogField.REFERRER, "user-agent", LogField.USER_AGENT);
+    private static final String LIST_SEPARATOR = ",";
+    private static final List<String> CUBE_DIMENSIONS = List.of("country", "os", "browser");
+    private static final String MISSING_PATH_ERR = "Please provide the path to the logs file as a " +
+            "command-line argument.";
+    private static final String INVALID_PORT_ERR = "Invalid port for option --serve: ";
+    private static final String MISSING_VALUE_ERR = "Missing value for option ";
+    private static final String INVALID_NUMBER_ERR = "Invalid number for option ";
+    private static final String UNKNOWN_OPTION_ERR = "Unknown option: ";
+    private static final String UNKNOWN_TOP_FIELD_ERR = "Unknown field for option --top: ";
+    private static final String UNKNOWN_CUBE_DIMENSION_ERR = "Unknown dimension for option --cube: ";
+    private static final String OPTION_PREFIX = "--";
+    private static final int DEFAULT_THREADS = 1;
+    private static final int MAX_PORT = 65535;
+    private static final int NO_PORT = -1;
+    private static final int DEFAULT_REPORT_INTERVAL_SECONDS = 10;
+    private static final int DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 60;
+    private static final int DEFAULT_WINDOW_COUNT = 60;
+    private static final int DEFAULT_TOP_SIZE = 20;
+    private static final double DEFAULT_TOP_EPSILON = 0.0001;
+    private static final double DEFAULT_TOP_DELTA = 0.001;
+
+    // === Fields ===
+    private final List<String> logPaths = new ArrayList<>();
+    private int threads = DEFAULT_THREADS;
+    private int userAgentCacheSize = ParsedLog.DEFAULT_USER_AGENT_CACHE_SIZE;
+    private String geoIpDatabasePath = GeoIpDatabase.DEFAULT_PATH;
+    private Reader.FileMode geoIpFileMode = GeoIpDatabase.DEFAULT_FILE_MODE;
+    private int geoIpCacheSize = GeoIpDatabase.DEFAULT_CACHE_SIZE;
+    private boolean follow = false;
+    private int reportIntervalSeconds = DEFAULT_REPORT_INTERVAL_SECONDS;
+    private String snapshotPath;
+    private int snapshotIntervalSeconds = DEFAULT_SNAPSHOT_INTERVAL_SECONDS;
+    private LogFilter filter = LogFilter.NONE;
+    private boolean uniqueVisitors = false;
+    private boolean latency = false;
+    private TimeWindow window;
+    private int windowCount = DEFAULT_WINDOW_COUNT;
+    private final List<LogField> topFields = new ArrayList<>();
+    private int topSize = DEFAULT_TOP_SIZE;
+    private double topEpsilon = DEFAULT_TOP_EPSILON;
+    private double topDelta = DEFAULT_TOP_DELTA;
+    private final List<String> cubeDimensions = new ArrayList<>();
+    private String compilePath;
+    private int servePort = NO_PORT;
+    private boolean concurrentCounters = false;
+
+    private CommandLineOptions() {
+    }
+
+    /**
+     * Parses the command-line arguments.
+     *
+     * @param args the command-line arguments.
+     * @return the parsed options.
+     * @throws IllegalArgumentException if an option is unknown or invalid, or the logs path is missing.
+     */
+    public static CommandLineOptions parse(String[] args) {
+        CommandLineOptions options = new CommandLineOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith(OPTION_PREFIX)) {
+                options.logPaths.add(arg);
+                continue;
+            }
+            switch (arg) {
+                case THREADS_OPTION -> options.threads = parsePositiveInt(arg, valueOf(args, ++i, arg));
+                case UA_CACHE_SIZE_OPTION -> options.userAgentCacheSize = parsePositiveInt(arg,
+                        valueOf(args, ++i, arg));
+                case GEOIP_DB_OPTION -> options.geoIpDatabasePath = valueOf(args, ++i, arg);
+                case GEOIP_MODE_OPTION -> options.geoIpFileMode = GeoIpDatabase.parseFileMode(valueOf(args, ++i, arg));
+                case GEOIP_CACHE_OPTION -> options.geoIpCacheSize = parseNonNegativeInt(arg, valueOf(args, ++i, arg));
+                case FOLLOW_OPTION -> options.follow = true;
+                case INTERVAL_OPTION -> options.reportIntervalSeconds = parsePositiveInt(arg, valueOf(args, ++i, arg));
+                case SNAPSHOT_OPTION -> options.snapshotPath = valueOf(args, ++i, arg);
+                case SNAPSHOT_INTERVAL_OPTION -> options.snapshotIntervalSeconds = parsePositiveInt(arg,
+                        valueOf(args, ++i, arg));
+                case FILTER_OPTION -> options.filter = options.filter.and(LogFilter.parse(valueOf(args, ++i, arg)));
+                case UNIQUE_VISITORS_OPTION -> options.uniqueVisitors = true;
+                case LATENCY_OPTION -> options.latency = true;
+                case WINDOW_OPTION -> options.window = TimeWindow.parse(valueOf(args, ++i, arg));
+                case WINDOWS_OPTION -> options.windowCount = parsePositiveInt(arg, valueOf(args, ++i, arg));
+                case TOP_OPTION -> options.addTopFields(valueOf(args, ++i, arg));
+                case TOP_SIZE_OPTION -> options.topSize = parsePositiveInt(arg, valueOf(args, ++i, arg));
+                case TOP_EPSILON_OPTION -> options.topEpsilon = parseFraction(arg, valueOf(args, ++i, arg));
+                case TOP_DELTA_OPTION -> options.topDelta = parseFraction(arg, valueOf(args, ++i, arg));
+                case CUBE_OPTION -> options.addCubeDimensions(valueOf(args, ++i, arg));
+                case COMPILE_OPTION -> options.compilePath = valueOf(args, ++i, arg);
+                case CONCURRENT_COUNTERS_OPTION -> options.concurrentCounters = true;
+                case SERVE_OPTION -> options.servePort = parsePort(valueOf(args, ++i, arg));
+                default -> throw new IllegalArgumentException(UNKNOWN_OPTION_ERR + arg);
+            }
+        }
+        if (options.logPaths.isEmpty() && (!options.isServe() || options.compilePath != null)) {
+            throw new IllegalArgumentException(MISSING_PATH_ERR);
+        }
+        return options;
+    }
+
+    /**
+     * Returns the value that follows an option.
+     *
+     * @param args   the command-line arguments.
+     * @param index  the index of the value.
+     * @param option the option name, used in the error message.
+     * @return the option value.
+     */
+    private static String valueOf(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(MISSING_VALUE_ERR + option);
+        }
+        return args[index];
+    }
+
+    /**
+     * Adds the fields of a comma-separated {@code --top} value, skipping fields that were already given.
+     *
+     * @param value the option value.
+     */
+    private void addTopFields(String value) {
+        for (String name : value.split(LIST_SEPARATOR)) {
+            LogField field = TOP_FIELDS.get(name.trim().toLowerCase(Locale.ROOT));
+            if (field == null) {
+                throw new IllegalArgumentException(UNKNOWN_TOP_FIELD_ERR + name);
+            }
+            if (!topFields.contains(field)) {
+                topFields.add(field);
+            }
+        }
+    }
+
+    /**
+     * Adds the dimensions of a comma-separated {@code --cube} value, skipping dimensions that were already given.
+     *
+     * @param value the option value.
+     */
+    private void addCubeDimensions(String value) {
+        for (String name : value.split(LIST_SEPARATOR)) {
+            String dimension = name.trim().toLowerCase(Locale.ROOT);
+            if (!CUBE_DIMENSIONS.contains(dimension)) {
+                throw new IllegalArgumentException(UNKNOWN_CUBE_DIMENSION_ERR + name);
+            }
+            if (!cubeDimensions.contains(dimension)) {
+                cubeDimensions.add(dimension);
+            }
+        }
+    }
+
+    /**
+     * Parses an option value strictly between 0 and 1.
+     *
+     * @param option the option name, used in the error message.
+     * @param value  the value to parse.
+     * @return the parsed value.
+     */
+    private static double parseFraction(String option, String value) {
+        try {
+            double number = Double.parseDouble(value);
+            if (!(number > 0 && number < 1)) {
+                throw new IllegalArgumentException(INVALID_NUMBER_ERR + option + ": " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(INVALID_NUMBER_ERR + option + ": " + value);
+        }
+    }
+
+    /**
+     * Parses the port of the {@code --serve} option.
+     *
+     * @param value the value to parse.
+     * @return the parsed port.
+     */
+    private static int parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            if (port < 1 || port > MAX_PORT) {
+                throw new IllegalArgumentException(INVALID_PORT_ERR + value);
+            }
+            return port;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(INVALID_PORT_ERR + value);
+        }
+    }
+
+    /**
+     * Parses a positive integer option value.
+     *
+     * @param option the option name, used in the error message.
+     * @param value  the value to parse.
+     * @return the parsed value.
+     */
+    private static int parsePositiveInt(String option, String value) {
+        int number = parseNonNegativeInt(option, value);
+        if (number < 1) {
+            throw new IllegalArgumentException(INVALID_NUMBER_ERR + option + ": " + value);
+        }
+        return number;
+    }
+
+    /**
+     * Parses a non-negative integer option value.
+     *
+     * @param option the option name, used in the error message.
+     * @param value  the value to parse.
+     * @return the parsed value.
+     */
+    private static int parseNonNegativeInt(String option, String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number < 0) {
+                throw new IllegalArgumentException(INVALID_NUMBER_ERR + option + ": " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(INVALID_NUMBER_ERR + option + ": " + value);
+        }
+    }
+
+    /**
+     * Returns the first log input.
+     *
+     * @return the first logs file path, directory or glob, or {@code null} when only pushed logs are served.
+     */
+    public String getLogPath() {
+        return logPaths.isEmpty() ? null : logPaths.get(0);
+    }
+
+    /**
+     * Returns all the log inputs, in the order they were given.
+     *
+     * @return the logs file paths, directories and globs.
+     */
+    public List<String> getLogPaths() {
+        return Collections.unmodifiableList(logPaths);
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return the number of threads, {@code 1} for the sequential path.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the maximal number of parsed User-Agents kept in memory.
+     *
+     * @return the User-Agent cache size
+     */
+    public int getUserAgentCacheSize() {
+        return userAgentCacheSize;
+    }
+
+    /**
+     * Returns the path to the GeoIP2 country database file.
+     *
+     * @return the database path
+     */
+    public String getGeoIpDatabasePath() {
+        return geoIpDatabasePath;
+    }
+
+    /**
+     * Returns the file mode of the GeoIP2 database reader.
+     *
+     * @return the file mode
+     */
+    public Reader.FileMode getGeoIpFileMode() {
+        return geoIpFileMode;
+    }
+
+    /**
+     * Returns the number of decoded GeoIP2 database nodes to cache.
+     *
+     * @return the node cache size, {@code 0} when the cache is disabled
+     */
+    public int getGeoIpCacheSize() {
+        return geoIpCacheSize;
+    }
+
+    /**
+     * Returns whether the logs file should be followed as it grows.
+     *
+     * @return {@code true} in follow mode
+     */
+    public boolean isFollow() {
+        return follow;
+    }
+
+    /**
+     * Returns how often the report is printed in follow mode.
+     *
+     * @return the report interval in seconds
+     */
+    public int getReportIntervalSeconds() {
+        return reportIntervalSeconds;
+    }
+
+    /**
+     * Returns the path of the snapshot file the analysis resumes from and saves to.
+     *
+     * @return the snapshot path, or {@code null} when snapshots are disabled
+     */
+    public String getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    /**
+     * Returns how often the snapshot is written.
+     *
+     * @return the snapshot interval in seconds
+     */
+    public int getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    /**
+     * Returns the filter of the counted logs.
+     *
+     * @return the filter, {@link LogFilter#NONE} when every log is counted
+     */
+    public LogFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns whether the unique IPs of every category value are estimated.
+     *
+     * @return {@code true} when unique visitors are reported
+     */
+    public boolean isUniqueVisitors() {
+        return uniqueVisitors;
+    }
+
+    /**
+     * Returns whether the response time percentiles of all the logs and of every category value are reported.
+     *
+     * @return {@code true} when response times are reported
+     */
+    public boolean isLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the length of the time windows the categories are also counted in.
+     *
+     * @return the time window, or {@code null} when only all-time counts are kept
+     */
+    public TimeWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Returns the number of most recent time windows kept and reported.
+     *
+     * @return the window count
+     */
+    public int getWindowCount() {
+        return windowCount;
+    }
+
+    /**
+     * Returns the fields whose most frequent values are also reported.
+     *
+     * @return the fields, in the order they were given, empty when no top values are reported
+     */
+    public List<LogField> getTopFields() {
+        return Collections.unmodifiableList(topFields);
+    }
+
+    /**
+     * Returns the number of most frequent values reported per field.
+     *
+     * @return the top size
+     */
+    public int getTopSize() {
+        return topSize;
+    }
+
+    /**
+     * Returns the maximal overcount of a top value, relative to the number of logs.
+     *
+     * @return the top epsilon
+     */
+    public double getTopEpsilon() {
+        return topEpsilon;
+    }
+
+    /**
+     * Returns the probability that a top value exceeds the maximal overcount.
+     *
+     * @return the top delta
+     */
+    public double getTopDelta() {
+        return topDelta;
+    }
+
+    /**
+     * Returns the dimensions of the cube of combinations, out of {@code country}, {@code os} and {@code browser}.
+     *
+     * @return the dimensions, in the order they were given, empty when no cube is counted
+     */
+    public List<String> getCubeDimensions() {
+        return Collections.unmodifiableList(cubeDimensions);
+    }
+
+    /**
+     * Returns the path of the log store the log inputs are compiled into.
+     *
+     * @return the store path, or {@code null} when the logs are analyzed
+     */
+    public String getCompilePath() {
+        return compilePath;
+    }
+
+    /**
+     * Returns whether the analyzer serves logs pushed over HTTP.
+     *
+     * @return {@code true} in server mode
+     */
+    public boolean isServe() {
+        return servePort != NO_PORT;
+    }
+
+    /**
+     * Returns the port the analyzer serves pushed logs on.
+     *
+     * @return the port, or {@code -1} when not in server mode
+     */
+    public int getServePort() {
+        return servePort;
+    }
+
+    /**
+     * Returns whether the categories are counted with thread-safe striped counters.
+     *
+     * @return {@code true} when the counters are shared between threads
+     */
+    public boolean isConcurrentCounters() {
+        return concurrentCounters;
+    }
+}
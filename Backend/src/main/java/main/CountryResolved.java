@@ -0,0 +1,23 @@
+package main;
+
+/**
+ * The {@code CountryResolved} interface is implemented by the {@link ParsedLog}s whose source resolved the country
+ * of the IP address before the log entry was read, as a compiled {@link LogStore} does, so a country analyzer
+ * answers without a GeoIP lookup.
+ */
+public interface CountryResolved {
+
+    /**
+     * Returns whether the country of the IP address of this log entry was resolved in advance.
+     *
+     * @return {@code true} if {@link #getResolvedCountry()} holds the country
+     */
+    boolean isCountryResolved();
+
+    /**
+     * Returns the country of the IP address resolved in advance, see {@link #isCountryResolved()}.
+     *
+     * @return the country name, or {@code null} if the IP has no known country or it was not resolved in advance
+     */
+    String getResolvedCountry();
+}
@@ -0,0 +1,127 @@
+package main;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * The {@code Ipv4} class converts dotted-quad IPv4 addresses to and from their {@code int} form
+ * without going through {@link InetAddress#getByName(String)}, which may fall back to a DNS lookup.
+ */
+public final class Ipv4 {
+
+    /** The value returned by {@link #parse(CharSequence)} for text that is not a valid IPv4 address. */
+    public static final long INVALID = -1;
+
+    private static final int OCTETS = 4;
+    private static final int MAX_OCTET = 255;
+    private static final int MAX_OCTET_DIGITS = 3;
+    private static final int BITS_PER_OCTET = 8;
+    private static final int OCTET_MASK = 0xFF;
+    private static final long UNSIGNED_MASK = 0xFFFFFFFFL;
+
+    private Ipv4() {
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address such as {@code 82.166.148.154}.
+     *
+     * @param ip the address text
+     * @return the address as an unsigned 32-bit value in a {@code long}, or {@link #INVALID}
+     */
+    public static long parse(CharSequence ip) {
+        return ip == null ? INVALID : parse(ip, 0, ip.length());
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address in a region of a text, without copying the region.
+     *
+     * @param text  the text containing the address
+     * @param start the offset of the first character of the address
+     * @param end   the offset after the last character of the address
+     * @return the address as an unsigned 32-bit value in a {@code long}, or {@link #INVALID}
+     */
+    public static long parse(CharSequence text, int start, int end) {
+        long address = 0;
+        int i = start;
+        for (int octet = 0; octet < OCTETS; octet++) {
+            int value = 0;
+            int digits = 0;
+            while (i < end && digits <= MAX_OCTET_DIGITS) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                digits++;
+                i++;
+            }
+            if (digits == 0 || digits > MAX_OCTET_DIGITS || value > MAX_OCTET) {
+                return INVALID;
+            }
+            address = (address << BITS_PER_OCTET) | value;
+            if (octet < OCTETS - 1) {
+                if (i == end || text.charAt(i) != '.') {
+                    return INVALID;
+                }
+                i++;
+            }
+        }
+        return i == end ? address : INVALID;
+    }
+
+    /**
+     * Returns the network part of an address, keeping its first {@code prefixLength} bits.
+     *
+     * @param address      the address
+     * @param prefixLength the network prefix length, between 0 and 32
+     * @return the masked address
+     */
+    public static int mask(int address, int prefixLength) {
+        return prefixLength == 0 ? 0 : address & (-1 << (Integer.SIZE - prefixLength));
+    }
+
+    /**
+     * Converts an address to its dotted-quad text.
+     *
+     * @param address the address
+     * @return the dotted-quad text
+     */
+    public static String toString(int address) {
+        return ((address >>> 24) & OCTET_MASK) + "." + ((address >>> 16) & OCTET_MASK) + "."
+                + ((address >>> 8) & OCTET_MASK) + "." + (address & OCTET_MASK);
+    }
+
+    /**
+     * Converts an address to an {@link InetAddress}, without any DNS lookup.
+     *
+     * @param address the address
+     * @return the {@link InetAddress}
+     */
+    public static InetAddress toInetAddress(int address) {
+        byte[] bytes = {(byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8), (byte) address};
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            // only thrown for an address of illegal length
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Converts an {@link InetAddress} holding an IPv4 address to its {@code int} form.
+     *
+     * @param address the IPv4 address
+     * @return the address as an unsigned 32-bit value in a {@code long}, or {@link #INVALID} for IPv6
+     */
+    public static long fromInetAddress(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (bytes.length != OCTETS) {
+            return INVALID;
+        }
+        long value = 0;
+        for (byte b : bytes) {
+            value = (value << BITS_PER_OCTET) | (b & OCTET_MASK);
+        }
+        return value & UNSIGNED_MASK;
+    }
+}
@@ -2,14 +2,39 @@ package main;
 
 import categories.BrowsersAnalyzer;
 import categories.CategoryAnalyzer;
+import categories.ConcurrentCategoryAnalyzer;
 import categories.CountriesAnalyzer;
+import categories.CubeAnalyzer;
+import categories.GeoIpDatabase;
+import categories.LatencyAnalyzer;
+import categories.LatencyHistogram;
+import categories.LogFieldAnalyzer;
 import categories.OSAnalyzer;
+import categories.TimeWindowedAnalyzer;
+import categories.TopKAnalyzer;
+import categories.UniqueVisitorsAnalyzer;
+import com.maxmind.geoip2.DatabaseReader;
+import input.LogFiles;
+import input.LogFollower;
+import input.MappedLogFile;
+import server.IngestionServer;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * The LogAnalyzer class processes and analyzes log files to provide statistics
@@ -20,20 +45,60 @@ import java.util.*;
 public class LogAnalyzer {
 
     // === Constants ===
-    private static final String MISSING_ARGUMENT_ERR = "Please provide the path to the logs file as a " +
-            "command-line argument.";
     private static final String COUNTRIES_CATEGORY_NAME = "Countries";
     private static final String OPERATING_SYSTEMS_CATEGORY_NAME = "Operating systems";
     private static final String BROWSERS_CATEGORY_NAME = "Browsers";
+    private static final String IPS_CATEGORY_NAME = "IP addresses";
+    private static final String URLS_CATEGORY_NAME = "URLs";
+    private static final String REFERRERS_CATEGORY_NAME = "Referrers";
+    private static final String USER_AGENTS_CATEGORY_NAME = "User agents";
+    private static final String CUBE_NAME_SEPARATOR = " x ";
     private static final String ERROR_READING_LOGS = "Error reading logs: ";
     private static final String ERROR_GEOIP = "Failed to open the GeoIP File: ";
+    private static final String ERROR_INTERRUPTED = "The analysis was interrupted.";
+    private static final String ERROR_SNAPSHOT = "Failed to write the snapshot: ";
+    private static final String ERROR_COMPILE = "Failed to compile the logs: ";
+    private static final String COMPILED_MESSAGE = "Compiled %d logs into %s%n";
+    private static final String STORE_FILTER_ERR = "--filter applies while logs are compiled, not to a compiled " +
+            "log store.";
+    private static final String ERROR_INCREMENTAL_INPUT = "--follow and --snapshot need a single, uncompressed " +
+            "log file.";
+    private static final String SERVING_MESSAGE = "Listening on port %d: POST logs to %s, GET the report on %s%n";
+    private static final String FOLLOW_REPORT_HEADER = "=== %s, %d logs ===%n";
+    private static final String REPORT_HEADER = "Total logs: %d%n%n";
+    private static final String WINDOWED_CATEGORY_HEADER = "%s, last %d %s windows";
+    private static final String CATEGORY_LINE = "%s - %.2f%%%n";
+    private static final String CATEGORY_LINE_WITH_DETAILS = "%s - %.2f%% (%s)%n";
+    private static final String UNIQUE_VISITORS_DETAIL = "~%d unique IPs";
+    private static final String LATENCY_DETAIL = "%s %.2f ms";
+    private static final String DETAIL_SEPARATOR = ", ";
+    private static final String LATENCY_HEADER = "Response times (%d logs):%n";
+    private static final String LATENCY_LINE = "%s - %.2f ms%n";
+    private static final double[] LATENCY_PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] LATENCY_PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final String TOP_CATEGORY_HEADER = "%s, top %d (counts at most %d too high)";
+    private static final long FOLLOW_POLL_MILLIS = 500;
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final String STREAMING_ADD_ANALYZER_ERR = "Cannot add an analyzer after a streaming " +
+            "calculation, the logs were not kept in memory.";
+    private static final String IN_MEMORY_ADD_LOG_ERR = "Cannot add a log to an analyzer of in-memory logs.";
     private static final double PERCENTAGE_MULTIPLIER = 100.0;
+    /* Splitting a mapped file into more ranges than workers balances lines of uneven cost. */
+    private static final int RANGES_PER_WORKER = 4;
 
     // === Fields ===
+    /* The in-memory logs, or null when the analyzer works in streaming mode. */
     private final List<String> allLogs;
-    private final int totalLogs;
+    private long totalLogs;
     private final List<CategoryAnalyzer> analyzers;
+    /* The fields the analyzers read, so the others are never extracted. */
+    private Set<LogField> requiredFields;
     private boolean calculated = false;
+    /* The filter of the counted logs; the rejected logs are not counted in the total either. */
+    private LogFilter filter = LogFilter.NONE;
+    /* Held shared while a batch is counted and added to the total, and exclusively while a report is printed. */
+    private final ReadWriteLock reportLock = new ReentrantReadWriteLock();
 
     /**
      * Constructs a {@code LogAnalyzer} with the provided logs and analyzers.
@@ -45,20 +110,299 @@ public class LogAnalyzer {
         this.allLogs = logs;
         this.totalLogs = logs.size();
         this.analyzers = analyzers;
+        this.requiredFields = LogField.requiredBy(analyzers);
+    }
+
+    /**
+     * Constructs a streaming {@code LogAnalyzer} that does not keep the logs in memory.
+     * The logs are supplied later through {@link #calculateParameters(Stream)} or
+     * {@link #calculateParameters(BufferedReader)}, and each line is dropped once it was counted.
+     *
+     * @param analyzers the list of {@link CategoryAnalyzer} objects to use.
+     */
+    public LogAnalyzer(List<CategoryAnalyzer> analyzers) {
+        this.allLogs = null;
+        this.totalLogs = 0;
+        this.analyzers = analyzers;
+        this.requiredFields = LogField.requiredBy(analyzers);
     }
 
 
     /**
      * Processes all log entries and updates the analyzers' counters.
+     * In streaming mode there are no stored logs, so this only marks the analysis as calculated.
      */
     public void calculateParameters() {
         calculated = true;
+        if (allLogs == null) {
+            return;
+        }
+        LogBatcher batcher = new LogBatcher(analyzers, requiredFields, filter);
         for (String log : allLogs) {
-            ParsedLog parsedLog = new ParsedLog(log);
+            batcher.add(log);
+        }
+        batcher.flush();
+        totalLogs = batcher.getCounted();
+    }
+
+    /**
+     * Processes the given stream of log entries in batches and updates the analyzers' counters.
+     * Only a batch of lines is retained, so memory use does not depend on the size of the input.
+     *
+     * @param logs the stream of log entries to analyze.
+     */
+    public void calculateParameters(Stream<String> logs) {
+        calculated = true;
+        LogBatcher batcher = new LogBatcher(analyzers, requiredFields, filter);
+        logs.forEach(batcher::add);
+        batcher.flush();
+        totalLogs += batcher.getCounted();
+    }
+
+    /**
+     * Reads the given reader line by line and updates the analyzers' counters in batches.
+     * Only a batch of lines is retained, so memory use does not depend on the size of the input.
+     * If reading fails, the lines read so far are still counted.
+     *
+     * @param reader the reader to read the log entries from.
+     * @throws IOException if reading from the reader fails.
+     */
+    public void calculateParameters(BufferedReader reader) throws IOException {
+        calculated = true;
+        LogBatcher batcher = new LogBatcher(analyzers, requiredFields, filter);
+        try {
+            String log;
+            while ((log = reader.readLine()) != null) {
+                batcher.add(log);
+            }
+        } finally {
+            batcher.flush();
+            totalLogs += batcher.getCounted();
+        }
+    }
+
+    /**
+     * Processes all in-memory log entries on several worker threads and updates the analyzers' counters.
+     * The counts are identical to the ones of {@link #calculateParameters()}.
+     * In streaming mode there are no stored logs, so this only marks the analysis as calculated.
+     *
+     * @param parallelism the number of worker threads.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers.
+     */
+    public void calculateParametersInParallel(int parallelism) throws InterruptedException {
+        calculated = true;
+        if (allLogs == null) {
+            return;
+        }
+        totalLogs = parallelProcessor(parallelism).process(allLogs.iterator());
+    }
+
+    /**
+     * Creates a {@link ParallelLogProcessor} of the analyzers with the filter of this analyzer.
+     *
+     * @param parallelism the number of worker threads.
+     * @return the processor.
+     */
+    private ParallelLogProcessor parallelProcessor(int parallelism) {
+        return new ParallelLogProcessor(analyzers, parallelism, ParallelLogProcessor.DEFAULT_CHUNK_SIZE, filter);
+    }
+
+    /**
+     * Reads the given reader in chunks of lines that are parsed and counted on several worker threads.
+     * Only a bounded number of chunks is kept in memory at any time.
+     *
+     * @param reader      the reader to read the log entries from.
+     * @param parallelism the number of worker threads.
+     * @throws IOException          if reading from the reader fails.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers.
+     */
+    public void calculateParametersInParallel(BufferedReader reader, int parallelism)
+            throws IOException, InterruptedException {
+        calculated = true;
+        try {
+            totalLogs += parallelProcessor(parallelism).process(reader.lines().iterator());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Maps the given log file into memory and parses and counts its lines on several worker threads.
+     * The file is split into byte ranges on line boundaries, so the workers read the mapped memory
+     * directly without copying the file through a reader.
+     *
+     * @param logPath     the path of the log file.
+     * @param parallelism the number of worker threads.
+     * @throws IOException          if the file can't be mapped.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers.
+     */
+    public void calculateParametersInParallel(Path logPath, int parallelism)
+            throws IOException, InterruptedException {
+        calculated = true;
+        try (MappedLogFile logFile = MappedLogFile.open(logPath)) {
+            List<ByteBuffer> ranges = logFile.split(parallelism * RANGES_PER_WORKER);
+            totalLogs += parallelProcessor(parallelism).processRanges(ranges);
+        }
+    }
+
+    /**
+     * Reads several log files, plain or gzip-compressed, and updates the analyzers' counters.
+     * With more than one worker thread, different files are read, decompressed and counted concurrently,
+     * and the partial counts are merged at the end; a single plain file is mapped into memory and split
+     * between the workers instead. Compiled log stores among the files are scanned first, see
+     * {@link #calculateParametersFromStore(Path, int)}.
+     *
+     * @param logFiles    the log files.
+     * @param parallelism the number of worker threads, {@code 1} to read the files one after the other.
+     * @throws IOException          if reading a file fails.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers.
+     */
+    public void calculateParameters(List<Path> logFiles, int parallelism) throws IOException, InterruptedException {
+        calculated = true;
+        List<Path> textFiles = new ArrayList<>(logFiles.size());
+        for (Path logFile : logFiles) {
+            if (LogStore.isStore(logFile)) {
+                calculateParametersFromStore(logFile, parallelism);
+            } else {
+                textFiles.add(logFile);
+            }
+        }
+        logFiles = textFiles;
+        if (logFiles.isEmpty()) {
+            return;
+        }
+        if (parallelism > 1 && logFiles.size() == 1 && !LogFiles.isCompressed(logFiles.get(0))) {
+            calculateParametersInParallel(logFiles.get(0), parallelism);
+        } else if (parallelism > 1) {
+            totalLogs += parallelProcessor(parallelism).processFiles(logFiles);
+        } else {
+            for (Path logFile : logFiles) {
+                try (BufferedReader reader = LogFiles.openReader(logFile)) {
+                    calculateParameters(reader);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans a compiled log store and updates the analyzers' counters, without parsing a line. With more than one
+     * worker thread, the blocks of the store are counted concurrently and the partial counts are merged at the end.
+     *
+     * @param storePath   the path of the store, written by {@link LogStore#compile}.
+     * @param parallelism the number of worker threads.
+     * @throws IOException              if the store can't be read.
+     * @throws InterruptedException     if the calling thread is interrupted while waiting for the workers.
+     * @throws IllegalArgumentException if an analyzer reads a field the store lacks, or a filter is set.
+     */
+    public void calculateParametersFromStore(Path storePath, int parallelism) throws IOException, InterruptedException {
+        calculated = true;
+        if (!filter.isEmpty()) {
+            throw new IllegalArgumentException(STORE_FILTER_ERR);
+        }
+        try (LogStore store = LogStore.open(storePath)) {
+            store.requireFields(requiredFields);
+            if (parallelism > 1) {
+                totalLogs += parallelProcessor(parallelism).processStore(store);
+            } else {
+                totalLogs += store.scan(new LogBatcher(analyzers, requiredFields));
+            }
+        }
+    }
+
+    /**
+     * Parses and counts a single log entry that arrived after the analyzer was created,
+     * e.g. a line appended to a followed log file, unless the filter rejects it. Only valid in streaming mode.
+     *
+     * @param log the log entry to analyze.
+     * @throws IllegalStateException if the analyzer holds in-memory logs.
+     */
+    public void addLog(String log) {
+        if (allLogs != null) {
+            throw new IllegalStateException(IN_MEMORY_ADD_LOG_ERR);
+        }
+        calculated = true;
+        // the filter is tested on the scan of the parsed log entry, so the line is scanned once
+        ScannedLog parsedLog = new ScannedLog(log, requiredFields);
+        if (parsedLog.matches(filter)) {
+            analyzeLog(parsedLog);
+            totalLogs++;
+        }
+    }
+
+    /**
+     * Sets the filter of the log entries counted from now on; the rejected entries are neither passed to the
+     * analyzers nor counted in {@link #getTotalLogs()}, so the percentages are relative to the accepted entries.
+     *
+     * @param filter the filter, {@link LogFilter#NONE} to count every log entry.
+     */
+    public void setFilter(LogFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Adds logs that were counted before a restart, when the analyzers' counts are restored from a snapshot.
+     *
+     * @param count the number of restored logs.
+     */
+    void addRestoredLogs(long count) {
+        totalLogs += count;
+    }
+
+    /**
+     * Passes a single parsed log entry to every analyzer.
+     *
+     * @param parsedLog the parsed log entry to analyze.
+     */
+    private void analyzeLog(ParsedLog parsedLog) {
+        for (CategoryAnalyzer analyzer : analyzers) {
+            analyzer.addLogToCounter(parsedLog);
+        }
+    }
+
+    /**
+     * Parses and counts a batch of log entries that arrived after the analyzer was created, e.g. lines pushed
+     * over the network. Only valid in streaming mode.
+     * Safe to call from several threads at once. When every analyzer is {@linkplain CategoryAnalyzer#isThreadSafe()
+     * thread-safe} the batch is counted into them directly; otherwise it is counted into empty copies of the
+     * analyzers on the calling thread, and only merging the copies holds the analyzer's lock.
+     * A report waits for the batches in progress, so it never sees counts whose logs are missing from the total.
+     *
+     * @param logs the log entries to analyze.
+     * @return the number of log entries that were counted, i.e. that the filter accepted.
+     * @throws IllegalStateException if the analyzer holds in-memory logs.
+     */
+    public long addLogBatch(List<String> logs) {
+        if (allLogs != null) {
+            throw new IllegalStateException(IN_MEMORY_ADD_LOG_ERR);
+        }
+        boolean threadSafe = analyzers.stream().allMatch(CategoryAnalyzer::isThreadSafe);
+        List<CategoryAnalyzer> targets = analyzers;
+        if (!threadSafe) {
+            targets = new ArrayList<>(analyzers.size());
             for (CategoryAnalyzer analyzer : analyzers) {
-                analyzer.addLogToCounter(parsedLog);
+                targets.add(analyzer.createEmptyCopy());
             }
         }
+        reportLock.readLock().lock();
+        try {
+            LogBatcher batcher = new LogBatcher(targets, requiredFields, filter);
+            for (String log : logs) {
+                batcher.add(log);
+            }
+            batcher.flush();
+            synchronized (this) {
+                if (!threadSafe) {
+                    for (int i = 0; i < analyzers.size(); i++) {
+                        analyzers.get(i).merge(targets.get(i));
+                    }
+                }
+                totalLogs += batcher.getCounted();
+                calculated = true;
+            }
+            return batcher.getCounted();
+        } finally {
+            reportLock.readLock().unlock();
+        }
     }
 
     /**
@@ -66,34 +410,174 @@ public class LogAnalyzer {
      * If not already calculated, this method will trigger the calculation first.
      */
     public void printAllCategories() {
-        if (!calculated) {
-            calculateParameters();
+        printAllCategories(System.out);
+    }
+
+    /**
+     * Prints the results of all category analyzers to the given stream, sorted by their occurrence percentages.
+     * If not already calculated, this method will trigger the calculation first.
+     *
+     * @param out the stream to print to.
+     */
+    public void printAllCategories(PrintStream out) {
+        printReport(out, false);
+    }
+
+    /**
+     * Prints the total number of analyzed logs followed by the results of all category analyzers, as
+     * {@link #printAllCategories(PrintStream)} does. The total and the counts agree even while
+     * {@link #addLogBatch(List)} counts batches on other threads.
+     *
+     * @param out the stream to print to.
+     */
+    public void printReport(PrintStream out) {
+        printReport(out, true);
+    }
+
+    private void printReport(PrintStream out, boolean withTotal) {
+        reportLock.writeLock().lock();
+        try {
+            if (!calculated) {
+                calculateParameters();
+            }
+            if (withTotal) {
+                out.printf(REPORT_HEADER, totalLogs);
+            }
+            printCategories(out);
+        } finally {
+            reportLock.writeLock().unlock();
         }
+    }
+
+    /**
+     * Prints the results of all category analyzers, sorted by their occurrence percentages.
+     */
+    private void printCategories(PrintStream out) {
+        LatencyHistogram allLatencies = null;
         for (CategoryAnalyzer analyzer : analyzers) {
-            printCategory(analyzer.getCounter(), analyzer.getCategoryName());
+            String header = analyzer.getCategoryName();
+            if (analyzer instanceof TopKAnalyzer topK) {
+                header = String.format(TOP_CATEGORY_HEADER, header, topK.getK(), topK.getErrorBound());
+            }
+            UniqueVisitorsAnalyzer visitors = wrappedAnalyzerOf(analyzer, UniqueVisitorsAnalyzer.class);
+            LatencyAnalyzer latencies = wrappedAnalyzerOf(analyzer, LatencyAnalyzer.class);
+            Function<String, String> details = null;
+            if (visitors != null || latencies != null) {
+                details = value -> details(value, visitors, latencies);
+            }
+            printCategory(out, analyzer.getCounter(), header, totalLogs, details);
+            if (analyzer instanceof TimeWindowedAnalyzer windowed) {
+                int windows = windowed.getWindowCount();
+                header = String.format(WINDOWED_CATEGORY_HEADER, windowed.getCategoryName(), windows,
+                        windowed.getWindow().name().toLowerCase(Locale.ROOT));
+                printCategory(out, windowed.getRecentCounts(windows), header, windowed.getRecentTotal(windows), null);
+            }
+            if (latencies != null && allLatencies == null) {
+                // every latency analyzer records all the logs, whatever their value
+                allLatencies = latencies.getAllLatencies();
+            }
+        }
+        if (allLatencies != null) {
+            printLatencies(out, allLatencies);
+        }
+    }
+
+    /**
+     * Returns the analyzer of the given class a category analyzer is or wraps, through the analyzers that add
+     * details to the values of another: {@link TimeWindowedAnalyzer}, {@link LatencyAnalyzer} and
+     * {@link UniqueVisitorsAnalyzer}.
+     *
+     * @param analyzer the analyzer of a category.
+     * @param type     the class of the analyzer to find.
+     * @return the analyzer, or {@code null} if the category has none of that class.
+     */
+    private static <T extends CategoryAnalyzer> T wrappedAnalyzerOf(CategoryAnalyzer analyzer, Class<T> type) {
+        while (analyzer != null && !type.isInstance(analyzer)) {
+            if (analyzer instanceof TimeWindowedAnalyzer windowed) {
+                analyzer = windowed.getDelegate();
+            } else if (analyzer instanceof LatencyAnalyzer latencies) {
+                analyzer = latencies.getDelegate();
+            } else if (analyzer instanceof UniqueVisitorsAnalyzer visitors) {
+                analyzer = visitors.getDelegate();
+            } else {
+                analyzer = null;
+            }
+        }
+        return type.cast(analyzer);
+    }
+
+    /**
+     * Returns the details printed after the percentage of a category value: its estimated unique IPs and its
+     * response time percentiles.
+     *
+     * @param value     the category value.
+     * @param visitors  the unique visitors analyzer of the category, or {@code null}.
+     * @param latencies the latency analyzer of the category, or {@code null}.
+     * @return the details, or {@code null} if there are none.
+     */
+    private static String details(String value, UniqueVisitorsAnalyzer visitors, LatencyAnalyzer latencies) {
+        StringJoiner details = new StringJoiner(DETAIL_SEPARATOR);
+        if (visitors != null) {
+            details.add(String.format(UNIQUE_VISITORS_DETAIL, visitors.getUniqueVisitors(value)));
+        }
+        LatencyHistogram histogram = latencies == null ? null : latencies.getLatencies(value);
+        if (histogram != null) {
+            for (int i = 0; i < LATENCY_PERCENTILES.length; i++) {
+                details.add(String.format(LATENCY_DETAIL, LATENCY_PERCENTILE_NAMES[i],
+                        histogram.getValueAtPercentile(LATENCY_PERCENTILES[i]) / MICROS_PER_MILLI));
+            }
+        }
+        return details.length() == 0 ? null : details.toString();
+    }
+
+    /**
+     * Prints the response time percentiles of all the logs with a response time.
+     *
+     * @param out       the stream to print to.
+     * @param histogram the response times of all the logs.
+     */
+    private static void printLatencies(PrintStream out, LatencyHistogram histogram) {
+        out.printf(LATENCY_HEADER, histogram.getCount());
+        for (int i = 0; i < LATENCY_PERCENTILES.length; i++) {
+            out.printf(LATENCY_LINE, LATENCY_PERCENTILE_NAMES[i],
+                    histogram.getValueAtPercentile(LATENCY_PERCENTILES[i]) / MICROS_PER_MILLI);
         }
+        out.println();
     }
 
 
     /**
      * Prints the percentage distribution of a category in descending order.
      *
-     * @param counter  a map containing category counts.
-     * @param category the headline to display before the category.
+     * @param out            the stream to print to.
+     * @param counter        a map containing category counts.
+     * @param category       the headline to display before the category.
+     * @param total          the number of logs the percentages are relative to.
+     * @param details        the details printed after the percentage of a value, e.g. its estimated unique IPs,
+     *                       or {@code null} to print only percentages.
      */
-    private void printCategory(Map<String, Integer> counter, String category) {
-        List<Map.Entry<String, Integer>> sortedEntries = new ArrayList<>(counter.entrySet());
-        sortedEntries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+    private static <N extends Number & Comparable<N>> void printCategory(PrintStream out, Map<String, N> counter,
+                                                                         String category, long total,
+                                                                         Function<String, String> details) {
+        List<Map.Entry<String, N>> sortedEntries = new ArrayList<>(counter.entrySet());
+        // Equal counts are ordered by name so the report does not depend on the counting order.
+        sortedEntries.sort(Map.Entry.<String, N>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
 //        int totalLogs = 0;
 //        for (int val : counter.values()) {
 //            totalLogs += val;
 //        }
-        System.out.println(category + ":");
+        out.println(category + ":");
         for (var entry : sortedEntries) {
-            double percentage = (entry.getValue() * PERCENTAGE_MULTIPLIER) / totalLogs;
-            System.out.printf("%s - %.2f%%%n", entry.getKey(), percentage);
+            double percentage = (entry.getValue().doubleValue() * PERCENTAGE_MULTIPLIER) / total;
+            String valueDetails = details == null ? null : details.apply(entry.getKey());
+            if (valueDetails == null) {
+                out.printf(CATEGORY_LINE, entry.getKey(), percentage);
+            } else {
+                out.printf(CATEGORY_LINE_WITH_DETAILS, entry.getKey(), percentage, valueDetails);
+            }
         }
-        System.out.println();
+        out.println();
     }
 
     /**
@@ -101,55 +585,280 @@ public class LogAnalyzer {
      * If calculation was already performed, it updates the new analyzer immediately.
      *
      * @param analyzer the {@link CategoryAnalyzer} to add.
+     * @throws IllegalStateException if a streaming calculation was already performed.
      */
     public void addAnalyzer(CategoryAnalyzer analyzer) {
         if (calculated) {
+            if (allLogs == null) {
+                throw new IllegalStateException(STREAMING_ADD_ANALYZER_ERR);
+            }
+            LogBatcher batcher = new LogBatcher(List.of(analyzer), LogField.requiredBy(List.of(analyzer)), filter);
             for (String log : allLogs) {
-                ParsedLog parsedLog = new ParsedLog(log);
-                analyzer.addLogToCounter(parsedLog);
+                batcher.add(log);
             }
+            batcher.flush();
         }
         analyzers.add(analyzer);
+        requiredFields = LogField.requiredBy(analyzers);
     }
 
     public List<CategoryAnalyzer> getAnalyzers() {
         return analyzers;
     }
 
+    /**
+     * Returns the number of log entries that were analyzed.
+     * For in-memory logs this is the size of the logs list.
+     *
+     * @return the total number of log entries.
+     */
+    public long getTotalLogs() {
+        return totalLogs;
+    }
+
+    /**
+     * Compiles the log inputs into a log store, resolving the countries once if the GeoIP database is available.
+     *
+     * @param options   the command-line options.
+     * @param countries the countries analyzer, or {@code null} without a GeoIP database.
+     */
+    private static void compile(CommandLineOptions options, CategoryAnalyzer countries) {
+        try {
+            List<Path> logFiles = LogFiles.expand(options.getLogPaths());
+            long compiled = LogStore.compile(logFiles, Paths.get(options.getCompilePath()), countries,
+                    options.getFilter());
+            System.out.printf(COMPILED_MESSAGE, compiled, options.getCompilePath());
+        } catch (IOException ioException) {
+            System.err.println(ERROR_COMPILE + ioException.getMessage());
+        }
+    }
+
+    /**
+     * Reads a log file incrementally, counting every line appended since the last read.
+     * When a snapshot path is set, the counts and the read offset are restored from the snapshot at startup
+     * and saved again at a fixed interval, so a restart only reads the lines that were appended since.
+     * In follow mode the file is followed until the thread is interrupted and the report is printed
+     * at a fixed interval; otherwise this returns once the end of the file is reached.
+     *
+     * @param logAnalyzer the streaming analyzer that counts the lines.
+     * @param logPath     the path of the log file.
+     * @param options     the command-line options.
+     * @throws IOException          if reading the log file or the snapshot fails.
+     * @throws InterruptedException if the thread is interrupted while waiting for new lines.
+     */
+    private static void readIncrementally(LogAnalyzer logAnalyzer, Path logPath, CommandLineOptions options)
+            throws IOException, InterruptedException {
+        Path snapshotPath = options.getSnapshotPath() == null ? null : Paths.get(options.getSnapshotPath());
+        String fileKey = logPath.toAbsolutePath().toString();
+        long offset = 0;
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            offset = AnalyzerSnapshot.read(snapshotPath, logAnalyzer, ParsedLog.getUserAgentCache())
+                    .getOrDefault(fileKey, 0L);
+        }
+        long reportIntervalMillis = options.getReportIntervalSeconds() * MILLIS_PER_SECOND;
+        long snapshotIntervalMillis = options.getSnapshotIntervalSeconds() * MILLIS_PER_SECOND;
+        try (LogFollower follower = new LogFollower(logPath, logAnalyzer::addLog, offset)) {
+            long nextReport = System.currentTimeMillis() + reportIntervalMillis;
+            long nextSnapshot = System.currentTimeMillis() + snapshotIntervalMillis;
+            while (true) {
+                long lines = follower.poll();
+                long now = System.currentTimeMillis();
+                if (snapshotPath != null && now >= nextSnapshot) {
+                    saveSnapshot(snapshotPath, logAnalyzer, fileKey, follower.getConsumedOffset());
+                    nextSnapshot = now + snapshotIntervalMillis;
+                }
+                if (options.isFollow() && now >= nextReport) {
+                    System.out.printf(FOLLOW_REPORT_HEADER, LocalDateTime.now(), logAnalyzer.getTotalLogs());
+                    logAnalyzer.printAllCategories();
+                    nextReport += reportIntervalMillis;
+                }
+                if (lines == 0) {
+                    if (!options.isFollow()) {
+                        break;
+                    }
+                    Thread.sleep(FOLLOW_POLL_MILLIS);
+                }
+            }
+            // the file is complete, so an unterminated last line is counted like a reader would
+            follower.flush();
+            if (snapshotPath != null) {
+                saveSnapshot(snapshotPath, logAnalyzer, fileKey, follower.getConsumedOffset());
+            }
+        }
+    }
+
+    /**
+     * Saves a snapshot of the analyzer, reporting a failure without stopping the analysis.
+     *
+     * @param snapshotPath the path of the snapshot file.
+     * @param logAnalyzer  the analyzer to save.
+     * @param fileKey      the key of the log file in the snapshot.
+     * @param offset       the offset of the first log file byte that was not counted.
+     */
+    private static void saveSnapshot(Path snapshotPath, LogAnalyzer logAnalyzer, String fileKey, long offset) {
+        try {
+            AnalyzerSnapshot.write(snapshotPath, logAnalyzer, Map.of(fileKey, offset), ParsedLog.getUserAgentCache());
+        } catch (IOException e) {
+            System.err.println(ERROR_SNAPSHOT + e.getMessage());
+        }
+    }
+
+    /**
+     * Counts the logs pushed to an {@link IngestionServer} until the process is stopped; the report of the logs
+     * counted so far is printed on shutdown.
+     *
+     * @param logAnalyzer the streaming analyzer that counts the pushed logs.
+     * @param port        the port to listen on.
+     * @throws IOException          if the server can't listen on the port.
+     * @throws InterruptedException if the thread is interrupted while serving.
+     */
+    private static void serve(LogAnalyzer logAnalyzer, int port) throws IOException, InterruptedException {
+        IngestionServer server = new IngestionServer(logAnalyzer, new InetSocketAddress(port));
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            logAnalyzer.printAllCategories();
+            stopped.countDown();
+        }));
+        server.start();
+        System.out.printf(SERVING_MESSAGE, server.getPort(), IngestionServer.LOGS_PATH, IngestionServer.STATS_PATH);
+        stopped.await();
+    }
+
+    /**
+     * Returns the category name the values of a text field are reported under.
+     *
+     * @param field a text field.
+     * @return the category name.
+     */
+    private static String categoryNameOf(LogField field) {
+        return switch (field) {
+            case IP -> IPS_CATEGORY_NAME;
+            case URL -> URLS_CATEGORY_NAME;
+            case REFERRER -> REFERRERS_CATEGORY_NAME;
+            default -> USER_AGENTS_CATEGORY_NAME;
+        };
+    }
+
+    /**
+     * Creates the cube of the combinations of some dimensions, each dimension counting the values of an empty copy
+     * of its category analyzer. The country dimension is left out without a GeoIP database.
+     *
+     * @param dimensions       the dimensions, out of {@code country}, {@code os} and {@code browser}.
+     * @param countryAnalyzer  the countries analyzer, or {@code null} without a GeoIP database.
+     * @param osAnalyzer       the operating systems analyzer.
+     * @param browsersAnalyzer the browsers analyzer.
+     * @return the cube, or {@code null} if it has no dimension.
+     */
+    private static CategoryAnalyzer cubeOf(List<String> dimensions, CategoryAnalyzer countryAnalyzer,
+                                           CategoryAnalyzer osAnalyzer, CategoryAnalyzer browsersAnalyzer) {
+        List<CategoryAnalyzer> dimensionAnalyzers = new ArrayList<>();
+        for (String dimension : dimensions) {
+            CategoryAnalyzer analyzer = switch (dimension) {
+                case "country" -> countryAnalyzer;
+                case "os" -> osAnalyzer;
+                default -> browsersAnalyzer;
+            };
+            if (analyzer != null) {
+                dimensionAnalyzers.add(analyzer.createEmptyCopy());
+            }
+        }
+        if (dimensionAnalyzers.isEmpty()) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        for (CategoryAnalyzer analyzer : dimensionAnalyzers) {
+            names.add(analyzer.getCategoryName());
+        }
+        return new CubeAnalyzer(String.join(CUBE_NAME_SEPARATOR, names), dimensionAnalyzers);
+    }
+
     /**
      * Main method to execute the log analysis.
      *
-     * @param args command line arguments. Expects the first argument to be the path to the log file.
+     * @param args command line arguments. Expects the path to the log file, optionally preceded or
+     *             followed by the options described in {@link CommandLineOptions}.
      */
     public static void main(String[] args) {
-        if (args.length < 1) {
-            System.err.println(MISSING_ARGUMENT_ERR);
+        CommandLineOptions options;
+        try {
+            options = CommandLineOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
             return;
         }
+        ParsedLog.setUserAgentCacheSize(options.getUserAgentCacheSize());
+        CategoryAnalyzer countryAnalyzer = null;
+        CategoryAnalyzer osAnalyzer = new OSAnalyzer(OPERATING_SYSTEMS_CATEGORY_NAME);
+        CategoryAnalyzer browsersAnalyzer = new BrowsersAnalyzer(BROWSERS_CATEGORY_NAME);
         try {
-            String logPathFile = args[0];
-            Path logPath = Paths.get(logPathFile);
-            List<String> allLogs = Files.readAllLines(logPath);
-            CategoryAnalyzer countryAnalyzer = null;
-            CategoryAnalyzer osAnalyzer = new OSAnalyzer(OPERATING_SYSTEMS_CATEGORY_NAME);
-            CategoryAnalyzer browsersAnalyzer = new BrowsersAnalyzer(BROWSERS_CATEGORY_NAME);
-            try {
-                countryAnalyzer = new CountriesAnalyzer(COUNTRIES_CATEGORY_NAME);
-            } catch (IOException ioE) {
-                System.err.println(ERROR_GEOIP + ioE.getMessage());
-            }
-            List<CategoryAnalyzer> analyzersList = new ArrayList<>(Arrays.asList(osAnalyzer,
-                    browsersAnalyzer));
-            if (countryAnalyzer != null) {
-                analyzersList.add(countryAnalyzer);
-            }
-
-            LogAnalyzer logAnalyzer = new LogAnalyzer(allLogs, analyzersList);
-            logAnalyzer.calculateParameters();
+            DatabaseReader reader = GeoIpDatabase.getShared(options.getGeoIpDatabasePath(),
+                    options.getGeoIpFileMode(), options.getGeoIpCacheSize());
+            countryAnalyzer = new CountriesAnalyzer(COUNTRIES_CATEGORY_NAME, reader);
+        } catch (IOException ioE) {
+            System.err.println(ERROR_GEOIP + ioE.getMessage());
+        }
+        if (options.getCompilePath() != null) {
+            compile(options, countryAnalyzer);
+            return;
+        }
+        // the cube has its own dimension analyzers, taken before the others are wrapped
+        CategoryAnalyzer cube = cubeOf(options.getCubeDimensions(), countryAnalyzer, osAnalyzer, browsersAnalyzer);
+        List<CategoryAnalyzer> analyzersList = new ArrayList<>(Arrays.asList(osAnalyzer,
+                browsersAnalyzer));
+        if (countryAnalyzer != null) {
+            analyzersList.add(countryAnalyzer);
+        }
+        if (options.isConcurrentCounters()) {
+            analyzersList.replaceAll(ConcurrentCategoryAnalyzer::new);
+        }
+        if (options.isUniqueVisitors()) {
+            analyzersList.replaceAll(UniqueVisitorsAnalyzer::new);
+        }
+        if (options.isLatency()) {
+            analyzersList.replaceAll(LatencyAnalyzer::new);
+        }
+        if (options.getWindow() != null) {
+            analyzersList.replaceAll(analyzer -> new TimeWindowedAnalyzer(analyzer, options.getWindow(),
+                    options.getWindowCount()));
+        }
+        // top values are only counted all-time, the windows would keep every distinct value
+        for (LogField field : options.getTopFields()) {
+            CategoryAnalyzer fieldAnalyzer = new LogFieldAnalyzer(categoryNameOf(field), field);
+            analyzersList.add(new TopKAnalyzer(fieldAnalyzer, options.getTopSize(), options.getTopEpsilon(),
+                    options.getTopDelta()));
+        }
+        if (cube != null) {
+            analyzersList.add(cube);
+        }
+
+        LogAnalyzer logAnalyzer = new LogAnalyzer(analyzersList);
+        logAnalyzer.setFilter(options.getFilter());
+        try {
+            List<Path> logFiles = LogFiles.expand(options.getLogPaths());
+            if (options.isFollow() || options.getSnapshotPath() != null) {
+                if (logFiles.size() != 1 || LogFiles.isCompressed(logFiles.get(0))
+                        || LogStore.isStore(logFiles.get(0))) {
+                    System.err.println(ERROR_INCREMENTAL_INPUT);
+                    return;
+                }
+                readIncrementally(logAnalyzer, logFiles.get(0), options);
+            } else {
+                logAnalyzer.calculateParameters(logFiles, options.getThreads());
+            }
+            if (options.isServe()) {
+                serve(logAnalyzer, options.getServePort());
+                return;
+            }
             logAnalyzer.printAllCategories();
 
         } catch (IOException ioException) {
             System.err.println(ERROR_READING_LOGS + ioException.getMessage());
+        } catch (IllegalArgumentException invalidInput) {
+            System.err.println(invalidInput.getMessage());
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            System.err.println(ERROR_INTERRUPTED);
         }
     }
 }
@@ -0,0 +1,101 @@
+package main;
+
+import categories.CategoryAnalyzer;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code LogBatcher} class parses log entries into a reused {@link ParsedLogBatch} and hands every full batch
+ * to the analyzers one analyzer at a time, through {@link CategoryAnalyzer#addLogsToCounter(ParsedLog[], int, int)}.
+ * Every analyzer then runs its own monomorphic loop over the batch while the parsed entries are still in cache,
+ * instead of one interface call per analyzer per entry. The batch and its {@link ParsedLog} views are reused for
+ * the next entries, so counting a log entry allocates little beyond the line itself. The entries a
+ * {@link LogFilter} rejects never enter the batch, and are neither counted nor handed to the analyzers.
+ * Not thread-safe: every thread uses its own batcher.
+ */
+final class LogBatcher {
+
+    /** The number of parsed log entries handed to the analyzers at once. */
+    static final int BATCH_SIZE = 256;
+
+    private final List<CategoryAnalyzer> analyzers;
+    private final ParsedLogBatch batch;
+    private long counted = 0;
+
+    /**
+     * Constructs a {@code LogBatcher}.
+     *
+     * @param analyzers      the analyzers that count the batches.
+     * @param requiredFields the fields the analyzers read.
+     */
+    LogBatcher(List<CategoryAnalyzer> analyzers, Set<LogField> requiredFields) {
+        this(analyzers, requiredFields, LogFilter.NONE);
+    }
+
+    /**
+     * Constructs a {@code LogBatcher} that only counts the log entries a filter accepts.
+     *
+     * @param analyzers      the analyzers that count the batches.
+     * @param requiredFields the fields the analyzers read.
+     * @param filter         the filter of the counted log entries.
+     */
+    LogBatcher(List<CategoryAnalyzer> analyzers, Set<LogField> requiredFields, LogFilter filter) {
+        this.analyzers = analyzers;
+        this.batch = new ParsedLogBatch(BATCH_SIZE, requiredFields, filter);
+    }
+
+    /**
+     * Parses a log entry into the batch if the filter accepts it, counting the batch once it is full.
+     *
+     * @param log the log entry.
+     */
+    void add(String log) {
+        batch.add(log);
+        if (batch.isFull()) {
+            flush();
+        }
+    }
+
+    /**
+     * Counts log entries that are already parsed, such as the rows of a {@link LogStore}, after the entries still
+     * waiting in the batch. The filter does not apply to them.
+     *
+     * @param logs the parsed log entries
+     * @param size the number of log entries to count, from the start of {@code logs}
+     */
+    void addParsed(ParsedLog[] logs, int size) {
+        flush();
+        for (CategoryAnalyzer analyzer : analyzers) {
+            analyzer.addLogsToCounter(logs, 0, size);
+        }
+        counted += size;
+    }
+
+    /**
+     * Counts the log entries of the batch that were not counted yet.
+     */
+    void flush() {
+        int size = batch.size();
+        if (size == 0) {
+            return;
+        }
+        ParsedLog[] logs = batch.getLogs();
+        for (CategoryAnalyzer analyzer : analyzers) {
+            analyzer.addLogsToCounter(logs, 0, size);
+        }
+        // the lines are released, so a batch never keeps lines alive after they were counted
+        batch.clear();
+        counted += size;
+    }
+
+    /**
+     * Returns the number of log entries counted so far, without the entries still waiting in the batch or the
+     * entries the filter rejected.
+     *
+     * @return the number of counted log entries.
+     */
+    long getCounted() {
+        return counted;
+    }
+}
@@ -0,0 +1,57 @@
+package main;
+
+import categories.CategoryAnalyzer;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The {@code LogField} enum lists the fields of a log entry that a {@link ParsedLog} can extract.
+ * Every {@link CategoryAnalyzer} declares the fields it reads, so a log entry is only scanned and parsed
+ * as far as the registered analyzers need.
+ */
+public enum LogField {
+
+    /** The client IP address at the beginning of the line. */
+    IP,
+
+    /** The timestamp of the request, as seconds since the epoch. */
+    TIMESTAMP,
+
+    /** The URL of the request line. */
+    URL,
+
+    /** The HTTP status code of the response. */
+    STATUS,
+
+    /** The referrer. */
+    REFERRER,
+
+    /** The raw User-Agent string. */
+    USER_AGENT,
+
+    /** The User-Agent parsed into a {@link ua_parser.Client}, the most expensive field by far. */
+    USER_AGENT_CLIENT,
+
+    /** The time taken to serve the request in microseconds, the last field of the extended format. */
+    RESPONSE_TIME;
+
+    /**
+     * Returns the fields needed by any of the given analyzers.
+     * An analyzer that declares no fields (e.g. returns {@code null}) needs none.
+     *
+     * @param analyzers the analyzers
+     * @return the union of their required fields
+     */
+    public static Set<LogField> requiredBy(Collection<? extends CategoryAnalyzer> analyzers) {
+        Set<LogField> fields = EnumSet.noneOf(LogField.class);
+        for (CategoryAnalyzer analyzer : analyzers) {
+            Set<LogField> required = analyzer.getRequiredFields();
+            if (required != null) {
+                fields.addAll(required);
+            }
+        }
+        return fields;
+    }
+}
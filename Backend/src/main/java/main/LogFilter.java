@@ -0,0 +1,342 @@
+package main;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The {@code LogFilter} class selects the log entries that are counted, from a small expression such as
+ * <pre>
+ * status=2xx,304 path=/api/ ip=10.0.0.0/8 since=2013-01-20 until=2013-01-21T12:00:00Z
+ * </pre>
+ * The terms, separated by spaces, must all hold; the comma-separated values of a term are alternatives, and
+ * {@code !=} instead of {@code =} negates a term. Supported terms:
+ * <pre>
+ *   status=CODES   exact status codes, or classes such as 4xx
+ *   path=PREFIXES  URL prefixes
+ *   ip=BLOCKS      IPv4 addresses or CIDR blocks
+ *   since=TIME     timestamps at or after TIME, an ISO-8601 date (UTC midnight), date-time (UTC unless it has
+ *                  an offset), or epoch second
+ *   until=TIME     timestamps before TIME
+ * </pre>
+ * A log entry missing the tested field fails the term, and passes its negation.
+ * The terms are tested on the offsets of a {@link LogLineScanner}, before any field of the line is extracted and
+ * long before its User-Agent is parsed, so a rejected line costs a scan and allocates nothing. The IP terms are
+ * tested first, since they only scan the beginning of the line, and the URL prefixes last.
+ * Filters are immutable and may be shared between threads.
+ */
+public final class LogFilter {
+
+    /** The filter that accepts every log entry. */
+    public static final LogFilter NONE = new LogFilter(List.of());
+
+    // === Constants ===
+    private static final String TERM_SEPARATOR = "\\s+";
+    private static final String VALUE_SEPARATOR = ",";
+    private static final String EQUALS = "=";
+    private static final String NOT_EQUALS = "!=";
+    private static final char CIDR_SEPARATOR = '/';
+    private static final char DATE_TIME_SEPARATOR = 'T';
+    private static final String STATUS_CLASS_SUFFIX = "xx";
+    private static final int MAX_STATUS = 999;
+    private static final int STATUS_CLASS_SIZE = 100;
+    private static final int IPV4_BITS = 32;
+    private static final String INVALID_TERM_ERR = "Invalid filter term, expected field=values or field!=values: ";
+    private static final String UNKNOWN_FIELD_ERR = "Unknown filter field: ";
+    private static final String INVALID_STATUS_ERR = "Invalid status in filter: ";
+    private static final String INVALID_IP_ERR = "Invalid IP address or CIDR block in filter: ";
+    private static final String INVALID_TIME_ERR = "Invalid time in filter, expected an ISO-8601 date, date-time "
+            + "or epoch second: ";
+    private static final String NEGATED_TIME_ERR = "A time filter takes a single time and cannot be negated: ";
+
+    /**
+     * The fields a term tests, in the order the terms are tested: the cheapest first.
+     */
+    private enum Field {
+        IP, STATUS, SINCE, UNTIL, PATH
+    }
+
+    // === Fields ===
+    private final List<Condition> conditions;
+
+    /**
+     * Constructs a {@code LogFilter} of conditions that must all hold.
+     *
+     * @param conditions the conditions, in the order they are tested
+     */
+    private LogFilter(List<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * Parses a filter expression.
+     *
+     * @param expression the terms, separated by spaces
+     * @return the filter
+     * @throws IllegalArgumentException if a term is malformed, or tests an unknown field
+     */
+    public static LogFilter parse(String expression) {
+        List<Condition> conditions = new ArrayList<>();
+        for (String term : expression.trim().split(TERM_SEPARATOR)) {
+            conditions.add(parseTerm(term));
+        }
+        conditions.sort(Comparator.comparing(condition -> condition.field));
+        return new LogFilter(List.copyOf(conditions));
+    }
+
+    /**
+     * Parses a single {@code field=values} or {@code field!=values} term.
+     *
+     * @param term the term
+     * @return the condition of the term
+     */
+    private static Condition parseTerm(String term) {
+        int equals = term.indexOf(EQUALS);
+        if (equals <= 0 || equals == term.length() - 1) {
+            throw new IllegalArgumentException(INVALID_TERM_ERR + term);
+        }
+        boolean negated = term.startsWith(NOT_EQUALS, equals - 1);
+        String name = term.substring(0, negated ? equals - 1 : equals).toLowerCase(Locale.ROOT);
+        String[] values = term.substring(equals + 1).split(VALUE_SEPARATOR);
+        return switch (name) {
+            case "status" -> new StatusCondition(negated, values);
+            case "path" -> new PathCondition(negated, values);
+            case "ip" -> new IpCondition(negated, values);
+            case "since", "until" -> {
+                if (negated || values.length != 1) {
+                    throw new IllegalArgumentException(NEGATED_TIME_ERR + term);
+                }
+                yield new TimeCondition(name.equals("since") ? Field.SINCE : Field.UNTIL, parseTime(values[0]));
+            }
+            default -> throw new IllegalArgumentException(UNKNOWN_FIELD_ERR + name);
+        };
+    }
+
+    /**
+     * Parses an ISO-8601 date or date-time, or a number of seconds since the epoch.
+     *
+     * @param value the time
+     * @return the epoch second
+     */
+    private static long parseTime(String value) {
+        try {
+            if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+                return Long.parseLong(value);
+            }
+            if (value.indexOf(DATE_TIME_SEPARATOR) < 0) {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            }
+            TemporalAccessor time = DateTimeFormatter.ISO_DATE_TIME.parseBest(value, OffsetDateTime::from,
+                    LocalDateTime::from);
+            return time instanceof OffsetDateTime offsetTime
+                    ? offsetTime.toEpochSecond()
+                    : ((LocalDateTime) time).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException(INVALID_TIME_ERR + value);
+        }
+    }
+
+    /**
+     * Returns a filter accepting the log entries that both this filter and another one accept.
+     *
+     * @param other the other filter
+     * @return the combined filter
+     */
+    public LogFilter and(LogFilter other) {
+        List<Condition> combined = new ArrayList<>(conditions);
+        combined.addAll(other.conditions);
+        combined.sort(Comparator.comparing(condition -> condition.field));
+        return new LogFilter(List.copyOf(combined));
+    }
+
+    /**
+     * Returns whether the filter accepts every log entry.
+     *
+     * @return {@code true} if the filter has no term
+     */
+    public boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    /**
+     * Returns whether a log entry passes the filter.
+     *
+     * @param line the log entry
+     * @return {@code true} if every term holds
+     */
+    public boolean test(String line) {
+        return conditions.isEmpty() || test(new LogLineScanner(line));
+    }
+
+    /**
+     * Returns whether the line of a scanner passes the filter. The offsets the scan records are kept, so the
+     * fields of an accepted line are not scanned again.
+     *
+     * @param scanner the scanner of the log entry
+     * @return {@code true} if every term holds
+     */
+    boolean test(LogLineScanner scanner) {
+        for (Condition condition : conditions) {
+            if (condition.matches(scanner) == condition.negated) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A term of a filter.
+     */
+    private abstract static class Condition {
+
+        final Field field;
+        final boolean negated;
+
+        /**
+         * Constructs a condition.
+         *
+         * @param field   the field the condition tests
+         * @param negated whether the log entries that do not match pass
+         */
+        Condition(Field field, boolean negated) {
+            this.field = field;
+            this.negated = negated;
+        }
+
+        /**
+         * Returns whether the line of a scanner matches the values of the term, ignoring the negation.
+         *
+         * @param scanner the scanner of the log entry
+         * @return {@code true} if the field has one of the values
+         */
+        abstract boolean matches(LogLineScanner scanner);
+    }
+
+    /**
+     * Matches status codes, looked up in a table of all the codes.
+     */
+    private static final class StatusCondition extends Condition {
+
+        private final boolean[] statuses = new boolean[MAX_STATUS + 1];
+
+        StatusCondition(boolean negated, String[] values) {
+            super(Field.STATUS, negated);
+            for (String value : values) {
+                String code = value.toLowerCase(Locale.ROOT);
+                try {
+                    if (code.length() == 3 && code.endsWith(STATUS_CLASS_SUFFIX)) {
+                        int first = Integer.parseInt(code.substring(0, 1)) * STATUS_CLASS_SIZE;
+                        for (int status = first; status < first + STATUS_CLASS_SIZE; status++) {
+                            statuses[status] = true;
+                        }
+                    } else {
+                        statuses[Integer.parseInt(code)] = true;
+                    }
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    throw new IllegalArgumentException(INVALID_STATUS_ERR + value);
+                }
+            }
+        }
+
+        @Override
+        boolean matches(LogLineScanner scanner) {
+            int status = scanner.getStatus();
+            return status >= 0 && status <= MAX_STATUS && statuses[status];
+        }
+    }
+
+    /**
+     * Matches URL prefixes.
+     */
+    private static final class PathCondition extends Condition {
+
+        private final String[] prefixes;
+
+        PathCondition(boolean negated, String[] prefixes) {
+            super(Field.PATH, negated);
+            this.prefixes = prefixes;
+        }
+
+        @Override
+        boolean matches(LogLineScanner scanner) {
+            for (String prefix : prefixes) {
+                if (scanner.urlStartsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches IPv4 CIDR blocks, a single address being a block of prefix length 32.
+     */
+    private static final class IpCondition extends Condition {
+
+        private final int[] networks;
+        private final int[] prefixLengths;
+
+        IpCondition(boolean negated, String[] blocks) {
+            super(Field.IP, negated);
+            networks = new int[blocks.length];
+            prefixLengths = new int[blocks.length];
+            for (int i = 0; i < blocks.length; i++) {
+                int separator = blocks[i].indexOf(CIDR_SEPARATOR);
+                long address = Ipv4.parse(separator < 0 ? blocks[i] : blocks[i].substring(0, separator));
+                try {
+                    prefixLengths[i] = separator < 0 ? IPV4_BITS : Integer.parseInt(blocks[i].substring(separator + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(INVALID_IP_ERR + blocks[i]);
+                }
+                if (address == Ipv4.INVALID || prefixLengths[i] < 0 || prefixLengths[i] > IPV4_BITS) {
+                    throw new IllegalArgumentException(INVALID_IP_ERR + blocks[i]);
+                }
+                networks[i] = Ipv4.mask((int) address, prefixLengths[i]);
+            }
+        }
+
+        @Override
+        boolean matches(LogLineScanner scanner) {
+            long address = scanner.getIpAddress();
+            if (address == Ipv4.INVALID) {
+                return false;
+            }
+            for (int i = 0; i < networks.length; i++) {
+                if (Ipv4.mask((int) address, prefixLengths[i]) == networks[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches timestamps at or after a time ({@link Field#SINCE}), or before it ({@link Field#UNTIL}).
+     */
+    private static final class TimeCondition extends Condition {
+
+        private final long epochSecond;
+
+        TimeCondition(Field field, long epochSecond) {
+            super(field, false);
+            this.epochSecond = epochSecond;
+        }
+
+        @Override
+        boolean matches(LogLineScanner scanner) {
+            long time = scanner.getEpochSecond();
+            if (time == LogLineScanner.NO_TIMESTAMP) {
+                return false;
+            }
+            return field == Field.SINCE ? time >= epochSecond : time < epochSecond;
+        }
+    }
+}
@@ -0,0 +1,555 @@
+package main;
+
+/**
+ * The {@code LogLineScanner} class extracts the fields of a combined-format access log line
+ * in a single left-to-right pass, without regular expressions and without backtracking:
+ * <pre>
+ * 82.166.148.154 - - [20/Jan/2013:06:56:32 -0600] "GET / HTTP/1.1" 200 863 "referrer" "user agent" ... 5625
+ * </pre>
+ * The scan is lazy: the IP is scanned on the first call of {@link #getIp()}, and the rest of the line
+ * on the first call of any other getter, so a caller that only needs the IP never scans past it.
+ * The scan only records the offsets of the fields; the {@link String} of a field is created
+ * when its getter is called.
+ * The IP and the User-Agent follow the rules of the former regular expressions: the IP is a dotted
+ * quad at the very beginning of the line, and the User-Agent is the content of the last non-empty
+ * quoted string. The fields after the User-Agent are not scanned, except the last one, the response time of the
+ * extended format.
+ * A scanner can be {@link #reset(String) reset} to another line, so a {@link ParsedLogBatch} scans all
+ * its lines with a single scanner and keeps only the offsets it needs.
+ */
+public final class LogLineScanner {
+
+    /** The value returned by {@link #getEpochSecond()} when the line has no valid timestamp. */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /** The offset returned for a field that is not in the line. */
+    static final int NOT_FOUND = -1;
+
+    // === Constants ===
+    private static final int IP_GROUPS = 4;
+    private static final char QUOTE = '"';
+    private static final char SPACE = ' ';
+    private static final char DOT = '.';
+    private static final char DASH = '-';
+    private static final char TIMESTAMP_START = '[';
+    private static final char TIMESTAMP_END = ']';
+
+    /* The layout of a timestamp: dd/MMM/yyyy:HH:mm:ss +hhmm */
+    private static final String MONTH_NAMES = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static final int MONTH_NAME_LENGTH = 3;
+    private static final int TIMESTAMP_LENGTH = 26;
+    private static final int MONTH_OFFSET = 3;
+    private static final int YEAR_OFFSET = 7;
+    private static final int HOUR_OFFSET = 12;
+    private static final int MINUTE_OFFSET = 15;
+    private static final int SECOND_OFFSET = 18;
+    private static final int ZONE_SIGN_OFFSET = 21;
+    private static final int ZONE_HOURS_OFFSET = 22;
+    private static final int ZONE_MINUTES_OFFSET = 24;
+    private static final long SECONDS_PER_MINUTE = 60;
+    private static final long SECONDS_PER_HOUR = 3600;
+    private static final long SECONDS_PER_DAY = 86400;
+
+    /* The states of the scan, in the order of the fields in a line. */
+    private static final int FIND_TIMESTAMP = 0;
+    private static final int TIMESTAMP = 1;
+    private static final int FIND_REQUEST = 2;
+    private static final int REQUEST = 3;
+    private static final int FIND_STATUS = 4;
+    private static final int STATUS = 5;
+    private static final int FIND_BYTES = 6;
+    private static final int BYTES = 7;
+    private static final int FIND_REFERRER = 8;
+    private static final int REFERRER = 9;
+    private static final int REST = 10;
+
+    // === Fields ===
+    private String line;
+    private boolean ipScanned;
+    private boolean fieldsScanned;
+    private int ipEnd;
+    private int timestampStart;
+    private int timestampEnd;
+    private int requestStart;
+    private int requestEnd;
+    private int statusStart;
+    private int statusEnd;
+    private int bytesStart;
+    private int bytesEnd;
+    private int referrerStart;
+    private int referrerEnd;
+    private int userAgentStart;
+    private int userAgentEnd;
+    private int lastQuote;
+
+    /**
+     * Scans the given log line.
+     *
+     * @param line the log line to scan
+     */
+    public LogLineScanner(String line) {
+        reset(line);
+    }
+
+    /**
+     * Forgets the offsets of the current line and starts over with another one.
+     *
+     * @param line the log line to scan
+     */
+    public void reset(String line) {
+        this.line = line;
+        ipScanned = false;
+        fieldsScanned = false;
+        ipEnd = NOT_FOUND;
+        timestampStart = NOT_FOUND;
+        timestampEnd = NOT_FOUND;
+        requestStart = NOT_FOUND;
+        requestEnd = NOT_FOUND;
+        statusStart = NOT_FOUND;
+        statusEnd = NOT_FOUND;
+        bytesStart = NOT_FOUND;
+        bytesEnd = NOT_FOUND;
+        referrerStart = NOT_FOUND;
+        referrerEnd = NOT_FOUND;
+        userAgentStart = NOT_FOUND;
+        userAgentEnd = NOT_FOUND;
+        lastQuote = NOT_FOUND;
+    }
+
+    /**
+     * Scans the rest of the line after the IP, once.
+     */
+    private void ensureFieldsScanned() {
+        if (!fieldsScanned) {
+            fieldsScanned = true;
+            scanIp();
+            scanFields(Math.max(ipEnd, 0));
+        }
+    }
+
+    /**
+     * Scans the dotted quad IP address at the beginning of the line, if there is one, once.
+     */
+    private void scanIp() {
+        if (ipScanned) {
+            return;
+        }
+        ipScanned = true;
+        int length = line.length();
+        int i = 0;
+        for (int group = 0; group < IP_GROUPS; group++) {
+            int groupStart = i;
+            while (i < length && isDigit(line.charAt(i))) {
+                i++;
+            }
+            if (i == groupStart) {
+                return;
+            }
+            if (group < IP_GROUPS - 1) {
+                if (i == length || line.charAt(i) != DOT) {
+                    return;
+                }
+                i++;
+            }
+        }
+        ipEnd = i;
+    }
+
+    /**
+     * Scans the rest of the line from the given offset, recording the offsets of every field.
+     * The positions of the last two quotes are tracked along the way to find the User-Agent.
+     *
+     * @param from the offset to start from
+     */
+    private void scanFields(int from) {
+        int length = line.length();
+        int state = FIND_TIMESTAMP;
+        int previousQuote = NOT_FOUND;
+        int lastQuote = NOT_FOUND;
+        int i = from;
+        while (i < length) {
+            char c = line.charAt(i);
+            switch (state) {
+                case FIND_TIMESTAMP -> {
+                    if (c == TIMESTAMP_START) {
+                        timestampStart = i + 1;
+                        state = TIMESTAMP;
+                    } else if (c == QUOTE) {
+                        requestStart = i + 1;
+                        state = REQUEST;
+                    }
+                }
+                case TIMESTAMP -> {
+                    if (c == TIMESTAMP_END) {
+                        timestampEnd = i;
+                        state = FIND_REQUEST;
+                    }
+                }
+                case FIND_REQUEST -> {
+                    if (c == QUOTE) {
+                        requestStart = i + 1;
+                        state = REQUEST;
+                    }
+                }
+                case REQUEST -> {
+                    if (c == QUOTE) {
+                        requestEnd = i;
+                        state = FIND_STATUS;
+                    }
+                }
+                case FIND_STATUS -> {
+                    if (isDigit(c)) {
+                        statusStart = i;
+                        state = STATUS;
+                    } else if (c == QUOTE) {
+                        referrerStart = i + 1;
+                        state = REFERRER;
+                    } else if (c != SPACE) {
+                        state = FIND_REFERRER;
+                    }
+                }
+                case STATUS -> {
+                    if (!isDigit(c)) {
+                        statusEnd = i;
+                        state = FIND_BYTES;
+                        continue; // the current character may already start the next field
+                    }
+                }
+                case FIND_BYTES -> {
+                    if (isDigit(c) || c == DASH) {
+                        bytesStart = i;
+                        state = BYTES;
+                    } else if (c == QUOTE) {
+                        referrerStart = i + 1;
+                        state = REFERRER;
+                    } else if (c != SPACE) {
+                        state = FIND_REFERRER;
+                    }
+                }
+                case BYTES -> {
+                    if (!isDigit(c) && c != DASH) {
+                        bytesEnd = i;
+                        state = FIND_REFERRER;
+                        continue; // the current character may already start the next field
+                    }
+                }
+                case FIND_REFERRER -> {
+                    if (c == QUOTE) {
+                        referrerStart = i + 1;
+                        state = REFERRER;
+                    }
+                }
+                case REFERRER -> {
+                    if (c == QUOTE) {
+                        referrerEnd = i;
+                        state = REST;
+                    }
+                }
+                default -> {
+                    // the remaining characters only matter for the quotes tracking
+                }
+            }
+            if (c == QUOTE) {
+                previousQuote = lastQuote;
+                lastQuote = i;
+            }
+            i++;
+        }
+        if (state == STATUS) {
+            statusEnd = length;
+        } else if (state == BYTES) {
+            bytesEnd = length;
+        }
+        if (previousQuote != NOT_FOUND && lastQuote - previousQuote > 1) {
+            userAgentStart = previousQuote + 1;
+            userAgentEnd = lastQuote;
+        }
+        this.lastQuote = lastQuote;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Returns the substring between two offsets, or {@code null} if the field was not found.
+     */
+    private String field(int start, int end) {
+        return start == NOT_FOUND || end == NOT_FOUND ? null : line.substring(start, end);
+    }
+
+    /**
+     * Parses the digits between two offsets, or returns {@code -1} if the field was not found or is {@code -}.
+     */
+    private long number(int start, int end) {
+        if (start == NOT_FOUND || end == NOT_FOUND || end == start) {
+            return NOT_FOUND;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (!isDigit(c)) {
+                return NOT_FOUND;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Returns the IP address at the beginning of the line.
+     *
+     * @return the IP address, or {@code null} if the line does not start with a dotted quad
+     */
+    public String getIp() {
+        scanIp();
+        return ipEnd == NOT_FOUND ? null : line.substring(0, ipEnd);
+    }
+
+    /**
+     * Returns the end offset of the IP address, which starts the line.
+     *
+     * @return the offset after the IP address, or {@link #NOT_FOUND}
+     */
+    int getIpEnd() {
+        scanIp();
+        return ipEnd;
+    }
+
+    /**
+     * Returns the IP address at the beginning of the line, parsed without creating its {@link String}.
+     *
+     * @return the address as an unsigned 32-bit value in a {@code long}, or {@link Ipv4#INVALID}
+     */
+    long getIpAddress() {
+        scanIp();
+        return ipEnd == NOT_FOUND ? Ipv4.INVALID : Ipv4.parse(line, 0, ipEnd);
+    }
+
+    /**
+     * Returns the raw timestamp between the square brackets, e.g. {@code 20/Jan/2013:06:56:32 -0600}.
+     *
+     * @return the timestamp, or {@code null} if not found
+     */
+    public String getTimestamp() {
+        ensureFieldsScanned();
+        return field(timestampStart, timestampEnd);
+    }
+
+    /**
+     * Returns the request line, e.g. {@code GET / HTTP/1.1}.
+     *
+     * @return the request, or {@code null} if not found
+     */
+    public String getRequest() {
+        ensureFieldsScanned();
+        return field(requestStart, requestEnd);
+    }
+
+    /**
+     * Returns the timestamp as seconds since the epoch, parsed without allocating from the
+     * {@code dd/MMM/yyyy:HH:mm:ss +hhmm} layout of the combined log format.
+     *
+     * @return the epoch second, or {@link #NO_TIMESTAMP} if not found or malformed
+     */
+    public long getEpochSecond() {
+        ensureFieldsScanned();
+        if (timestampStart == NOT_FOUND || timestampEnd - timestampStart != TIMESTAMP_LENGTH) {
+            return NO_TIMESTAMP;
+        }
+        int t = timestampStart;
+        int day = (int) number(t, t + 2);
+        int month = monthOf(t + MONTH_OFFSET);
+        int year = (int) number(t + YEAR_OFFSET, t + YEAR_OFFSET + 4);
+        int hour = (int) number(t + HOUR_OFFSET, t + HOUR_OFFSET + 2);
+        int minute = (int) number(t + MINUTE_OFFSET, t + MINUTE_OFFSET + 2);
+        int second = (int) number(t + SECOND_OFFSET, t + SECOND_OFFSET + 2);
+        int zoneHours = (int) number(t + ZONE_HOURS_OFFSET, t + ZONE_HOURS_OFFSET + 2);
+        int zoneMinutes = (int) number(t + ZONE_MINUTES_OFFSET, t + ZONE_MINUTES_OFFSET + 2);
+        char zoneSign = line.charAt(t + ZONE_SIGN_OFFSET);
+        if (day < 1 || day > 31 || month == NOT_FOUND || year < 0 || hour < 0 || hour > 23 || minute < 0
+                || minute > 59 || second < 0 || second > 60 || zoneHours < 0 || zoneMinutes < 0
+                || (zoneSign != '+' && zoneSign != '-')) {
+            return NO_TIMESTAMP;
+        }
+        long zoneOffset = zoneHours * SECONDS_PER_HOUR + zoneMinutes * SECONDS_PER_MINUTE;
+        long localSeconds = daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * SECONDS_PER_HOUR
+                + minute * SECONDS_PER_MINUTE + second;
+        return zoneSign == '+' ? localSeconds - zoneOffset : localSeconds + zoneOffset;
+    }
+
+    /**
+     * Returns the month (1 to 12) of the three-letter English month name at the given offset.
+     */
+    private int monthOf(int offset) {
+        for (int month = 0; month < MONTH_NAMES.length() / MONTH_NAME_LENGTH; month++) {
+            if (line.regionMatches(true, offset, MONTH_NAMES, month * MONTH_NAME_LENGTH, MONTH_NAME_LENGTH)) {
+                return month + 1;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns the number of days from 1970-01-01 to a date of the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns the URL of the request line, between the method and the protocol,
+     * e.g. {@code /search?q=logs} of {@code GET /search?q=logs HTTP/1.1}.
+     *
+     * @return the URL, or {@code null} if the request has none
+     */
+    public String getUrl() {
+        int urlStart = getUrlStart();
+        return urlStart == NOT_FOUND ? null : line.substring(urlStart, getUrlEnd());
+    }
+
+    /**
+     * Returns the start offset of the URL of the request line.
+     *
+     * @return the offset of the first character of the URL, or {@link #NOT_FOUND} if the request has none
+     */
+    int getUrlStart() {
+        ensureFieldsScanned();
+        if (requestStart == NOT_FOUND || requestEnd == NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        int methodEnd = line.indexOf(SPACE, requestStart);
+        if (methodEnd == NOT_FOUND || methodEnd >= requestEnd) {
+            return NOT_FOUND;
+        }
+        return getUrlEnd() > methodEnd + 1 ? methodEnd + 1 : NOT_FOUND;
+    }
+
+    /**
+     * Returns the end offset of the URL of the request line, valid when {@link #getUrlStart()} found one.
+     *
+     * @return the offset after the URL
+     */
+    int getUrlEnd() {
+        ensureFieldsScanned();
+        int methodEnd = line.indexOf(SPACE, requestStart);
+        int protocolStart = line.lastIndexOf(SPACE, requestEnd - 1);
+        return protocolStart > methodEnd ? protocolStart : requestEnd;
+    }
+
+    /**
+     * Returns whether the URL of the request line starts with a prefix, without creating the URL.
+     *
+     * @param prefix the prefix
+     * @return {@code true} if the request has a URL starting with the prefix
+     */
+    boolean urlStartsWith(String prefix) {
+        int urlStart = getUrlStart();
+        return urlStart != NOT_FOUND && getUrlEnd() - urlStart >= prefix.length() && line.startsWith(prefix, urlStart);
+    }
+
+    /**
+     * Returns the HTTP status code.
+     *
+     * @return the status code, or {@code -1} if not found
+     */
+    public int getStatus() {
+        ensureFieldsScanned();
+        return (int) number(statusStart, statusEnd);
+    }
+
+    /**
+     * Returns the size of the response body in bytes.
+     *
+     * @return the number of bytes, or {@code -1} if not found or logged as {@code -}
+     */
+    public long getBytes() {
+        ensureFieldsScanned();
+        return number(bytesStart, bytesEnd);
+    }
+
+    /**
+     * Returns the referrer.
+     *
+     * @return the referrer, or {@code null} if not found
+     */
+    public String getReferrer() {
+        ensureFieldsScanned();
+        return field(referrerStart, referrerEnd);
+    }
+
+    /**
+     * Returns the start offset of the referrer.
+     *
+     * @return the offset of the first character of the referrer, or {@link #NOT_FOUND}
+     */
+    int getReferrerStart() {
+        ensureFieldsScanned();
+        return referrerEnd == NOT_FOUND ? NOT_FOUND : referrerStart;
+    }
+
+    /**
+     * Returns the end offset of the referrer, valid when {@link #getReferrerStart()} found one.
+     *
+     * @return the offset after the referrer
+     */
+    int getReferrerEnd() {
+        ensureFieldsScanned();
+        return referrerEnd;
+    }
+
+    /**
+     * Returns the User-Agent, the content of the last non-empty quoted string of the line.
+     *
+     * @return the User-Agent, or {@code null} if not found
+     */
+    public String getUserAgent() {
+        ensureFieldsScanned();
+        return field(userAgentStart, userAgentEnd);
+    }
+
+    /**
+     * Returns the start offset of the User-Agent.
+     *
+     * @return the offset of the first character of the User-Agent, or {@link #NOT_FOUND}
+     */
+    int getUserAgentStart() {
+        ensureFieldsScanned();
+        return userAgentStart;
+    }
+
+    /**
+     * Returns the end offset of the User-Agent, valid when {@link #getUserAgentStart()} found one.
+     *
+     * @return the offset after the User-Agent
+     */
+    int getUserAgentEnd() {
+        ensureFieldsScanned();
+        return userAgentEnd;
+    }
+
+    /**
+     * Returns the response time of the extended format, the last field of the line when it follows the quoted
+     * referrer and User-Agent, e.g. {@code 5625} of {@code "referrer" "user agent" 361 1133 - 5625}.
+     * The field is the time taken to serve the request, in microseconds.
+     *
+     * @return the response time, or {@code -1} if not found or logged as {@code -}
+     */
+    public long getResponseTime() {
+        ensureFieldsScanned();
+        if (referrerEnd == NOT_FOUND || lastQuote <= referrerEnd) {
+            return NOT_FOUND;
+        }
+        int end = line.length();
+        while (end > lastQuote && line.charAt(end - 1) == SPACE) {
+            end--;
+        }
+        int start = line.lastIndexOf(SPACE, end - 1) + 1;
+        return start <= lastQuote ? NOT_FOUND : number(start, end);
+    }
+}
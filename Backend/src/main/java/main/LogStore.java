@@ -0,0 +1,626 @@
+package main;
+
+import categories.CategoryAnalyzer;
+import input.LogFiles;
+import ua_parser.Client;
+import ua_parser.Device;
+import ua_parser.OS;
+import ua_parser.UserAgent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code LogStore} class is a compiled, binary columnar copy of log files, written once by
+ * {@link #compile(List, Path, CategoryAnalyzer, LogFilter)} and analyzed again and again without parsing a line.
+ * Every log entry is a row of fixed-width columns: the IPv4 address, the country resolved when the store was
+ * compiled, the timestamp, the status, the response time and the id of the User-Agent. The distinct User-Agents
+ * are stored once, with the ids of their browser, operating system and device families, and their
+ * {@link Client}s are rebuilt once when the store is opened, from the families alone.
+ * The rows are grouped in blocks of {@link #BLOCK_ROWS}, each block holding its columns one after the other:
+ * <pre>
+ * int magic, int version
+ * block*:  int rows, long epochSeconds[rows], long responseTimes[rows], int ips[rows], int userAgentIds[rows],
+ *          short statuses[rows], short countryIds[rows]
+ * footer:  the country, browser, OS and device dictionaries, the User-Agents with their family ids,
+ *          int blockCount, long blockOffsets[blockCount]
+ * trailer: long footerOffset, long rows
+ * </pre>
+ * A block is memory-mapped when it is scanned, and its rows are a {@link ParsedLog} implementation reading the
+ * mapped columns, so re-analyzing a store costs little more than reading its memory.
+ * Only the fields of {@link #FIELDS} are stored: the URL and the referrer are not, and an address that is not a
+ * valid IPv4 address is stored as missing.
+ */
+public final class LogStore implements Closeable {
+
+    /** The fields a compiled store can answer. */
+    public static final Set<LogField> FIELDS = Collections.unmodifiableSet(EnumSet.of(LogField.IP,
+            LogField.TIMESTAMP, LogField.STATUS, LogField.USER_AGENT, LogField.USER_AGENT_CLIENT,
+            LogField.RESPONSE_TIME));
+
+    /** The maximal number of rows of a block, the unit of mapping and of parallel work. */
+    public static final int BLOCK_ROWS = 1 << 16;
+
+    // === Constants ===
+    private static final int MAGIC = 0x4C414353;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int TRAILER_SIZE = 2 * Long.BYTES;
+    private static final int BLOCK_HEADER_SIZE = Integer.BYTES;
+    private static final int ROW_SIZE = 2 * Long.BYTES + 2 * Integer.BYTES + 2 * Short.BYTES;
+    private static final String TEMP_SUFFIX = ".tmp";
+    /* The country ids below 0: no valid IPv4 address, a country left to the analyzers, or no known country. */
+    private static final short NO_IP = -1;
+    private static final short UNRESOLVED_COUNTRY = -2;
+    private static final short COUNTRY_NOT_FOUND = -3;
+    private static final int NO_USER_AGENT = -1;
+    private static final int NO_STATUS = -1;
+    private static final int COMPILE_BATCH_SIZE = 256;
+    private static final String NOT_A_STORE_ERR = "Not a compiled log store: ";
+    private static final String UNSUPPORTED_VERSION_ERR = "Unsupported log store version: ";
+    private static final String CORRUPT_STORE_ERR = "Corrupt log store: ";
+    private static final String ALREADY_COMPILED_ERR = "The input is already a compiled log store: ";
+    private static final String MISSING_FIELDS_ERR = "A compiled log store has no ";
+    private static final String NOT_STORED_ERR = "The field is not stored in a compiled log store: ";
+
+    // === Fields ===
+    private final FileChannel channel;
+    private final long rows;
+    private final long[] blockOffsets;
+    /* The offset of the footer, which is also the end of the last block. */
+    private final long footerOffset;
+    private final String[] countries;
+    private final String[] userAgents;
+    private final Client[] clients;
+
+    /**
+     * Opens a compiled store and reads its dictionaries.
+     *
+     * @param path the path of the store.
+     * @throws IOException if the file can't be read or is not a compiled log store.
+     */
+    private LogStore(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException(NOT_A_STORE_ERR + path);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(NOT_A_STORE_ERR + path);
+            }
+            if (header.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException(UNSUPPORTED_VERSION_ERR + header.getInt(Integer.BYTES));
+            }
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - TRAILER_SIZE, TRAILER_SIZE);
+            footerOffset = trailer.getLong(0);
+            rows = trailer.getLong(Long.BYTES);
+            if (footerOffset < HEADER_SIZE || footerOffset > size - TRAILER_SIZE || rows < 0) {
+                throw new IOException(CORRUPT_STORE_ERR + path);
+            }
+            InputStream footer = Channels.newInputStream(channel.position(footerOffset));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(footer));
+            countries = readDictionary(in);
+            String[] browsers = readDictionary(in);
+            String[] oses = readDictionary(in);
+            String[] devices = readDictionary(in);
+            int userAgentCount = in.readInt();
+            userAgents = new String[userAgentCount];
+            clients = new Client[userAgentCount];
+            for (int i = 0; i < userAgentCount; i++) {
+                userAgents[i] = BinaryIO.readString(in);
+                clients[i] = new Client(new UserAgent(browsers[in.readInt()], null, null, null),
+                        new OS(oses[in.readInt()], null, null, null, null), new Device(devices[in.readInt()]));
+            }
+            blockOffsets = new long[in.readInt()];
+            for (int i = 0; i < blockOffsets.length; i++) {
+                blockOffsets[i] = in.readLong();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ioException ? ioException : new IOException(CORRUPT_STORE_ERR + path, e);
+        }
+    }
+
+    /**
+     * Opens a compiled log store.
+     *
+     * @param path the path of the store.
+     * @return the opened store.
+     * @throws IOException if the file can't be read or is not a compiled log store.
+     */
+    public static LogStore open(Path path) throws IOException {
+        return new LogStore(path);
+    }
+
+    /**
+     * Returns whether a file is a compiled log store, judging by its first bytes.
+     *
+     * @param path the path of the file.
+     * @return {@code true} if the file starts like a compiled log store.
+     */
+    public static boolean isStore(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            return file.size() >= HEADER_SIZE + TRAILER_SIZE && readHeader(file) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the first int of a file.
+     */
+    private static int readHeader(FileChannel file) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+        while (magic.hasRemaining() && file.read(magic, magic.position()) > 0) {
+            // a read may return fewer bytes than asked for
+        }
+        return magic.hasRemaining() ? 0 : magic.getInt(0);
+    }
+
+    /**
+     * Compiles log files into a store. The lines are parsed once, and the country of every IPv4 address is
+     * resolved once by the given analyzer; without one the countries are left to the analyzers of the store.
+     * The store is written to a temporary file that replaces {@code storePath} once it is complete, so a failed
+     * compilation leaves the previous store, if any, intact.
+     *
+     * @param logFiles  the log files, plain or gzip-compressed.
+     * @param storePath the path of the store.
+     * @param countries the analyzer whose {@link CategoryAnalyzer#getCategoryValue(ParsedLog)} is the country of a
+     *                  log entry, or {@code null}.
+     * @param filter    the filter of the compiled log entries.
+     * @return the number of compiled log entries.
+     * @throws IOException if a log file can't be read, is already a store, or the store can't be written.
+     */
+    public static long compile(List<Path> logFiles, Path storePath, CategoryAnalyzer countries, LogFilter filter)
+            throws IOException {
+        for (Path logFile : logFiles) {
+            if (isStore(logFile)) {
+                throw new IOException(ALREADY_COMPILED_ERR + logFile);
+            }
+        }
+        Path directory = storePath.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, storePath.getFileName().toString(), TEMP_SUFFIX);
+        try {
+            long compiled;
+            try (Writer writer = new Writer(tempFile, countries)) {
+                ParsedLogBatch batch = new ParsedLogBatch(COMPILE_BATCH_SIZE, FIELDS, filter);
+                for (Path logFile : logFiles) {
+                    try (BufferedReader reader = LogFiles.openReader(logFile)) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            batch.add(line);
+                            if (batch.isFull()) {
+                                writer.addAll(batch);
+                            }
+                        }
+                    }
+                }
+                writer.addAll(batch);
+                compiled = writer.finish();
+            }
+            try {
+                Files.move(tempFile, storePath, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, storePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return compiled;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Returns the number of rows of the store.
+     *
+     * @return the number of compiled log entries.
+     */
+    public long size() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of blocks of the store.
+     *
+     * @return the number of blocks.
+     */
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Checks that the store answers the fields the analyzers read.
+     *
+     * @param fields the fields the analyzers read.
+     * @throws IllegalArgumentException if a field is not stored.
+     */
+    public void requireFields(Set<LogField> fields) {
+        Set<LogField> missing = EnumSet.noneOf(LogField.class);
+        missing.addAll(fields);
+        missing.removeAll(FIELDS);
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException(MISSING_FIELDS_ERR + missing);
+        }
+    }
+
+    /**
+     * Counts every row of the store through a batcher.
+     *
+     * @param batcher the batcher counting into the analyzers.
+     * @return the number of counted rows.
+     * @throws IOException if a block can't be mapped.
+     */
+    long scan(LogBatcher batcher) throws IOException {
+        long countedBefore = batcher.getCounted();
+        for (int block = 0; block < blockOffsets.length; block++) {
+            scanBlock(block, batcher);
+        }
+        return batcher.getCounted() - countedBefore;
+    }
+
+    /**
+     * Maps a block and counts its rows through a batcher, {@link LogBatcher#BATCH_SIZE} views at a time.
+     *
+     * @param block   the index of the block.
+     * @param batcher the batcher counting into the analyzers.
+     * @throws IOException if the block can't be mapped.
+     */
+    void scanBlock(int block, LogBatcher batcher) throws IOException {
+        long start = blockOffsets[block];
+        long end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : footerOffset;
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int blockRows = buffer.getInt(0);
+        if (blockRows < 0 || (long) BLOCK_HEADER_SIZE + (long) blockRows * ROW_SIZE != end - start) {
+            throw new IOException(CORRUPT_STORE_ERR + "block " + block);
+        }
+        Row[] views = new Row[Math.min(LogBatcher.BATCH_SIZE, blockRows)];
+        for (int i = 0; i < views.length; i++) {
+            views[i] = new Row(this, buffer, blockRows);
+        }
+        for (int first = 0; first < blockRows; first += views.length) {
+            int size = Math.min(views.length, blockRows - first);
+            for (int i = 0; i < size; i++) {
+                views[i].row = first + i;
+            }
+            batcher.addParsed(views, size);
+        }
+    }
+
+    /**
+     * Reads a dictionary of strings.
+     */
+    private static String[] readDictionary(DataInputStream in) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = BinaryIO.readString(in);
+        }
+        return values;
+    }
+
+    /**
+     * Writes a dictionary of strings.
+     */
+    private static void writeDictionary(DataOutputStream out, Dictionary dictionary) throws IOException {
+        out.writeInt(dictionary.values.size());
+        for (String value : dictionary.values) {
+            BinaryIO.writeString(out, value);
+        }
+    }
+
+    /**
+     * Closes the store. The blocks mapped by a scan stay readable until they are garbage collected.
+     *
+     * @throws IOException if the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A {@link ParsedLog} of a row of a mapped block, read column by column. It implements every getter from the
+     * stored columns and dictionaries; the fields that are not stored throw. The views of a block are reused for its
+     * next rows.
+     */
+    private static final class Row extends ParsedLog implements CountryResolved {
+
+        private final LogStore store;
+        private final ByteBuffer block;
+        private final int epochSeconds;
+        private final int responseTimes;
+        private final int ips;
+        private final int userAgentIds;
+        private final int statuses;
+        private final int countryIds;
+        private int row;
+
+        /**
+         * Constructs a view of the rows of a block.
+         *
+         * @param store     the store, holding the dictionaries.
+         * @param block     the mapped block.
+         * @param blockRows the number of rows of the block.
+         */
+        Row(LogStore store, ByteBuffer block, int blockRows) {
+            this.store = store;
+            this.block = block;
+            epochSeconds = BLOCK_HEADER_SIZE;
+            responseTimes = epochSeconds + blockRows * Long.BYTES;
+            ips = responseTimes + blockRows * Long.BYTES;
+            userAgentIds = ips + blockRows * Integer.BYTES;
+            statuses = userAgentIds + blockRows * Integer.BYTES;
+            countryIds = statuses + blockRows * Short.BYTES;
+        }
+
+        private short countryId() {
+            return block.getShort(countryIds + row * Short.BYTES);
+        }
+
+        private int userAgentId() {
+            return block.getInt(userAgentIds + row * Integer.BYTES);
+        }
+
+        @Override
+        public String getIp() {
+            long address = getIpAddress();
+            return address == Ipv4.INVALID ? null : Ipv4.toString((int) address);
+        }
+
+        @Override
+        public long getIpAddress() {
+            return countryId() == NO_IP ? Ipv4.INVALID : block.getInt(ips + row * Integer.BYTES) & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public boolean isCountryResolved() {
+            short countryId = countryId();
+            return countryId >= 0 || countryId == COUNTRY_NOT_FOUND;
+        }
+
+        @Override
+        public String getResolvedCountry() {
+            short countryId = countryId();
+            return countryId >= 0 ? store.countries[countryId] : null;
+        }
+
+        @Override
+        public long getEpochSecond() {
+            return block.getLong(epochSeconds + row * Long.BYTES);
+        }
+
+        @Override
+        public String getUrl() {
+            throw new IllegalStateException(NOT_STORED_ERR + LogField.URL);
+        }
+
+        @Override
+        public int getStatus() {
+            return block.getShort(statuses + row * Short.BYTES);
+        }
+
+        @Override
+        public String getReferrer() {
+            throw new IllegalStateException(NOT_STORED_ERR + LogField.REFERRER);
+        }
+
+        @Override
+        public long getResponseTime() {
+            return block.getLong(responseTimes + row * Long.BYTES);
+        }
+
+        @Override
+        public Client getUserAgentClient() {
+            int userAgentId = userAgentId();
+            return userAgentId == NO_USER_AGENT ? null : store.clients[userAgentId];
+        }
+
+        @Override
+        public String getUserAgent() {
+            int userAgentId = userAgentId();
+            return userAgentId == NO_USER_AGENT ? null : store.userAgents[userAgentId];
+        }
+    }
+
+    /**
+     * Assigns dense ids to distinct strings, {@code null} included, in order of appearance.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int idOf(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Writes the rows of a store, one block at a time, and the dictionaries once all the rows are written.
+     */
+    private static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final CategoryAnalyzer countryResolver;
+        private final Dictionary countryNames = new Dictionary();
+        private final Dictionary browsers = new Dictionary();
+        private final Dictionary oses = new Dictionary();
+        private final Dictionary devices = new Dictionary();
+        private final Map<String, Integer> userAgentIds = new HashMap<>();
+        private final List<String> userAgentValues = new ArrayList<>();
+        /* The browser, OS and device ids of every User-Agent, three per User-Agent. */
+        private final List<Integer> clientFamilies = new ArrayList<>();
+        private final List<Long> blockOffsets = new ArrayList<>();
+        private final long[] epochSeconds = new long[BLOCK_ROWS];
+        private final long[] responseTimes = new long[BLOCK_ROWS];
+        private final int[] ips = new int[BLOCK_ROWS];
+        private final int[] userAgents = new int[BLOCK_ROWS];
+        private final short[] statuses = new short[BLOCK_ROWS];
+        private final short[] countryIds = new short[BLOCK_ROWS];
+        private int blockRows = 0;
+        private long offset = HEADER_SIZE;
+        private long rows = 0;
+
+        Writer(Path path, CategoryAnalyzer countryResolver) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+            this.countryResolver = countryResolver;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        /**
+         * Adds the rows of a batch, then clears the batch.
+         */
+        void addAll(ParsedLogBatch batch) throws IOException {
+            ParsedLog[] logs = batch.getLogs();
+            for (int row = 0; row < batch.size(); row++) {
+                long address = batch.getIpAddress(row);
+                ips[blockRows] = (int) address;
+                countryIds[blockRows] = address == Ipv4.INVALID ? NO_IP : countryIdOf(logs[row]);
+                epochSeconds[blockRows] = batch.getEpochSecond(row);
+                responseTimes[blockRows] = batch.getResponseTime(row);
+                int status = batch.getStatus(row);
+                statuses[blockRows] = (short) (status <= Short.MAX_VALUE ? status : NO_STATUS);
+                userAgents[blockRows] = userAgentIdOf(batch, row);
+                if (++blockRows == BLOCK_ROWS) {
+                    writeBlock();
+                }
+            }
+            batch.clear();
+        }
+
+        /**
+         * Returns the id of the country of a log entry with a valid IPv4 address.
+         */
+        private short countryIdOf(ParsedLog log) {
+            if (countryResolver == null) {
+                return UNRESOLVED_COUNTRY;
+            }
+            String country = countryResolver.getCategoryValue(log);
+            if (country == null) {
+                return COUNTRY_NOT_FOUND;
+            }
+            int id = countryNames.idOf(country);
+            // there are a few hundred countries, far below the limit of the column
+            return id <= Short.MAX_VALUE ? (short) id : UNRESOLVED_COUNTRY;
+        }
+
+        /**
+         * Returns the id of the User-Agent of a row, storing it and the families of its client the first time it is
+         * seen, so every distinct User-Agent is parsed once.
+         */
+        private int userAgentIdOf(ParsedLogBatch batch, int row) {
+            String userAgent = batch.getUserAgent(row);
+            if (userAgent == null) {
+                return NO_USER_AGENT;
+            }
+            Integer id = userAgentIds.get(userAgent);
+            if (id == null) {
+                id = userAgentValues.size();
+                userAgentIds.put(userAgent, id);
+                userAgentValues.add(userAgent);
+                Client client = batch.getUserAgentClient(row);
+                clientFamilies.add(browsers.idOf(client.userAgent.family));
+                clientFamilies.add(oses.idOf(client.os.family));
+                clientFamilies.add(devices.idOf(client.device.family));
+            }
+            return id;
+        }
+
+        /**
+         * Writes the pending rows as a block, column by column.
+         */
+        private void writeBlock() throws IOException {
+            if (blockRows == 0) {
+                return;
+            }
+            blockOffsets.add(offset);
+            out.writeInt(blockRows);
+            for (int i = 0; i < blockRows; i++) {
+                out.writeLong(epochSeconds[i]);
+            }
+            for (int i = 0; i < blockRows; i++) {
+                out.writeLong(responseTimes[i]);
+            }
+            for (int i = 0; i < blockRows; i++) {
+                out.writeInt(ips[i]);
+            }
+            for (int i = 0; i < blockRows; i++) {
+                out.writeInt(userAgents[i]);
+            }
+            for (int i = 0; i < blockRows; i++) {
+                out.writeShort(statuses[i]);
+            }
+            for (int i = 0; i < blockRows; i++) {
+                out.writeShort(countryIds[i]);
+            }
+            offset += BLOCK_HEADER_SIZE + (long) blockRows * ROW_SIZE;
+            rows += blockRows;
+            blockRows = 0;
+        }
+
+        /**
+         * Writes the last block, the footer and the trailer.
+         *
+         * @return the number of written rows.
+         */
+        long finish() throws IOException {
+            writeBlock();
+            long footerOffset = offset;
+            writeDictionary(out, countryNames);
+            writeDictionary(out, browsers);
+            writeDictionary(out, oses);
+            writeDictionary(out, devices);
+            out.writeInt(userAgentValues.size());
+            for (int i = 0; i < userAgentValues.size(); i++) {
+                BinaryIO.writeString(out, userAgentValues.get(i));
+                out.writeInt(clientFamilies.get(3 * i));
+                out.writeInt(clientFamilies.get(3 * i + 1));
+                out.writeInt(clientFamilies.get(3 * i + 2));
+            }
+            out.writeInt(blockOffsets.size());
+            for (long blockOffset : blockOffsets) {
+                out.writeLong(blockOffset);
+            }
+            out.writeLong(footerOffset);
+            out.writeLong(rows);
+            return rows;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
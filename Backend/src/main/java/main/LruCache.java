@@ -0,0 +1,197 @@
+package main;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The {@code LruCache} class is a thread-safe, size-bounded cache that evicts the least recently used entries.
+ * The entries are sharded by key hash over independent LRU caches, each of them an access-ordered
+ * {@link LinkedHashMap} guarded by its own lock, so concurrent workers rarely wait for each other. Every shard
+ * evicts its own least recently used entry, so the evicted entry is the least recently used of its shard,
+ * not always of the whole cache.
+ * Values are computed by a loader outside of the lock, and the cache counts hits, misses and evictions.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class LruCache<K, V> {
+
+    // === Constants ===
+    private static final int MAX_SHARDS = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final String INVALID_SIZE_ERR = "Cache size must be positive: ";
+
+    // === Fields ===
+    private final List<Shard<K, V>> shards;
+    private final Function<K, V> loader;
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * A single shard of the cache, evicting its eldest entry when it grows beyond its capacity.
+     */
+    private static final class Shard<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Shard(int capacity, LongAdder evictions) {
+            super(16, LOAD_FACTOR, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Constructs an {@code LruCache}.
+     *
+     * @param maxSize the maximal number of entries kept in the cache
+     * @param loader  the function computing the value of a missing key
+     * @throws IllegalArgumentException if {@code maxSize} is not positive
+     */
+    public LruCache(int maxSize, Function<K, V> loader) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException(INVALID_SIZE_ERR + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.loader = loader;
+        int shardCount = Math.min(MAX_SHARDS, Integer.highestOneBit(maxSize));
+        shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            // the capacities add up to exactly maxSize
+            int shardCapacity = maxSize / shardCount + (i < maxSize % shardCount ? 1 : 0);
+            shards.add(new Shard<>(shardCapacity, evictions));
+        }
+    }
+
+    /**
+     * Returns the cached value of the key, computing and caching it with the loader if it is missing.
+     * When two threads miss the same key at once, both compute it but the first stored value wins,
+     * so all callers get the same instance.
+     *
+     * @param key the key to look up
+     * @return the cached value
+     */
+    public V get(K key) {
+        Shard<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            V value = shard.get(key);
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+        }
+        misses.increment();
+        V loaded = loader.apply(key);
+        synchronized (shard) {
+            V existing = shard.putIfAbsent(key, loaded);
+            return existing != null ? existing : loaded;
+        }
+    }
+
+    /**
+     * Stores a value in the cache, e.g. when restoring a cache from a snapshot.
+     * An existing value of the key is replaced.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        Shard<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            shard.put(key, value);
+        }
+    }
+
+    /**
+     * Returns a copy of the entries currently in the cache, least recently used first within each shard.
+     * Replaying the entries with {@link #put(Object, Object)} keeps each shard's recency order.
+     *
+     * @return the cached entries
+     */
+    public List<Map.Entry<K, V>> entries() {
+        List<Map.Entry<K, V>> entries = new ArrayList<>();
+        for (Shard<K, V> shard : shards) {
+            synchronized (shard) {
+                for (Map.Entry<K, V> entry : shard.entrySet()) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private Shard<K, V> shardFor(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return shards.get(hash & (shards.size() - 1));
+    }
+
+    /**
+     * Returns the number of entries currently in the cache.
+     *
+     * @return the cache size
+     */
+    public int size() {
+        int size = 0;
+        for (Shard<K, V> shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the maximal number of entries kept in the cache.
+     *
+     * @return the maximal cache size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of lookups that found their key in the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to compute their value.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries that were evicted to keep the cache within its size.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
@@ -0,0 +1,331 @@
+package main;
+
+import categories.CategoryAnalyzer;
+import input.LogFiles;
+import input.MappedLogFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code ParallelLogProcessor} class parses and counts log entries on several worker threads.
+ * The input is split into chunks of lines, into byte ranges of a {@link MappedLogFile}, or into whole files,
+ * that are handed to a fixed thread pool. Every worker thread counts into its own partial analyzers
+ * (created with {@link CategoryAnalyzer#createEmptyCopy()}), so the workers never share mutable state.
+ * When the input is exhausted the partial counters are merged into the target analyzers with
+ * {@link CategoryAnalyzer#merge(CategoryAnalyzer)}.
+ */
+public class ParallelLogProcessor {
+
+    /** The default number of lines handed to a worker at once. */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /* How many chunks per worker may wait in the pool, bounding the memory of a streamed input. */
+    private static final int CHUNKS_PER_WORKER = 2;
+
+    private static final String INVALID_PARALLELISM_ERR = "Parallelism must be positive: ";
+    private static final String INVALID_CHUNK_SIZE_ERR = "Chunk size must be positive: ";
+    private static final String WORKER_FAILED_ERR = "A log processing worker failed";
+
+    private final List<CategoryAnalyzer> analyzers;
+    private final Set<LogField> requiredFields;
+    private final int parallelism;
+    private final int chunkSize;
+    private final LogFilter filter;
+
+    /**
+     * Constructs a {@code ParallelLogProcessor} with the default chunk size.
+     *
+     * @param analyzers   the analyzers that receive the merged counts.
+     * @param parallelism the number of worker threads.
+     */
+    public ParallelLogProcessor(List<CategoryAnalyzer> analyzers, int parallelism) {
+        this(analyzers, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a {@code ParallelLogProcessor}.
+     *
+     * @param analyzers   the analyzers that receive the merged counts.
+     * @param parallelism the number of worker threads.
+     * @param chunkSize   the number of lines handed to a worker at once.
+     * @throws IllegalArgumentException if the parallelism or the chunk size is not positive.
+     */
+    public ParallelLogProcessor(List<CategoryAnalyzer> analyzers, int parallelism, int chunkSize) {
+        this(analyzers, parallelism, chunkSize, LogFilter.NONE);
+    }
+
+    /**
+     * Constructs a {@code ParallelLogProcessor} that only counts the log entries a filter accepts.
+     *
+     * @param analyzers   the analyzers that receive the merged counts.
+     * @param parallelism the number of worker threads.
+     * @param chunkSize   the number of lines handed to a worker at once.
+     * @param filter      the filter of the counted log entries, tested by the workers.
+     * @throws IllegalArgumentException if the parallelism or the chunk size is not positive.
+     */
+    public ParallelLogProcessor(List<CategoryAnalyzer> analyzers, int parallelism, int chunkSize, LogFilter filter) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(INVALID_PARALLELISM_ERR + parallelism);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException(INVALID_CHUNK_SIZE_ERR + chunkSize);
+        }
+        this.analyzers = analyzers;
+        this.requiredFields = LogField.requiredBy(analyzers);
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.filter = filter;
+    }
+
+    /**
+     * A unit of work handed to a worker: a source of log entries, fed to the worker's batcher.
+     */
+    @FunctionalInterface
+    private interface LogChunk {
+        void feed(LogBatcher batcher);
+    }
+
+    /**
+     * Processes all log entries of the given iterator and merges the counts into the analyzers.
+     * The iterator is consumed on the calling thread; parsing and counting run on the workers.
+     *
+     * @param logs the log entries to process.
+     * @return the number of processed log entries the filter accepted.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers.
+     */
+    public long process(Iterator<String> logs) throws InterruptedException {
+        Iterator<LogChunk> chunks = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return logs.hasNext();
+            }
+
+            @Override
+            public LogChunk next() {
+                List<String> chunk = nextChunk(logs);
+                return batcher -> chunk.forEach(batcher::add);
+            }
+        };
+        return run(chunks);
+    }
+
+    /**
+     * Processes the given byte ranges of a mapped log file and merges the counts into the analyzers.
+     * Each range is decoded and parsed by a single worker, directly from the mapped memory.
+     *
+     * @param ranges the byte ranges to process, as returned by {@link MappedLogFile#split(int)}.
+     * @return the number of processed log entries the filter accepted.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers.
+     */
+    public long processRanges(List<ByteBuffer> ranges) throws InterruptedException {
+        Iterator<ByteBuffer> rangesIterator = ranges.iterator();
+        Iterator<LogChunk> chunks = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rangesIterator.hasNext();
+            }
+
+            @Override
+            public LogChunk next() {
+                ByteBuffer range = rangesIterator.next();
+                return batcher -> MappedLogFile.forEachLine(range, batcher::add);
+            }
+        };
+        return run(chunks);
+    }
+
+    /**
+     * Processes whole log files, one file per worker at a time, and merges the counts into the analyzers.
+     * Compressed files are decompressed by the worker that reads them, so several files are decompressed at once.
+     * The biggest files are handed out first, so a big file does not start last and keep a single worker busy
+     * after the others are done.
+     *
+     * @param files the log files, plain or gzip-compressed.
+     * @return the number of processed log entries the filter accepted.
+     * @throws IOException          if a file can't be read.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers.
+     */
+    public long processFiles(List<Path> files) throws IOException, InterruptedException {
+        List<Path> bySize = new ArrayList<>(files);
+        bySize.sort(Comparator.comparingLong(ParallelLogProcessor::sizeOf).reversed());
+        Iterator<LogChunk> chunks = bySize.stream().<LogChunk>map(file -> batcher -> {
+            try (BufferedReader reader = LogFiles.openReader(file)) {
+                String log;
+                while ((log = reader.readLine()) != null) {
+                    batcher.add(log);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).iterator();
+        try {
+            return run(chunks);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Counts the rows of a compiled log store, one block per worker at a time, and merges the counts into the
+     * analyzers. The rows are read from the mapped columns of the block, so the workers neither decode nor parse
+     * anything; the filter does not apply to them.
+     *
+     * @param store the compiled log store.
+     * @return the number of counted rows.
+     * @throws IOException          if a block can't be mapped.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers.
+     */
+    public long processStore(LogStore store) throws IOException, InterruptedException {
+        Iterator<LogChunk> chunks = IntStream.range(0, store.getBlockCount()).<LogChunk>mapToObj(block -> batcher -> {
+            try {
+                store.scanBlock(block, batcher);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).iterator();
+        try {
+            return run(chunks);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the size of a file, or {@code 0} if it can't be read, so the failure surfaces when it is processed.
+     */
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Hands every chunk to the worker pool, waits for all of them and merges the partial counters.
+     *
+     * @param chunks the chunks to process, consumed on the calling thread.
+     * @return the number of processed log entries the filter accepted.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers.
+     */
+    private long run(Iterator<LogChunk> chunks) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        Semaphore pendingChunks = new Semaphore(parallelism * CHUNKS_PER_WORKER);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Queue<List<CategoryAnalyzer>> allPartials = new ConcurrentLinkedQueue<>();
+        ThreadLocal<LogBatcher> workerBatchers = ThreadLocal.withInitial(() -> {
+            List<CategoryAnalyzer> partials = createPartials();
+            allPartials.add(partials);
+            return new LogBatcher(partials, requiredFields, filter);
+        });
+
+        LongAdder totalLogs = new LongAdder();
+        try {
+            while (chunks.hasNext() && failure.get() == null) {
+                LogChunk chunk = chunks.next();
+                pendingChunks.acquire();
+                pool.execute(() -> {
+                    try {
+                        processChunk(chunk, workerBatchers.get(), totalLogs);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        pendingChunks.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            if (!pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                pool.shutdownNow();
+            }
+        }
+        rethrowFailure(failure.get());
+
+        for (List<CategoryAnalyzer> partials : allPartials) {
+            for (int i = 0; i < analyzers.size(); i++) {
+                analyzers.get(i).merge(partials.get(i));
+            }
+        }
+        return totalLogs.sum();
+    }
+
+    /**
+     * Creates an empty partial analyzer for every target analyzer, in the same order.
+     *
+     * @return the list of partial analyzers of a single worker.
+     */
+    private List<CategoryAnalyzer> createPartials() {
+        List<CategoryAnalyzer> partials = new ArrayList<>(analyzers.size());
+        for (CategoryAnalyzer analyzer : analyzers) {
+            partials.add(analyzer.createEmptyCopy());
+        }
+        return partials;
+    }
+
+    /**
+     * Takes up to {@code chunkSize} log entries from the iterator.
+     *
+     * @param logs the log entries iterator.
+     * @return the next chunk of log entries.
+     */
+    private List<String> nextChunk(Iterator<String> logs) {
+        List<String> chunk = new ArrayList<>(chunkSize);
+        while (chunk.size() < chunkSize && logs.hasNext()) {
+            chunk.add(logs.next());
+        }
+        return chunk;
+    }
+
+    /**
+     * Feeds every log entry of a chunk to the worker's batcher, which parses and counts it in the worker's partial
+     * analyzers, in batches.
+     * The batcher of a worker is kept from chunk to chunk, so its batch and User-Agent ids are reused.
+     *
+     * @param chunk     the log entries to process.
+     * @param batcher   the batcher of the current worker, counting into its partial analyzers.
+     * @param totalLogs the counter of processed log entries.
+     */
+    private static void processChunk(LogChunk chunk, LogBatcher batcher, LongAdder totalLogs) {
+        long countedBefore = batcher.getCounted();
+        chunk.feed(batcher);
+        batcher.flush();
+        totalLogs.add(batcher.getCounted() - countedBefore);
+    }
+
+    /**
+     * Rethrows a failure of one of the workers on the calling thread.
+     *
+     * @param failure the first failure of a worker, or {@code null} if all workers succeeded.
+     */
+    private static void rethrowFailure(Throwable failure) {
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        if (failure != null) {
+            throw new IllegalStateException(WORKER_FAILED_ERR, failure);
+        }
+    }
+}
@@ -3,105 +3,183 @@ package main;
 import ua_parser.Client;
 import ua_parser.Parser;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
- * The {@code ParsedLog} class is responsible for parsing individual log entries.
- * It extracts important components such as the IP address and the User-Agent string,
- * and uses the {@link ua_parser.Parser} to parse the User-Agent into a {@link Client} object.
- * A static cache is maintained to avoid redundant parsing of duplicate User-Agent strings.
+ * The {@code ParsedLog} class is the parsed form of an individual log entry, as read by the analyzers:
+ * its IP address, timestamp, request, response and User-Agent, the latter parsed by the {@link ua_parser.Parser}
+ * into a {@link Client} object.
+ * There are three implementations, one per source of log entries, which override its getters:
+ * <ul>
+ *     <li>a scanned log entry scans a single log line with a {@link LogLineScanner}, lazily: a field is
+ *     extracted on the first call of its getter and memoized, so a log entry costs only what its readers need.
+ *     {@link #ParsedLog(String)} wraps one, so a {@code ParsedLog} can still be constructed from a line;</li>
+ *     <li>a row of a {@link ParsedLogBatch} reads the fields that were extracted when the line was added to the
+ *     batch, and is reused for the next batch;</li>
+ *     <li>a row of a compiled {@link LogStore} reads its fields from the mapped columns of the store, and is
+ *     {@link CountryResolved} since the store resolved the countries when it was compiled.</li>
+ * </ul>
+ * A log entry may be limited to the {@link LogField}s declared by the registered analyzers; reading any other
+ * field is then a bug of the analyzer that did not declare it.
+ * A static, size-bounded {@link LruCache} is maintained to avoid redundant parsing of duplicate
+ * User-Agent strings while keeping its memory capped for the life of the process. On a cache miss the
+ * User-Agent is parsed by a {@link UserAgentClassifier}, which only runs the regular expressions of the
+ * {@link ua_parser.Parser} for the User-Agents it does not recognize.
  */
 public class ParsedLog {
 
-    /* Regex pattern to extract the IP address from the beginning of a log line. */
-    private static final Pattern IP_PATTERN = Pattern.compile("^(\\d+\\.\\d+\\.\\d+\\.\\d+)");
+    /** The default maximal number of parsed User-Agents kept in the cache. */
+    public static final int DEFAULT_USER_AGENT_CACHE_SIZE = 10_000;
 
-    /* Regex pattern to extract the User-Agent string from a log line. */
-    private static final Pattern USER_AGENT_PATTERN = Pattern.compile(".*\"([^\"]+)\"[^\"]*$");
+    private static final Set<LogField> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(LogField.class));
 
-    /* Cache to store parsed User-Agent strings and their corresponding {@link Client} objects. */
-    private static final Map<String, Client> userAgentsToClient = new ConcurrentHashMap<>();
-
-    /* The User-Agent parser instance used to parse User-Agent strings. */
-    private static final Parser parser = new Parser();
-
-    /* The extracted IP address from the log entry. */
-    private final String ip;
+    /* The User-Agent classifier used to parse User-Agent strings, with the full parser as its fallback. */
+    private static final UserAgentClassifier classifier = new UserAgentClassifier(new Parser());
 
-    /* The extracted raw User-Agent string from the log entry. */
-    private final String userAgent;
+    /* Cache to store parsed User-Agent strings and their corresponding {@link Client} objects. */
+    private static volatile LruCache<String, Client> userAgentsToClient =
+            new LruCache<>(DEFAULT_USER_AGENT_CACHE_SIZE, classifier::parse);
 
-    /* The parsed User-Agent Client object, or ode null if no User-Agent was found. */
-    private final Client userAgentClient;
+    /* The scanned log entry the getters delegate to, for a ParsedLog constructed from a line. */
+    private final ParsedLog scanned;
 
     /**
-     * Constructs a {@code ParsedLog} by parsing the provided log entry.
+     * Constructs a {@code ParsedLog} of the provided log entry, whose fields can all be read.
      *
      * @param log the log entry to parse
      */
     public ParsedLog(String log) {
-        ip = extractIP(log);
-        userAgent = extractClient(log);
-        userAgentClient = userAgent != null
-                ? userAgentsToClient.computeIfAbsent(userAgent, parser::parse)
-                : null;
+        this(log, ALL_FIELDS);
     }
 
     /**
-     * Extracts the IP address from the given log entry.
+     * Constructs a {@code ParsedLog} of the provided log entry, whose fields are limited to the given ones,
+     * typically {@link LogField#requiredBy(java.util.Collection)} of the registered analyzers.
      *
-     * @param log the log entry containing the IP address
-     * @return the extracted IP address, or {@code null} if not found
+     * @param log    the log entry to parse
+     * @param fields the fields that may be read
      */
-    private String extractIP(String log) {
-        Matcher matcher = IP_PATTERN.matcher(log);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
+    public ParsedLog(String log, Set<LogField> fields) {
+        this.scanned = new ScannedLog(log, fields);
     }
 
     /**
-     * Extracts the User-Agent string from the given log entry.
-     *
-     * @param log the log entry to extract from
-     * @return the extracted User-Agent string, or {@code null} if not found
+     * Constructs a log entry of an implementation, which overrides every getter.
      */
-    private String extractClient(String log) {
-        Matcher matcher = USER_AGENT_PATTERN.matcher(log);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
+    protected ParsedLog() {
+        this.scanned = null;
     }
 
     /**
      * Returns the extracted IP address of the log entry.
      *
      * @return the IP address as a {@link String}, or {@code null} if not present
+     * @throws IllegalStateException if {@link LogField#IP} was not declared
      */
     public String getIp() {
-        return ip;
+        return scanned.getIp();
+    }
+
+    /**
+     * Returns the IPv4 address of the log entry, without creating the {@link String} of the IP.
+     *
+     * @return the address as an unsigned 32-bit value in a {@code long}, or {@link Ipv4#INVALID} if the log entry
+     * has no valid IPv4 address
+     * @throws IllegalStateException if {@link LogField#IP} was not declared
+     */
+    public long getIpAddress() {
+        return scanned.getIpAddress();
+    }
+
+    /**
+     * Returns the timestamp of the log entry.
+     *
+     * @return the timestamp as seconds since the epoch, or {@link LogLineScanner#NO_TIMESTAMP} if not present
+     * @throws IllegalStateException if {@link LogField#TIMESTAMP} was not declared
+     */
+    public long getEpochSecond() {
+        return scanned.getEpochSecond();
+    }
+
+    /**
+     * Returns the URL of the request, between the method and the protocol.
+     *
+     * @return the URL, or {@code null} if not present
+     * @throws IllegalStateException if {@link LogField#URL} was not declared
+     */
+    public String getUrl() {
+        return scanned.getUrl();
+    }
+
+    /**
+     * Returns the HTTP status code of the response.
+     *
+     * @return the status code, or {@code -1} if not present
+     * @throws IllegalStateException if {@link LogField#STATUS} was not declared
+     */
+    public int getStatus() {
+        return scanned.getStatus();
+    }
+
+    /**
+     * Returns the referrer of the request.
+     *
+     * @return the referrer, or {@code null} if not present
+     * @throws IllegalStateException if {@link LogField#REFERRER} was not declared
+     */
+    public String getReferrer() {
+        return scanned.getReferrer();
+    }
+
+    /**
+     * Returns the time taken to serve the request, the last field of the extended log format.
+     *
+     * @return the response time in microseconds, or {@code -1} if not present
+     * @throws IllegalStateException if {@link LogField#RESPONSE_TIME} was not declared
+     */
+    public long getResponseTime() {
+        return scanned.getResponseTime();
     }
 
     /**
      * Returns the parsed {@link Client} object of the User-Agent.
      *
      * @return the parsed User-Agent {@link Client}, or {@code null} if no User-Agent was found
+     * @throws IllegalStateException if {@link LogField#USER_AGENT_CLIENT} was not declared
      */
     public Client getUserAgentClient() {
-        return userAgentClient;
+        return scanned.getUserAgentClient();
     }
 
     /**
      * Returns the raw User-Agent string from the log entry.
      *
      * @return the User-Agent string, or {@code null} if not present
+     * @throws IllegalStateException if {@link LogField#USER_AGENT} was not declared
      */
     public String getUserAgent() {
-        return userAgent;
+        return scanned.getUserAgent();
+    }
+
+    /**
+     * Replaces the User-Agent cache with an empty cache of the given maximal size.
+     * Should be called before the logs are parsed, since the previously cached User-Agents are dropped.
+     *
+     * @param maxSize the maximal number of parsed User-Agents kept in the cache
+     * @throws IllegalArgumentException if {@code maxSize} is not positive
+     */
+    public static void setUserAgentCacheSize(int maxSize) {
+        userAgentsToClient = new LruCache<>(maxSize, classifier::parse);
+    }
+
+    /**
+     * Returns the User-Agent cache, e.g. to read its hit, miss and eviction counters.
+     *
+     * @return the User-Agent cache
+     */
+    public static LruCache<String, Client> getUserAgentCache() {
+        return userAgentsToClient;
     }
 }
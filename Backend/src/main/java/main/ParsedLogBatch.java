@@ -0,0 +1,400 @@
+package main;
+
+import ua_parser.Client;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The {@code ParsedLogBatch} class holds the parsed fields of a batch of log entries as columns:
+ * IPv4 addresses as {@code int}s, User-Agents as ids of a {@link UserAgentDictionary}, timestamps as epoch
+ * seconds, status codes as {@code short}s, response times as {@code long}s, and the URL and referrer as offsets
+ * into their log line.
+ * All lines are scanned by a single {@link LogLineScanner}, and only the {@link LogField}s given at construction
+ * are extracted, so adding a line to a batch allocates nothing beyond what a new User-Agent needs.
+ * Strings are only created when a text field is read, e.g. as the key of a counter.
+ * A {@link LogFilter} is tested on the offsets of the scan before anything is extracted, so a rejected line is
+ * not added and costs nothing more than its scan.
+ * A batch is reused: {@link #clear()} empties it for the next lines, keeping its arrays. Its rows are read
+ * through {@link ParsedLog} views ({@link #getLogs()}), which are reused as well, so an analyzer must not keep
+ * a view after the batch was counted.
+ * Not thread-safe: every thread fills its own batch.
+ */
+public final class ParsedLogBatch {
+
+    // === Constants ===
+    private static final int DICTIONARY_SIZE = 4096;
+    private static final int NOT_FOUND = LogLineScanner.NOT_FOUND;
+    private static final String INVALID_CAPACITY_ERR = "Batch capacity must be positive: ";
+    private static final String FULL_ERR = "The batch is full: ";
+    private static final String UNDECLARED_FIELD_ERR = "The field was not declared by any analyzer: ";
+
+    // === Fields ===
+    private final Set<LogField> fields;
+    private final LogFilter filter;
+    private final boolean hasIp;
+    private final boolean hasTimestamp;
+    private final boolean hasUrl;
+    private final boolean hasStatus;
+    private final boolean hasReferrer;
+    private final boolean hasRawUserAgent;
+    private final boolean hasUserAgentClient;
+    private final boolean hasResponseTime;
+    private final LogLineScanner scanner = new LogLineScanner("");
+    private final UserAgentDictionary userAgents;
+    private final ParsedLog[] views;
+    private int size = 0;
+
+    /* The columns, one entry per row. */
+    private final String[] lines;
+    private final int[] ipEnds;
+    private final int[] ipAddresses;
+    private final boolean[] validIps;
+    private final long[] epochSeconds;
+    private final short[] statuses;
+    private final int[] urlStarts;
+    private final int[] urlEnds;
+    private final int[] referrerStarts;
+    private final int[] referrerEnds;
+    private final int[] userAgentIds;
+    private final long[] responseTimes;
+
+    /**
+     * Constructs an empty {@code ParsedLogBatch}.
+     *
+     * @param capacity the maximal number of log entries of the batch
+     * @param fields   the fields that are extracted and may be read, typically
+     *                 {@link LogField#requiredBy(java.util.Collection)} of the registered analyzers
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public ParsedLogBatch(int capacity, Set<LogField> fields) {
+        this(capacity, fields, LogFilter.NONE);
+    }
+
+    /**
+     * Constructs an empty {@code ParsedLogBatch} that only adds the log entries a filter accepts.
+     *
+     * @param capacity the maximal number of log entries of the batch
+     * @param fields   the fields that are extracted and may be read, typically
+     *                 {@link LogField#requiredBy(java.util.Collection)} of the registered analyzers
+     * @param filter   the filter of the added log entries
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public ParsedLogBatch(int capacity, Set<LogField> fields, LogFilter filter) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(INVALID_CAPACITY_ERR + capacity);
+        }
+        this.fields = fields;
+        this.filter = filter;
+        this.hasIp = fields.contains(LogField.IP);
+        this.hasTimestamp = fields.contains(LogField.TIMESTAMP);
+        this.hasUrl = fields.contains(LogField.URL);
+        this.hasStatus = fields.contains(LogField.STATUS);
+        this.hasReferrer = fields.contains(LogField.REFERRER);
+        this.hasRawUserAgent = fields.contains(LogField.USER_AGENT);
+        this.hasUserAgentClient = fields.contains(LogField.USER_AGENT_CLIENT);
+        this.hasResponseTime = fields.contains(LogField.RESPONSE_TIME);
+        this.userAgents = new UserAgentDictionary(Math.max(DICTIONARY_SIZE, capacity));
+        this.lines = new String[capacity];
+        this.ipEnds = new int[capacity];
+        this.ipAddresses = new int[capacity];
+        this.validIps = new boolean[capacity];
+        this.epochSeconds = new long[capacity];
+        this.statuses = new short[capacity];
+        this.urlStarts = new int[capacity];
+        this.urlEnds = new int[capacity];
+        this.referrerStarts = new int[capacity];
+        this.referrerEnds = new int[capacity];
+        this.userAgentIds = new int[capacity];
+        this.responseTimes = new long[capacity];
+        this.views = new ParsedLog[capacity];
+        for (int row = 0; row < capacity; row++) {
+            views[row] = new Row(row);
+        }
+        userAgents.ensureRoom(capacity);
+    }
+
+    /**
+     * Scans a log entry and adds its fields as the next row, if the filter of the batch accepts it.
+     *
+     * @param line the log entry
+     * @return {@code true} if the log entry was added, {@code false} if the filter rejected it
+     * @throws IllegalStateException if the batch is full
+     */
+    public boolean add(String line) {
+        if (size == lines.length) {
+            throw new IllegalStateException(FULL_ERR + lines.length);
+        }
+        scanner.reset(line);
+        if (!filter.test(scanner)) {
+            return false;
+        }
+        int row = size++;
+        lines[row] = line;
+        if (hasIp) {
+            int ipEnd = scanner.getIpEnd();
+            long address = ipEnd == NOT_FOUND ? Ipv4.INVALID : Ipv4.parse(line, 0, ipEnd);
+            ipEnds[row] = ipEnd;
+            ipAddresses[row] = (int) address;
+            validIps[row] = address != Ipv4.INVALID;
+        }
+        if (hasTimestamp) {
+            epochSeconds[row] = scanner.getEpochSecond();
+        }
+        if (hasUrl) {
+            urlStarts[row] = scanner.getUrlStart();
+            urlEnds[row] = scanner.getUrlEnd();
+        }
+        if (hasStatus) {
+            int status = scanner.getStatus();
+            statuses[row] = status <= Short.MAX_VALUE ? (short) status : NOT_FOUND;
+        }
+        if (hasReferrer) {
+            referrerStarts[row] = scanner.getReferrerStart();
+            referrerEnds[row] = scanner.getReferrerEnd();
+        }
+        if (hasRawUserAgent || hasUserAgentClient) {
+            int userAgentStart = scanner.getUserAgentStart();
+            userAgentIds[row] = userAgentStart == NOT_FOUND
+                    ? UserAgentDictionary.NO_USER_AGENT
+                    : userAgents.idOf(line, userAgentStart, scanner.getUserAgentEnd());
+        }
+        if (hasResponseTime) {
+            responseTimes[row] = scanner.getResponseTime();
+        }
+        return true;
+    }
+
+    /**
+     * Empties the batch for the next log entries, releasing its lines.
+     */
+    public void clear() {
+        Arrays.fill(lines, 0, size, null);
+        size = 0;
+        userAgents.ensureRoom(lines.length);
+    }
+
+    /**
+     * Returns the number of log entries of the batch.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the batch holds as many log entries as it can.
+     *
+     * @return {@code true} if no other log entry can be added before {@link #clear()}
+     */
+    public boolean isFull() {
+        return size == lines.length;
+    }
+
+    /**
+     * Returns the fields that are extracted and may be read.
+     *
+     * @return the fields
+     */
+    public Set<LogField> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the reusable {@link ParsedLog} views of the rows; the first {@link #size()} are valid.
+     *
+     * @return the views, as many as the capacity of the batch
+     */
+    public ParsedLog[] getLogs() {
+        return views;
+    }
+
+    /**
+     * Checks that a field was declared.
+     *
+     * @param declared whether the field was declared
+     * @param field    the field about to be read
+     * @throws IllegalStateException if the field was not declared
+     */
+    private static void requireField(boolean declared, LogField field) {
+        if (!declared) {
+            throw new IllegalStateException(UNDECLARED_FIELD_ERR + field);
+        }
+    }
+
+    /**
+     * Returns the IP address of a row.
+     *
+     * @param row the row
+     * @return the IP address, or {@code null} if the line does not start with one
+     * @throws IllegalStateException if {@link LogField#IP} was not declared
+     */
+    public String getIp(int row) {
+        requireField(hasIp, LogField.IP);
+        return ipEnds[row] == NOT_FOUND ? null : lines[row].substring(0, ipEnds[row]);
+    }
+
+    /**
+     * Returns the IPv4 address of a row.
+     *
+     * @param row the row
+     * @return the address as an unsigned 32-bit value in a {@code long}, or {@link Ipv4#INVALID} if the line has no
+     * valid IPv4 address
+     * @throws IllegalStateException if {@link LogField#IP} was not declared
+     */
+    public long getIpAddress(int row) {
+        requireField(hasIp, LogField.IP);
+        return validIps[row] ? Integer.toUnsignedLong(ipAddresses[row]) : Ipv4.INVALID;
+    }
+
+    /**
+     * Returns the timestamp of a row.
+     *
+     * @param row the row
+     * @return the timestamp as seconds since the epoch, or {@link LogLineScanner#NO_TIMESTAMP} if not present
+     * @throws IllegalStateException if {@link LogField#TIMESTAMP} was not declared
+     */
+    public long getEpochSecond(int row) {
+        requireField(hasTimestamp, LogField.TIMESTAMP);
+        return epochSeconds[row];
+    }
+
+    /**
+     * Returns the URL of the request of a row.
+     *
+     * @param row the row
+     * @return the URL, or {@code null} if not present
+     * @throws IllegalStateException if {@link LogField#URL} was not declared
+     */
+    public String getUrl(int row) {
+        requireField(hasUrl, LogField.URL);
+        return urlStarts[row] == NOT_FOUND ? null : lines[row].substring(urlStarts[row], urlEnds[row]);
+    }
+
+    /**
+     * Returns the HTTP status code of a row.
+     *
+     * @param row the row
+     * @return the status code, or {@code -1} if not present
+     * @throws IllegalStateException if {@link LogField#STATUS} was not declared
+     */
+    public int getStatus(int row) {
+        requireField(hasStatus, LogField.STATUS);
+        return statuses[row];
+    }
+
+    /**
+     * Returns the referrer of a row.
+     *
+     * @param row the row
+     * @return the referrer, or {@code null} if not present
+     * @throws IllegalStateException if {@link LogField#REFERRER} was not declared
+     */
+    public String getReferrer(int row) {
+        requireField(hasReferrer, LogField.REFERRER);
+        return referrerStarts[row] == NOT_FOUND
+                ? null
+                : lines[row].substring(referrerStarts[row], referrerEnds[row]);
+    }
+
+    /**
+     * Returns the raw User-Agent of a row, shared by all rows with the same User-Agent.
+     *
+     * @param row the row
+     * @return the User-Agent, or {@code null} if not present
+     * @throws IllegalStateException if {@link LogField#USER_AGENT} was not declared
+     */
+    public String getUserAgent(int row) {
+        requireField(hasRawUserAgent, LogField.USER_AGENT);
+        int id = userAgentIds[row];
+        return id == UserAgentDictionary.NO_USER_AGENT ? null : userAgents.getUserAgent(id);
+    }
+
+    /**
+     * Returns the parsed User-Agent of a row, parsed once for all rows with the same User-Agent.
+     *
+     * @param row the row
+     * @return the parsed User-Agent, or {@code null} if not present
+     * @throws IllegalStateException if {@link LogField#USER_AGENT_CLIENT} was not declared
+     */
+    public Client getUserAgentClient(int row) {
+        requireField(hasUserAgentClient, LogField.USER_AGENT_CLIENT);
+        int id = userAgentIds[row];
+        return id == UserAgentDictionary.NO_USER_AGENT ? null : userAgents.getClient(id);
+    }
+
+    /**
+     * Returns the response time of a row.
+     *
+     * @param row the row
+     * @return the response time in microseconds, or {@code -1} if not present
+     * @throws IllegalStateException if {@link LogField#RESPONSE_TIME} was not declared
+     */
+    public long getResponseTime(int row) {
+        requireField(hasResponseTime, LogField.RESPONSE_TIME);
+        return responseTimes[row];
+    }
+
+    /**
+     * A {@link ParsedLog} view of a row, reading the columns of the batch.
+     */
+    private final class Row extends ParsedLog {
+
+        private final int row;
+
+        /**
+         * Constructs a view of a row.
+         *
+         * @param row the row
+         */
+        Row(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String getIp() {
+            return ParsedLogBatch.this.getIp(row);
+        }
+
+        @Override
+        public long getIpAddress() {
+            return ParsedLogBatch.this.getIpAddress(row);
+        }
+
+        @Override
+        public long getEpochSecond() {
+            return ParsedLogBatch.this.getEpochSecond(row);
+        }
+
+        @Override
+        public String getUrl() {
+            return ParsedLogBatch.this.getUrl(row);
+        }
+
+        @Override
+        public int getStatus() {
+            return ParsedLogBatch.this.getStatus(row);
+        }
+
+        @Override
+        public String getReferrer() {
+            return ParsedLogBatch.this.getReferrer(row);
+        }
+
+        @Override
+        public long getResponseTime() {
+            return ParsedLogBatch.this.getResponseTime(row);
+        }
+
+        @Override
+        public Client getUserAgentClient() {
+            return ParsedLogBatch.this.getUserAgentClient(row);
+        }
+
+        @Override
+        public String getUserAgent() {
+            return ParsedLogBatch.this.getUserAgent(row);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package main;
+
+import ua_parser.Client;
+
+import java.util.Set;
+
+/**
+ * A {@link ParsedLog} of a single log line, scanned by a {@link LogLineScanner} as far as the requested fields need.
+ * Every field is extracted on the first call of its getter and memoized, and the User-Agent is parsed through the
+ * cache of {@link ParsedLog#getUserAgentCache()}.
+ */
+final class ScannedLog extends ParsedLog {
+
+    // === Constants ===
+    private static final String UNDECLARED_FIELD_ERR = "The field was not declared by any analyzer: ";
+
+    // === Fields ===
+    /* The scanner of the log entry, which scans the line as far as the requested fields need. */
+    private final LogLineScanner scanner;
+
+    /* The fields that may be read. */
+    private final Set<LogField> fields;
+
+    /* The extracted IP address from the log entry, valid once ipExtracted is set. */
+    private String ip;
+    private boolean ipExtracted = false;
+
+    /* The timestamp as epoch seconds, valid once timestampExtracted is set. */
+    private long epochSecond;
+    private boolean timestampExtracted = false;
+
+    /* The extracted raw User-Agent string from the log entry, valid once userAgentExtracted is set. */
+    private String userAgent;
+    private boolean userAgentExtracted = false;
+
+    /* The parsed User-Agent Client object, or null if no User-Agent was found; valid once clientParsed is set. */
+    private Client userAgentClient;
+    private boolean clientParsed = false;
+
+    /**
+     * Constructs a {@code ScannedLog} of the provided log entry, whose fields are limited to the given ones.
+     *
+     * @param log    the log entry to parse
+     * @param fields the fields that may be read
+     */
+    ScannedLog(String log, Set<LogField> fields) {
+        this.scanner = new LogLineScanner(log);
+        this.fields = fields;
+    }
+
+    /**
+     * Returns whether the log entry passes a filter. The filter is tested on the scan of this log entry, so the
+     * fields it scanned are not scanned again when they are read.
+     *
+     * @param filter the filter
+     * @return {@code true} if every term of the filter holds
+     */
+    boolean matches(LogFilter filter) {
+        return filter.test(scanner);
+    }
+
+    /**
+     * Checks that a field was declared.
+     *
+     * @param field the field about to be read
+     * @throws IllegalStateException if the field was not declared
+     */
+    private void requireField(LogField field) {
+        if (!fields.contains(field)) {
+            throw new IllegalStateException(UNDECLARED_FIELD_ERR + field);
+        }
+    }
+
+    @Override
+    public String getIp() {
+        if (!ipExtracted) {
+            requireField(LogField.IP);
+            ip = scanner.getIp();
+            ipExtracted = true;
+        }
+        return ip;
+    }
+
+    @Override
+    public long getIpAddress() {
+        return Ipv4.parse(getIp());
+    }
+
+    @Override
+    public long getEpochSecond() {
+        if (!timestampExtracted) {
+            requireField(LogField.TIMESTAMP);
+            epochSecond = scanner.getEpochSecond();
+            timestampExtracted = true;
+        }
+        return epochSecond;
+    }
+
+    @Override
+    public String getUrl() {
+        requireField(LogField.URL);
+        return scanner.getUrl();
+    }
+
+    @Override
+    public int getStatus() {
+        requireField(LogField.STATUS);
+        return scanner.getStatus();
+    }
+
+    @Override
+    public String getReferrer() {
+        requireField(LogField.REFERRER);
+        return scanner.getReferrer();
+    }
+
+    @Override
+    public long getResponseTime() {
+        requireField(LogField.RESPONSE_TIME);
+        return scanner.getResponseTime();
+    }
+
+    @Override
+    public Client getUserAgentClient() {
+        if (!clientParsed) {
+            requireField(LogField.USER_AGENT_CLIENT);
+            String rawUserAgent = extractUserAgent();
+            userAgentClient = rawUserAgent != null
+                    ? getUserAgentCache().get(rawUserAgent)
+                    : null;
+            clientParsed = true;
+        }
+        return userAgentClient;
+    }
+
+    @Override
+    public String getUserAgent() {
+        requireField(LogField.USER_AGENT);
+        return extractUserAgent();
+    }
+
+    /**
+     * Extracts the raw User-Agent once, for both the raw and the parsed User-Agent.
+     */
+    private String extractUserAgent() {
+        if (!userAgentExtracted) {
+            userAgent = scanner.getUserAgent();
+            userAgentExtracted = true;
+        }
+        return userAgent;
+    }
+}
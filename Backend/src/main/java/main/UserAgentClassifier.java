@@ -0,0 +1,397 @@
+package main;
+
+import ua_parser.Client;
+import ua_parser.Device;
+import ua_parser.OS;
+import ua_parser.Parser;
+import ua_parser.UserAgent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code UserAgentClassifier} class parses User-Agents in two tiers. The first tier recognizes the few shapes
+ * that make up most of the traffic by their tokens, without regular expressions: Chrome, Edge, Opera and Firefox on
+ * Windows, macOS and Linux, Safari on macOS and iOS, and Chrome on Android:
+ * <pre>
+ * Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36
+ * </pre>
+ * Every other User-Agent, and any recognized shape with an unexpected token, falls back to the second tier, the
+ * {@link Parser} that tries the regular expressions of {@code regexes.yaml} in order.
+ * The first tier fills in the same {@link Client} as the {@link Parser}: browser and OS families and versions,
+ * and the device. Android device names depend on a long list of vendor rules, so the device of an Android
+ * User-Agent is still parsed by {@link Parser#parseDevice(String)}.
+ * Thread-safe: the classifier keeps no state besides the parser, which is thread-safe.
+ */
+public final class UserAgentClassifier {
+
+    // === Constants ===
+    private static final String MOZILLA = "Mozilla/5.0 (";
+    private static final String PLATFORM_END = ") ";
+    private static final String TOKEN_SEPARATOR = "; ";
+    private static final String FIREFOX_REVISION = "rv:";
+    private static final String WINDOWS_NT = "Windows NT ";
+    private static final String MACINTOSH = "Macintosh";
+    private static final String INTEL_MAC_OS_X = "Intel Mac OS X ";
+    private static final String X11 = "X11";
+    private static final String LINUX_X86_64 = "Linux x86_64";
+    private static final String UBUNTU = "Ubuntu";
+    private static final String IPHONE = "iPhone";
+    private static final String IPAD = "iPad";
+    private static final String CPU_IPHONE_OS = "CPU iPhone OS ";
+    private static final String CPU_OS = "CPU OS ";
+    private static final String LIKE_MAC_OS_X = " like Mac OS X";
+    private static final String LINUX = "Linux";
+    private static final String ANDROID = "Android ";
+    private static final List<String> WIN64 = List.of("Win64", "x64");
+    private static final List<String> WOW64 = List.of("WOW64");
+
+    private static final String GECKO_FIREFOX = "Gecko/20100101 Firefox/";
+    private static final String APPLE_WEBKIT = "AppleWebKit/";
+    private static final String KHTML = " (KHTML, like Gecko) ";
+    private static final String CHROME = "Chrome/";
+    private static final String VERSION = "Version/";
+    private static final String MOBILE = "Mobile/";
+    private static final String SAFARI = " Safari/";
+    private static final String MOBILE_SAFARI = " Mobile Safari/";
+    private static final String EDGE = " Edg/";
+    private static final String OPERA = " OPR/";
+
+    private static final String WINDOWS_FAMILY = "Windows";
+    private static final String MAC_OS_X_FAMILY = "Mac OS X";
+    private static final String LINUX_FAMILY = "Linux";
+    private static final String UBUNTU_FAMILY = "Ubuntu";
+    private static final String IOS_FAMILY = "iOS";
+    private static final String ANDROID_FAMILY = "Android";
+    private static final String CHROME_FAMILY = "Chrome";
+    private static final String CHROME_MOBILE_FAMILY = "Chrome Mobile";
+    private static final String EDGE_FAMILY = "Edge";
+    private static final String OPERA_FAMILY = "Opera";
+    private static final String FIREFOX_FAMILY = "Firefox";
+    private static final String SAFARI_FAMILY = "Safari";
+    private static final String MOBILE_SAFARI_FAMILY = "Mobile Safari";
+    private static final Device OTHER_DEVICE = new Device("Other");
+    private static final Device MAC_DEVICE = new Device("Mac");
+    private static final Device IPHONE_DEVICE = new Device(IPHONE);
+    private static final Device IPAD_DEVICE = new Device(IPAD);
+
+    /* The Windows releases of the NT versions, as {major, minor} of the parsed OS. */
+    private static final Map<String, String[]> WINDOWS_RELEASES = Map.of(
+            "5.1", new String[]{"XP", null},
+            "6.0", new String[]{"Vista", null},
+            "6.1", new String[]{"7", null},
+            "6.2", new String[]{"8", null},
+            "6.3", new String[]{"8", "1"},
+            "10.0", new String[]{"10", null});
+
+    /* The kinds of platforms, which decide the browsers they may run. */
+    private enum Kind { DESKTOP, MAC, IOS, ANDROID }
+
+    /**
+     * The OS and device of a recognized platform; the device of an Android platform is parsed later.
+     */
+    private record Platform(Kind kind, OS os, Device device, boolean firefox) {
+    }
+
+    // === Fields ===
+    private final Parser parser;
+
+    /**
+     * Constructs a {@code UserAgentClassifier} that falls back to the given parser.
+     *
+     * @param parser the parser of the User-Agents that are not recognized
+     */
+    public UserAgentClassifier(Parser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Parses a User-Agent, with the first tier if it recognizes it and with the {@link Parser} otherwise.
+     *
+     * @param userAgent the User-Agent
+     * @return the parsed User-Agent, equal to the one of the {@link Parser}
+     */
+    public Client parse(String userAgent) {
+        Client client = classify(userAgent);
+        return client != null ? client : parser.parse(userAgent);
+    }
+
+    /**
+     * Parses a User-Agent with the first tier only.
+     *
+     * @param userAgent the User-Agent
+     * @return the parsed User-Agent, or {@code null} if its shape is not recognized
+     */
+    public Client classify(String userAgent) {
+        if (userAgent == null || !userAgent.startsWith(MOZILLA)) {
+            return null;
+        }
+        int platformEnd = userAgent.indexOf(PLATFORM_END, MOZILLA.length());
+        if (platformEnd < 0) {
+            return null;
+        }
+        Platform platform = platform(split(userAgent.substring(MOZILLA.length(), platformEnd)));
+        if (platform == null) {
+            return null;
+        }
+        String product = userAgent.substring(platformEnd + PLATFORM_END.length());
+        UserAgent browser = platform.firefox() ? firefox(product) : webKit(product, platform.kind());
+        if (browser == null) {
+            return null;
+        }
+        Device device = platform.kind() == Kind.ANDROID ? parser.parseDevice(userAgent) : platform.device();
+        return new Client(browser, platform.os(), device);
+    }
+
+    /**
+     * Splits the platform between the parentheses into its tokens.
+     */
+    private static List<String> split(String platform) {
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        int separator;
+        while ((separator = platform.indexOf(TOKEN_SEPARATOR, start)) >= 0) {
+            tokens.add(platform.substring(start, separator));
+            start = separator + TOKEN_SEPARATOR.length();
+        }
+        tokens.add(platform.substring(start));
+        return tokens;
+    }
+
+    /**
+     * Recognizes the platform tokens, with the Firefox revision as the last token of a Firefox User-Agent.
+     *
+     * @return the platform, or {@code null} if it is not recognized
+     */
+    private static Platform platform(List<String> tokens) {
+        String last = tokens.get(tokens.size() - 1);
+        boolean firefox = last.startsWith(FIREFOX_REVISION) && isVersion(last.substring(FIREFOX_REVISION.length()));
+        List<String> os = firefox ? tokens.subList(0, tokens.size() - 1) : tokens;
+        if (os.isEmpty()) {
+            return null;
+        }
+        String first = os.get(0);
+        List<String> rest = os.subList(1, os.size());
+        if (first.startsWith(WINDOWS_NT)) {
+            String[] release = WINDOWS_RELEASES.get(first.substring(WINDOWS_NT.length()));
+            if (release == null || !(rest.isEmpty() || rest.equals(WIN64) || rest.equals(WOW64))) {
+                return null;
+            }
+            return new Platform(Kind.DESKTOP, new OS(WINDOWS_FAMILY, release[0], release[1], null, null),
+                    OTHER_DEVICE, firefox);
+        }
+        if (first.equals(MACINTOSH) && rest.size() == 1 && rest.get(0).startsWith(INTEL_MAC_OS_X)) {
+            // Firefox separates the version with dots, the WebKit browsers with underscores
+            String[] version = version(rest.get(0).substring(INTEL_MAC_OS_X.length()), firefox ? '.' : '_', 2, 3);
+            return version == null ? null
+                    : new Platform(Kind.MAC, os(MAC_OS_X_FAMILY, version), MAC_DEVICE, firefox);
+        }
+        if (first.equals(X11) && rest.equals(List.of(LINUX_X86_64))) {
+            return new Platform(Kind.DESKTOP, new OS(LINUX_FAMILY, null, null, null, null), OTHER_DEVICE, firefox);
+        }
+        if (first.equals(X11) && rest.equals(List.of(UBUNTU, LINUX_X86_64))) {
+            return new Platform(Kind.DESKTOP, new OS(UBUNTU_FAMILY, null, null, null, null), OTHER_DEVICE, firefox);
+        }
+        if (firefox) {
+            return null;
+        }
+        if ((first.equals(IPHONE) || first.equals(IPAD)) && rest.size() == 1) {
+            String prefix = first.equals(IPHONE) ? CPU_IPHONE_OS : CPU_OS;
+            String token = rest.get(0);
+            if (!token.startsWith(prefix) || !token.endsWith(LIKE_MAC_OS_X)) {
+                return null;
+            }
+            String[] version = version(token.substring(prefix.length(), token.length() - LIKE_MAC_OS_X.length()),
+                    '_', 2, 3);
+            return version == null ? null : new Platform(Kind.IOS, os(IOS_FAMILY, version),
+                    first.equals(IPHONE) ? IPHONE_DEVICE : IPAD_DEVICE, false);
+        }
+        // a model with other tokens than letters, digits and dashes may hold the name of a browser
+        if (first.equals(LINUX) && (rest.size() == 1 || rest.size() == 2 && isModel(rest.get(1)))
+                && rest.get(0).startsWith(ANDROID)) {
+            String[] version = version(rest.get(0).substring(ANDROID.length()), '.', 1, 3);
+            return version == null ? null : new Platform(Kind.ANDROID, os(ANDROID_FAMILY, version), null, false);
+        }
+        return null;
+    }
+
+    /**
+     * Recognizes the product tokens of Firefox: {@code Gecko/20100101 Firefox/121.0}.
+     *
+     * @return the browser, or {@code null} if it is not recognized
+     */
+    private static UserAgent firefox(String product) {
+        if (!product.startsWith(GECKO_FIREFOX)) {
+            return null;
+        }
+        String[] version = version(product.substring(GECKO_FIREFOX.length()), '.', 2, 3);
+        return version == null ? null : browser(FIREFOX_FAMILY, version);
+    }
+
+    /**
+     * Recognizes the product tokens of a WebKit or Blink browser, e.g.
+     * {@code AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36}.
+     *
+     * @return the browser, or {@code null} if it is not recognized or does not run on the platform
+     */
+    private static UserAgent webKit(String product, Kind kind) {
+        if (!product.startsWith(APPLE_WEBKIT)) {
+            return null;
+        }
+        int khtml = product.indexOf(KHTML);
+        if (khtml < 0 || !isVersion(product.substring(APPLE_WEBKIT.length(), khtml))) {
+            return null;
+        }
+        String browser = product.substring(khtml + KHTML.length());
+        if (browser.startsWith(CHROME)) {
+            return chrome(browser.substring(CHROME.length()), kind);
+        }
+        if (browser.startsWith(VERSION) && (kind == Kind.MAC || kind == Kind.IOS)) {
+            return safari(browser.substring(VERSION.length()), kind);
+        }
+        return null;
+    }
+
+    /**
+     * Recognizes the tokens after {@code Chrome/}: the Chrome version, Safari or Mobile Safari, and Edge or Opera.
+     */
+    private static UserAgent chrome(String tokens, Kind kind) {
+        boolean mobile = kind == Kind.ANDROID && tokens.contains(MOBILE_SAFARI);
+        int versionEnd = tokens.indexOf(mobile ? MOBILE_SAFARI : SAFARI);
+        if (versionEnd < 0 || kind == Kind.IOS) {
+            return null;
+        }
+        // Chrome always has four components; the regular expressions of other versions differ between shapes
+        String[] chromeVersion = version(tokens.substring(0, versionEnd), '.', 4, 4);
+        String safari = tokens.substring(versionEnd + (mobile ? MOBILE_SAFARI : SAFARI).length());
+        int branded = safari.indexOf(' ');
+        if (chromeVersion == null) {
+            return null;
+        }
+        if (branded < 0) {
+            return isVersion(safari) ? browser(mobile ? CHROME_MOBILE_FAMILY : CHROME_FAMILY, chromeVersion) : null;
+        }
+        if (!isVersion(safari.substring(0, branded)) || kind == Kind.ANDROID) {
+            return null;
+        }
+        String brand = safari.substring(branded);
+        if (brand.startsWith(EDGE)) {
+            String[] version = version(brand.substring(EDGE.length()), '.', 4, 4);
+            return version == null ? null : browser(EDGE_FAMILY, version);
+        }
+        if (brand.startsWith(OPERA)) {
+            String[] version = version(brand.substring(OPERA.length()), '.', 4, 4);
+            return version == null ? null : browser(OPERA_FAMILY, version);
+        }
+        return null;
+    }
+
+    /**
+     * Recognizes the tokens after {@code Version/} of Safari on macOS, or of Mobile Safari on iOS with the
+     * {@code Mobile/} build token.
+     */
+    private static UserAgent safari(String tokens, Kind kind) {
+        int versionEnd = tokens.indexOf(' ');
+        if (versionEnd < 0) {
+            return null;
+        }
+        String[] version = version(tokens.substring(0, versionEnd), '.', 2, 3);
+        String rest = tokens.substring(versionEnd);
+        if (version == null) {
+            return null;
+        }
+        if (kind == Kind.MAC) {
+            return rest.startsWith(SAFARI) && isVersion(rest.substring(SAFARI.length()))
+                    ? browser(SAFARI_FAMILY, version) : null;
+        }
+        if (!rest.startsWith(" " + MOBILE)) {
+            return null;
+        }
+        int build = rest.indexOf(SAFARI, 1);
+        if (build < 0 || !isBuild(rest.substring(1 + MOBILE.length(), build))
+                || !isVersion(rest.substring(build + SAFARI.length()))) {
+            return null;
+        }
+        return browser(MOBILE_SAFARI_FAMILY, version);
+    }
+
+    /**
+     * Splits a version into its numeric components.
+     *
+     * @param text          the version
+     * @param separator     the separator of the components
+     * @param minComponents the minimal number of components
+     * @param maxComponents the maximal number of components
+     * @return the components, or {@code null} if the text is not such a version
+     */
+    private static String[] version(String text, char separator, int minComponents, int maxComponents) {
+        String[] components = new String[maxComponents];
+        int count = 0;
+        int start = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == separator) {
+                if (i == start || count == maxComponents) {
+                    return null;
+                }
+                components[count++] = text.substring(start, i);
+                start = i + 1;
+            } else if (!isDigit(text.charAt(i))) {
+                return null;
+            }
+        }
+        return count < minComponents ? null : components;
+    }
+
+    /**
+     * Returns whether a token is a plain device model such as {@code SM-S918B}.
+     */
+    private static boolean isModel(String token) {
+        if (token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a text is a dotted numeric version, such as the WebKit version {@code 537.36}.
+     */
+    private static boolean isVersion(String text) {
+        return version(text, '.', 1, 4) != null;
+    }
+
+    /**
+     * Returns whether a text is an alphanumeric build, such as {@code 15E148}.
+     */
+    private static boolean isBuild(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c) && (c < 'A' || c > 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static UserAgent browser(String family, String[] version) {
+        return new UserAgent(family, version[0], version[1], version.length > 2 ? version[2] : null);
+    }
+
+    private static OS os(String family, String[] version) {
+        return new OS(family, version[0], version.length > 1 ? version[1] : null,
+                version.length > 2 ? version[2] : null, null);
+    }
+}
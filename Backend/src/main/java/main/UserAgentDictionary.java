@@ -0,0 +1,131 @@
+package main;
+
+import ua_parser.Client;
+
+import java.util.Arrays;
+
+/**
+ * The {@code UserAgentDictionary} class gives every distinct User-Agent of a {@link ParsedLogBatch} a small
+ * {@code int} id, so a batch stores ids instead of strings.
+ * A User-Agent is looked up directly in the region of its log line, so a known User-Agent costs a hash and
+ * a comparison, and no {@link String}; only a new User-Agent is copied out of the line.
+ * The {@link Client} of an id is resolved once through the User-Agent cache of {@link ParsedLog}.
+ * The dictionary is bounded: it is cleared between batches once it could overflow during the next one,
+ * so an id is stable for at least a whole batch.
+ * Not thread-safe: every batch has its own dictionary.
+ */
+final class UserAgentDictionary {
+
+    /** The id of a log entry without a User-Agent. */
+    static final int NO_USER_AGENT = -1;
+
+    // === Constants ===
+    private static final int EMPTY_SLOT = -1;
+    private static final int HASH_MULTIPLIER = 31;
+
+    // === Fields ===
+    private final int maxSize;
+    private final int slotMask;
+
+    /* Open addressing table of ids, probed linearly from the hash of the User-Agent. */
+    private final int[] slots;
+
+    /* The User-Agents, their hashes and their parsed clients, by id. */
+    private final String[] userAgents;
+    private final int[] hashes;
+    private final Client[] clients;
+    private int size = 0;
+
+    /**
+     * Constructs an empty {@code UserAgentDictionary}.
+     *
+     * @param maxSize the maximal number of distinct User-Agents kept
+     */
+    UserAgentDictionary(int maxSize) {
+        this.maxSize = maxSize;
+        int tableSize = Integer.highestOneBit(maxSize * 2 - 1) << 1;
+        this.slotMask = tableSize - 1;
+        this.slots = new int[tableSize];
+        this.userAgents = new String[maxSize];
+        this.hashes = new int[maxSize];
+        this.clients = new Client[maxSize];
+        Arrays.fill(slots, EMPTY_SLOT);
+    }
+
+    /**
+     * Clears the dictionary if fewer than the given number of User-Agents could still be added.
+     *
+     * @param entries the number of User-Agents about to be looked up
+     */
+    void ensureRoom(int entries) {
+        if (size + entries > maxSize) {
+            Arrays.fill(slots, EMPTY_SLOT);
+            Arrays.fill(userAgents, 0, size, null);
+            Arrays.fill(clients, 0, size, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * Returns the id of the User-Agent in a region of a log line, adding it if it is new.
+     * The caller makes room with {@link #ensureRoom(int)} beforehand.
+     *
+     * @param line  the log line
+     * @param start the offset of the first character of the User-Agent
+     * @param end   the offset after the last character of the User-Agent
+     * @return the id of the User-Agent
+     */
+    int idOf(String line, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = HASH_MULTIPLIER * hash + line.charAt(i);
+        }
+        int length = end - start;
+        int slot = mix(hash) & slotMask;
+        while (slots[slot] != EMPTY_SLOT) {
+            int id = slots[slot];
+            if (hashes[id] == hash && userAgents[id].length() == length
+                    && line.regionMatches(start, userAgents[id], 0, length)) {
+                return id;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        int id = size++;
+        userAgents[id] = line.substring(start, end);
+        hashes[id] = hash;
+        slots[slot] = id;
+        return id;
+    }
+
+    /**
+     * Spreads the bits of a hash, since the table is indexed by its low bits.
+     */
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the User-Agent of an id.
+     *
+     * @param id the id
+     * @return the User-Agent
+     */
+    String getUserAgent(int id) {
+        return userAgents[id];
+    }
+
+    /**
+     * Returns the parsed {@link Client} of an id, resolving it through the User-Agent cache on first use.
+     *
+     * @param id the id
+     * @return the parsed User-Agent
+     */
+    Client getClient(int id) {
+        Client client = clients[id];
+        if (client == null) {
+            client = ParsedLog.getUserAgentCache().get(userAgents[id]);
+            clients[id] = client;
+        }
+        return client;
+    }
+}
@@ -0,0 +1,162 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import main.LogAnalyzer;
+import main.ParallelLogProcessor;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The {@code IngestionServer} class is an embedded HTTP server that feeds a streaming {@link LogAnalyzer}
+ * with log lines pushed over the network, e.g. by the hosts that write the logs.
+ * Every exchange is handled on its own virtual thread, so thousands of concurrent senders cost no platform
+ * thread each. A sender posts a batch of newline-separated log lines; the batch is counted on the sender's
+ * virtual thread with {@link LogAnalyzer#addLogBatch(List)}, which only holds the analyzer's lock to merge it.
+ * Endpoints:
+ *   POST /logs    count the log lines of the request body, answering the number of counted lines, i.e. the
+ *                 lines the analyzer's filter accepted
+ *   GET  /stats   the current report, as printed by {@link LogAnalyzer#printReport(PrintStream)}
+ */
+public class IngestionServer implements Closeable {
+
+    // === Constants ===
+    public static final String LOGS_PATH = "/logs";
+    public static final String STATS_PATH = "/stats";
+    private static final String POST = "POST";
+    private static final String GET = "GET";
+    private static final String ALLOW_HEADER = "Allow";
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+    private static final int OK = 200;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int NO_BODY = -1;
+    /* Pending connections the listening socket queues, so bursts of senders are not refused. */
+    private static final int BACKLOG = 4096;
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    // === Fields ===
+    private final LogAnalyzer logAnalyzer;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    /**
+     * Creates an {@code IngestionServer} bound to an address; it accepts connections once {@link #start()}ed.
+     *
+     * @param logAnalyzer the streaming analyzer that counts the pushed lines
+     * @param address     the address to listen on, port {@code 0} for any free port
+     * @throws IOException if the address can't be bound
+     */
+    public IngestionServer(LogAnalyzer logAnalyzer, InetSocketAddress address) throws IOException {
+        this.logAnalyzer = logAnalyzer;
+        this.httpServer = HttpServer.create(address, BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        httpServer.setExecutor(executor);
+        httpServer.createContext(LOGS_PATH, this::handleLogs);
+        httpServer.createContext(STATS_PATH, this::handleStats);
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        httpServer.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Counts the log lines of a posted batch. The lines are handed to the analyzer in chunks, so a big body
+     * is never held in memory at once.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if reading the request or writing the response fails
+     */
+    private void handleLogs(HttpExchange exchange) throws IOException {
+        if (!POST.equals(exchange.getRequestMethod())) {
+            rejectMethod(exchange, POST);
+            return;
+        }
+        long counted = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(),
+                StandardCharsets.UTF_8))) {
+            List<String> chunk = new ArrayList<>();
+            String log;
+            while ((log = reader.readLine()) != null) {
+                if (log.isEmpty()) {
+                    continue;
+                }
+                chunk.add(log);
+                if (chunk.size() == ParallelLogProcessor.DEFAULT_CHUNK_SIZE) {
+                    counted += logAnalyzer.addLogBatch(chunk);
+                    chunk = new ArrayList<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                counted += logAnalyzer.addLogBatch(chunk);
+            }
+        }
+        respond(exchange, counted + System.lineSeparator());
+    }
+
+    /**
+     * Answers the current report.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if writing the response fails
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        if (!GET.equals(exchange.getRequestMethod())) {
+            rejectMethod(exchange, GET);
+            return;
+        }
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(report, false, StandardCharsets.UTF_8)) {
+            logAnalyzer.printReport(out);
+        }
+        respond(exchange, report.toString(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, TEXT_CONTENT_TYPE);
+        exchange.sendResponseHeaders(OK, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void rejectMethod(HttpExchange exchange, String allowedMethod) throws IOException {
+        exchange.getResponseHeaders().set(ALLOW_HEADER, allowedMethod);
+        exchange.sendResponseHeaders(METHOD_NOT_ALLOWED, NO_BODY);
+        exchange.close();
+    }
+
+    /**
+     * Stops the server, letting the exchanges in progress finish for up to a second.
+     */
+    @Override
+    public void close() {
+        httpServer.stop(STOP_DELAY_SECONDS);
+        executor.close();
+    }
+}
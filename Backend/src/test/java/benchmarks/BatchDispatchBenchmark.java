@@ -0,0 +1,90 @@
+package benchmarks;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.LogFieldAnalyzer;
+import categories.OSAnalyzer;
+import main.LogField;
+import main.ParsedLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares counting parsed logs one log at a time, with one interface call per analyzer per log, to counting them
+ * in batches with {@link CategoryAnalyzer#addLogsToCounter(ParsedLog[], int, int)}. Several analyzer classes share
+ * the call site, so the per-log dispatch is megamorphic. The logs are parsed and their User-Agents cached
+ * beforehand, so only the dispatch and the counting are measured. One operation counts {@code batchSize} logs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchDispatchBenchmark {
+
+    @Param({"100000"})
+    public int corpusSize;
+
+    @Param({"1000"})
+    public int userAgentCardinality;
+
+    @Param({"10000"})
+    public int ipCardinality;
+
+    @Param({"16", "256", "4096"})
+    public int batchSize;
+
+    private ParsedLog[] logs;
+    private List<CategoryAnalyzer> analyzers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> corpus = SyntheticLogCorpus.generate(corpusSize, userAgentCardinality, ipCardinality);
+        ParsedLog.setUserAgentCacheSize(Math.max(ParsedLog.DEFAULT_USER_AGENT_CACHE_SIZE, userAgentCardinality));
+        logs = corpus.stream().map(ParsedLog::new).toArray(ParsedLog[]::new);
+        for (ParsedLog log : logs) {
+            log.getUserAgentClient();
+        }
+        analyzers = List.of(
+                new OSAnalyzer("Operating systems"),
+                new BrowsersAnalyzer("Browsers"),
+                new LogFieldAnalyzer("URLs", LogField.URL),
+                new LogFieldAnalyzer("Referrers", LogField.REFERRER));
+    }
+
+    @Benchmark
+    public void perLog() {
+        int from = nextBatch();
+        int to = from + batchSize;
+        for (int i = from; i < to; i++) {
+            ParsedLog log = logs[i];
+            for (CategoryAnalyzer analyzer : analyzers) {
+                analyzer.addLogToCounter(log);
+            }
+        }
+    }
+
+    @Benchmark
+    public void batched() {
+        int from = nextBatch();
+        for (CategoryAnalyzer analyzer : analyzers) {
+            analyzer.addLogsToCounter(logs, from, from + batchSize);
+        }
+    }
+
+    /**
+     * Returns the start of the next batch, wrapping around before the batch would run past the corpus.
+     */
+    private int nextBatch() {
+        if (next + batchSize > logs.length) {
+            next = 0;
+        }
+        int from = next;
+        next += batchSize;
+        return from;
+    }
+}
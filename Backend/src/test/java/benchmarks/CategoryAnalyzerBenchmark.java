@@ -0,0 +1,67 @@
+package benchmarks;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.CountriesAnalyzer;
+import categories.GeoIpDatabase;
+import categories.OSAnalyzer;
+import main.ParsedLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CategoryAnalyzer#addLogToCounter(ParsedLog)} of every analyzer on logs that were parsed
+ * beforehand, so only the counting is measured. The {@code countries} analyzer needs the GeoIP2 database
+ * given by {@code geoIpDatabase}; run without it with {@code -p analyzer=os,browsers}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CategoryAnalyzerBenchmark {
+
+    @Param({"100000"})
+    public int corpusSize;
+
+    @Param({"1000"})
+    public int userAgentCardinality;
+
+    @Param({"10000"})
+    public int ipCardinality;
+
+    @Param({"os", "browsers", "countries"})
+    public String analyzer;
+
+    @Param({GeoIpDatabase.DEFAULT_PATH})
+    public String geoIpDatabase;
+
+    private ParsedLog[] logs;
+    private CategoryAnalyzer categoryAnalyzer;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<String> corpus = SyntheticLogCorpus.generate(corpusSize, userAgentCardinality, ipCardinality);
+        ParsedLog.setUserAgentCacheSize(Math.max(ParsedLog.DEFAULT_USER_AGENT_CACHE_SIZE, userAgentCardinality));
+        logs = corpus.stream().map(ParsedLog::new).toArray(ParsedLog[]::new);
+        categoryAnalyzer = switch (analyzer) {
+            case "os" -> new OSAnalyzer("Operating systems");
+            case "browsers" -> new BrowsersAnalyzer("Browsers");
+            case "countries" -> new CountriesAnalyzer("Countries", GeoIpDatabase.open(geoIpDatabase,
+                    GeoIpDatabase.DEFAULT_FILE_MODE, GeoIpDatabase.DEFAULT_CACHE_SIZE));
+            default -> throw new IllegalArgumentException("Unknown analyzer: " + analyzer);
+        };
+    }
+
+    @Benchmark
+    public void addLogToCounter() {
+        ParsedLog log = logs[next];
+        next = next + 1 == logs.length ? 0 : next + 1;
+        categoryAnalyzer.addLogToCounter(log);
+    }
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.CountriesAnalyzer;
+import categories.GeoIpDatabase;
+import categories.OSAnalyzer;
+import main.LogAnalyzer;
+import main.ParsedLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the end-to-end throughput of {@link LogAnalyzer}: reading, parsing and counting a whole corpus.
+ * One operation analyzes the whole corpus, so the lines per second are the ops/s times {@code corpusSize}.
+ * With {@code threads} above 1 the corpus is analyzed by the parallel path. The countries analyzer is only
+ * included with {@code -p countries=true}, since it needs the GeoIP2 database.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"10000"})
+    public int corpusSize;
+
+    @Param({"1000"})
+    public int userAgentCardinality;
+
+    @Param({"10000"})
+    public int ipCardinality;
+
+    @Param({"1"})
+    public int threads;
+
+    @Param({"false"})
+    public boolean countries;
+
+    @Param({GeoIpDatabase.DEFAULT_PATH})
+    public String geoIpDatabase;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<String> corpus = SyntheticLogCorpus.generate(corpusSize, userAgentCardinality, ipCardinality);
+        text = String.join("\n", corpus) + "\n";
+        ParsedLog.setUserAgentCacheSize(ParsedLog.DEFAULT_USER_AGENT_CACHE_SIZE);
+        if (countries) {
+            GeoIpDatabase.getShared(geoIpDatabase, GeoIpDatabase.DEFAULT_FILE_MODE, GeoIpDatabase.DEFAULT_CACHE_SIZE);
+        }
+    }
+
+    @Benchmark
+    public long calculateParameters() throws IOException, InterruptedException {
+        List<CategoryAnalyzer> analyzers = new ArrayList<>(List.of(new OSAnalyzer("Operating systems"),
+                new BrowsersAnalyzer("Browsers")));
+        if (countries) {
+            analyzers.add(new CountriesAnalyzer("Countries", GeoIpDatabase.getShared(geoIpDatabase,
+                    GeoIpDatabase.DEFAULT_FILE_MODE, GeoIpDatabase.DEFAULT_CACHE_SIZE)));
+        }
+        LogAnalyzer logAnalyzer = new LogAnalyzer(analyzers);
+        try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
+            if (threads > 1) {
+                logAnalyzer.calculateParametersInParallel(reader, threads);
+            } else {
+                logAnalyzer.calculateParameters(reader);
+            }
+        }
+        return logAnalyzer.getTotalLogs();
+    }
+}
@@ -0,0 +1,72 @@
+package benchmarks;
+
+import categories.CountryLookup;
+import categories.GeoIpDatabase;
+import com.maxmind.db.Reader;
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.maxmind.geoip2.model.CountryResponse;
+import main.Ipv4;
+import main.LogLineScanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the IP-to-country lookup of the {@code CountriesAnalyzer}: a plain {@link DatabaseReader} query
+ * against the {@link CountryLookup} that caches answers per network in front of it.
+ * Needs the GeoIP2 database given by {@code geoIpDatabase}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeoIpLookupBenchmark {
+
+    @Param({"100000"})
+    public int corpusSize;
+
+    @Param({"10000"})
+    public int ipCardinality;
+
+    @Param({GeoIpDatabase.DEFAULT_PATH})
+    public String geoIpDatabase;
+
+    @Param({"mmap", "memory"})
+    public String fileMode;
+
+    private int[] addresses;
+    private DatabaseReader reader;
+    private CountryLookup lookup;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<String> corpus = SyntheticLogCorpus.generate(corpusSize, 1, ipCardinality);
+        addresses = corpus.stream().mapToInt(log -> (int) Ipv4.parse(new LogLineScanner(log).getIp())).toArray();
+        Reader.FileMode mode = GeoIpDatabase.parseFileMode(fileMode);
+        reader = GeoIpDatabase.open(geoIpDatabase, mode, GeoIpDatabase.DEFAULT_CACHE_SIZE);
+        lookup = new CountryLookup(reader);
+    }
+
+    private int nextAddress() {
+        int address = addresses[next];
+        next = next + 1 == addresses.length ? 0 : next + 1;
+        return address;
+    }
+
+    @Benchmark
+    public Optional<CountryResponse> databaseReader() throws IOException, GeoIp2Exception {
+        return reader.tryCountry(Ipv4.toInetAddress(nextAddress()));
+    }
+
+    @Benchmark
+    public int countryLookup() throws IOException, GeoIp2Exception {
+        return lookup.lookup(nextAddress());
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import categories.LatencyHistogram;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures recording response times into a {@link LatencyHistogram}, and reading a percentile back.
+ * The response times are long-tailed, from a microsecond to about ten seconds, so the records spread over
+ * many buckets. Recording allocates nothing once the histogram has grown to its largest bucket.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LatencyHistogramBenchmark {
+
+    private static final int SAMPLES = 1 << 16;
+    private static final double MAX_RESPONSE_TIME = 10_000_000;
+
+    private final long[] responseTimes = new long[SAMPLES];
+    private LatencyHistogram histogram;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            responseTimes[i] = (long) Math.exp(random.nextDouble() * Math.log(MAX_RESPONSE_TIME));
+        }
+        histogram = new LatencyHistogram();
+        for (long responseTime : responseTimes) {
+            histogram.record(responseTime);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        histogram.record(responseTimes[next]);
+        next = (next + 1) & (SAMPLES - 1);
+    }
+
+    @Benchmark
+    public long percentile() {
+        return histogram.getValueAtPercentile(99.9);
+    }
+}
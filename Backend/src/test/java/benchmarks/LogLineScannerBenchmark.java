@@ -0,0 +1,73 @@
+package benchmarks;
+
+import main.LogLineScanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the IP and User-Agent extraction of {@link LogLineScanner} with the regular expressions
+ * that {@code ParsedLog} used before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogLineScannerBenchmark {
+
+    private static final Pattern IP_PATTERN = Pattern.compile("^(\\d+\\.\\d+\\.\\d+\\.\\d+)");
+    private static final Pattern USER_AGENT_PATTERN = Pattern.compile(".*\"([^\"]+)\"[^\"]*$");
+
+    @Param({"100000"})
+    public int corpusSize;
+
+    private String[] logs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> corpus = SyntheticLogCorpus.generate(corpusSize, 100, 10_000);
+        logs = corpus.toArray(new String[0]);
+    }
+
+    private String nextLog() {
+        String log = logs[next];
+        next = next + 1 == logs.length ? 0 : next + 1;
+        return log;
+    }
+
+    @Benchmark
+    public int regex() {
+        String log = nextLog();
+        int checksum = 0;
+        Matcher ipMatcher = IP_PATTERN.matcher(log);
+        if (ipMatcher.find()) {
+            checksum += ipMatcher.group(1).length();
+        }
+        Matcher userAgentMatcher = USER_AGENT_PATTERN.matcher(log);
+        if (userAgentMatcher.find()) {
+            checksum += userAgentMatcher.group(1).length();
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public int scanner() {
+        LogLineScanner scanner = new LogLineScanner(nextLog());
+        int checksum = 0;
+        String ip = scanner.getIp();
+        if (ip != null) {
+            checksum += ip.length();
+        }
+        String userAgent = scanner.getUserAgent();
+        if (userAgent != null) {
+            checksum += userAgent.length();
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,102 @@
+package benchmarks;
+
+import main.LogField;
+import main.ParsedLog;
+import main.ParsedLogBatch;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing a batch of lines into one {@link ParsedLog} per line with parsing them into a reused
+ * {@link ParsedLogBatch}, reading the IP address, the timestamp, the status and the parsed User-Agent of every
+ * line. The User-Agent cache is warm, so the benchmark measures the scan and the allocations; run it with
+ * {@code -prof gc} to compare the bytes allocated per line. One operation parses {@code batchSize} lines.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsedLogBatchBenchmark {
+
+    private static final Set<LogField> FIELDS =
+            EnumSet.of(LogField.IP, LogField.TIMESTAMP, LogField.STATUS, LogField.USER_AGENT_CLIENT);
+
+    @Param({"100000"})
+    public int corpusSize;
+
+    @Param({"1000"})
+    public int userAgentCardinality;
+
+    @Param({"10000"})
+    public int ipCardinality;
+
+    @Param({"256"})
+    public int batchSize;
+
+    private String[] logs;
+    private ParsedLogBatch batch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> corpus = SyntheticLogCorpus.generate(corpusSize, userAgentCardinality, ipCardinality);
+        logs = corpus.toArray(new String[0]);
+        ParsedLog.setUserAgentCacheSize(Math.max(ParsedLog.DEFAULT_USER_AGENT_CACHE_SIZE, userAgentCardinality));
+        for (String log : logs) {
+            new ParsedLog(log).getUserAgentClient();
+        }
+        batch = new ParsedLogBatch(batchSize, FIELDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ParsedLog.setUserAgentCacheSize(ParsedLog.DEFAULT_USER_AGENT_CACHE_SIZE);
+    }
+
+    @Benchmark
+    public void perLine(Blackhole blackhole) {
+        int from = nextBatch();
+        for (int i = from; i < from + batchSize; i++) {
+            consume(new ParsedLog(logs[i], FIELDS), blackhole);
+        }
+    }
+
+    @Benchmark
+    public void columnar(Blackhole blackhole) {
+        int from = nextBatch();
+        batch.clear();
+        for (int i = from; i < from + batchSize; i++) {
+            batch.add(logs[i]);
+        }
+        ParsedLog[] views = batch.getLogs();
+        for (int row = 0; row < batchSize; row++) {
+            consume(views[row], blackhole);
+        }
+    }
+
+    private static void consume(ParsedLog log, Blackhole blackhole) {
+        blackhole.consume(log.getIpAddress());
+        blackhole.consume(log.getEpochSecond());
+        blackhole.consume(log.getStatus());
+        blackhole.consume(log.getUserAgentClient());
+    }
+
+    /**
+     * Returns the start of the next batch, wrapping around before the batch would run past the corpus.
+     */
+    private int nextBatch() {
+        if (next + batchSize > logs.length) {
+            next = 0;
+        }
+        int from = next;
+        next += batchSize;
+        return from;
+    }
+}
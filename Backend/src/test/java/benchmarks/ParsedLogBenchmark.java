@@ -0,0 +1,68 @@
+package benchmarks;
+
+import main.ParsedLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of a {@link ParsedLog}: scanning the line and resolving its User-Agent.
+ * With a {@code warm} cache every User-Agent of the corpus is cached beforehand, so the benchmark measures
+ * the scanner and a cache hit. With a {@code cold} cache the cache holds a single entry and consecutive lines
+ * have different User-Agents, so every line is parsed by the User-Agent parser.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsedLogBenchmark {
+
+    private static final String COLD_CACHE = "cold";
+
+    @Param({"100000"})
+    public int corpusSize;
+
+    @Param({"1000"})
+    public int userAgentCardinality;
+
+    @Param({"10000"})
+    public int ipCardinality;
+
+    @Param({"warm", "cold"})
+    public String cache;
+
+    private String[] logs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> corpus = SyntheticLogCorpus.generate(corpusSize, userAgentCardinality, ipCardinality);
+        logs = corpus.toArray(new String[0]);
+        if (COLD_CACHE.equals(cache)) {
+            if (userAgentCardinality < 2) {
+                throw new IllegalArgumentException("A cold cache needs at least 2 distinct User-Agents");
+            }
+            ParsedLog.setUserAgentCacheSize(1);
+        } else {
+            ParsedLog.setUserAgentCacheSize(Math.max(ParsedLog.DEFAULT_USER_AGENT_CACHE_SIZE, userAgentCardinality));
+            for (String log : logs) {
+                new ParsedLog(log);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ParsedLog.setUserAgentCacheSize(ParsedLog.DEFAULT_USER_AGENT_CACHE_SIZE);
+    }
+
+    @Benchmark
+    public ParsedLog parse() {
+        String log = logs[next];
+        next = next + 1 == logs.length ? 0 : next + 1;
+        return new ParsedLog(log);
+    }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The {@code SyntheticLogCorpus} class generates realistic Apache combined-format log lines for the benchmarks.
+ * The number of distinct User-Agents and client IPs is configurable, so a benchmark can measure both a hot
+ * User-Agent cache (few distinct agents) and a cold one (more distinct agents than the cache holds).
+ * Consecutive lines always differ in their User-Agent when there are at least two distinct agents.
+ * The corpus is fully determined by its parameters and seed.
+ */
+public final class SyntheticLogCorpus {
+
+    // === Constants ===
+    private static final long DEFAULT_SEED = 1;
+    private static final String[] METHODS = {"GET", "GET", "GET", "POST", "HEAD"};
+    private static final int[] STATUSES = {200, 200, 200, 200, 304, 301, 404, 500};
+    private static final String[] PATHS = {"/", "/index.html", "/search", "/api/items", "/static/app.js",
+            "/static/style.css", "/images/logo.png", "/?utm_source=Contextin&utm_campaign=19056"};
+    private static final String[] REFERRERS = {"-", "http://www.google.com/search?q=logs",
+            "http://ads.creafi-online-media.com/st?ad_type=iframe&ad_size=300x250", "http://example.com/"};
+    private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep",
+            "Oct", "Nov", "Dec"};
+    /* User-Agent templates; %d is replaced by a version number, so one template yields many distinct agents. */
+    private static final String[] USER_AGENT_TEMPLATES = {
+            "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.17 (KHTML, like Gecko) Chrome/%d.0.1312.56 "
+                    + "Safari/537.17",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:%d.0) Gecko/20100101 Firefox/%d.0",
+            "Mozilla/5.0 (iPad; CPU OS 6_0_1 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) "
+                    + "Version/6.0 Mobile/10A%d Safari/8536.25",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS %d_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) "
+                    + "Version/16.0 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) "
+                    + "Chrome/%d.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (Linux; Android %d; SM-G991B) AppleWebKit/537.36 (KHTML, like Gecko) "
+                    + "Chrome/112.0.0.0 Mobile Safari/537.36",
+            "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.0.0 "
+                    + "Safari/537.36",
+            "Mozilla/5.0 (compatible; MSIE 9.0; Windows NT 6.1; Trident/%d.0)",
+            "Mozilla/5.0 (compatible; Googlebot/2.%d; +http://www.google.com/bot.html)",
+            "curl/7.%d.0",
+    };
+
+    private SyntheticLogCorpus() {
+    }
+
+    /**
+     * Generates a corpus with the default seed.
+     *
+     * @param size                 the number of log lines
+     * @param userAgentCardinality the number of distinct User-Agents
+     * @param ipCardinality        the number of distinct client IPs
+     * @return the log lines
+     */
+    public static List<String> generate(int size, int userAgentCardinality, int ipCardinality) {
+        return generate(size, userAgentCardinality, ipCardinality, DEFAULT_SEED);
+    }
+
+    /**
+     * Generates a corpus.
+     *
+     * @param size                 the number of log lines
+     * @param userAgentCardinality the number of distinct User-Agents
+     * @param ipCardinality        the number of distinct client IPs
+     * @param seed                 the seed of the random choices
+     * @return the log lines
+     */
+    public static List<String> generate(int size, int userAgentCardinality, int ipCardinality, long seed) {
+        Random random = new Random(seed);
+        String[] userAgents = new String[userAgentCardinality];
+        for (int i = 0; i < userAgentCardinality; i++) {
+            userAgents[i] = userAgent(i);
+        }
+        String[] ips = new String[ipCardinality];
+        for (int i = 0; i < ipCardinality; i++) {
+            ips[i] = ip(random);
+        }
+        List<String> corpus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // round-robin over the agents, so consecutive lines never share one
+            String userAgent = userAgents[i % userAgentCardinality];
+            String ip = ips[random.nextInt(ipCardinality)];
+            int second = i % 60;
+            int minute = (i / 60) % 60;
+            int hour = (i / 3600) % 24;
+            int day = 1 + (i / 86400) % 28;
+            String month = MONTHS[(i / (86400 * 28)) % MONTHS.length];
+            corpus.add(String.format("%s - - [%02d/%s/2013:%02d:%02d:%02d -0600] \"%s %s HTTP/1.1\" %d %d \"%s\" "
+                            + "\"%s\" %d %d - %d", ip, day, month, hour, minute, second,
+                    METHODS[random.nextInt(METHODS.length)], PATHS[random.nextInt(PATHS.length)],
+                    STATUSES[random.nextInt(STATUSES.length)], random.nextInt(50_000),
+                    REFERRERS[random.nextInt(REFERRERS.length)], userAgent, 300 + random.nextInt(400),
+                    random.nextInt(20_000), random.nextInt(1_000_000)));
+        }
+        return corpus;
+    }
+
+    private static String userAgent(int index) {
+        String template = USER_AGENT_TEMPLATES[index % USER_AGENT_TEMPLATES.length];
+        int version = 1 + index / USER_AGENT_TEMPLATES.length;
+        return template.replace("%d", Integer.toString(version));
+    }
+
+    private static String ip(Random random) {
+        // first octet in 1..223 keeps the addresses out of the multicast and reserved ranges
+        return (1 + random.nextInt(223)) + "." + random.nextInt(256) + "." + random.nextInt(256) + "."
+                + (1 + random.nextInt(254));
+    }
+}
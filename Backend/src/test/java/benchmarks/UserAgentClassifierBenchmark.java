@@ -0,0 +1,60 @@
+package benchmarks;
+
+import main.LogField;
+import main.ParsedLog;
+import main.UserAgentClassifier;
+import org.openjdk.jmh.annotations.*;
+import ua_parser.Client;
+import ua_parser.Parser;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing the User-Agents of the corpus with the regular expressions of the {@link Parser} alone and with
+ * the {@link UserAgentClassifier}, which recognizes the dominant shapes first. Nothing is cached, so every
+ * operation parses one User-Agent; the corpus mixes recognized shapes with bots and tools that fall back.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserAgentClassifierBenchmark {
+
+    @Param({"1000"})
+    public int userAgentCardinality;
+
+    private String[] userAgents;
+    private Parser parser;
+    private UserAgentClassifier classifier;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> corpus = SyntheticLogCorpus.generate(userAgentCardinality, userAgentCardinality, 1);
+        userAgents = corpus.stream()
+                .map(log -> new ParsedLog(log, EnumSet.of(LogField.USER_AGENT)).getUserAgent())
+                .toArray(String[]::new);
+        parser = new Parser();
+        classifier = new UserAgentClassifier(parser);
+    }
+
+    @Benchmark
+    public Client parser() {
+        return parser.parse(nextUserAgent());
+    }
+
+    @Benchmark
+    public Client classifier() {
+        return classifier.parse(nextUserAgent());
+    }
+
+    private String nextUserAgent() {
+        String userAgent = userAgents[next];
+        next = next + 1 == userAgents.length ? 0 : next + 1;
+        return userAgent;
+    }
+}
@@ -0,0 +1,163 @@
+package tests;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.LatencyAnalyzer;
+import categories.OSAnalyzer;
+import categories.TimeWindow;
+import categories.TimeWindowedAnalyzer;
+import categories.UniqueVisitorsAnalyzer;
+import main.AnalyzerSnapshot;
+import main.LogAnalyzer;
+import main.LruCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ua_parser.Client;
+import ua_parser.Parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalyzerSnapshotTest {
+
+    private static final String CHROME_LOG = "1.2.3.4 - - [22/Jan/2013:14:33:04 -0600] \"GET / HTTP/1.1\" 200 "
+            + "9983 \"-\" \"Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.17 (KHTML, like Gecko) "
+            + "Chrome/24.0.1312.56 Safari/537.17\" 615 10246 - 126652";
+    private static final String IPAD_LOG = "5.6.7.8 - - [22/Jan/2013:14:33:05 -0600] \"GET / HTTP/1.1\" 200 "
+            + "9983 \"-\" \"Mozilla/5.0 (iPad; CPU OS 6_0_1 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) "
+            + "Version/6.0 Mobile/10A523 Safari/8536.25\" 625 10246 - 233945";
+
+    @TempDir
+    Path tempDir;
+
+    private static LogAnalyzer newAnalyzer() {
+        List<CategoryAnalyzer> analyzers = new ArrayList<>(List.of(new OSAnalyzer("Operating systems"),
+                new BrowsersAnalyzer("Browsers")));
+        return new LogAnalyzer(analyzers);
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        LogAnalyzer original = newAnalyzer();
+        original.addLog(CHROME_LOG);
+        original.addLog(CHROME_LOG);
+        original.addLog(IPAD_LOG);
+        Path snapshot = tempDir.resolve("state.bin");
+        AnalyzerSnapshot.write(snapshot, original, Map.of("access.log", 1234L), null);
+
+        LogAnalyzer restored = newAnalyzer();
+        Map<String, Long> offsets = AnalyzerSnapshot.read(snapshot, restored, null);
+        assertEquals(Map.of("access.log", 1234L), offsets);
+        assertEquals(3, restored.getTotalLogs());
+        for (int i = 0; i < original.getAnalyzers().size(); i++) {
+            assertEquals(original.getAnalyzers().get(i).getCounter(), restored.getAnalyzers().get(i).getCounter());
+        }
+
+        // counting continues on top of the restored counts
+        restored.addLog(IPAD_LOG);
+        assertEquals(2, restored.getAnalyzers().get(0).getCounter().get("iOS"));
+    }
+
+    @Test
+    void testUnknownAnalyzerIsSkipped() throws IOException {
+        LogAnalyzer original = newAnalyzer();
+        original.addLog(CHROME_LOG);
+        Path snapshot = tempDir.resolve("state.bin");
+        AnalyzerSnapshot.write(snapshot, original, Map.of(), null);
+
+        LogAnalyzer restored = new LogAnalyzer(new ArrayList<>(List.of(new BrowsersAnalyzer("Browsers"))));
+        AnalyzerSnapshot.read(snapshot, restored, null);
+        assertEquals(Map.of("Chrome", 1), restored.getAnalyzers().get(0).getCounter());
+    }
+
+    @Test
+    void testOtherFormatIsRejected() throws IOException {
+        LogAnalyzer original = new LogAnalyzer(new ArrayList<>(List.of(new OSAnalyzer("Operating systems"),
+                new LatencyAnalyzer(new BrowsersAnalyzer("Browsers")))));
+        original.addLog(CHROME_LOG);
+        original.addLog(IPAD_LOG);
+        Path snapshot = tempDir.resolve("state.bin");
+        AnalyzerSnapshot.write(snapshot, original, Map.of(), null);
+
+        // the browsers were saved with latencies, so neither a plain nor a differently wrapped analyzer reads them
+        for (CategoryAnalyzer browsers : List.of(new BrowsersAnalyzer("Browsers"),
+                new UniqueVisitorsAnalyzer(new BrowsersAnalyzer("Browsers")),
+                new LatencyAnalyzer(new BrowsersAnalyzer("Browsers"), 3))) {
+            LogAnalyzer restored = new LogAnalyzer(new ArrayList<>(List.of(new OSAnalyzer("Operating systems"),
+                    browsers)));
+            assertThrows(IOException.class, () -> AnalyzerSnapshot.read(snapshot, restored, null));
+            // nothing is restored, not even the analyzers saved in the same format
+            assertEquals(0, restored.getTotalLogs());
+            assertEquals(Map.of(), restored.getAnalyzers().get(0).getCounter());
+            assertEquals(Map.of(), browsers.getCounter());
+        }
+    }
+
+    @Test
+    void testResumeWithChangedOptionsIsRejected() throws IOException {
+        LogAnalyzer original = new LogAnalyzer(new ArrayList<>(List.of(new TimeWindowedAnalyzer(
+                new LatencyAnalyzer(new UniqueVisitorsAnalyzer(new OSAnalyzer("Operating systems"))),
+                TimeWindow.MINUTE, 60))));
+        original.addLog(CHROME_LOG);
+        Path snapshot = tempDir.resolve("state.bin");
+        AnalyzerSnapshot.write(snapshot, original, Map.of("access.log", 1234L), null);
+
+        // other wrappers, and an analyzer the snapshot has no counts for
+        for (List<CategoryAnalyzer> analyzers : List.of(
+                List.<CategoryAnalyzer>of(new LatencyAnalyzer(new OSAnalyzer("Operating systems"))),
+                List.<CategoryAnalyzer>of(original.getAnalyzers().get(0).createEmptyCopy(),
+                        new BrowsersAnalyzer("Browsers")))) {
+            LogAnalyzer restored = new LogAnalyzer(new ArrayList<>(analyzers));
+            assertThrows(IOException.class, () -> AnalyzerSnapshot.read(snapshot, restored, null));
+            assertEquals(0, restored.getTotalLogs());
+        }
+
+        LogAnalyzer restored = new LogAnalyzer(new ArrayList<>(List.of(
+                original.getAnalyzers().get(0).createEmptyCopy())));
+        assertEquals(Map.of("access.log", 1234L), AnalyzerSnapshot.read(snapshot, restored, null));
+        assertEquals(1, restored.getTotalLogs());
+    }
+
+    @Test
+    void testUserAgentCacheRoundTrip() throws IOException {
+        Parser parser = new Parser();
+        LruCache<String, Client> cache = new LruCache<>(100, parser::parse);
+        String userAgent = "Mozilla/5.0 (iPad; CPU OS 6_0_1 like Mac OS X) AppleWebKit/536.26";
+        Client parsed = cache.get(userAgent);
+        Path snapshot = tempDir.resolve("state.bin");
+        AnalyzerSnapshot.write(snapshot, newAnalyzer(), Map.of(), cache);
+
+        LruCache<String, Client> restoredCache = new LruCache<>(100, key -> {
+            throw new AssertionError("restored entries must not be parsed again");
+        });
+        AnalyzerSnapshot.read(snapshot, newAnalyzer(), restoredCache);
+        assertEquals(parsed, restoredCache.get(userAgent));
+    }
+
+    @Test
+    void testWriteReplacesPreviousSnapshot() throws IOException {
+        Path snapshot = tempDir.resolve("state.bin");
+        LogAnalyzer analyzer = newAnalyzer();
+        AnalyzerSnapshot.write(snapshot, analyzer, Map.of("access.log", 1L), null);
+        analyzer.addLog(CHROME_LOG);
+        AnalyzerSnapshot.write(snapshot, analyzer, Map.of("access.log", 2L), null);
+
+        assertEquals(Map.of("access.log", 2L), AnalyzerSnapshot.read(snapshot, newAnalyzer(), null));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count(), "no temporary file is left behind");
+        }
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path notSnapshot = tempDir.resolve("access.log");
+        Files.writeString(notSnapshot, CHROME_LOG);
+        assertThrows(IOException.class, () -> AnalyzerSnapshot.read(notSnapshot, newAnalyzer(), null));
+    }
+}
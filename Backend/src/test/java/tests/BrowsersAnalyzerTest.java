@@ -1,15 +1,20 @@
 package tests;
 
 import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import main.LogField;
 import main.ParsedLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 import ua_parser.Client;
 import ua_parser.Parser;
 
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -70,5 +75,26 @@ public class BrowsersAnalyzerTest {
     void testGetCategoryName() {
         assertEquals("Browsers", browsersAnalyzer.getCategoryName());
     }
-}
 
+    @Test
+    void testMergeEmptyCopy() {
+        Client client = parser.parse("Mozilla/5.0 (Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1");
+        ParsedLog parsedLog = Mockito.mock(ParsedLog.class);
+        Mockito.when(parsedLog.getUserAgentClient()).thenReturn(client);
+
+        CategoryAnalyzer copy = browsersAnalyzer.createEmptyCopy();
+        assertEquals(browsersAnalyzer.getCategoryName(), copy.getCategoryName());
+        assertTrue(copy.getCounter().isEmpty());
+
+        browsersAnalyzer.addLogToCounter(parsedLog);
+        copy.addLogToCounter(parsedLog);
+        copy.addLogToCounter(parsedLog);
+        browsersAnalyzer.merge(copy);
+        assertEquals(3, browsersAnalyzer.getCounter().get("Firefox"));
+    }
+
+    @Test
+    void testRequiredFields() {
+        assertEquals(Set.of(LogField.USER_AGENT_CLIENT), browsersAnalyzer.getRequiredFields());
+    }
+}
@@ -0,0 +1,56 @@
+package tests;
+
+import categories.CategoryCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryCounterTest {
+
+    @Test
+    void testIncrementInternsValues() {
+        CategoryCounter counter = new CategoryCounter();
+        int firefoxId = counter.increment("Firefox");
+        int safariId = counter.increment("Safari");
+        assertEquals(firefoxId, counter.increment("Firefox"));
+        assertNotEquals(firefoxId, safariId);
+
+        assertEquals(2, counter.size());
+        assertEquals(2, counter.getCount("Firefox"));
+        assertEquals(1, counter.getCountById(safariId));
+        assertEquals("Safari", counter.getValue(safariId));
+        assertEquals(0, counter.getCount("Chrome"));
+    }
+
+    @Test
+    void testMapView() {
+        CategoryCounter counter = new CategoryCounter();
+        Map<String, Integer> view = counter.asMap();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            String value = "value" + (i % 40);
+            counter.increment(value);
+            expected.merge(value, 1, Integer::sum);
+        }
+        assertEquals(expected, view, "The view should follow the counter.");
+        assertEquals(3, view.get("value0"));
+        assertNull(view.get("missing"));
+        assertThrows(UnsupportedOperationException.class, () -> view.put("value0", 1));
+    }
+
+    @Test
+    void testAddAll() {
+        CategoryCounter first = new CategoryCounter();
+        CategoryCounter second = new CategoryCounter();
+        first.add("Windows", 3);
+        second.add("iOS", 2);
+        second.add("Windows", 1);
+
+        first.addAll(second);
+        assertEquals(4, first.getCount("Windows"));
+        assertEquals(2, first.getCount("iOS"));
+    }
+}
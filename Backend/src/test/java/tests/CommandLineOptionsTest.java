@@ -0,0 +1,165 @@
+package tests;
+
+import categories.GeoIpDatabase;
+import categories.TimeWindow;
+import com.maxmind.db.Reader;
+import main.CommandLineOptions;
+import main.LogField;
+import main.ParsedLog;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandLineOptionsTest {
+
+    @Test
+    void testDefaults() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"logs.txt"});
+        assertEquals("logs.txt", options.getLogPath());
+        assertEquals(1, options.getThreads());
+        assertEquals(ParsedLog.DEFAULT_USER_AGENT_CACHE_SIZE, options.getUserAgentCacheSize());
+        assertEquals(GeoIpDatabase.DEFAULT_PATH, options.getGeoIpDatabasePath());
+        assertEquals(GeoIpDatabase.DEFAULT_FILE_MODE, options.getGeoIpFileMode());
+        assertEquals(GeoIpDatabase.DEFAULT_CACHE_SIZE, options.getGeoIpCacheSize());
+        assertFalse(options.isFollow());
+        assertNull(options.getSnapshotPath());
+        assertFalse(options.isUniqueVisitors());
+        assertFalse(options.isLatency());
+    }
+
+    @Test
+    void testMultipleLogPaths() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"access.log", "--threads", "4",
+                "rotated/*.gz"});
+        assertEquals("access.log", options.getLogPath());
+        assertEquals(List.of("access.log", "rotated/*.gz"), options.getLogPaths());
+    }
+
+    @Test
+    void testServeOption() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"--serve", "8080"});
+        assertTrue(options.isServe());
+        assertEquals(8080, options.getServePort());
+        assertNull(options.getLogPath());
+        assertFalse(CommandLineOptions.parse(new String[]{"access.log"}).isServe());
+        assertTrue(CommandLineOptions.parse(new String[]{"--serve", "8080", "--concurrent-counters"})
+                .isConcurrentCounters());
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"--serve", "70000"}));
+    }
+
+    @Test
+    void testUniqueVisitorsOption() {
+        assertTrue(CommandLineOptions.parse(new String[]{"--unique-visitors", "access.log"}).isUniqueVisitors());
+    }
+
+    @Test
+    void testLatencyOption() {
+        assertTrue(CommandLineOptions.parse(new String[]{"access.log", "--latency"}).isLatency());
+    }
+
+    @Test
+    void testWindowOptions() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"access.log", "--window", "hour",
+                "--windows", "24"});
+        assertEquals(TimeWindow.HOUR, options.getWindow());
+        assertEquals(24, options.getWindowCount());
+        assertNull(CommandLineOptions.parse(new String[]{"access.log"}).getWindow());
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"access.log", "--window", "week"}));
+    }
+
+    @Test
+    void testTopOptions() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"access.log", "--top", "url,User-Agent",
+                "--top", "url", "--top-size", "5", "--top-epsilon", "0.01", "--top-delta", "0.05"});
+        assertEquals(List.of(LogField.URL, LogField.USER_AGENT), options.getTopFields());
+        assertEquals(5, options.getTopSize());
+        assertEquals(0.01, options.getTopEpsilon());
+        assertEquals(0.05, options.getTopDelta());
+        assertTrue(CommandLineOptions.parse(new String[]{"access.log"}).getTopFields().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"access.log", "--top", "status"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"access.log", "--top-epsilon", "1.5"}));
+    }
+
+    @Test
+    void testFilterOption() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"access.log", "--filter",
+                "status=2xx ip=10.0.0.0/8", "--filter", "path=/api/"});
+        String log = "10.1.2.3 - - [21/Jan/2013:00:00:00 +0000] \"GET /api/users HTTP/1.1\" 200 12 \"-\" \"curl\"";
+        assertTrue(options.getFilter().test(log));
+        assertFalse(options.getFilter().test(log.replace("/api/", "/static/")));
+        assertTrue(CommandLineOptions.parse(new String[]{"access.log"}).getFilter().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"access.log", "--filter", "status=ok"}));
+    }
+
+    @Test
+    void testCubeOption() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"access.log", "--cube", "Browser,country",
+                "--cube", "os,browser"});
+        assertEquals(List.of("browser", "country", "os"), options.getCubeDimensions());
+        assertTrue(CommandLineOptions.parse(new String[]{"access.log"}).getCubeDimensions().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"access.log", "--cube", "os,url"}));
+    }
+
+    @Test
+    void testCompileOption() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"access.log", "--compile", "access.store"});
+        assertEquals("access.store", options.getCompilePath());
+        assertNull(CommandLineOptions.parse(new String[]{"access.log"}).getCompilePath());
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"--serve", "8080", "--compile", "access.store"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"access.log", "--compile"}));
+    }
+
+    @Test
+    void testSnapshotOptions() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"access.log", "--snapshot",
+                "state.bin", "--snapshot-interval", "5"});
+        assertEquals("state.bin", options.getSnapshotPath());
+        assertEquals(5, options.getSnapshotIntervalSeconds());
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"access.log", "--snapshot"}));
+    }
+
+    @Test
+    void testOptions() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"--threads", "8", "logs.txt",
+                "--ua-cache-size", "500", "--geoip-db", "geo.mmdb", "--geoip-mode", "memory", "--geoip-cache", "4096"});
+        assertEquals("logs.txt", options.getLogPath());
+        assertEquals(8, options.getThreads());
+        assertEquals(500, options.getUserAgentCacheSize());
+        assertEquals("geo.mmdb", options.getGeoIpDatabasePath());
+        assertEquals(Reader.FileMode.MEMORY, options.getGeoIpFileMode());
+        assertEquals(4096, options.getGeoIpCacheSize());
+    }
+
+    @Test
+    void testFollowOptions() {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"--follow", "--interval", "30",
+                "access.log"});
+        assertTrue(options.isFollow());
+        assertEquals(30, options.getReportIntervalSeconds());
+        assertEquals("access.log", options.getLogPath());
+    }
+
+    @Test
+    void testInvalidOptions() {
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{}));
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"logs.txt", "--threads"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"logs.txt", "--threads", "0"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"logs.txt", "--geoip-mode", "disk"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandLineOptions.parse(new String[]{"logs.txt", "--unknown"}));
+    }
+}
@@ -0,0 +1,151 @@
+package tests;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.ConcurrentCategoryAnalyzer;
+import categories.LogFieldAnalyzer;
+import categories.OSAnalyzer;
+import main.LogField;
+import main.ParsedLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentCategoryAnalyzerTest {
+    private static final int THREADS = 16;
+    private static final int LOGS_PER_THREAD = 20_000;
+    /* Every log of a mocked IP is recorded by Mockito, so fewer of them are enough. */
+    private static final int VALUE_SOURCE_LOGS_PER_THREAD = 2_000;
+    /* Larger than the initial buffer of a thread, so the buffer grows. */
+    private static final int VALUE_SOURCE_BATCH_SIZE = 400;
+
+    private ConcurrentCategoryAnalyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        analyzer = new ConcurrentCategoryAnalyzer(new BrowsersAnalyzer("Browsers"), 4);
+    }
+
+    @Test
+    void testConcurrentCountsAreExact() throws InterruptedException {
+        ParsedLog chrome = TestLogs.browserLog("Chrome");
+        ParsedLog firefox = TestLogs.browserLog("Firefox");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            ParsedLog log = t % 2 == 0 ? chrome : firefox;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < LOGS_PER_THREAD; i++) {
+                    analyzer.addLogToCounter(log);
+                    if (i % 1000 == 0) {
+                        // reading while the other threads count never blocks them for long
+                        analyzer.getCounter();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        int perBrowser = THREADS / 2 * LOGS_PER_THREAD;
+        assertEquals(Map.of("Chrome", perBrowser, "Firefox", perBrowser), analyzer.getCounter());
+    }
+
+    /**
+     * A stateless value source that refuses to be copied, so every thread must share it.
+     */
+    private static class SharedIpAnalyzer extends LogFieldAnalyzer {
+
+        SharedIpAnalyzer() {
+            super("IPs", LogField.IP);
+        }
+
+        @Override
+        public CategoryAnalyzer createEmptyCopy() {
+            throw new AssertionError("the value source is shared, not copied per thread");
+        }
+    }
+
+    @Test
+    void testValueSourceIsShared() throws InterruptedException {
+        ConcurrentCategoryAnalyzer ips = new ConcurrentCategoryAnalyzer(new SharedIpAnalyzer(), 4);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            ParsedLog log = TestLogs.log().ip("10.0.0." + t).build();
+            ParsedLog[] batch = new ParsedLog[VALUE_SOURCE_BATCH_SIZE];
+            Arrays.fill(batch, log);
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < VALUE_SOURCE_LOGS_PER_THREAD / batch.length; i++) {
+                    if (i % 2 == 0) {
+                        ips.addLogsToCounter(batch, 0, batch.length);
+                    } else {
+                        for (ParsedLog one : batch) {
+                            ips.addLogToCounter(one);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Map<String, Integer> expected = new HashMap<>();
+        for (int t = 0; t < THREADS; t++) {
+            expected.put("10.0.0." + t, VALUE_SOURCE_LOGS_PER_THREAD);
+        }
+        assertEquals(expected, ips.getCounter());
+    }
+
+    @Test
+    void testCounterIsASnapshot() {
+        analyzer.addLogToCounter(TestLogs.browserLog("Chrome"));
+        Map<String, Integer> snapshot = analyzer.getCounter();
+        analyzer.addLogToCounter(TestLogs.browserLog("Chrome"));
+        assertEquals(Map.of("Chrome", 1), snapshot);
+        assertEquals(Map.of("Chrome", 2), analyzer.getCounter());
+    }
+
+    @Test
+    void testWrapsValueSource() {
+        CategoryAnalyzer os = new ConcurrentCategoryAnalyzer(new OSAnalyzer("Operating systems"));
+        assertEquals("Operating systems", os.getCategoryName());
+        assertEquals(Set.of(LogField.USER_AGENT_CLIENT), os.getRequiredFields());
+        assertTrue(os.isThreadSafe());
+        assertFalse(new OSAnalyzer("Operating systems").isThreadSafe());
+        assertThrows(IllegalArgumentException.class,
+                () -> new ConcurrentCategoryAnalyzer(new OSAnalyzer("Operating systems"), 3));
+    }
+
+    @Test
+    void testMergeAndSnapshotRoundTrip() throws IOException {
+        CategoryAnalyzer other = analyzer.createEmptyCopy();
+        analyzer.addLogToCounter(TestLogs.browserLog("Chrome"));
+        other.addLogToCounter(TestLogs.browserLog("Chrome"));
+        other.addLogToCounter(TestLogs.browserLog("Safari"));
+        analyzer.merge(other);
+        assertEquals(Map.of("Chrome", 2, "Safari", 1), analyzer.getCounter());
+        assertThrows(IllegalArgumentException.class, () -> analyzer.merge(new BrowsersAnalyzer("Browsers")));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        analyzer.writeSnapshot(new DataOutputStream(bytes));
+        // the snapshot format is the one of the plain analyzer, so either can restore it
+        BrowsersAnalyzer plain = new BrowsersAnalyzer("Browsers");
+        plain.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(Map.of("Chrome", 2, "Safari", 1), plain.getCounter());
+        CategoryAnalyzer restored = analyzer.createEmptyCopy();
+        restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(Map.of("Chrome", 2, "Safari", 1), restored.getCounter());
+    }
+}
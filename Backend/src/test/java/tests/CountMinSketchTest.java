@@ -0,0 +1,94 @@
+package tests;
+
+import categories.CountMinSketch;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    private static final double EPSILON = 0.001;
+    private static final double DELTA = 0.01;
+
+    @Test
+    void testDimensions() {
+        CountMinSketch sketch = new CountMinSketch(EPSILON, DELTA);
+        assertEquals(2719, sketch.getWidth());
+        assertEquals(5, sketch.getDepth());
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(0, DELTA));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(EPSILON, 1));
+    }
+
+    @Test
+    void testEstimatesWithinBound() {
+        CountMinSketch sketch = new CountMinSketch(EPSILON, DELTA);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // a skewed distribution over many distinct values, like URLs
+            String value = "/page/" + (int) Math.pow(random.nextInt(1000), 2);
+            sketch.add(value, 1);
+            exact.merge(value, 1L, Long::sum);
+        }
+        assertEquals(100_000, sketch.getTotal());
+        long bound = (long) (EPSILON * sketch.getTotal());
+        int overBound = 0;
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), entry.getKey());
+            if (estimate > entry.getValue() + bound) {
+                overBound++;
+            }
+        }
+        // the bound holds for every value with probability 1 - delta
+        assertTrue(overBound <= DELTA * exact.size(), overBound + " estimates over the bound");
+        assertEquals(0, new CountMinSketch(EPSILON, DELTA).estimate("/never"));
+    }
+
+    @Test
+    void testMergeEqualsSingleSketch() {
+        CountMinSketch single = new CountMinSketch(EPSILON, DELTA);
+        CountMinSketch first = new CountMinSketch(EPSILON, DELTA);
+        CountMinSketch second = new CountMinSketch(EPSILON, DELTA);
+        for (int i = 0; i < 1000; i++) {
+            String value = "v" + (i % 37);
+            single.add(value, 1);
+            (i % 2 == 0 ? first : second).add(value, 1);
+        }
+        first.merge(second);
+        assertEquals(single.getTotal(), first.getTotal());
+        for (int i = 0; i < 37; i++) {
+            assertEquals(single.estimate("v" + i), first.estimate("v" + i));
+        }
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new CountMinSketch(0.01, DELTA)));
+    }
+
+    @Test
+    void testWriteAndReadAndAdd() throws IOException {
+        CountMinSketch sketch = new CountMinSketch(EPSILON, DELTA);
+        sketch.add("a", 3);
+        sketch.add("b", 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.write(new DataOutputStream(bytes));
+
+        CountMinSketch restored = new CountMinSketch(EPSILON, DELTA);
+        restored.add("a", 1);
+        restored.readAndAdd(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(4, restored.estimate("a"));
+        assertEquals(1, restored.estimate("b"));
+        assertEquals(5, restored.getTotal());
+
+        CountMinSketch other = new CountMinSketch(0.01, DELTA);
+        assertThrows(IOException.class,
+                () -> other.readAndAdd(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+}
@@ -2,6 +2,8 @@ package tests;
 
 import categories.CountriesAnalyzer;
 
+import main.CountryResolved;
+import main.Ipv4;
 import main.ParsedLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -30,6 +32,7 @@ public class CountriesAnalyzerTest {
             for (String ip : IPs) {
                 ParsedLog mockParsedLog = Mockito.mock(ParsedLog.class);
                 Mockito.when(mockParsedLog.getIp()).thenReturn(ip);
+                Mockito.when(mockParsedLog.getIpAddress()).thenReturn(Ipv4.parse(ip));
                 countriesCounter.addLogToCounter(mockParsedLog);
             }
         } catch (IOException ioE) {
@@ -57,6 +60,7 @@ public class CountriesAnalyzerTest {
     void testCountryCounterInvalidLog() {
         ParsedLog mockBrokenLog = Mockito.mock(ParsedLog.class);
         Mockito.when(mockBrokenLog.getIp()).thenReturn(null);
+        Mockito.when(mockBrokenLog.getIpAddress()).thenReturn(Ipv4.INVALID);
         countriesCounter.addLogToCounter(mockBrokenLog);
         Map<String, Integer> counter = countriesCounter.getCounter();
         assertNotNull(counter);
@@ -65,4 +69,23 @@ public class CountriesAnalyzerTest {
         assertEquals(2, counter.get("Germany"));
         assertEquals(1, counter.get("Israel"));
     }
+
+    @Test
+    @DisplayName("Countries resolved in advance are counted without a lookup.")
+    void testResolvedCountry() {
+        ParsedLog resolvedLog = Mockito.mock(ParsedLog.class,
+                Mockito.withSettings().extraInterfaces(CountryResolved.class));
+        Mockito.when(((CountryResolved) resolvedLog).isCountryResolved()).thenReturn(true);
+        Mockito.when(((CountryResolved) resolvedLog).getResolvedCountry()).thenReturn("France");
+        ParsedLog notFoundLog = Mockito.mock(ParsedLog.class,
+                Mockito.withSettings().extraInterfaces(CountryResolved.class));
+        Mockito.when(((CountryResolved) notFoundLog).isCountryResolved()).thenReturn(true);
+        Mockito.when(notFoundLog.getIp()).thenReturn("10.0.0.1");
+        countriesCounter.addLogToCounter(resolvedLog);
+        countriesCounter.addLogToCounter(notFoundLog);
+        assertEquals(1, countriesCounter.getCounter().get("France"));
+        assertEquals("France", countriesCounter.getCategoryValue(resolvedLog));
+        assertTrue(countriesCounter.getNotFoundIps().contains("10.0.0.1"));
+        Mockito.verify(resolvedLog, Mockito.never()).getIpAddress();
+    }
 }
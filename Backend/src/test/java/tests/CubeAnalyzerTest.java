@@ -0,0 +1,215 @@
+package tests;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.CubeAnalyzer;
+import categories.LogFieldAnalyzer;
+import categories.OSAnalyzer;
+import main.LogField;
+import main.ParsedLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CubeAnalyzerTest {
+
+    private static final int PARALLEL_THREADS = 4;
+    private static final int LOGS_PER_THREAD = 50_000;
+
+    private CubeAnalyzer cube;
+
+    @BeforeEach
+    void setUp() {
+        cube = new CubeAnalyzer("Cube", List.of(new OSAnalyzer("OS"), new BrowsersAnalyzer("Browsers"),
+                new LogFieldAnalyzer("URLs", LogField.URL)));
+    }
+
+    private static void add(CategoryAnalyzer analyzer, int count, String os, String browser, String url) {
+        TestLogs.add(analyzer, TestLogs.log().client(os, browser).url(url).build(), count);
+    }
+
+    private void addSample(CategoryAnalyzer analyzer) {
+        add(analyzer, 5, "Windows", "Chrome", "/");
+        add(analyzer, 3, "Windows", "Firefox", "/");
+        add(analyzer, 2, "Windows", "Chrome", "/about");
+        add(analyzer, 4, "Android", "Chrome", "/");
+        add(analyzer, 1, null, null, "/");
+    }
+
+    @Test
+    void testRollUpAndSlice() {
+        addSample(cube);
+
+        assertEquals(Map.of(List.of("Windows"), 10L, List.of("Android"), 4L), cube.rollUp(List.of("OS")));
+        assertEquals(Map.of(List.of("Chrome", "Windows"), 7L, List.of("Firefox", "Windows"), 3L,
+                List.of("Chrome", "Android"), 4L), cube.rollUp(List.of("Browsers", "OS")));
+        // the log entry without a User-Agent is counted once its dimensions are rolled up
+        assertEquals(Map.of(List.of(), 15L), cube.rollUp(List.of()));
+        assertEquals(Map.of(List.of("/"), 13L, List.of("/about"), 2L), cube.rollUp(List.of("URLs")));
+
+        assertEquals(Map.of(List.of("Windows"), 7L, List.of("Android"), 4L),
+                cube.query(Map.of("Browsers", "Chrome"), List.of("OS")));
+        assertEquals(5, cube.count(Map.of("OS", "Windows", "Browsers", "Chrome", "URLs", "/")));
+        assertEquals(9, cube.count(Map.of("Browsers", "Chrome", "URLs", "/")));
+        assertEquals(0, cube.count(Map.of("Browsers", "Safari")));
+        assertTrue(cube.query(Map.of("OS", "Linux"), List.of("Browsers")).isEmpty());
+        assertEquals(5, cube.getCellCount());
+    }
+
+    @Test
+    void testGetCounter() {
+        addSample(cube);
+        Map<String, Integer> counter = cube.getCounter();
+        assertEquals(Map.of("Windows / Chrome / /", 5, "Windows / Firefox / /", 3, "Windows / Chrome / /about", 2,
+                "Android / Chrome / /", 4), counter);
+        assertEquals(List.of(5, 4, 3, 2), new ArrayList<>(counter.values()));
+        assertEquals(List.of("OS", "Browsers", "URLs"), cube.getDimensionNames());
+        assertEquals(Set.of(LogField.USER_AGENT_CLIENT, LogField.URL), cube.getRequiredFields());
+    }
+
+    @Test
+    void testInvalidDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> new CubeAnalyzer("Cube", List.of()));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CubeAnalyzer("Cube", List.of(new OSAnalyzer("OS"), new OSAnalyzer("OS"))));
+        assertThrows(IllegalArgumentException.class, () -> new CubeAnalyzer("Cube", List.of(new OSAnalyzer("1"),
+                new OSAnalyzer("2"), new OSAnalyzer("3"), new OSAnalyzer("4"), new OSAnalyzer("5"))));
+        assertThrows(IllegalArgumentException.class, () -> cube.rollUp(List.of("Countries")));
+        assertThrows(IllegalArgumentException.class, () -> cube.rollUp(List.of("OS", "OS")));
+        assertThrows(IllegalArgumentException.class, () -> cube.count(Map.of("Countries", "France")));
+    }
+
+    @Test
+    void testMergeTranslatesIds() {
+        CategoryAnalyzer other = cube.createEmptyCopy();
+        // the other cube sees the values in another order, so its ids differ
+        add(other, 2, "Linux", "Firefox", "/about");
+        addSample(other);
+        add(cube, 1, "Android", "Chrome", "/");
+
+        cube.merge(other);
+        assertEquals(5, cube.count(Map.of("OS", "Android")));
+        assertEquals(2, cube.count(Map.of("OS", "Linux", "Browsers", "Firefox", "URLs", "/about")));
+        assertEquals(Map.of(List.of("Chrome"), 12L, List.of("Firefox"), 5L), cube.rollUp(List.of("Browsers")));
+        assertThrows(IllegalArgumentException.class, () -> cube.merge(new CubeAnalyzer("Cube",
+                List.of(new OSAnalyzer("OS")))));
+        assertThrows(IllegalArgumentException.class, () -> cube.merge(new OSAnalyzer("OS")));
+    }
+
+    /**
+     * A dimension that builds every value in a reused buffer, as a country lookup caches its last networks,
+     * so sharing it between threads mixes up values.
+     */
+    private static class BufferedIpAnalyzer extends LogFieldAnalyzer {
+        private final StringBuilder buffer = new StringBuilder();
+
+        BufferedIpAnalyzer() {
+            super("IPs", LogField.IP);
+        }
+
+        @Override
+        public String getCategoryValue(ParsedLog log) {
+            buffer.setLength(0);
+            for (char c : log.getIp().toCharArray()) {
+                buffer.append(c);
+            }
+            return buffer.toString();
+        }
+
+        @Override
+        public CategoryAnalyzer createEmptyCopy() {
+            return new BufferedIpAnalyzer();
+        }
+    }
+
+    @Test
+    void testPartialCubesInParallel() throws InterruptedException {
+        CubeAnalyzer ips = new CubeAnalyzer("Cube", List.of(new OSAnalyzer("OS"), new BufferedIpAnalyzer()));
+        List<CategoryAnalyzer> partials = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < PARALLEL_THREADS; t++) {
+            CategoryAnalyzer partial = ips.createEmptyCopy();
+            partials.add(partial);
+            ParsedLog log = new ParsedLog("10.0.0." + t + " - - [20/Jan/2013:06:56:32 -0600] \"GET / HTTP/1.1\" "
+                    + "200 863 \"-\" \"Mozilla/5.0 (Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1\"");
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < LOGS_PER_THREAD; i++) {
+                    partial.addLogToCounter(log);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        partials.forEach(ips::merge);
+
+        Map<List<String>, Long> expected = new HashMap<>();
+        for (int t = 0; t < PARALLEL_THREADS; t++) {
+            expected.put(List.of("10.0.0." + t), (long) LOGS_PER_THREAD);
+        }
+        assertEquals(expected, ips.rollUp(List.of("IPs")));
+        assertEquals(Map.of(List.of("Windows"), (long) PARALLEL_THREADS * LOGS_PER_THREAD), ips.rollUp(List.of("OS")));
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws IOException {
+        addSample(cube);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cube.writeSnapshot(new DataOutputStream(bytes));
+
+        CubeAnalyzer restored = (CubeAnalyzer) cube.createEmptyCopy();
+        add(restored, 1, "Linux", "Firefox", "/");
+        restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(Map.of(List.of("Windows"), 10L, List.of("Android"), 4L, List.of("Linux"), 1L),
+                restored.rollUp(List.of("OS")));
+        assertEquals(16, restored.count(Map.of()));
+        assertThrows(IOException.class, () -> new CubeAnalyzer("Cube", List.of(new OSAnalyzer("OS")))
+                .readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    /**
+     * Returns a dimension whose values come from a supplier, whatever the log entry.
+     */
+    private static CategoryAnalyzer dimension(String name, Supplier<String> values) {
+        return new LogFieldAnalyzer(name, LogField.URL) {
+            @Override
+            public String getCategoryValue(ParsedLog log) {
+                return values.get();
+            }
+        };
+    }
+
+    @Test
+    void testValuesBeyondTheIdsOfADimensionAreGrouped() {
+        // four dimensions have 15 bits each, so a dimension has 32766 ids for values
+        int[] next = {0};
+        CubeAnalyzer wide = new CubeAnalyzer("Cube", List.of(dimension("URLs", () -> "/" + next[0]++),
+                dimension("OS", () -> "Linux"), dimension("Browsers", () -> "Firefox"), dimension("IPs", () -> null)));
+        int urls = 40_000;
+        for (int i = 0; i < urls; i++) {
+            wide.addLogToCounter(null);
+        }
+        Map<List<String>, Long> counts = wide.rollUp(List.of("URLs"));
+        assertEquals(32767, counts.size());
+        assertEquals(urls - 32766, counts.get(List.of(CubeAnalyzer.OTHER_VALUES)));
+        assertEquals(1, counts.get(List.of("/0")));
+        assertEquals(urls, wide.count(Map.of("OS", "Linux")));
+
+        CubeAnalyzer merged = (CubeAnalyzer) wide.createEmptyCopy();
+        merged.merge(wide);
+        assertEquals(counts, merged.rollUp(List.of("URLs")));
+    }
+}
@@ -0,0 +1,76 @@
+package tests;
+
+import categories.HyperLogLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    private static String ip(int i) {
+        return (i >>> 24 & 0xFF) + "." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100, 1000, 10_000, 100_000, 1_000_000})
+    void testEstimateWithinError(int distinct) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < distinct; i++) {
+            sketch.add(ip(0x0A000000 + i * 7919));
+            // duplicates never change the estimate
+            sketch.add(ip(0x0A000000 + i * 7919));
+        }
+        // four standard errors of the default precision
+        assertEquals(distinct, sketch.estimate(), Math.max(1, distinct * 4 * 1.04 / 64));
+    }
+
+    @Test
+    void testEmpty() {
+        assertEquals(0, new HyperLogLog().estimate());
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(17));
+    }
+
+    @Test
+    void testMergeEqualsUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 20_000; i++) {
+            // the halves overlap in 10,000 IPs
+            (i < 15_000 ? first : second).add(ip(i));
+            if (i >= 5_000 && i < 15_000) {
+                second.add(ip(i));
+            }
+            union.add(ip(i));
+        }
+        first.merge(second);
+        assertEquals(union.estimate(), first.estimate());
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void testWriteAndReadAndMerge() throws IOException {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 500; i++) {
+            sketch.add(ip(i));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.write(new DataOutputStream(bytes));
+        assertEquals(1 + 1024, bytes.size());
+
+        HyperLogLog restored = new HyperLogLog(10);
+        restored.readAndMerge(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(sketch.estimate(), restored.estimate());
+        assertThrows(IOException.class, () -> new HyperLogLog()
+                .readAndMerge(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+}
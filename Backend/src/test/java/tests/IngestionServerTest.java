@@ -0,0 +1,145 @@
+package tests;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.ConcurrentCategoryAnalyzer;
+import categories.OSAnalyzer;
+import main.LogAnalyzer;
+import main.LogFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.IngestionServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionServerTest {
+    private static final String FIREFOX_LOG = "82.166.148.154 - - [20/Jan/2013:06:56:32 -0600] \"GET / HTTP/1.1\" " +
+            "200 863 \"-\" \"Mozilla/5.0 (Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1\"";
+    private static final String SAFARI_LOG = "65.34.248.51 - - [20/Jan/2013:04:33:29 -0600] \"GET / HTTP/1.1\" " +
+            "200 9983 \"-\" \"Mozilla/5.0 (iPad; CPU OS 6_0_1 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) " +
+            "Version/6.0 Mobile/10A523 Safari/8536.25\"";
+    private static final int SENDERS = 500;
+
+    private LogAnalyzer logAnalyzer;
+    private IngestionServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        List<CategoryAnalyzer> analyzers = new ArrayList<>(Arrays.asList(new OSAnalyzer("Operating systems"),
+                new BrowsersAnalyzer("Browsers")));
+        logAnalyzer = new LogAnalyzer(analyzers);
+        server = new IngestionServer(logAnalyzer, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+    private HttpResponse<String> post(String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(IngestionServer.LOGS_PATH))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String stats() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(IngestionServer.STATS_PATH)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @Test
+    void testPostedLogsAreReported() throws IOException, InterruptedException {
+        HttpResponse<String> response = post(FIREFOX_LOG + "\n" + SAFARI_LOG + "\n\n" + FIREFOX_LOG);
+        assertEquals(200, response.statusCode());
+        assertEquals("3", response.body().trim());
+
+        String report = stats();
+        assertTrue(report.startsWith("Total logs: 3"), report);
+        assertTrue(report.contains("Firefox - 66.67%"), report);
+        assertTrue(report.contains("Mobile Safari - 33.33%"), report);
+    }
+
+    @Test
+    void testOnlyFilteredLogsAreCounted() throws IOException, InterruptedException {
+        logAnalyzer.setFilter(LogFilter.parse("ip=82.166.0.0/16"));
+        HttpResponse<String> response = post(FIREFOX_LOG + "\n" + SAFARI_LOG + "\n" + FIREFOX_LOG);
+        assertEquals("2", response.body().trim());
+        assertTrue(stats().startsWith("Total logs: 2"));
+    }
+
+    @Test
+    void testConcurrentSenders() throws Exception {
+        // a loopback load generator: every sender is a virtual thread posting its own batch
+        String batch = String.join("\n", FIREFOX_LOG, SAFARI_LOG, FIREFOX_LOG, SAFARI_LOG);
+        List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < SENDERS; i++) {
+                responses.add(senders.submit(() -> post(batch)));
+            }
+        }
+        for (Future<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get().statusCode());
+        }
+        assertEquals(4L * SENDERS, logAnalyzer.getTotalLogs());
+        assertEquals(2 * SENDERS, logAnalyzer.getAnalyzers().get(1).getCounter().get("Firefox"));
+        assertTrue(stats().contains("Firefox - 50.00%"));
+    }
+
+    @Test
+    void testConcurrentCountersAreCountedDirectly() throws Exception {
+        server.close();
+        List<CategoryAnalyzer> analyzers = new ArrayList<>(Arrays.asList(
+                new ConcurrentCategoryAnalyzer(new OSAnalyzer("Operating systems")),
+                new ConcurrentCategoryAnalyzer(new BrowsersAnalyzer("Browsers"))));
+        logAnalyzer = new LogAnalyzer(analyzers);
+        server = new IngestionServer(logAnalyzer, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+
+        List<Future<String>> reports = new ArrayList<>();
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < SENDERS; i++) {
+                senders.submit(() -> post(FIREFOX_LOG + "\n" + SAFARI_LOG));
+                if (i % 10 == 0) {
+                    reports.add(senders.submit(this::stats));
+                }
+            }
+        }
+        assertEquals(2L * SENDERS, logAnalyzer.getTotalLogs());
+        assertEquals(SENDERS, analyzers.get(1).getCounter().get("Firefox"));
+        // every batch holds one log of each browser, so a report taken between batches shows them at 50%
+        for (Future<String> report : reports) {
+            String body = report.get();
+            assertTrue(body.startsWith("Total logs: 0") || body.contains("Firefox - 50.00%"), body);
+        }
+    }
+
+    @Test
+    void testWrongMethodIsRejected() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(IngestionServer.LOGS_PATH)).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, response.statusCode());
+        assertEquals("POST", response.headers().firstValue("Allow").orElseThrow());
+    }
+}
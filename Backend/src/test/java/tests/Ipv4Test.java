@@ -0,0 +1,47 @@
+package tests;
+
+import main.Ipv4;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Ipv4Test {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"82.166.148.154", "0.0.0.0", "255.255.255.255", "10.0.0.1", "91.0.0.1"})
+    void testRoundTrip(String ip) throws Exception {
+        long address = Ipv4.parse(ip);
+        assertNotEquals(Ipv4.INVALID, address);
+        assertEquals(ip, Ipv4.toString((int) address));
+        InetAddress inetAddress = Ipv4.toInetAddress((int) address);
+        assertEquals(InetAddress.getByName(ip), inetAddress);
+        assertEquals(address, Ipv4.fromInetAddress(inetAddress));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1.2.3.4a", "1..2.3", "0001.2.3.4", "a.b.c.d"})
+    void testInvalid(String ip) {
+        assertEquals(Ipv4.INVALID, Ipv4.parse(ip));
+    }
+
+    @Test
+    void testParseRegion() {
+        String log = "82.166.148.154 - - [20/Jan/2013:06:56:32 -0600]";
+        assertEquals(Ipv4.parse("82.166.148.154"), Ipv4.parse(log, 0, 14));
+        assertEquals(Ipv4.INVALID, Ipv4.parse(log, 3, 14));
+        assertEquals(Ipv4.INVALID, Ipv4.parse(log, 0, 15));
+    }
+
+    @Test
+    void testMask() {
+        int address = (int) Ipv4.parse("82.166.148.154");
+        assertEquals("82.166.148.0", Ipv4.toString(Ipv4.mask(address, 24)));
+        assertEquals("82.160.0.0", Ipv4.toString(Ipv4.mask(address, 12)));
+        assertEquals("0.0.0.0", Ipv4.toString(Ipv4.mask(address, 0)));
+        assertEquals(address, Ipv4.mask(address, 32));
+    }
+}
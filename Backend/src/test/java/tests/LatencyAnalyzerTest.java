@@ -0,0 +1,108 @@
+package tests;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.LatencyAnalyzer;
+import main.LogField;
+import main.ParsedLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyAnalyzerTest {
+
+    private LatencyAnalyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        analyzer = new LatencyAnalyzer(new BrowsersAnalyzer("Browsers"));
+    }
+
+    private static ParsedLog log(String browser, long responseTime) {
+        return TestLogs.log().browser(browser).responseTime(responseTime).build();
+    }
+
+    /**
+     * Adds requests of a browser with the response times 1, 2, ..., count milliseconds.
+     */
+    private static void addRequests(CategoryAnalyzer analyzer, String browser, int count) {
+        for (int i = 1; i <= count; i++) {
+            analyzer.addLogToCounter(log(browser, i * 1000L));
+        }
+    }
+
+    @Test
+    void testRecordsLatenciesPerValueAndOverall() {
+        addRequests(analyzer, "Chrome", 100);
+        addRequests(analyzer, "Firefox", 10);
+        analyzer.addLogToCounter(log("Safari", -1));
+        analyzer.addLogToCounter(log(null, 500_000));
+
+        assertEquals(Map.of("Chrome", 100, "Firefox", 10, "Safari", 1), analyzer.getCounter());
+        assertEquals(Set.of("Chrome", "Firefox"), analyzer.getLatencies().keySet());
+        assertNull(analyzer.getLatencies("Safari"));
+        assertEquals(100, analyzer.getLatencies("Chrome").getCount());
+        assertEquals(50_000, analyzer.getLatencies("Chrome").getValueAtPercentile(50), 50_000 / 64.0);
+        assertEquals(10_000, analyzer.getLatencies("Firefox").getValueAtPercentile(100));
+        // the log entry without a browser still has a response time
+        assertEquals(111, analyzer.getAllLatencies().getCount());
+        assertEquals(500_000, analyzer.getAllLatencies().getMax());
+        assertEquals(Set.of(LogField.RESPONSE_TIME, LogField.USER_AGENT_CLIENT), analyzer.getRequiredFields());
+    }
+
+    @Test
+    void testBatchMatchesSingleLogs() {
+        ParsedLog[] batch = {log("Chrome", 1200), log("Chrome", 800), log("Firefox", 5000), log("Edge", 10)};
+        analyzer.addLogsToCounter(batch, 1, 4);
+        assertEquals(Map.of("Chrome", 1, "Firefox", 1, "Edge", 1), analyzer.getCounter());
+        assertEquals(800, analyzer.getLatencies("Chrome").getMax());
+        assertEquals(3, analyzer.getAllLatencies().getCount());
+    }
+
+    @Test
+    void testMerge() {
+        CategoryAnalyzer other = analyzer.createEmptyCopy();
+        addRequests(analyzer, "Chrome", 50);
+        addRequests(other, "Chrome", 150);
+        addRequests(other, "Firefox", 5);
+
+        analyzer.merge(other);
+        assertEquals(200, analyzer.getCounter().get("Chrome"));
+        assertEquals(200, analyzer.getLatencies("Chrome").getCount());
+        assertEquals(150_000, analyzer.getLatencies("Chrome").getMax());
+        assertEquals(5, analyzer.getLatencies("Firefox").getCount());
+        assertEquals(205, analyzer.getAllLatencies().getCount());
+        assertThrows(IllegalArgumentException.class,
+                () -> analyzer.merge(new LatencyAnalyzer(new BrowsersAnalyzer("Browsers"), 10)));
+        assertThrows(IllegalArgumentException.class, () -> analyzer.merge(new BrowsersAnalyzer("Browsers")));
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws IOException {
+        addRequests(analyzer, "Chrome", 40);
+        addRequests(analyzer, "Firefox", 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        analyzer.writeSnapshot(new DataOutputStream(bytes));
+
+        LatencyAnalyzer restored = (LatencyAnalyzer) analyzer.createEmptyCopy();
+        restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(40, restored.getCounter().get("Chrome"));
+        assertEquals(analyzer.getLatencies("Chrome").getValueAtPercentile(90),
+                restored.getLatencies("Chrome").getValueAtPercentile(90));
+        assertEquals(43, restored.getAllLatencies().getCount());
+    }
+
+    @Test
+    void testInvalidPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyAnalyzer(new BrowsersAnalyzer("Browsers"), 1));
+    }
+}
@@ -0,0 +1,135 @@
+package tests;
+
+import categories.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    private static final double[] PERCENTILES = {0, 1, 25, 50, 90, 99, 99.9, 99.99, 100};
+
+    /**
+     * Returns long-tailed response times in microseconds, from a few microseconds to minutes.
+     */
+    private static long[] responseTimes(int count, long seed) {
+        Random random = new Random(seed);
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * Math.log(100_000_000));
+        }
+        return values;
+    }
+
+    private static long exactPercentile(long[] sorted, double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * sorted.length));
+        return sorted[(int) rank - 1];
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {4, 7, 10})
+    void testPercentilesWithinRelativeError(int precision) {
+        long[] values = responseTimes(100_000, precision);
+        LatencyHistogram histogram = new LatencyHistogram(precision);
+        for (long value : values) {
+            histogram.record(value);
+        }
+        Arrays.sort(values);
+        double relativeError = 1.0 / (1 << (precision - 1));
+        for (double percentile : PERCENTILES) {
+            long exact = exactPercentile(values, percentile);
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact, percentile + ": " + reported + " < " + exact);
+            assertTrue(reported <= exact + exact * relativeError, percentile + ": " + reported + " >> " + exact);
+        }
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(49, histogram.getValueAtPercentile(50));
+        assertEquals(89, histogram.getValueAtPercentile(90));
+        assertEquals(99, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testLargestValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(1L << 40);
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+        assertEquals((1L << 40) + (1L << 34) - 1, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    void testEmptyAndInvalid() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertThrows(IllegalArgumentException.class, () -> histogram.record(-1));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(100.5));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(1));
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(15));
+    }
+
+    @Test
+    void testMergeEqualsUnion() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        LatencyHistogram union = new LatencyHistogram();
+        long[] values = responseTimes(20_000, 42);
+        for (int i = 0; i < values.length; i++) {
+            // the second histogram only has the small values, so its counts are shorter
+            (values[i] < 1000 ? second : first).record(values[i]);
+            union.record(values[i]);
+        }
+        second.merge(first);
+        for (double percentile : PERCENTILES) {
+            assertEquals(union.getValueAtPercentile(percentile), second.getValueAtPercentile(percentile));
+        }
+        assertEquals(union.getCount(), second.getCount());
+        assertEquals(union.getMin(), second.getMin());
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new LatencyHistogram(8)));
+    }
+
+    @Test
+    void testWriteAndReadAndMerge() throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value : responseTimes(5000, 7)) {
+            histogram.record(value);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.write(new DataOutputStream(bytes));
+
+        LatencyHistogram restored = new LatencyHistogram();
+        restored.record(0);
+        restored.readAndMerge(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(histogram.getCount() + 1, restored.getCount());
+        assertEquals(0, restored.getMin());
+        assertEquals(histogram.getMax(), restored.getMax());
+        assertEquals(histogram.getValueAtPercentile(99), restored.getValueAtPercentile(99));
+        assertThrows(IOException.class, () -> new LatencyHistogram(8)
+                .readAndMerge(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+}
@@ -3,19 +3,30 @@ package tests;
 import categories.CategoryAnalyzer;
 import categories.CountriesAnalyzer;
 import categories.BrowsersAnalyzer;
+import categories.LatencyAnalyzer;
 import categories.OSAnalyzer;
 import main.LogAnalyzer;
+import main.LogFilter;
 import main.ParsedLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class LogAnalyzerTest {
@@ -23,6 +34,8 @@ public class LogAnalyzerTest {
     private static final String OPERATING_SYSTEMS_CATEGORY_NAME = "Operating systems";
     private static final String BROWSERS_CATEGORY_NAME = "Browsers";
     private LogAnalyzer logAnalyzer;
+    private List<String> sampleLogs;
+    private List<CategoryAnalyzer> analyzersList;
 
 
     @BeforeEach
@@ -30,7 +43,7 @@ public class LogAnalyzerTest {
         // 6 logs, 3 US, 2 Germany, 1 Israel
         // 4 Windows, 1 iOS, 1 Android
         // 4 firefox, 1 Safari, 1 Android
-        List<String> sampleLogs = Arrays.asList(
+        sampleLogs = Arrays.asList(
                 "82.166.148.154 - - [20/Jan/2013:06:56:32 -0600] \"GET" +
                         "/wp-content/themes/twentytwelve/js/navigation.js?ver=1.0 HTTP/1.1\" 200 863" +
                         "\"http://creditcardandloanoffers.com/?utm_source=Contextin&utm_term=_\" \"Mozilla/5.0 " +
@@ -60,12 +73,17 @@ public class LogAnalyzerTest {
         CategoryAnalyzer countryAnalyzer = Mockito.mock(CountriesAnalyzer.class);
         CategoryAnalyzer osAnalyzer = Mockito.mock(OSAnalyzer.class);
         CategoryAnalyzer browsersAnalyzer = Mockito.mock(BrowsersAnalyzer.class);
-        List<CategoryAnalyzer> analyzersList = new ArrayList<>(Arrays.asList(countryAnalyzer, osAnalyzer,
+        analyzersList = new ArrayList<>(Arrays.asList(countryAnalyzer, osAnalyzer,
                 browsersAnalyzer));
 
         Mockito.when(countryAnalyzer.getCategoryName()).thenReturn(COUNTRIES_CATEGORY_NAME);
         Mockito.when(osAnalyzer.getCategoryName()).thenReturn(OPERATING_SYSTEMS_CATEGORY_NAME);
         Mockito.when(browsersAnalyzer.getCategoryName()).thenReturn(BROWSERS_CATEGORY_NAME);
+        // batches are counted log by log, so the counting can be verified on addLogToCounter
+        for (CategoryAnalyzer analyzer : analyzersList) {
+            Mockito.doCallRealMethod().when(analyzer)
+                    .addLogsToCounter(ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt());
+        }
 
 
         Map<String, Integer> mockCountryCounter = new HashMap<>();
@@ -105,7 +123,9 @@ public class LogAnalyzerTest {
     @Test
     void testAddAnalyzerAfterCalculation() {
 
-        CategoryAnalyzer mockAnalyzer = mock(CategoryAnalyzer.class);
+        CategoryAnalyzer mockAnalyzer = mock(OSAnalyzer.class);
+        Mockito.doCallRealMethod().when(mockAnalyzer)
+                .addLogsToCounter(ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt());
 
         Mockito.verify(mockAnalyzer, times(0)).addLogToCounter(ArgumentMatchers.any(ParsedLog.class));
 
@@ -151,4 +171,136 @@ public class LogAnalyzerTest {
         }
     }
 
+    @Test
+    void testPrintLatencies() {
+        LogAnalyzer latencyAnalyzer = new LogAnalyzer(sampleLogs,
+                new ArrayList<>(List.of(new LatencyAnalyzer(new BrowsersAnalyzer(BROWSERS_CATEGORY_NAME)))));
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        latencyAnalyzer.printAllCategories(new PrintStream(outContent));
+        String output = outContent.toString();
+
+        // the percentiles are the highest values of their buckets, capped by the largest response time
+        assertTrue(output.contains("Firefox - 66.67% (p50 664.09 ms, p90 664.09 ms, p99 664.09 ms, p99.9 664.09 ms)"),
+                output);
+        assertTrue(output.contains("Response times (6 logs):"), output);
+        assertTrue(output.contains("p50 - 235.52 ms"), output);
+        assertTrue(output.contains("p99.9 - 664.09 ms"), output);
+    }
+
+    @Test
+    void testStreamingCalculation() throws IOException {
+        LogAnalyzer streamingAnalyzer = new LogAnalyzer(analyzersList);
+        BufferedReader reader = new BufferedReader(new StringReader(String.join("\n", sampleLogs)));
+        streamingAnalyzer.calculateParameters(reader);
+
+        assertEquals(6, streamingAnalyzer.getTotalLogs());
+        for (CategoryAnalyzer analyzer : analyzersList) {
+            verify(analyzer, times(6)).addLogToCounter(ArgumentMatchers.any(ParsedLog.class));
+        }
+    }
+
+    @Test
+    void testStreamingCalculationCountsEveryBatch() {
+        // more logs than a batch holds, and not a multiple of it, so a full and a partial batch are counted
+        List<String> manyLogs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            manyLogs.addAll(sampleLogs);
+        }
+        LogAnalyzer streamingAnalyzer = new LogAnalyzer(analyzersList);
+        streamingAnalyzer.calculateParameters(manyLogs.stream());
+
+        assertEquals(600, streamingAnalyzer.getTotalLogs());
+        for (CategoryAnalyzer analyzer : analyzersList) {
+            verify(analyzer, times(600)).addLogToCounter(ArgumentMatchers.any(ParsedLog.class));
+        }
+    }
+
+    @Test
+    void testMultipleFilesCalculation(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Path plain = tempDir.resolve("access.log");
+        Files.write(plain, sampleLogs);
+        Path compressed = tempDir.resolve("access.log.1.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            out.write(String.join("\n", sampleLogs).getBytes(StandardCharsets.UTF_8));
+        }
+        LogAnalyzer streamingAnalyzer = new LogAnalyzer(analyzersList);
+        streamingAnalyzer.calculateParameters(List.of(plain, compressed), 1);
+
+        assertEquals(12, streamingAnalyzer.getTotalLogs());
+        for (CategoryAnalyzer analyzer : analyzersList) {
+            verify(analyzer, times(12)).addLogToCounter(ArgumentMatchers.any(ParsedLog.class));
+        }
+    }
+
+    @Test
+    void testStreamingPrintMatchesInMemory() {
+        ByteArrayOutputStream inMemoryContent = new ByteArrayOutputStream();
+        ByteArrayOutputStream streamingContent = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+
+        try {
+            System.setOut(new PrintStream(inMemoryContent));
+            logAnalyzer.printAllCategories();
+
+            System.setOut(new PrintStream(streamingContent));
+            LogAnalyzer streamingAnalyzer = new LogAnalyzer(analyzersList);
+            streamingAnalyzer.calculateParameters(sampleLogs.stream());
+            streamingAnalyzer.printAllCategories();
+        } finally {
+            System.setOut(originalOut);
+        }
+        assertEquals(inMemoryContent.toString(), streamingContent.toString());
+    }
+
+    @Test
+    void testAddAnalyzerAfterStreamingCalculation() {
+        LogAnalyzer streamingAnalyzer = new LogAnalyzer(analyzersList);
+        streamingAnalyzer.calculateParameters(sampleLogs.stream());
+
+        CategoryAnalyzer mockAnalyzer = mock(CategoryAnalyzer.class);
+        assertThrows(IllegalStateException.class, () -> streamingAnalyzer.addAnalyzer(mockAnalyzer));
+    }
+
+    @Test
+    void testAddLog() {
+        LogAnalyzer streamingAnalyzer = new LogAnalyzer(analyzersList);
+        streamingAnalyzer.addLog(sampleLogs.get(0));
+        streamingAnalyzer.addLog(sampleLogs.get(1));
+
+        assertEquals(2, streamingAnalyzer.getTotalLogs());
+        for (CategoryAnalyzer analyzer : analyzersList) {
+            verify(analyzer, times(2)).addLogToCounter(ArgumentMatchers.any(ParsedLog.class));
+        }
+        assertThrows(IllegalStateException.class, () -> logAnalyzer.addLog(sampleLogs.get(0)));
+    }
+
+    @Test
+    void testFilterSkipsRejectedLogs() {
+        LogAnalyzer streamingAnalyzer = new LogAnalyzer(analyzersList);
+        // the two US logs with a Windows or iOS User-Agent
+        streamingAnalyzer.setFilter(LogFilter.parse("ip=65.34.0.0/16,184.73.21.14"));
+        streamingAnalyzer.calculateParameters(sampleLogs.stream());
+        streamingAnalyzer.addLog(sampleLogs.get(0));
+        streamingAnalyzer.addLog(sampleLogs.get(1));
+
+        assertEquals(3, streamingAnalyzer.getTotalLogs());
+        for (CategoryAnalyzer analyzer : analyzersList) {
+            verify(analyzer, times(3)).addLogToCounter(ArgumentMatchers.any(ParsedLog.class));
+        }
+    }
+
+    @Test
+    void testFilterInMemoryAndInParallel() throws InterruptedException {
+        BrowsersAnalyzer browsers = new BrowsersAnalyzer(BROWSERS_CATEGORY_NAME);
+        LogAnalyzer parallelAnalyzer = new LogAnalyzer(sampleLogs, new ArrayList<>(List.of(browsers)));
+        parallelAnalyzer.setFilter(LogFilter.parse("since=2013-01-27"));
+        parallelAnalyzer.calculateParametersInParallel(2);
+        assertEquals(1, parallelAnalyzer.getTotalLogs());
+        assertEquals(Map.of("Android", 1), browsers.getCounter());
+
+        LogAnalyzer inMemoryAnalyzer = new LogAnalyzer(sampleLogs, new ArrayList<>());
+        inMemoryAnalyzer.setFilter(LogFilter.parse("until=2013-01-27"));
+        inMemoryAnalyzer.calculateParameters();
+        assertEquals(5, inMemoryAnalyzer.getTotalLogs());
+    }
 }
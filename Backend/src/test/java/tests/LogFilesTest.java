@@ -0,0 +1,74 @@
+package tests;
+
+import input.LogFiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFilesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path createFile(String name, String content) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void testExpandFilesDirectoriesAndGlobs() throws IOException {
+        Path current = createFile("access.log", "a\n");
+        Path first = createFile("rotated/access.log.1.gz", "");
+        Path second = createFile("rotated/access.log.2.gz", "");
+        Path other = createFile("rotated/error.log", "");
+        createFile("rotated/.hidden", "");
+
+        assertEquals(List.of(current, first, second, other),
+                LogFiles.expand(List.of(current.toString(), tempDir.resolve("rotated").toString())));
+        assertEquals(List.of(first, second), LogFiles.expand(List.of(tempDir + "/rotated/access.log.*.gz")));
+        assertEquals(List.of(first, second, other),
+                LogFiles.expand(List.of(tempDir + "/rotated/*.{gz,log}", first.toString())));
+        assertEquals(List.of(first, second), LogFiles.expand(List.of(tempDir + "/**/*.gz")));
+    }
+
+    @Test
+    void testGlobWithoutMatchFails() {
+        assertThrows(IOException.class, () -> LogFiles.expand(List.of(tempDir + "/*.gz")));
+        assertThrows(IOException.class, () -> LogFiles.expand(List.of(tempDir + "/missing/*.gz")));
+    }
+
+    @Test
+    void testOpenReaderDecompressesGzip() throws IOException {
+        Path plain = createFile("access.log", "first\nsecond\n");
+        Path compressed = tempDir.resolve("access.log.1.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            out.write("first\nsecond\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertFalse(LogFiles.isCompressed(plain));
+        assertTrue(LogFiles.isCompressed(compressed));
+        for (Path file : List.of(plain, compressed)) {
+            try (BufferedReader reader = LogFiles.openReader(file)) {
+                assertEquals(List.of("first", "second"), reader.lines().toList());
+            }
+        }
+    }
+
+    @Test
+    void testOpenReaderRejectsInvalidGzip() throws IOException {
+        Path notCompressed = createFile("access.log.3.gz", "plain text");
+        assertThrows(IOException.class, () -> LogFiles.openReader(notCompressed));
+    }
+}
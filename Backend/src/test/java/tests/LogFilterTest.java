@@ -0,0 +1,87 @@
+package tests;
+
+import main.LogField;
+import main.LogFilter;
+import main.ParsedLog;
+import main.ParsedLogBatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFilterTest {
+
+    // 20/Jan/2013:06:56:32 -0600 is 2013-01-20T12:56:32Z, epoch second 1358686592
+    private static final String COMBINED_LOG = "82.166.148.154 - - [20/Jan/2013:06:56:32 -0600] \"GET " +
+            "/wp-content/themes/twentytwelve/js/navigation.js?ver=1.0 HTTP/1.1\" 200 863 " +
+            "\"http://creditcardandloanoffers.com/?utm_source=Contextin&utm_term=_\" \"Mozilla/5.0 " +
+            "(Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1\" 361 1133 - 5625";
+
+    private static final String NOT_FOUND_LOG = "10.1.2.3 - - [21/Jan/2013:00:00:00 +0000] \"GET /api/users HTTP/1.1\" " +
+            "404 12 \"-\" \"curl/7.29.0\"";
+
+    @ParameterizedTest
+    @ValueSource(strings = {"status=200", "status=2xx", "status=404,200", "status!=404", "status!=4xx",
+            "path=/wp-content/", "path=/api/,/wp-", "path!=/api/", "ip=82.166.148.154", "ip=82.166.0.0/16",
+            "ip=10.0.0.0/8,82.0.0.0/8", "ip=0.0.0.0/0", "ip!=10.0.0.0/8", "since=2013-01-20", "since=1358686592",
+            "since=2013-01-20T12:56:32Z", "since=2013-01-20T12:56:32", "until=2013-01-20T06:56:33-06:00",
+            "until=2013-01-21", "status=200 path=/wp-content/ ip=82.166.0.0/16 since=2013-01-20 until=2013-01-21",
+            "  STATUS=2XX\tPath=/wp  "})
+    void testAccepts(String expression) {
+        assertTrue(LogFilter.parse(expression).test(COMBINED_LOG));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"status=404", "status=4xx", "status!=200", "path=/api/", "path!=/wp-content/",
+            "ip=10.0.0.0/8", "ip=82.166.148.155", "ip!=82.0.0.0/8", "since=2013-01-21", "since=1358686593",
+            "until=2013-01-20T12:56:32Z", "until=2013-01-20", "status=200 ip=10.0.0.0/8"})
+    void testRejects(String expression) {
+        assertFalse(LogFilter.parse(expression).test(COMBINED_LOG));
+    }
+
+    @Test
+    void testMissingFieldsFailTermsAndPassNegations() {
+        String broken = "not a log line";
+        assertFalse(LogFilter.parse("status=200").test(broken));
+        assertFalse(LogFilter.parse("ip=0.0.0.0/0").test(broken));
+        assertFalse(LogFilter.parse("path=/").test(broken));
+        assertFalse(LogFilter.parse("since=1970-01-01").test(broken));
+        assertTrue(LogFilter.parse("status!=200 ip!=10.0.0.0/8 path!=/").test(broken));
+    }
+
+    @Test
+    void testAndAndNone() {
+        LogFilter notFound = LogFilter.parse("status=404");
+        LogFilter api = LogFilter.parse("path=/api/");
+        assertTrue(notFound.and(api).test(NOT_FOUND_LOG));
+        assertFalse(notFound.and(LogFilter.parse("ip=82.0.0.0/8")).test(NOT_FOUND_LOG));
+        assertFalse(notFound.and(api).test(COMBINED_LOG));
+        assertTrue(LogFilter.NONE.isEmpty());
+        assertTrue(LogFilter.NONE.test("anything"));
+        assertFalse(LogFilter.NONE.and(api).isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "status", "=200", "status=", "size=10", "status=abc", "status=1000", "status=-1",
+            "status=9x", "ip=1.2.3/8", "ip=1.2.3.4/33", "ip=1.2.3.4/x", "since=yesterday", "since!=2013-01-01",
+            "until=2013-01-01,2013-01-02"})
+    void testInvalidExpressions(String expression) {
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.parse(expression));
+    }
+
+    @Test
+    void testBatchOnlyAddsAcceptedLines() {
+        ParsedLogBatch batch = new ParsedLogBatch(4, EnumSet.allOf(LogField.class), LogFilter.parse("status=4xx"));
+        assertFalse(batch.add(COMBINED_LOG));
+        assertTrue(batch.add(NOT_FOUND_LOG));
+        assertFalse(batch.add("not a log line"));
+        assertEquals(1, batch.size());
+        ParsedLog log = batch.getLogs()[0];
+        assertEquals("10.1.2.3", log.getIp());
+        assertEquals("/api/users", log.getUrl());
+        assertEquals(404, log.getStatus());
+    }
+}
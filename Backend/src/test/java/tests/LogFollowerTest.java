@@ -0,0 +1,117 @@
+package tests;
+
+import input.LogFollower;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFollowerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path logFile;
+    private List<String> lines;
+
+    @BeforeEach
+    void setUp() {
+        logFile = tempDir.resolve("access.log");
+        lines = new ArrayList<>();
+    }
+
+    private void append(String content) throws IOException {
+        Files.writeString(logFile, content, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void testReadsOnlyAppendedLines() throws IOException {
+        append("first\nsecond\n");
+        try (LogFollower follower = new LogFollower(logFile, lines::add)) {
+            assertEquals(2, follower.poll());
+            assertEquals(0, follower.poll());
+
+            append("third\r\n\nfifth\n");
+            assertEquals(3, follower.poll());
+            assertEquals(List.of("first", "second", "third", "", "fifth"), lines);
+            assertEquals(Files.size(logFile), follower.getOffset());
+        }
+    }
+
+    @Test
+    void testFlushEmitsPartialLine() throws IOException {
+        append("complete\nlast");
+        try (LogFollower follower = new LogFollower(logFile, lines::add)) {
+            assertEquals(1, follower.poll());
+            assertEquals(1, follower.flush());
+            assertEquals(0, follower.flush());
+            assertEquals(List.of("complete", "last"), lines);
+            assertEquals(Files.size(logFile), follower.getConsumedOffset());
+        }
+    }
+
+    @Test
+    void testPartialLineWaitsForNewline() throws IOException {
+        append("complete\nparti");
+        try (LogFollower follower = new LogFollower(logFile, lines::add)) {
+            assertEquals(1, follower.poll());
+            assertEquals("complete\n".length(), follower.getConsumedOffset());
+
+            append("al\n");
+            assertEquals(1, follower.poll());
+            assertEquals(List.of("complete", "partial"), lines);
+        }
+    }
+
+    @Test
+    void testMissingFileIsOpenedWhenCreated() throws IOException {
+        try (LogFollower follower = new LogFollower(logFile, lines::add)) {
+            assertEquals(0, follower.poll());
+            append("late\n");
+            assertEquals(1, follower.poll());
+            assertEquals(List.of("late"), lines);
+        }
+    }
+
+    @Test
+    void testTruncation() throws IOException {
+        append("old line one\nold line two\n");
+        try (LogFollower follower = new LogFollower(logFile, lines::add)) {
+            follower.poll();
+            Files.writeString(logFile, "new\n");
+            assertEquals(1, follower.poll());
+            assertEquals(List.of("old line one", "old line two", "new"), lines);
+        }
+    }
+
+    @Test
+    void testRotation() throws IOException {
+        append("before rotation\n");
+        try (LogFollower follower = new LogFollower(logFile, lines::add)) {
+            follower.poll();
+            append("written just before the rename");
+            Files.move(logFile, tempDir.resolve("access.log.1"));
+            append("after rotation\n");
+
+            assertEquals(2, follower.poll());
+            assertEquals(List.of("before rotation", "written just before the rename", "after rotation"), lines);
+        }
+    }
+
+    @Test
+    void testStartOffset() throws IOException {
+        append("skipped\nread\n");
+        try (LogFollower follower = new LogFollower(logFile, lines::add, "skipped\n".length())) {
+            follower.poll();
+            assertEquals(List.of("read"), lines);
+        }
+    }
+}
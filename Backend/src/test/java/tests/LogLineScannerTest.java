@@ -0,0 +1,148 @@
+package tests;
+
+import main.LogLineScanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogLineScannerTest {
+    // The regular expressions the scanner replaced, kept here as the reference behavior.
+    private static final Pattern IP_PATTERN = Pattern.compile("^(\\d+\\.\\d+\\.\\d+\\.\\d+)");
+    private static final Pattern USER_AGENT_PATTERN = Pattern.compile(".*\"([^\"]+)\"[^\"]*$");
+    private static final String FUZZ_ALPHABET = "0123456789.\"\" []-/aZ\n";
+    private static final int FUZZ_LINES = 20000;
+    private static final int FUZZ_MAX_LENGTH = 40;
+
+    private static final String COMBINED_LOG = "82.166.148.154 - - [20/Jan/2013:06:56:32 -0600] \"GET " +
+            "/wp-content/themes/twentytwelve/js/navigation.js?ver=1.0 HTTP/1.1\" 200 863" +
+            "\"http://creditcardandloanoffers.com/?utm_source=Contextin&utm_term=_\" \"Mozilla/5.0 " +
+            "(Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1\" 361 1133 - 5625";
+
+    private static String regexGroup(Pattern pattern, String log) {
+        Matcher matcher = pattern.matcher(log);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    @Test
+    void testCombinedFormatFields() {
+        LogLineScanner scanner = new LogLineScanner(COMBINED_LOG);
+        assertEquals("82.166.148.154", scanner.getIp());
+        assertEquals("20/Jan/2013:06:56:32 -0600", scanner.getTimestamp());
+        assertEquals("GET /wp-content/themes/twentytwelve/js/navigation.js?ver=1.0 HTTP/1.1", scanner.getRequest());
+        assertEquals(200, scanner.getStatus());
+        assertEquals(863, scanner.getBytes());
+        assertEquals("http://creditcardandloanoffers.com/?utm_source=Contextin&utm_term=_", scanner.getReferrer());
+        assertEquals("Mozilla/5.0 (Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1",
+                scanner.getUserAgent());
+    }
+
+    @Test
+    void testReset() {
+        LogLineScanner scanner = new LogLineScanner(COMBINED_LOG);
+        assertEquals("82.166.148.154", scanner.getIp());
+        assertEquals(200, scanner.getStatus());
+
+        scanner.reset("10.0.0.1 - - [20/Jan/2013:06:56:32 -0600] \"GET /other HTTP/1.1\" 404 0");
+        assertEquals("10.0.0.1", scanner.getIp());
+        assertEquals("/other", scanner.getUrl());
+        assertEquals(404, scanner.getStatus());
+        assertNull(scanner.getReferrer());
+        assertEquals(1358686592L, scanner.getEpochSecond());
+    }
+
+    @Test
+    void testUrl() {
+        assertEquals("/wp-content/themes/twentytwelve/js/navigation.js?ver=1.0",
+                new LogLineScanner(COMBINED_LOG).getUrl());
+        assertEquals("/index.html", new LogLineScanner("1.2.3.4 - - [01/Mar/2025:12:34:56 +0000] " +
+                "\"GET /index.html\" 200 10").getUrl());
+        assertNull(new LogLineScanner("1.2.3.4 - - [01/Mar/2025:12:34:56 +0000] \"-\" 400 0").getUrl());
+    }
+
+    @Test
+    void testResponseTime() {
+        assertEquals(5625, new LogLineScanner(COMBINED_LOG).getResponseTime());
+        assertEquals(5625, new LogLineScanner(COMBINED_LOG + "  ").getResponseTime());
+        assertEquals(-1, new LogLineScanner(COMBINED_LOG.replace(" 5625", " -")).getResponseTime());
+        // the last field must follow the referrer and the User-Agent, so the size of a common log is not one
+        assertEquals(-1, new LogLineScanner(COMBINED_LOG.substring(0, COMBINED_LOG.lastIndexOf('"') + 1))
+                .getResponseTime());
+        assertEquals(-1, new LogLineScanner("1.2.3.4 - - [01/Mar/2025:12:34:56 +0000] \"GET / HTTP/1.1\" 200 10")
+                .getResponseTime());
+        assertEquals(-1, new LogLineScanner("").getResponseTime());
+    }
+
+    @Test
+    void testMissingFields() {
+        LogLineScanner scanner = new LogLineScanner("- - - [01/Mar/2025:12:34:56 +0000] \"GET / HTTP/1.1\" 404 -");
+        assertNull(scanner.getIp());
+        assertEquals(404, scanner.getStatus());
+        assertEquals(-1, scanner.getBytes());
+        assertNull(scanner.getReferrer());
+        assertEquals("GET / HTTP/1.1", scanner.getUserAgent());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"20/Jan/2013:06:56:32 -0600", "01/Mar/2024:00:00:00 +0000", "29/Feb/2024:23:59:59 +0530",
+            "31/Dec/1969:23:59:59 +0000", "15/jul/2099:12:00:00 -1130"})
+    void testEpochSecondMatchesJavaTime(String timestamp) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+        String normalized = timestamp.substring(0, 3) + Character.toUpperCase(timestamp.charAt(3))
+                + timestamp.substring(4);
+        long expected = ZonedDateTime.parse(normalized, formatter).toEpochSecond();
+        LogLineScanner scanner = new LogLineScanner("1.2.3.4 - - [" + timestamp + "] \"GET / HTTP/1.1\" 200 1");
+        assertEquals(expected, scanner.getEpochSecond());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1.2.3.4 - - \"GET / HTTP/1.1\" 200 1", "1.2.3.4 - - [20/Foo/2013:06:56:32 -0600] x",
+            "1.2.3.4 - - [20/Jan/2013:06:56:32] x", "1.2.3.4 - - [20/Jan/2013:25:56:32 -0600] x"})
+    void testInvalidTimestamps(String log) {
+        assertEquals(LogLineScanner.NO_TIMESTAMP, new LogLineScanner(log).getEpochSecond());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "82.166.148.154 - - [01/Mar/2025:12:34:56 +0000] \"GET / HTTP/1.1\" 200 1024",
+            COMBINED_LOG,
+            "82.166.148.154 - - [20/Jan/2013:06:56:32 -0600] \"GET\n/wp-content/themes/twentytwelve/js/navigation.js" +
+                    "?ver=1.0 HTTP/1.1\" 200 863\n\"http://creditcardandloanoffers.com/?utm_source=Contextin&utm_term=_\"" +
+                    " \"Mozilla/5.0 (Windows\nNT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1\" 361 1133 - 5625",
+            "- - - [01/Mar/2025:12:34:56 +0000] \"GET / HTTP/1.1\" 200 1024 \"Mozilla/5.0 (Windows NT 10.0; Win64; " +
+                    "x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/58.0.3029.110 Safari/537.36\"",
+            "1.2.3.4\"\"",
+            "1.2.3",
+            "",
+    })
+    void testMatchesRegexOnKnownLogs(String log) {
+        LogLineScanner scanner = new LogLineScanner(log);
+        assertEquals(regexGroup(IP_PATTERN, log), scanner.getIp());
+        assertEquals(regexGroup(USER_AGENT_PATTERN, log), scanner.getUserAgent());
+    }
+
+    @Test
+    void testMatchesRegexOnRandomLines() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < FUZZ_LINES; i++) {
+            builder.setLength(0);
+            int length = random.nextInt(FUZZ_MAX_LENGTH);
+            for (int j = 0; j < length; j++) {
+                builder.append(FUZZ_ALPHABET.charAt(random.nextInt(FUZZ_ALPHABET.length())));
+            }
+            String log = builder.toString();
+            LogLineScanner scanner = new LogLineScanner(log);
+            assertEquals(regexGroup(IP_PATTERN, log), scanner.getIp(), log);
+            assertEquals(regexGroup(USER_AGENT_PATTERN, log), scanner.getUserAgent(), log);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package tests;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.LatencyAnalyzer;
+import categories.LogFieldAnalyzer;
+import categories.OSAnalyzer;
+import main.CountryResolved;
+import main.LogAnalyzer;
+import main.LogField;
+import main.LogFilter;
+import main.LogStore;
+import main.ParsedLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStoreTest {
+
+    private static final List<String> SAMPLE_LOGS = List.of(
+            "82.166.148.154 - - [20/Jan/2013:06:56:32 -0600] \"GET / HTTP/1.1\" 200 863 \"-\" \"Mozilla/5.0 " +
+                    "(Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1\" 361 1133 - 5625",
+            "65.34.248.51 - - [20/Jan/2013:04:33:29 -0600] \"GET / HTTP/1.1\" 404 9983 \"-\" \"Mozilla/5.0 " +
+                    "(iPad; CPU OS 6_0_1 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 " +
+                    "Mobile/10A523 Safari/8536.25\" 625 10246 - 233945",
+            "76.24.130.106 - - [27/Jan/2013:18:08:13 -0600] \"GET / HTTP/1.1\" 200 9983 \"-\" \"Mozilla/5.0 " +
+                    "(Linux; U; Android 4.0.3; en-us; Transformer TF101 Build/IML74K) AppleWebKit/534.30 " +
+                    "(KHTML, like Gecko) Version/4.0 Safari/534.30\"",
+            "broken line without any fields");
+
+    @TempDir
+    Path tempDir;
+
+    private Path logPath;
+    private Path storePath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        List<String> logs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            logs.addAll(SAMPLE_LOGS);
+        }
+        logPath = Files.write(tempDir.resolve("access.log"), logs);
+        storePath = tempDir.resolve("access.store");
+    }
+
+    private static List<CategoryAnalyzer> analyzers() {
+        return new ArrayList<>(List.of(new OSAnalyzer("OS"), new LatencyAnalyzer(new BrowsersAnalyzer("Browsers")),
+                new LogFieldAnalyzer("IPs", LogField.IP), new LogFieldAnalyzer("User agents", LogField.USER_AGENT)));
+    }
+
+    /**
+     * Returns an analyzer counting the value a function reads from every log entry.
+     */
+    private static CategoryAnalyzer reading(Function<ParsedLog, Object> value) {
+        return new LogFieldAnalyzer("Values", LogField.IP) {
+            @Override
+            public String getCategoryValue(ParsedLog log) {
+                return String.valueOf(value.apply(log));
+            }
+        };
+    }
+
+    @Test
+    void testScanCountsLikeParsing() throws IOException, InterruptedException {
+        assertEquals(800, LogStore.compile(List.of(logPath), storePath, null, LogFilter.NONE));
+        assertTrue(LogStore.isStore(storePath));
+        assertFalse(LogStore.isStore(logPath));
+
+        LogAnalyzer parsed = new LogAnalyzer(analyzers());
+        parsed.calculateParameters(List.of(logPath), 1);
+        for (int parallelism : new int[]{1, 3}) {
+            LogAnalyzer scanned = new LogAnalyzer(analyzers());
+            scanned.calculateParameters(List.of(storePath), parallelism);
+            assertEquals(parsed.getTotalLogs(), scanned.getTotalLogs());
+            for (int i = 0; i < parsed.getAnalyzers().size(); i++) {
+                assertEquals(parsed.getAnalyzers().get(i).getCounter(), scanned.getAnalyzers().get(i).getCounter());
+            }
+            assertEquals(400, ((LatencyAnalyzer) scanned.getAnalyzers().get(1)).getAllLatencies().getCount());
+        }
+    }
+
+    @Test
+    void testRowFields() throws IOException, InterruptedException {
+        LogStore.compile(List.of(logPath), storePath, null, LogFilter.parse("status=404"));
+        CategoryAnalyzer fields = reading(log -> List.of(log.getIp(), log.getEpochSecond(), log.getStatus(),
+                log.getResponseTime(), log.getUserAgentClient().userAgent.family, log.getUserAgentClient().os.family,
+                ((CountryResolved) log).isCountryResolved()));
+        new LogAnalyzer(new ArrayList<>(List.of(fields))).calculateParameters(List.of(storePath), 1);
+        assertEquals(Map.of("[65.34.248.51, 1358678009, 404, 233945, Mobile Safari, iOS, false]", 200),
+                fields.getCounter());
+        // the URL is not stored, whatever the analyzer declared
+        assertThrows(IllegalStateException.class, () -> new LogAnalyzer(new ArrayList<>(
+                List.of(reading(ParsedLog::getUrl)))).calculateParametersFromStore(storePath, 1));
+    }
+
+    @Test
+    void testCountriesResolvedWhenCompiled() throws IOException, InterruptedException {
+        CategoryAnalyzer countries = new LogFieldAnalyzer("Countries", LogField.IP) {
+            @Override
+            public String getCategoryValue(ParsedLog log) {
+                return log.getIp().startsWith("82.") ? "Israel" : null;
+            }
+        };
+        LogStore.compile(List.of(logPath), storePath, countries, LogFilter.NONE);
+        CategoryAnalyzer resolved = reading(log -> ((CountryResolved) log).isCountryResolved() + " "
+                + ((CountryResolved) log).getResolvedCountry());
+        new LogAnalyzer(new ArrayList<>(List.of(resolved))).calculateParameters(List.of(storePath), 1);
+        // the broken line has no IPv4 address, so its country is left to the analyzers
+        assertEquals(Map.of("true Israel", 200, "true null", 400, "false null", 200), resolved.getCounter());
+    }
+
+    @Test
+    void testBlocks() throws IOException, InterruptedException {
+        int lines = LogStore.BLOCK_ROWS + 10;
+        Files.write(logPath, Collections.nCopies(lines, SAMPLE_LOGS.get(0)));
+        LogStore.compile(List.of(logPath), storePath, null, LogFilter.NONE);
+        try (LogStore store = LogStore.open(storePath)) {
+            assertEquals(lines, store.size());
+            assertEquals(2, store.getBlockCount());
+        }
+        OSAnalyzer os = new OSAnalyzer("OS");
+        LogAnalyzer scanned = new LogAnalyzer(new ArrayList<>(List.of(os)));
+        scanned.calculateParameters(List.of(storePath, logPath), 2);
+        assertEquals(2L * lines, scanned.getTotalLogs());
+        assertEquals(Map.of("Windows", 2 * lines), os.getCounter());
+    }
+
+    @Test
+    void testInvalidUses() throws IOException {
+        LogStore.compile(List.of(logPath), storePath, null, LogFilter.NONE);
+        assertThrows(IOException.class, () -> LogStore.open(logPath));
+        assertThrows(IOException.class, () -> LogStore.compile(List.of(storePath), tempDir.resolve("again.store"),
+                null, LogFilter.NONE));
+        assertThrows(IllegalArgumentException.class, () -> new LogAnalyzer(new ArrayList<>(
+                List.of(new LogFieldAnalyzer("URLs", LogField.URL)))).calculateParametersFromStore(storePath, 1));
+        LogAnalyzer filtered = new LogAnalyzer(analyzers());
+        filtered.setFilter(LogFilter.parse("status=200"));
+        assertThrows(IllegalArgumentException.class, () -> filtered.calculateParametersFromStore(storePath, 1));
+
+        // a truncated store is rejected when it is opened
+        byte[] bytes = Files.readAllBytes(storePath);
+        Path truncated = Files.write(tempDir.resolve("truncated.store"), Arrays.copyOf(bytes, 40));
+        assertThrows(IOException.class, () -> LogStore.open(truncated));
+    }
+}
@@ -0,0 +1,56 @@
+package tests;
+
+import main.LruCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruCacheTest {
+
+    @Test
+    void testHitsAndMisses() {
+        AtomicInteger loads = new AtomicInteger();
+        LruCache<String, String> cache = new LruCache<>(100, key -> {
+            loads.incrementAndGet();
+            return key.toUpperCase();
+        });
+
+        String first = cache.get("firefox");
+        String second = cache.get("firefox");
+        assertEquals("FIREFOX", first);
+        assertSame(first, second, "A cached value should be returned as the same instance.");
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        LruCache<Integer, String> cache = new LruCache<>(1000, String::valueOf);
+        for (int i = 0; i < 100_000; i++) {
+            cache.get(i);
+        }
+        assertTrue(cache.size() <= cache.getMaxSize(), "size: " + cache.size());
+        assertEquals(100_000, cache.getMisses());
+        assertEquals(100_000 - cache.size(), cache.getEvictions());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        AtomicInteger loads = new AtomicInteger();
+        LruCache<String, String> cache = new LruCache<>(1, key -> key + loads.incrementAndGet());
+
+        assertEquals("a1", cache.get("a"));
+        assertEquals("b2", cache.get("b"));
+        assertEquals("a3", cache.get("a"), "The eldest entry should have been evicted and loaded again.");
+        assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    void testInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new LruCache<String, String>(0, key -> key));
+    }
+}
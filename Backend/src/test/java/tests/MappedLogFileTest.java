@@ -0,0 +1,84 @@
+package tests;
+
+import input.MappedLogFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLogFileTest {
+    private static final String CONTENT = "first line\r\nsecond line\n\nfourth line after an empty one\n" +
+            "fifth\nsixth line is a bit longer than the others\nlast line without newline";
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeLogs(String content) throws IOException {
+        Path logs = tempDir.resolve("logs.txt");
+        Files.writeString(logs, content);
+        return logs;
+    }
+
+    private List<String> readAllRanges(List<ByteBuffer> ranges) {
+        List<String> lines = new ArrayList<>();
+        for (ByteBuffer range : ranges) {
+            MappedLogFile.forEachLine(range, lines::add);
+        }
+        return lines;
+    }
+
+    @Test
+    void testSplitMatchesReadAllLines() throws IOException {
+        Path logs = writeLogs(CONTENT);
+        List<String> expected = Files.readAllLines(logs);
+        for (int parts = 1; parts <= 10; parts++) {
+            try (MappedLogFile logFile = MappedLogFile.open(logs)) {
+                List<ByteBuffer> ranges = logFile.split(parts);
+                assertEquals(expected, readAllRanges(ranges), "parts: " + parts);
+            }
+        }
+    }
+
+    @Test
+    void testMultipleSegments() throws IOException {
+        Path logs = writeLogs(CONTENT + "\n");
+        try (MappedLogFile logFile = MappedLogFile.open(logs, 50)) {
+            assertTrue(logFile.getSegmentCount() > 1);
+            assertEquals(Files.size(logs), logFile.size());
+            assertEquals(Files.readAllLines(logs), readAllRanges(logFile.split(3)));
+        }
+    }
+
+    @Test
+    void testRangesEndOnLineBoundaries() throws IOException {
+        Path logs = writeLogs(CONTENT);
+        try (MappedLogFile logFile = MappedLogFile.open(logs)) {
+            List<ByteBuffer> ranges = logFile.split(4);
+            for (int i = 0; i < ranges.size() - 1; i++) {
+                ByteBuffer range = ranges.get(i);
+                assertEquals('\n', range.get(range.limit() - 1));
+            }
+        }
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        Path logs = writeLogs("");
+        try (MappedLogFile logFile = MappedLogFile.open(logs)) {
+            assertTrue(logFile.split(4).isEmpty());
+        }
+    }
+
+    @Test
+    void testLineLongerThanSegment() throws IOException {
+        Path logs = writeLogs(CONTENT);
+        assertThrows(IOException.class, () -> MappedLogFile.open(logs, 8));
+    }
+}
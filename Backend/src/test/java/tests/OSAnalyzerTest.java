@@ -1,6 +1,8 @@
 package tests;
 
 import categories.OSAnalyzer;
+import categories.CategoryAnalyzer;
+import main.LogField;
 import main.ParsedLog;
 import org.mockito.Mockito;
 import ua_parser.Client;
@@ -9,8 +11,10 @@ import org.junit.jupiter.api.Test;
 import ua_parser.Parser;
 
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 class OSAnalyzerTest {
@@ -68,8 +72,48 @@ class OSAnalyzerTest {
         assertEquals(1, counter.get("iOS"));
     }
 
+    @Test
+    void testAddLogsToCounterCountsOnlyTheRange() {
+        Client windows = parser.parse("Mozilla/5.0 (Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1");
+        Client iOS = parser.parse("Mozilla/5.0 (iPad; CPU OS 6_0_1 like Mac OS X) AppleWebKit/536.26" +
+                " (KHTML, like Gecko) Version/6.0 Mobile/10A523 Safari/8536.25");
+        ParsedLog[] batch = new ParsedLog[4];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = Mockito.mock(ParsedLog.class);
+            Mockito.when(batch[i].getUserAgentClient()).thenReturn(i == 0 ? iOS : windows);
+        }
+
+        // the first log is outside the range, the last slot is left over from an earlier batch
+        osAnalyzer.addLogsToCounter(batch, 1, 3);
+        Map<String, Integer> counter = osAnalyzer.getCounter();
+        assertEquals(2, counter.get("Windows"));
+        assertEquals(1, counter.size());
+    }
+
     @Test
     void testGetCategoryName() {
         assertEquals("Operating Systems", osAnalyzer.getCategoryName());
     }
+
+    @Test
+    void testMergeEmptyCopy() {
+        Client client = parser.parse("Mozilla/5.0 (Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1");
+        ParsedLog parsedLog = Mockito.mock(ParsedLog.class);
+        Mockito.when(parsedLog.getUserAgentClient()).thenReturn(client);
+
+        CategoryAnalyzer copy = osAnalyzer.createEmptyCopy();
+        assertEquals(osAnalyzer.getCategoryName(), copy.getCategoryName());
+        assertTrue(copy.getCounter().isEmpty());
+
+        osAnalyzer.addLogToCounter(parsedLog);
+        copy.addLogToCounter(parsedLog);
+        copy.addLogToCounter(parsedLog);
+        osAnalyzer.merge(copy);
+        assertEquals(3, osAnalyzer.getCounter().get("Windows"));
+    }
+
+    @Test
+    void testRequiredFields() {
+        assertEquals(Set.of(LogField.USER_AGENT_CLIENT), osAnalyzer.getRequiredFields());
+    }
 }
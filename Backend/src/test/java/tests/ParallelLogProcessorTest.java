@@ -0,0 +1,147 @@
+package tests;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.OSAnalyzer;
+import main.LogAnalyzer;
+import input.MappedLogFile;
+import main.ParallelLogProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+class ParallelLogProcessorTest {
+    private static final int REPEATS = 500;
+    private static final List<String> SAMPLE_LOGS = Arrays.asList(
+            "82.166.148.154 - - [20/Jan/2013:06:56:32 -0600] \"GET / HTTP/1.1\" 200 863 \"-\" \"Mozilla/5.0 " +
+                    "(Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1\" 361 1133 - 5625",
+            "65.34.248.51 - - [20/Jan/2013:04:33:29 -0600] \"GET / HTTP/1.1\" 200 9983 \"-\" \"Mozilla/5.0 " +
+                    "(iPad; CPU OS 6_0_1 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 " +
+                    "Mobile/10A523 Safari/8536.25\" 625 10246 - 233945",
+            "76.24.130.106 - - [27/Jan/2013:18:08:13 -0600] \"GET / HTTP/1.1\" 200 9983 \"-\" \"Mozilla/5.0 " +
+                    "(Linux; U; Android 4.0.3; en-us; Transformer TF101 Build/IML74K) AppleWebKit/534.30 " +
+                    "(KHTML, like Gecko) Version/4.0 Safari/534.30\" 606 10246 - 126870",
+            "broken line without any fields");
+
+    private List<String> logs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        logs = new ArrayList<>();
+        for (int i = 0; i < REPEATS; i++) {
+            logs.addAll(SAMPLE_LOGS);
+        }
+    }
+
+    @Test
+    void testParallelCountsMatchSequential() throws InterruptedException {
+        List<CategoryAnalyzer> sequential = new ArrayList<>(Arrays.asList(new OSAnalyzer("OS"),
+                new BrowsersAnalyzer("Browsers")));
+        List<CategoryAnalyzer> parallel = new ArrayList<>(Arrays.asList(new OSAnalyzer("OS"),
+                new BrowsersAnalyzer("Browsers")));
+
+        new LogAnalyzer(logs, sequential).calculateParameters();
+        long processed = new ParallelLogProcessor(parallel, 4, 7).process(logs.iterator());
+
+        assertEquals(logs.size(), processed);
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getCounter(), parallel.get(i).getCounter());
+        }
+        assertEquals(REPEATS, parallel.get(1).getCounter().get("Firefox"));
+    }
+
+    @Test
+    void testMappedRangesMatchSequential() throws IOException, InterruptedException {
+        Path logFile = tempDir.resolve("logs.txt");
+        Files.write(logFile, logs);
+        List<CategoryAnalyzer> sequential = new ArrayList<>(Arrays.asList(new OSAnalyzer("OS"),
+                new BrowsersAnalyzer("Browsers")));
+        List<CategoryAnalyzer> parallel = new ArrayList<>(Arrays.asList(new OSAnalyzer("OS"),
+                new BrowsersAnalyzer("Browsers")));
+
+        new LogAnalyzer(logs, sequential).calculateParameters();
+        long processed;
+        try (MappedLogFile mappedLogFile = MappedLogFile.open(logFile, 4096)) {
+            processed = new ParallelLogProcessor(parallel, 3).processRanges(mappedLogFile.split(12));
+        }
+
+        assertEquals(logs.size(), processed);
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getCounter(), parallel.get(i).getCounter());
+        }
+    }
+
+    @Test
+    void testFilesMatchSequential() throws IOException, InterruptedException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Path file = tempDir.resolve("access.log." + i + (i % 2 == 0 ? ".gz" : ""));
+            try (OutputStream out = Files.newOutputStream(file);
+                 PrintWriter writer = new PrintWriter(i % 2 == 0 ? new GZIPOutputStream(out) : out, false,
+                         StandardCharsets.UTF_8)) {
+                logs.forEach(writer::println);
+            }
+            files.add(file);
+        }
+        List<String> allLogs = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            allLogs.addAll(logs);
+        }
+        List<CategoryAnalyzer> sequential = new ArrayList<>(Arrays.asList(new OSAnalyzer("OS"),
+                new BrowsersAnalyzer("Browsers")));
+        List<CategoryAnalyzer> parallel = new ArrayList<>(Arrays.asList(new OSAnalyzer("OS"),
+                new BrowsersAnalyzer("Browsers")));
+
+        new LogAnalyzer(allLogs, sequential).calculateParameters();
+        long processed = new ParallelLogProcessor(parallel, 3).processFiles(files);
+
+        assertEquals(allLogs.size(), processed);
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getCounter(), parallel.get(i).getCounter());
+        }
+    }
+
+    @Test
+    void testMissingFileIsRethrown() {
+        ParallelLogProcessor processor = new ParallelLogProcessor(new ArrayList<>(List.of(new OSAnalyzer("OS"))), 2);
+        assertThrows(IOException.class, () -> processor.processFiles(List.of(tempDir.resolve("missing.log.gz"))));
+    }
+
+    @Test
+    void testWorkerFailureIsRethrown() {
+        CategoryAnalyzer failing = Mockito.mock(CategoryAnalyzer.class);
+        CategoryAnalyzer failingCopy = Mockito.mock(CategoryAnalyzer.class);
+        Mockito.when(failing.createEmptyCopy()).thenReturn(failingCopy);
+        Mockito.doThrow(new IllegalStateException("boom")).when(failingCopy)
+                .addLogsToCounter(any(), Mockito.anyInt(), Mockito.anyInt());
+
+        ParallelLogProcessor processor = new ParallelLogProcessor(List.of(failing), 2, 10);
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> processor.process(logs.iterator()));
+        assertEquals("boom", thrown.getMessage());
+        Mockito.verify(failing, Mockito.never()).merge(any());
+    }
+
+    @Test
+    void testInvalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelLogProcessor(List.of(), 0));
+    }
+}
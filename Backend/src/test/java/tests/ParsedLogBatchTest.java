@@ -0,0 +1,154 @@
+package tests;
+
+import main.LogField;
+import main.ParsedLog;
+import main.ParsedLogBatch;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParsedLogBatchTest {
+
+    private static final String COMBINED_LOG = "82.166.148.154 - - [20/Jan/2013:06:56:32 -0600] \"GET " +
+            "/wp-content/themes/twentytwelve/js/navigation.js?ver=1.0 HTTP/1.1\" 200 863" +
+            "\"http://creditcardandloanoffers.com/?utm_source=Contextin&utm_term=_\" \"Mozilla/5.0 " +
+            "(Windows NT 6.1; WOW64; rv:15.0) Gecko/20100101 Firefox/15.0.1\" 361 1133 - 5625";
+
+    private static final Set<LogField> ALL_FIELDS = EnumSet.allOf(LogField.class);
+
+    /**
+     * Returns well-formed and broken lines, with a few distinct User-Agents repeated across lines.
+     */
+    private static List<String> sampleLogs(int count) {
+        List<String> logs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            logs.add((i % 250) + ".0." + (i % 7) + ".1 - - [20/Jan/2013:06:56:" + (10 + i % 50) + " -0600] \"GET /page/"
+                    + (i % 13) + " HTTP/1.1\" " + (i % 3 == 0 ? 404 : 200) + " 863 \"http://referrer/" + (i % 5)
+                    + "\" \"Mozilla/5.0 (Windows NT 6.1; rv:" + (i % 11) + ".0) Gecko/20100101 Firefox/15.0.1\"");
+        }
+        logs.add(COMBINED_LOG);
+        logs.add("not a log line");
+        logs.add("999.1.1.1 - - [broken] \"\" - -");
+        logs.add("");
+        return logs;
+    }
+
+    private static void assertSameFields(ParsedLog expected, ParsedLog actual) {
+        assertEquals(expected.getIp(), actual.getIp());
+        assertEquals(expected.getIpAddress(), actual.getIpAddress());
+        assertEquals(expected.getEpochSecond(), actual.getEpochSecond());
+        assertEquals(expected.getUrl(), actual.getUrl());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getReferrer(), actual.getReferrer());
+        assertEquals(expected.getUserAgent(), actual.getUserAgent());
+        assertEquals(expected.getUserAgentClient(), actual.getUserAgentClient());
+        assertEquals(expected.getResponseTime(), actual.getResponseTime());
+    }
+
+    @Test
+    void testRowsMatchParsedLogs() {
+        List<String> logs = sampleLogs(60);
+        ParsedLogBatch batch = new ParsedLogBatch(logs.size(), ALL_FIELDS);
+        for (String log : logs) {
+            batch.add(log);
+        }
+        assertEquals(logs.size(), batch.size());
+        assertTrue(batch.isFull());
+        for (int row = 0; row < logs.size(); row++) {
+            assertSameFields(new ParsedLog(logs.get(row)), batch.getLogs()[row]);
+        }
+    }
+
+    @Test
+    void testImplementationsOverrideEveryGetter() throws ReflectiveOperationException {
+        // the getters of a ParsedLog constructed from a line delegate to its scanned log entry, which the other
+        // implementations don't have
+        List<Class<?>> implementations = List.of(Class.forName("main.ScannedLog"), Class.forName("main.LogStore$Row"),
+                new ParsedLogBatch(1, ALL_FIELDS).getLogs()[0].getClass());
+        for (Method getter : ParsedLog.class.getDeclaredMethods()) {
+            if (!Modifier.isPublic(getter.getModifiers()) || Modifier.isStatic(getter.getModifiers())) {
+                continue;
+            }
+            for (Class<?> implementation : implementations) {
+                assertNotEquals(ParsedLog.class, implementation.getMethod(getter.getName()).getDeclaringClass(),
+                        implementation.getName() + " must override " + getter.getName());
+            }
+        }
+    }
+
+    @Test
+    void testColumns() {
+        ParsedLogBatch batch = new ParsedLogBatch(4, ALL_FIELDS);
+        batch.add(COMBINED_LOG);
+        assertEquals("82.166.148.154", batch.getIp(0));
+        assertEquals(0x52A6949AL, batch.getIpAddress(0));
+        assertEquals(1358686592L, batch.getEpochSecond(0));
+        assertEquals("/wp-content/themes/twentytwelve/js/navigation.js?ver=1.0", batch.getUrl(0));
+        assertEquals(200, batch.getStatus(0));
+        assertEquals("http://creditcardandloanoffers.com/?utm_source=Contextin&utm_term=_", batch.getReferrer(0));
+        assertEquals("Firefox", batch.getUserAgentClient(0).userAgent.family);
+        assertEquals(5625, batch.getResponseTime(0));
+    }
+
+    @Test
+    void testSameUserAgentIsShared() {
+        ParsedLogBatch batch = new ParsedLogBatch(2, ALL_FIELDS);
+        batch.add(COMBINED_LOG);
+        batch.add(COMBINED_LOG.replace("82.166.148.154", "10.0.0.1"));
+        assertSame(batch.getUserAgent(0), batch.getUserAgent(1));
+        assertSame(batch.getUserAgentClient(0), batch.getUserAgentClient(1));
+    }
+
+    @Test
+    void testBatchIsReusedAfterClear() {
+        ParsedLogBatch batch = new ParsedLogBatch(2, ALL_FIELDS);
+        batch.add(COMBINED_LOG);
+        batch.add(COMBINED_LOG);
+        assertThrows(IllegalStateException.class, () -> batch.add(COMBINED_LOG));
+        ParsedLog view = batch.getLogs()[0];
+
+        batch.clear();
+        assertEquals(0, batch.size());
+        batch.add("10.0.0.1 - - [20/Jan/2013:06:56:32 -0600] \"GET / HTTP/1.1\" 404 0 \"-\" \"curl/7.0\"");
+        assertSame(view, batch.getLogs()[0]);
+        assertEquals("10.0.0.1", view.getIp());
+        assertEquals(404, view.getStatus());
+        assertEquals("curl/7.0", view.getUserAgent());
+    }
+
+    @Test
+    void testManyDistinctUserAgentsAcrossBatches() {
+        // more distinct User-Agents than the dictionary of a batch keeps, so it is cleared between batches
+        ParsedLogBatch batch = new ParsedLogBatch(100, EnumSet.of(LogField.USER_AGENT));
+        for (int i = 0; i < 10_000; i++) {
+            if (batch.isFull()) {
+                batch.clear();
+            }
+            batch.add("10.0.0.1 - - [20/Jan/2013:06:56:32 -0600] \"GET / HTTP/1.1\" 200 0 \"-\" \"agent-" + i + "\"");
+            assertEquals("agent-" + i, batch.getUserAgent(batch.size() - 1));
+        }
+    }
+
+    @Test
+    void testOnlyDeclaredFieldsCanBeRead() {
+        ParsedLogBatch batch = new ParsedLogBatch(1, EnumSet.of(LogField.IP));
+        batch.add(COMBINED_LOG);
+        ParsedLog view = batch.getLogs()[0];
+        assertEquals("82.166.148.154", view.getIp());
+        assertThrows(IllegalStateException.class, view::getUserAgentClient);
+        assertThrows(IllegalStateException.class, view::getStatus);
+        assertThrows(IllegalStateException.class, () -> batch.getEpochSecond(0));
+    }
+
+    @Test
+    void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new ParsedLogBatch(0, ALL_FIELDS));
+    }
+}
@@ -1,11 +1,14 @@
 package tests;
 
+import main.LogField;
 import main.ParsedLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ua_parser.Client;
 import ua_parser.Parser;
 
+import java.util.EnumSet;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ParsedLogTest {
@@ -80,4 +83,29 @@ class ParsedLogTest {
 
         assertSame(parsedLog1.getUserAgentClient(), parsedLog2.getUserAgentClient(), "The same User-Agent should not be parsed twice.");
     }
+
+    @Test
+    void testOnlyDeclaredFieldsAreParsed() {
+        String log = "82.166.148.154 - - [01/Mar/2025:12:34:56 +0000] \"GET / HTTP/1.1\" 200 1024 \"Mozilla/5.0 " +
+                "(X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0-declared-fields-test\"";
+        long misses = ParsedLog.getUserAgentCache().getMisses();
+
+        ParsedLog parsedLog = new ParsedLog(log, EnumSet.of(LogField.IP));
+        assertEquals("82.166.148.154", parsedLog.getIp());
+        assertEquals(misses, ParsedLog.getUserAgentCache().getMisses(), "The User-Agent must not be parsed");
+        assertThrows(IllegalStateException.class, parsedLog::getUserAgentClient);
+        assertThrows(IllegalStateException.class, parsedLog::getUserAgent);
+    }
+
+    @Test
+    void testUserAgentClientIsMemoized() {
+        String log = "82.166.148.154 - - [01/Mar/2025:12:34:56 +0000] \"GET / HTTP/1.1\" 200 1024 \"Mozilla/5.0 " +
+                "(Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/58.0.3029.110 Safari/537.36\"";
+        ParsedLog parsedLog = new ParsedLog(log, EnumSet.of(LogField.USER_AGENT_CLIENT));
+        Client client = parsedLog.getUserAgentClient();
+        long hits = ParsedLog.getUserAgentCache().getHits();
+        assertSame(client, parsedLog.getUserAgentClient());
+        assertEquals(hits, ParsedLog.getUserAgentCache().getHits(), "The cache must not be asked twice");
+        assertThrows(IllegalStateException.class, parsedLog::getIp);
+    }
 }
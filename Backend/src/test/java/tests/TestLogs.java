@@ -0,0 +1,104 @@
+package tests;
+
+import categories.CategoryAnalyzer;
+import main.ParsedLog;
+import org.mockito.Mockito;
+import ua_parser.Client;
+import ua_parser.Device;
+import ua_parser.OS;
+import ua_parser.UserAgent;
+
+/**
+ * Mocked log entries for the analyzer tests, holding only the fields a test sets.
+ */
+final class TestLogs {
+
+    /** The family of the parts of a User-Agent a test does not set. */
+    static final String OTHER = "Other";
+
+    private TestLogs() {
+    }
+
+    /**
+     * Starts a mocked log entry.
+     *
+     * @return a builder of the log entry
+     */
+    static LogBuilder log() {
+        return new LogBuilder();
+    }
+
+    /**
+     * Returns a mocked log entry of a browser on another OS.
+     *
+     * @param browser the browser family, or {@code null} for a log entry without a User-Agent
+     * @return the log entry
+     */
+    static ParsedLog browserLog(String browser) {
+        return log().browser(browser).build();
+    }
+
+    /**
+     * Counts the same log entry several times.
+     *
+     * @param analyzer the analyzer
+     * @param log      the log entry
+     * @param count    the number of times it is counted
+     */
+    static void add(CategoryAnalyzer analyzer, ParsedLog log, int count) {
+        for (int i = 0; i < count; i++) {
+            analyzer.addLogToCounter(log);
+        }
+    }
+
+    /**
+     * Stubs the fields of a mocked log entry.
+     */
+    static final class LogBuilder {
+        private final ParsedLog log = Mockito.mock(ParsedLog.class);
+
+        private LogBuilder() {
+        }
+
+        /**
+         * Sets the browser of a User-Agent on another OS, or none if it is {@code null}.
+         */
+        LogBuilder browser(String browser) {
+            return client(OTHER, browser);
+        }
+
+        /**
+         * Sets the parsed User-Agent, or none if the browser is {@code null}.
+         */
+        LogBuilder client(String os, String browser) {
+            Client client = browser == null ? null : new Client(new UserAgent(browser, null, null, null),
+                    new OS(os, null, null, null, null), new Device(OTHER));
+            Mockito.when(log.getUserAgentClient()).thenReturn(client);
+            return this;
+        }
+
+        LogBuilder ip(String ip) {
+            Mockito.when(log.getIp()).thenReturn(ip);
+            return this;
+        }
+
+        LogBuilder url(String url) {
+            Mockito.when(log.getUrl()).thenReturn(url);
+            return this;
+        }
+
+        LogBuilder epochSecond(long epochSecond) {
+            Mockito.when(log.getEpochSecond()).thenReturn(epochSecond);
+            return this;
+        }
+
+        LogBuilder responseTime(long responseTime) {
+            Mockito.when(log.getResponseTime()).thenReturn(responseTime);
+            return this;
+        }
+
+        ParsedLog build() {
+            return log;
+        }
+    }
+}
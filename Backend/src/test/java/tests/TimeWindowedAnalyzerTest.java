@@ -0,0 +1,160 @@
+package tests;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.CubeAnalyzer;
+import categories.OSAnalyzer;
+import categories.TimeWindow;
+import categories.TimeWindowedAnalyzer;
+import main.LogField;
+import main.LogLineScanner;
+import main.ParsedLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeWindowedAnalyzerTest {
+
+    private static final long MINUTE = 60;
+    /* 2013-01-20T12:00:00Z, the start of a minute window. */
+    private static final long START = 1358683200L;
+
+    private TimeWindowedAnalyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        analyzer = new TimeWindowedAnalyzer(new BrowsersAnalyzer("Browsers"), TimeWindow.MINUTE, 3);
+    }
+
+    private static ParsedLog log(String browser, long epochSecond) {
+        return TestLogs.log().browser(browser).epochSecond(epochSecond).build();
+    }
+
+    @Test
+    void testCountsPerWindow() {
+        analyzer.addLogToCounter(log("Chrome", START));
+        analyzer.addLogToCounter(log("Chrome", START + 59));
+        analyzer.addLogToCounter(log("Firefox", START + MINUTE));
+        analyzer.addLogToCounter(log("Safari", START + 2 * MINUTE + 1));
+
+        assertEquals(Map.of("Chrome", 2L), analyzer.getCounts(START, START + MINUTE));
+        assertEquals(Map.of("Firefox", 1L, "Safari", 1L), analyzer.getRecentCounts(2));
+        assertEquals(4, analyzer.getRecentTotal(3));
+        assertEquals(START + 2 * MINUTE, analyzer.getLatestWindowStart());
+        assertEquals(Map.of("Chrome", 2, "Firefox", 1, "Safari", 1), analyzer.getCounter());
+    }
+
+    @Test
+    void testOldWindowsAreRecycled() {
+        analyzer.addLogToCounter(log("Chrome", START));
+        analyzer.addLogToCounter(log("Firefox", START + 3 * MINUTE));
+
+        assertEquals(Map.of("Firefox", 1L), analyzer.getRecentCounts(3));
+        assertEquals(Map.of(), analyzer.getCounts(START, START + MINUTE));
+        // the first window was pushed out
+        assertEquals(1, analyzer.getDroppedLogs());
+
+        // older than the kept windows: only counted all-time
+        analyzer.addLogToCounter(log("Safari", START));
+        assertEquals(2, analyzer.getDroppedLogs());
+        assertEquals(1, analyzer.getCounter().get("Safari"));
+        assertEquals(1, analyzer.getRecentTotal(3));
+    }
+
+    @Test
+    void testLogsWithoutTimestamp() {
+        analyzer.addLogToCounter(log("Chrome", LogLineScanner.NO_TIMESTAMP));
+        assertEquals(0, analyzer.getRecentTotal(3));
+        assertEquals(LogLineScanner.NO_TIMESTAMP, analyzer.getLatestWindowStart());
+        assertEquals(1, analyzer.getCounter().get("Chrome"));
+    }
+
+    @Test
+    void testMerge() {
+        CategoryAnalyzer other = analyzer.createEmptyCopy();
+        analyzer.addLogToCounter(log("Chrome", START));
+        other.addLogToCounter(log("Chrome", START + 1));
+        other.addLogToCounter(log("Firefox", START + MINUTE));
+
+        analyzer.merge(other);
+        assertEquals(Map.of("Chrome", 2L), analyzer.getCounts(START, START + MINUTE));
+        assertEquals(Map.of("Chrome", 2L, "Firefox", 1L), analyzer.getRecentCounts(3));
+        assertEquals(Map.of("Chrome", 2, "Firefox", 1), analyzer.getCounter());
+
+        assertThrows(IllegalArgumentException.class, () -> analyzer.merge(new BrowsersAnalyzer("Browsers")));
+        assertThrows(IllegalArgumentException.class, () -> analyzer.merge(
+                new TimeWindowedAnalyzer(new BrowsersAnalyzer("Browsers"), TimeWindow.HOUR, 3)));
+    }
+
+    @Test
+    void testMergedPartialsMatchOnePass() {
+        Random random = new Random(42);
+        String[] browsers = {"Chrome", "Firefox", "Safari"};
+        ParsedLog[] logs = new ParsedLog[300];
+        for (int i = 0; i < logs.length; i++) {
+            // mostly moving forward, with stragglers from up to five windows back
+            long minute = i / 30 - random.nextInt(6);
+            logs[i] = log(browsers[random.nextInt(browsers.length)], START + minute * MINUTE + random.nextInt(60));
+        }
+        for (ParsedLog log : logs) {
+            analyzer.addLogToCounter(log);
+        }
+
+        for (int partials : new int[]{2, 3, 7}) {
+            TimeWindowedAnalyzer merged = (TimeWindowedAnalyzer) analyzer.createEmptyCopy();
+            for (int partial = 0; partial < partials; partial++) {
+                CategoryAnalyzer copy = merged.createEmptyCopy();
+                int from = partial * logs.length / partials;
+                copy.addLogsToCounter(logs, from, (partial + 1) * logs.length / partials);
+                merged.merge(copy);
+            }
+            assertEquals(analyzer.getDroppedLogs(), merged.getDroppedLogs());
+            assertEquals(analyzer.getRecentCounts(3), merged.getRecentCounts(3));
+            assertEquals(analyzer.getRecentTotal(3), merged.getRecentTotal(3));
+            assertEquals(logs.length, merged.getDroppedLogs() + merged.getRecentTotal(3));
+        }
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws IOException {
+        analyzer.addLogToCounter(log("Chrome", START));
+        analyzer.addLogToCounter(log("Firefox", START + MINUTE));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        analyzer.writeSnapshot(new DataOutputStream(bytes));
+
+        TimeWindowedAnalyzer restored = (TimeWindowedAnalyzer) analyzer.createEmptyCopy();
+        restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(analyzer.getRecentCounts(3), restored.getRecentCounts(3));
+        assertEquals(analyzer.getCounter(), restored.getCounter());
+        assertEquals(START + MINUTE, restored.getLatestWindowStart());
+    }
+
+    @Test
+    void testRequiredFields() {
+        TimeWindowedAnalyzer osAnalyzer = new TimeWindowedAnalyzer(new OSAnalyzer("OS"), TimeWindow.HOUR, 24);
+        assertTrue(osAnalyzer.getRequiredFields().contains(LogField.TIMESTAMP));
+        assertTrue(osAnalyzer.getRequiredFields().contains(LogField.USER_AGENT_CLIENT));
+        assertFalse(osAnalyzer.getRequiredFields().contains(LogField.IP));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TimeWindowedAnalyzer(new BrowsersAnalyzer("Browsers"), TimeWindow.DAY, 0));
+        // a cube counts combinations of values, not single values
+        assertThrows(IllegalArgumentException.class, () -> new TimeWindowedAnalyzer(
+                new CubeAnalyzer("Cube", List.of(new OSAnalyzer("OS"))), TimeWindow.DAY, 1));
+        assertEquals(TimeWindow.HOUR, TimeWindow.parse("hour"));
+        assertThrows(IllegalArgumentException.class, () -> TimeWindow.parse("week"));
+    }
+}
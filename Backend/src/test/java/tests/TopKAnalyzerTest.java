@@ -0,0 +1,147 @@
+package tests;
+
+import categories.CategoryAnalyzer;
+import categories.LogFieldAnalyzer;
+import categories.TopKAnalyzer;
+import main.LogField;
+import main.ParsedLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKAnalyzerTest {
+
+    private static final double EPSILON = 0.001;
+    private static final double DELTA = 0.01;
+
+    private TopKAnalyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        analyzer = new TopKAnalyzer(new LogFieldAnalyzer("URLs", LogField.URL), 3, EPSILON, DELTA);
+    }
+
+    private static ParsedLog log(String url) {
+        return TestLogs.log().url(url).build();
+    }
+
+    private static void addLogs(CategoryAnalyzer analyzer, String url, int count) {
+        TestLogs.add(analyzer, log(url), count);
+    }
+
+    @Test
+    void testKeepsHeavyHitters() {
+        addLogs(analyzer, "/a", 50);
+        addLogs(analyzer, "/b", 30);
+        for (int i = 0; i < 200; i++) {
+            addLogs(analyzer, "/rare/" + i, 1);
+        }
+        addLogs(analyzer, "/c", 20);
+        analyzer.addLogToCounter(log(null));
+
+        Map<String, Integer> counter = analyzer.getCounter();
+        assertEquals(List.of("/a", "/b", "/c"), List.copyOf(counter.keySet()));
+        assertEquals(50, counter.get("/a"));
+        assertEquals(30, counter.get("/b"));
+        assertEquals(20, counter.get("/c"));
+        assertEquals(1, analyzer.getErrorBound());
+        assertEquals("URLs", analyzer.getCategoryName());
+        assertEquals(Set.of(LogField.URL), analyzer.getRequiredFields());
+    }
+
+    @Test
+    void testHeavyHittersAmongManyNewValues() {
+        TopKAnalyzer topTen = new TopKAnalyzer(new LogFieldAnalyzer("URLs", LogField.URL), 10, EPSILON, DELTA);
+        List<ParsedLog> logs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            // "/hot/0" to "/hot/9" are counted 200 to 155 times, the others at most 50 times
+            for (int count = 0; count < 200 - 5 * i - (i < 10 ? 0 : 100); count++) {
+                logs.add(log("/hot/" + i));
+            }
+        }
+        for (int i = 0; i < 2000; i++) {
+            logs.add(log("/rare/" + i));
+        }
+        Collections.shuffle(logs, new Random(7));
+        for (ParsedLog log : logs) {
+            topTen.addLogToCounter(log);
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add("/hot/" + i);
+        }
+        assertEquals(expected, List.copyOf(topTen.getCounter().keySet()));
+    }
+
+    @Test
+    void testMergeKeepsTopOfBoth() {
+        CategoryAnalyzer other = analyzer.createEmptyCopy();
+        addLogs(analyzer, "/a", 10);
+        addLogs(analyzer, "/b", 8);
+        addLogs(analyzer, "/c", 5);
+        addLogs(other, "/d", 12);
+        addLogs(other, "/c", 4);
+        addLogs(other, "/e", 1);
+
+        analyzer.merge(other);
+        assertEquals(Map.of("/d", 12, "/a", 10, "/c", 9), analyzer.getCounter());
+        assertEquals(8, analyzer.estimate("/b"));
+        assertThrows(IllegalArgumentException.class,
+                () -> analyzer.merge(new TopKAnalyzer(new LogFieldAnalyzer("URLs", LogField.URL), 3, 0.01, DELTA)));
+        assertThrows(IllegalArgumentException.class,
+                () -> analyzer.merge(new LogFieldAnalyzer("URLs", LogField.URL)));
+    }
+
+    @Test
+    void testMergeFindsHeavyHitterOfNoPart() {
+        TopKAnalyzer merged = new TopKAnalyzer(new LogFieldAnalyzer("URLs", LogField.URL), 2, EPSILON, DELTA);
+        for (int part = 0; part < 4; part++) {
+            // "/shared" is only third in every part, but first once the parts are merged
+            CategoryAnalyzer partial = merged.createEmptyCopy();
+            addLogs(partial, "/" + part + "/a", 100);
+            addLogs(partial, "/" + part + "/b", 90);
+            addLogs(partial, "/shared", 60);
+            assertFalse(partial.getCounter().containsKey("/shared"));
+            merged.merge(partial);
+        }
+        Map<String, Integer> top = merged.getCounter();
+        assertEquals(2, top.size());
+        assertEquals("/shared", top.keySet().iterator().next());
+        assertEquals(240, top.get("/shared"));
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws IOException {
+        addLogs(analyzer, "/a", 7);
+        addLogs(analyzer, "/b", 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        analyzer.writeSnapshot(new DataOutputStream(bytes));
+
+        CategoryAnalyzer restored = analyzer.createEmptyCopy();
+        addLogs(restored, "/b", 5);
+        restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(Map.of("/b", 8, "/a", 7), restored.getCounter());
+    }
+
+    @Test
+    void testInvalidArguments() {
+        CategoryAnalyzer source = new LogFieldAnalyzer("URLs", LogField.URL);
+        assertThrows(IllegalArgumentException.class, () -> new TopKAnalyzer(source, 0, EPSILON, DELTA));
+        assertThrows(IllegalArgumentException.class, () -> new TopKAnalyzer(source, 3, 2, DELTA));
+        assertThrows(IllegalArgumentException.class, () -> new LogFieldAnalyzer("Times", LogField.TIMESTAMP));
+    }
+}
@@ -0,0 +1,76 @@
+package tests;
+
+import categories.BrowsersAnalyzer;
+import categories.CategoryAnalyzer;
+import categories.UniqueVisitorsAnalyzer;
+import main.LogField;
+import main.ParsedLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UniqueVisitorsAnalyzerTest {
+
+    private UniqueVisitorsAnalyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        analyzer = new UniqueVisitorsAnalyzer(new BrowsersAnalyzer("Browsers"));
+    }
+
+    private static ParsedLog log(String browser, String ip) {
+        return TestLogs.log().browser(browser).ip(ip).build();
+    }
+
+    private static void addVisits(CategoryAnalyzer analyzer, String browser, int visitors, int visitsPerVisitor) {
+        for (int v = 0; v < visitors; v++) {
+            TestLogs.add(analyzer, log(browser, "10.0." + v / 256 + "." + v % 256), visitsPerVisitor);
+        }
+    }
+
+    @Test
+    void testCountsHitsAndVisitors() {
+        addVisits(analyzer, "Chrome", 3, 4);
+        addVisits(analyzer, "Firefox", 5, 1);
+        analyzer.addLogToCounter(log("Safari", null));
+
+        assertEquals(Map.of("Chrome", 12, "Firefox", 5, "Safari", 1), analyzer.getCounter());
+        assertEquals(Map.of("Chrome", 3L, "Firefox", 5L), analyzer.getUniqueVisitors());
+        assertEquals(0, analyzer.getUniqueVisitors("Safari"));
+        assertEquals(Set.of(LogField.IP, LogField.USER_AGENT_CLIENT), analyzer.getRequiredFields());
+    }
+
+    @Test
+    void testMergeDoesNotCountVisitorsTwice() {
+        CategoryAnalyzer other = analyzer.createEmptyCopy();
+        addVisits(analyzer, "Chrome", 100, 1);
+        addVisits(other, "Chrome", 150, 1);
+
+        analyzer.merge(other);
+        assertEquals(250, analyzer.getCounter().get("Chrome"));
+        assertEquals(150, analyzer.getUniqueVisitors("Chrome"), 3);
+        assertThrows(IllegalArgumentException.class,
+                () -> analyzer.merge(new UniqueVisitorsAnalyzer(new BrowsersAnalyzer("Browsers"), 10)));
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws IOException {
+        addVisits(analyzer, "Chrome", 40, 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        analyzer.writeSnapshot(new DataOutputStream(bytes));
+
+        UniqueVisitorsAnalyzer restored = (UniqueVisitorsAnalyzer) analyzer.createEmptyCopy();
+        restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(80, restored.getCounter().get("Chrome"));
+        assertEquals(analyzer.getUniqueVisitors("Chrome"), restored.getUniqueVisitors("Chrome"));
+    }
+}
@@ -0,0 +1,154 @@
+package tests;
+
+import main.UserAgentClassifier;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ua_parser.Client;
+import ua_parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserAgentClassifierTest {
+    private static final int CORPUS_SIZE = 4000;
+
+    // The platforms of the recognized shapes; %s are versions, and Firefox appends its revision to the platform.
+    private static final String[] WINDOWS_PLATFORMS = {"Windows NT 10.0; Win64; x64", "Windows NT 10.0; WOW64",
+            "Windows NT 10.0", "Windows NT 6.1; Win64; x64", "Windows NT 6.1; WOW64", "Windows NT 6.1",
+            "Windows NT 6.3; Win64; x64", "Windows NT 6.2; WOW64", "Windows NT 6.0", "Windows NT 5.1"};
+    private static final String[] LINUX_PLATFORMS = {"X11; Linux x86_64", "X11; Ubuntu; Linux x86_64"};
+
+    // Tokens inserted into the recognized shapes, which either keep the shape or make it fall back.
+    private static final String[] NOISE = {"; wv", " HeadlessChrome/1.0", " Edg/", " EdgA/120.0.0.0", " OPR/",
+            " YaBrowser/23.1.0", " SamsungBrowser/23.0", "; Trident/7.0", " Mobile", " Safari/537.36", "; rv:1.0",
+            " CriOS/120.0.0.0", " FxiOS/121.0", " Version/4.0", " (compatible; Googlebot/2.1)", "; x64", " Electron/1.2.3",
+            "; K", " Chrome/120.0.0.0", " Vivaldi/6.5", "; en-us", ")", " Gecko/20100101", "_1", ".0", ""};
+
+    private static Parser parser;
+    private static UserAgentClassifier classifier;
+
+    @BeforeAll
+    static void setUp() {
+        parser = new Parser();
+        classifier = new UserAgentClassifier(parser);
+    }
+
+    private static String version(Random random, int components, char separator) {
+        StringBuilder version = new StringBuilder().append(1 + random.nextInt(140));
+        for (int i = 1; i < components; i++) {
+            version.append(separator).append(random.nextInt(i == 2 ? 6000 : 20));
+        }
+        return version.toString();
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Returns a User-Agent of one of the recognized shapes, with random versions.
+     */
+    private static String dominantUserAgent(Random random) {
+        String chrome = " AppleWebKit/537.36 (KHTML, like Gecko) Chrome/" + version(random, 4, '.');
+        String mac = "Macintosh; Intel Mac OS X " + (10 + random.nextInt(5)) + "_" + random.nextInt(16)
+                + (random.nextBoolean() ? "_" + random.nextInt(8) : "");
+        String firefox = "; rv:" + version(random, 2, '.') + ") Gecko/20100101 Firefox/"
+                + version(random, 2 + random.nextInt(2), '.');
+        return switch (random.nextInt(9)) {
+            case 0 -> "Mozilla/5.0 (" + pick(random, WINDOWS_PLATFORMS) + ")" + chrome + " Safari/537.36";
+            case 1 -> "Mozilla/5.0 (" + pick(random, WINDOWS_PLATFORMS) + ")" + chrome + " Safari/537.36 Edg/"
+                    + version(random, 4, '.');
+            case 2 -> "Mozilla/5.0 (" + pick(random, LINUX_PLATFORMS) + ")" + chrome + " Safari/537.36 OPR/"
+                    + version(random, 4, '.');
+            case 3 -> "Mozilla/5.0 (" + mac + ")" + chrome + " Safari/537.36";
+            case 4 -> "Mozilla/5.0 (" + pick(random, WINDOWS_PLATFORMS) + firefox;
+            case 5 -> "Mozilla/5.0 (Macintosh; Intel Mac OS X 10." + random.nextInt(16) + firefox;
+            case 6 -> "Mozilla/5.0 (" + mac + ") AppleWebKit/605.1.15 (KHTML, like Gecko) Version/"
+                    + version(random, 2 + random.nextInt(2), '.') + " Safari/605.1.15";
+            case 7 -> "Mozilla/5.0 (" + (random.nextBoolean() ? "iPhone; CPU iPhone OS " : "iPad; CPU OS ")
+                    + version(random, 2 + random.nextInt(2), '_') + " like Mac OS X) AppleWebKit/605.1.15"
+                    + " (KHTML, like Gecko) Version/" + version(random, 2, '.') + " Mobile/15E148 Safari/604.1";
+            default -> "Mozilla/5.0 (Linux; Android " + version(random, 1 + random.nextInt(3), '.')
+                    + (random.nextBoolean() ? "; K" : random.nextBoolean() ? "; SM-S918B" : "") + ")" + chrome
+                    + (random.nextBoolean() ? " Mobile" : "") + " Safari/537.36";
+        };
+    }
+
+    /**
+     * Inserts a random token at a random place of a User-Agent.
+     */
+    private static String withNoise(Random random, String userAgent) {
+        int at = random.nextInt(userAgent.length() + 1);
+        return userAgent.substring(0, at) + pick(random, NOISE) + userAgent.substring(at);
+    }
+
+    @Test
+    void testMatchesParserOnDominantUserAgents() {
+        Random random = new Random(42);
+        List<String> unrecognized = new ArrayList<>();
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            String userAgent = dominantUserAgent(random);
+            Client client = classifier.classify(userAgent);
+            if (client == null) {
+                unrecognized.add(userAgent);
+            } else {
+                assertEquals(parser.parse(userAgent), client, userAgent);
+            }
+        }
+        // the recognized shapes only fall back for Windows releases and platforms outside the first tier
+        assertTrue(unrecognized.size() < CORPUS_SIZE / 20, unrecognized.toString());
+    }
+
+    @Test
+    void testMatchesParserOnAlteredUserAgents() {
+        Random random = new Random(7);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            String userAgent = withNoise(random, dominantUserAgent(random));
+            assertEquals(parser.parse(userAgent), classifier.parse(userAgent), userAgent);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0"
+                    + " Safari/537.36 Edg/120.0.2210.91",
+            "Mozilla/5.0 (Linux; Android 10; K) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Mobile"
+                    + " Safari/537.36 EdgA/120.0.2210.115",
+            "Mozilla/5.0 (Linux; U; Android 4.0.3; en-us; Transformer TF101 Build/IML74K) AppleWebKit/534.30"
+                    + " (KHTML, like Gecko) Version/4.0 Safari/534.30",
+            "Mozilla/5.0 (Android 14; Mobile; rv:121.0) Gecko/121.0 Firefox/121.0",
+            "Mozilla/5.0 (compatible; MSIE 9.0; Windows NT 6.1; Trident/5.0)",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko)"
+                    + " CriOS/120.0.6099.119 Mobile/15E148 Safari/604.1",
+            "curl/7.68.0",
+            "Mozilla/5.0 (",
+            "Mozilla/5.0 () ",
+            "",
+    })
+    void testMatchesParserOnOtherUserAgents(String userAgent) {
+        assertEquals(parser.parse(userAgent), classifier.parse(userAgent), userAgent);
+    }
+
+    @Test
+    void testRecognizesCommonBrowsers() {
+        Client chrome = classifier.classify("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36"
+                + " (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+        assertNotNull(chrome);
+        assertEquals("Chrome", chrome.userAgent.family);
+        assertEquals("Windows", chrome.os.family);
+
+        Client safari = classifier.classify("Mozilla/5.0 (iPad; CPU OS 6_0_1 like Mac OS X) AppleWebKit/536.26"
+                + " (KHTML, like Gecko) Version/6.0 Mobile/10A523 Safari/8536.25");
+        assertNotNull(safari);
+        assertEquals("Mobile Safari", safari.userAgent.family);
+        assertEquals("iOS", safari.os.family);
+
+        assertNull(classifier.classify("Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)"));
+    }
+}